@@ -0,0 +1,105 @@
+package com.automacao.rstremento2;
+
+import android.content.Context;
+import android.hardware.GeomagneticField;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+/**
+ * Fonte inercial baseada nos sensores do aparelho. Supõe o aparelho fixo no veículo,
+ * deitado e com o topo (eixo y) apontando para a frente. Os instantes são os de
+ * {@link SensorEvent#timestamp}, na mesma base de {@code Location.getElapsedRealtimeNanos()}.
+ * <p>
+ * O azimute do {@link Sensor#TYPE_ROTATION_VECTOR} é magnético; o rumo publicado soma a
+ * declinação no último fix informado, que chega a mais de 20° no Brasil. A declinação só
+ * é recalculada quando a posição se afasta mais de {@value #DECLINATION_REFRESH_DEGREES}°.
+ */
+public class AndroidInertialSensorSource implements InertialSensorSource, SensorEventListener {
+    private static final double DECLINATION_REFRESH_DEGREES = 0.1; // Cerca de 10 km
+    private final SensorManager sensorManager;
+    private final float[] rotationMatrix = new float[9];
+    private final float[] orientation = new float[3];
+    private volatile InertialSampleListener listener;
+    private volatile float declinationDegrees;
+    private double declinationLatitude = Double.NaN;
+    private double declinationLongitude;
+
+    /**
+     * Construtor da fonte inercial.
+     *
+     * @param context Contexto da aplicação.
+     */
+    public AndroidInertialSensorSource(Context context) {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    @Override
+    public void setListener(InertialSampleListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setReferenceLocation(double latitude, double longitude, double altitude) {
+        if (Math.abs(latitude - declinationLatitude) < DECLINATION_REFRESH_DEGREES
+                && Math.abs(longitude - declinationLongitude) < DECLINATION_REFRESH_DEGREES) {
+            return;
+        }
+        GeomagneticField field = new GeomagneticField((float) latitude, (float) longitude, (float) altitude,
+                System.currentTimeMillis());
+        declinationDegrees = field.getDeclination();
+        declinationLatitude = latitude;
+        declinationLongitude = longitude;
+    }
+
+    @Override
+    public void start() {
+        register(Sensor.TYPE_LINEAR_ACCELERATION);
+        register(Sensor.TYPE_GYROSCOPE);
+        register(Sensor.TYPE_ROTATION_VECTOR);
+    }
+
+    private void register(int type) {
+        Sensor sensor = sensorManager.getDefaultSensor(type);
+        if (sensor != null) {
+            sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_GAME);
+        }
+    }
+
+    @Override
+    public void stop() {
+        sensorManager.unregisterListener(this);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        InertialSampleListener current = listener;
+        if (current == null) {
+            return;
+        }
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_LINEAR_ACCELERATION:
+                current.onSample(CHANNEL_ACCELERATION, event.timestamp, event.values[1]);
+                break;
+            case Sensor.TYPE_GYROSCOPE:
+                // Giro em z é positivo no sentido anti-horário; o rumo cresce no horário
+                current.onSample(CHANNEL_YAW_RATE, event.timestamp, (float) -Math.toDegrees(event.values[2]));
+                break;
+            case Sensor.TYPE_ROTATION_VECTOR:
+                SensorManager.getRotationMatrixFromVector(rotationMatrix, event.values);
+                SensorManager.getOrientation(rotationMatrix, orientation);
+                // Azimute magnético mais a declinação: rumo a partir do norte verdadeiro
+                current.onSample(CHANNEL_HEADING, event.timestamp,
+                        (float) Math.toDegrees(orientation[0]) + declinationDegrees);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Sem tratamento
+    }
+}
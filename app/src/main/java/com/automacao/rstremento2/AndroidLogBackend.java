@@ -0,0 +1,17 @@
+package com.automacao.rstremento2;
+
+import android.util.Log;
+
+/**
+ * Destino padrão do {@link AppLog}: grava no logcat.
+ */
+public class AndroidLogBackend implements LogBackend {
+
+    @Override
+    public void write(int level, String tag, String message, Throwable error) {
+        if (error != null) {
+            message = message + '\n' + Log.getStackTraceString(error);
+        }
+        Log.println(level, tag, message);
+    }
+}
@@ -0,0 +1,252 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Esvazia um acúmulo grande de registros em uma única conexão, em três estágios:
+ * montagem dos pacotes agrupados e cálculo dos CRCs, ambos em paralelo nos workers de um
+ * {@link ForkJoinPool}, e um único estágio de I/O que apenas grava pacotes prontos.
+ *
+ * <p>Os estágios são ligados por filas limitadas: no máximo {@code encodeAhead} pacotes
+ * ficam em preparo à frente do socket, e no máximo {@code ackWindow} pacotes ficam gravados
+ * sem confirmação. Quando uma fila enche, o estágio anterior espera. Os registros só saem do
+ * {@link PacketBuffer} depois da confirmação, em ordem. Registros urgentes não passam por
+ * aqui; eles seguem pelo envio normal.
+ *
+ * <p>Com uma {@link WireCapture} definida, os pacotes gravados e as confirmações lidas
+ * também são capturados.
+ *
+ * <p>Deve ser usado por uma única thread de I/O, enquanto o envio normal está parado.
+ */
+public class BacklogFlusher {
+
+    private static final String TAG = "BacklogFlusher";
+    private static final int OUTPUT_BUFFER_BYTES = 16 * 1024;
+
+    private final PacketBuffer buffer;
+    private final Executor workers;
+    private final int recordsPerFrame;
+    private final int maxFrameBytes;
+    private final int encodeAhead;
+    private final int ackWindow;
+    private final AckFrameDecoder ackDecoder = new AckFrameDecoder();
+    private volatile WireCapture wireCapture;
+
+    // Estatísticas da última execução
+    private int lastRecords;
+    private int lastFrames;
+    private long lastBytes;
+    private long lastReceivedBytes;
+    private long lastElapsedNanos;
+    private long lastEncodeWaitNanos;
+
+    /**
+     * Construtor com o pool comum, que acompanha o número de núcleos.
+     */
+    public BacklogFlusher(PacketBuffer buffer, int recordsPerFrame, int maxFrameBytes) {
+        this(buffer, ForkJoinPool.commonPool(), recordsPerFrame, maxFrameBytes,
+                2 * ForkJoinPool.getCommonPoolParallelism() + 2, 8);
+    }
+
+    /**
+     * Construtor do esvaziador.
+     *
+     * @param buffer          Buffer de registros.
+     * @param workers         Executor dos estágios de montagem e CRC.
+     * @param recordsPerFrame Número máximo de registros por pacote.
+     * @param maxFrameBytes   Tamanho máximo do corpo de um pacote.
+     * @param encodeAhead     Pacotes em preparo à frente do estágio de I/O.
+     * @param ackWindow       Pacotes gravados aguardando confirmação.
+     */
+    public BacklogFlusher(PacketBuffer buffer, Executor workers, int recordsPerFrame, int maxFrameBytes,
+                          int encodeAhead, int ackWindow) {
+        if (recordsPerFrame < 1 || encodeAhead < 1 || ackWindow < 1) {
+            throw new IllegalArgumentException("Parâmetros de esvaziamento inválidos");
+        }
+        this.buffer = buffer;
+        this.workers = workers;
+        this.recordsPerFrame = recordsPerFrame;
+        this.maxFrameBytes = maxFrameBytes;
+        this.encodeAhead = encodeAhead;
+        this.ackWindow = ackWindow;
+    }
+
+    /**
+     * Envia até {@code maxRecords} registros comuns pela conexão. Os registros confirmados
+     * são removidos do buffer mesmo que a execução termine com erro.
+     *
+     * @param in         Entrada da conexão, com as confirmações do servidor.
+     * @param out        Saída da conexão.
+     * @param maxRecords Número máximo de registros a enviar.
+     * @return Número de registros confirmados.
+     * @throws IOException Em erro de conexão ou confirmação com CRC inválido.
+     */
+    public int flush(InputStream in, OutputStream out, int maxRecords) throws IOException {
+        PacketArena arena = buffer.getArena();
+        ArrayDeque<CompletableFuture<PacketBatch>> encoding = new ArrayDeque<>(encodeAhead);
+        ArrayDeque<PacketBatch> unacked = new ArrayDeque<>(ackWindow);
+        BufferedOutputStream output = new BufferedOutputStream(out, OUTPUT_BUFFER_BYTES);
+        ackDecoder.reset();
+        lastRecords = 0;
+        lastFrames = 0;
+        lastBytes = 0;
+        lastEncodeWaitNanos = 0;
+        long start = System.nanoTime();
+        long readStart = ackDecoder.getReadBytes();
+
+        long cursor = arena.peekHandle();
+        int remaining = Math.min(maxRecords, arena.size());
+        try {
+            while (true) {
+                // Estágios 1 e 2: agenda a montagem e o CRC dos próximos pacotes
+                while (encoding.size() < encodeAhead && remaining > 0 && cursor != PacketArena.NO_HANDLE) {
+                    long first = cursor;
+                    int count = 1;
+                    int bodyBytes = buffer.bodyLength(first);
+                    cursor = arena.nextHandle(first);
+                    while (count < recordsPerFrame && count < remaining && cursor != PacketArena.NO_HANDLE) {
+                        int body = buffer.bodyLength(cursor);
+                        if (bodyBytes + body > maxFrameBytes) {
+                            break;
+                        }
+                        bodyBytes += body;
+                        count++;
+                        cursor = arena.nextHandle(cursor);
+                    }
+                    remaining -= count;
+                    encoding.addLast(encode(first, count, bodyBytes));
+                }
+                if (encoding.isEmpty()) {
+                    break;
+                }
+
+                // Estágio 3: grava o próximo pacote pronto, respeitando a janela de confirmações
+                if (unacked.size() == ackWindow) {
+                    output.flush();
+                    awaitAck(in, unacked);
+                }
+                CompletableFuture<PacketBatch> next = encoding.pollFirst();
+                PacketBatch frame;
+                if (next.isDone()) {
+                    frame = join(next);
+                } else {
+                    output.flush(); // Não segura bytes prontos enquanto espera os workers
+                    long waitStart = System.nanoTime();
+                    frame = join(next);
+                    lastEncodeWaitNanos += System.nanoTime() - waitStart;
+                }
+                output.write(frame.getPacket());
+                WireCapture capture = wireCapture;
+                if (capture != null) {
+                    capture.record(WireCapture.DIRECTION_SENT, System.currentTimeMillis(),
+                            frame.getPacket(), 0, frame.getPacket().length);
+                }
+                unacked.addLast(frame);
+                lastFrames++;
+                lastBytes += frame.getPacket().length;
+            }
+            output.flush();
+            while (!unacked.isEmpty()) {
+                awaitAck(in, unacked);
+            }
+        } finally {
+            for (CompletableFuture<PacketBatch> pending : encoding) {
+                pending.cancel(false);
+            }
+            lastElapsedNanos = System.nanoTime() - start;
+            lastReceivedBytes = ackDecoder.getReadBytes() - readStart;
+            AppLog.d(TAG, "Esvaziamento: {} registros em {} pacotes, {} ms (espera pelos workers: {} ms)",
+                    lastRecords, lastFrames, lastElapsedNanos / 1000000, lastEncodeWaitNanos / 1000000);
+        }
+        return lastRecords;
+    }
+
+    private CompletableFuture<PacketBatch> encode(long first, int count, int bodyBytes) {
+        return CompletableFuture
+                .supplyAsync(() -> buffer.assembleFrame(first, count, bodyBytes), workers)
+                .thenApplyAsync(packet -> {
+                    PacketBuffer.sealFrame(packet);
+                    return new PacketBatch(packet, count, false);
+                }, workers);
+    }
+
+    private static PacketBatch join(CompletableFuture<PacketBatch> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IOException("Falha ao montar pacote", e.getCause());
+        }
+    }
+
+    /**
+     * Lê uma confirmação e, se o CRC corresponder ao pacote mais antigo, remove seus registros.
+     */
+    private void awaitAck(InputStream in, ArrayDeque<PacketBatch> unacked) throws IOException {
+        PacketBatch oldest = unacked.pollFirst();
+        WireCapture capture = wireCapture;
+        int crc;
+        try {
+            crc = ackDecoder.readFrame(in);
+        } catch (IOException e) {
+            if (capture != null) {
+                capture.recordUnframed(System.currentTimeMillis(), ackDecoder);
+            }
+            throw e;
+        }
+        if (capture != null) {
+            capture.recordAck(System.currentTimeMillis(), ackDecoder);
+        }
+        if (crc != AckFrameDecoder.packetCrc(oldest.getPacket())) {
+            throw new IOException("Confirmação com CRC inválido durante o esvaziamento");
+        }
+        buffer.removeRecords(oldest.getRecordCount());
+        lastRecords += oldest.getRecordCount();
+    }
+
+    /**
+     * Define a captura dos bytes trocados durante o esvaziamento.
+     *
+     * @param capture A captura, ou null para desativar.
+     */
+    public void setWireCapture(WireCapture capture) {
+        wireCapture = capture;
+    }
+
+    public int getLastRecords() {
+        return lastRecords;
+    }
+
+    public int getLastFrames() {
+        return lastFrames;
+    }
+
+    public long getLastBytes() {
+        return lastBytes;
+    }
+
+    /**
+     * Bytes lidos da conexão na última execução.
+     */
+    public long getLastReceivedBytes() {
+        return lastReceivedBytes;
+    }
+
+    public long getLastElapsedNanos() {
+        return lastElapsedNanos;
+    }
+
+    /**
+     * Tempo em que o estágio de I/O ficou parado esperando pacotes dos workers na última execução.
+     */
+    public long getLastEncodeWaitNanos() {
+        return lastEncodeWaitNanos;
+    }
+}
@@ -0,0 +1,49 @@
+package com.automacao.rstremento2;
+
+/**
+ * Leitura de bits gravados por {@link BitWriter}.
+ */
+final class BitReader {
+    private final byte[] data;
+    private long position;
+    private final long limit;
+
+    BitReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = (long) offset << 3;
+        this.limit = (long) (offset + length) << 3;
+    }
+
+    int readBit() {
+        if (position >= limit) {
+            throw new IllegalStateException("Fim dos dados comprimidos");
+        }
+        int bit = (data[(int) (position >>> 3)] >>> (7 - (position & 7))) & 1;
+        position++;
+        return bit;
+    }
+
+    long readBits(int bits) {
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            value = (value << 1) | readBit();
+        }
+        return value;
+    }
+
+    long readSigned() {
+        long zigzag;
+        if (readBit() == 0) {
+            zigzag = 0;
+        } else if (readBit() == 0) {
+            zigzag = readBits(6);
+        } else if (readBit() == 0) {
+            zigzag = readBits(13);
+        } else if (readBit() == 0) {
+            zigzag = readBits(20);
+        } else {
+            zigzag = readBits(64);
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.automacao.rstremento2;
+
+import java.util.Arrays;
+
+/**
+ * Escrita de bits em um buffer crescente, do bit mais significativo para o menos.
+ */
+final class BitWriter {
+    private byte[] buffer = new byte[64];
+    private long bitCount;
+
+    void writeBits(long value, int bits) {
+        for (int i = bits - 1; i >= 0; i--) {
+            writeBit((int) (value >>> i) & 1);
+        }
+    }
+
+    void writeBit(int bit) {
+        int index = (int) (bitCount >>> 3);
+        if (index == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (bit != 0) {
+            buffer[index] |= (byte) (0x80 >>> (bitCount & 7));
+        }
+        bitCount++;
+    }
+
+    /**
+     * Escreve um valor com sinal em faixas de largura crescente: 0 usa 1 bit,
+     * valores pequenos usam prefixos curtos.
+     */
+    void writeSigned(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        if (zigzag == 0) {
+            writeBit(0);
+        } else if (zigzag >>> 6 == 0) {
+            writeBits(0b10, 2);
+            writeBits(zigzag, 6);
+        } else if (zigzag >>> 13 == 0) {
+            writeBits(0b110, 3);
+            writeBits(zigzag, 13);
+        } else if (zigzag >>> 20 == 0) {
+            writeBits(0b1110, 4);
+            writeBits(zigzag, 20);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(zigzag, 64);
+        }
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    void reset() {
+        Arrays.fill(buffer, 0, (int) ((bitCount + 7) >>> 3), (byte) 0);
+        bitCount = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (int) ((bitCount + 7) >>> 3));
+    }
+}
@@ -0,0 +1,144 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Controle do consumo de dados diante de uma franquia diária. A cada avaliação, projeta o
+ * consumo do dia (bytes já usados mais a taxa recente até a meia-noite) e ajusta o nível:
+ * <ol start="0">
+ *     <li>normal;</li>
+ *     <li>amostragem reduzida (um registro a cada 30 segundos);</li>
+ *     <li>registro compacto, sem as tags constantes e a altitude;</li>
+ *     <li>apenas resumos de viagem e eventos urgentes.</li>
+ * </ol>
+ * O nível sobe um passo quando a projeção passa da franquia e desce um passo quando ela fica
+ * abaixo de 70% da franquia; entre duas mudanças há um tempo mínimo, exceto quando a franquia
+ * do dia já foi consumida, caso em que o nível vai direto para o último. Não depende de
+ * relógio nem de rede e pode ser exercitado com tráfego sintético.
+ */
+public class DataBudgetController {
+    public static final int LEVEL_NORMAL = 0;
+    public static final int LEVEL_REDUCED_RATE = 1;
+    public static final int LEVEL_COMPACT = 2;
+    public static final int LEVEL_SUMMARY_ONLY = 3;
+
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long DEFAULT_HOLD_MS = 10 * 60 * 1000;
+    private static final double RECOVERY_FRACTION = 0.7;
+    private static final double RATE_WEIGHT = 0.3;
+    private static final int DAYS_PER_MONTH = 30;
+
+    private final long dailyBudgetBytes;
+    private final long holdMillis;
+    private final long utcOffsetMillis;
+
+    private int level = LEVEL_NORMAL;
+    private long day = Long.MIN_VALUE;
+    private long dayStartTotal;
+    private long lastEvaluationMillis = -1;
+    private long lastTotal;
+    private long lastChangeMillis = Long.MIN_VALUE / 2;
+    private double rateBytesPerMilli = -1;
+    private long usedTodayBytes;
+    private long projectedBytes;
+
+    /**
+     * Cria um controle com a franquia mensal dividida igualmente pelos dias, no fuso local.
+     *
+     * @param monthlyCapBytes Franquia mensal em bytes.
+     */
+    public static DataBudgetController forMonthlyCap(long monthlyCapBytes) {
+        return new DataBudgetController(monthlyCapBytes / DAYS_PER_MONTH, DEFAULT_HOLD_MS,
+                TimeZone.getDefault().getRawOffset());
+    }
+
+    /**
+     * Construtor do controle.
+     *
+     * @param dailyBudgetBytes Franquia diária em bytes.
+     * @param holdMillis       Tempo mínimo entre duas mudanças de nível.
+     * @param utcOffsetMillis  Deslocamento do fuso em relação ao UTC, para a virada do dia.
+     */
+    public DataBudgetController(long dailyBudgetBytes, long holdMillis, long utcOffsetMillis) {
+        if (dailyBudgetBytes <= 0 || holdMillis < 0) {
+            throw new IllegalArgumentException("Franquia inválida: " + dailyBudgetBytes);
+        }
+        this.dailyBudgetBytes = dailyBudgetBytes;
+        this.holdMillis = holdMillis;
+        this.utcOffsetMillis = utcOffsetMillis;
+    }
+
+    /**
+     * Atualiza a projeção com o total de bytes acumulado e retorna o nível a aplicar.
+     * O consumo do dia começa no total da primeira avaliação, para que contadores
+     * restaurados do período de cobrança não contem como consumo do dia. Se o total
+     * diminuir (virada do período), a diferença é descontada do início do dia.
+     *
+     * @param nowMillis  Instante da avaliação (milissegundos Unix).
+     * @param totalBytes Total acumulado, por exemplo {@link DataUsageMeter#getTotalBytes()}.
+     * @return O nível de economia.
+     */
+    public synchronized int evaluate(long nowMillis, long totalBytes) {
+        long today = Math.floorDiv(nowMillis + utcOffsetMillis, DAY_MS);
+        if (today != day) {
+            dayStartTotal = lastEvaluationMillis < 0 ? totalBytes : lastTotal;
+            day = today;
+        }
+        if (totalBytes < lastTotal) {
+            dayStartTotal -= lastTotal; // Contadores zerados: o consumo anterior do dia é mantido
+            lastTotal = 0;
+        }
+        if (lastEvaluationMillis >= 0 && nowMillis > lastEvaluationMillis) {
+            double rate = (totalBytes - lastTotal) / (double) (nowMillis - lastEvaluationMillis);
+            rateBytesPerMilli = rateBytesPerMilli < 0 ? rate : rateBytesPerMilli + RATE_WEIGHT * (rate - rateBytesPerMilli);
+        }
+        lastEvaluationMillis = nowMillis;
+        lastTotal = totalBytes;
+
+        usedTodayBytes = totalBytes - dayStartTotal;
+        long remainingMillis = (today + 1) * DAY_MS - utcOffsetMillis - nowMillis;
+        projectedBytes = usedTodayBytes + (long) (Math.max(0, rateBytesPerMilli) * remainingMillis);
+
+        boolean holdElapsed = nowMillis - lastChangeMillis >= holdMillis;
+        if (usedTodayBytes >= dailyBudgetBytes) {
+            if (level != LEVEL_SUMMARY_ONLY) {
+                level = LEVEL_SUMMARY_ONLY;
+                lastChangeMillis = nowMillis;
+            }
+        } else if (projectedBytes > dailyBudgetBytes) {
+            if (level < LEVEL_SUMMARY_ONLY && holdElapsed) {
+                level++;
+                lastChangeMillis = nowMillis;
+            }
+        } else if (projectedBytes < dailyBudgetBytes * RECOVERY_FRACTION && level > LEVEL_NORMAL && holdElapsed) {
+            level--;
+            lastChangeMillis = nowMillis;
+        }
+        return level;
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    public long getDailyBudgetBytes() {
+        return dailyBudgetBytes;
+    }
+
+    /** Bytes consumidos desde a virada do dia, na última avaliação. */
+    public synchronized long getUsedTodayBytes() {
+        return usedTodayBytes;
+    }
+
+    /** Consumo projetado para o dia, na última avaliação. */
+    public synchronized long getProjectedBytes() {
+        return projectedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "Franquia (nível=%d, hoje=%d KB, projeção=%d KB, diária=%d KB)",
+                level, usedTodayBytes / 1024, projectedBytes / 1024, dailyBudgetBytes / 1024);
+    }
+}
@@ -0,0 +1,155 @@
+package com.automacao.rstremento2;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contabilidade de bytes trafegados com o servidor. O caminho de envio só incrementa
+ * contadores; o total cobrado pela operadora é estimado somando aos bytes da aplicação
+ * os cabeçalhos TCP/IP de cada segmento e a abertura e o fechamento de cada conexão.
+ *
+ * <p>Com um {@link DataUsageStore}, os contadores são do período de cobrança (o mês
+ * civil no fuso informado): são restaurados na partida, salvos periodicamente por
+ * {@link #persist(long)} e zerados na virada do mês.
+ */
+public class DataUsageMeter {
+    static final int TCP_IP_HEADER_BYTES = 40;     // IPv4 (20) + TCP (20)
+    static final int SEGMENT_PAYLOAD_BYTES = 1400;  // Payload típico de um segmento
+    static final int CONNECTION_OVERHEAD_BYTES = 6 * TCP_IP_HEADER_BYTES; // SYN, SYN-ACK, ACK, FIN, FIN, ACK
+
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final TimeZone zone;
+
+    // Persistência, protegida por this
+    private DataUsageStore store;
+    private String period;
+
+    /**
+     * Construtor com o período de cobrança no fuso local.
+     */
+    public DataUsageMeter() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Construtor do medidor.
+     *
+     * @param zone Fuso em que o mês de cobrança vira.
+     */
+    public DataUsageMeter(TimeZone zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Passa a persistir os contadores e soma a eles o que foi salvo no período atual.
+     *
+     * @param store     Armazenamento dos contadores.
+     * @param nowMillis Instante atual (milissegundos Unix).
+     */
+    public synchronized void restore(DataUsageStore store, long nowMillis) {
+        this.store = store;
+        period = billingPeriod(nowMillis);
+        long[] saved = store.load(period);
+        if (saved != null) {
+            sentBytes.addAndGet(saved[0]);
+            receivedBytes.addAndGet(saved[1]);
+            segments.addAndGet(saved[2]);
+            connections.addAndGet(saved[3]);
+        }
+    }
+
+    /**
+     * Salva os contadores no período atual. Na virada do período, o acumulado é salvo no
+     * período anterior e a contagem recomeça.
+     *
+     * @param nowMillis Instante atual (milissegundos Unix).
+     */
+    public synchronized void persist(long nowMillis) {
+        if (store == null) {
+            return;
+        }
+        String current = billingPeriod(nowMillis);
+        if (!current.equals(period)) {
+            long[] closed = snapshot();
+            store.save(period, closed);
+            sentBytes.addAndGet(-closed[0]);
+            receivedBytes.addAndGet(-closed[1]);
+            segments.addAndGet(-closed[2]);
+            connections.addAndGet(-closed[3]);
+            period = current;
+        }
+        store.save(period, snapshot());
+    }
+
+    /**
+     * Período de cobrança dos contadores persistidos, ou null sem persistência.
+     */
+    public synchronized String getPeriod() {
+        return period;
+    }
+
+    /**
+     * Período de cobrança ("aaaa-mm") de um instante.
+     */
+    String billingPeriod(long nowMillis) {
+        Calendar calendar = Calendar.getInstance(zone, Locale.ROOT);
+        calendar.setTimeInMillis(nowMillis);
+        return String.format(Locale.ROOT, "%04d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    private long[] snapshot() {
+        return new long[]{sentBytes.get(), receivedBytes.get(), segments.get(), connections.get()};
+    }
+
+    /**
+     * Registra uma conexão estabelecida.
+     */
+    public void onConnection() {
+        connections.incrementAndGet();
+    }
+
+    /**
+     * Registra bytes da aplicação enviados em uma escrita.
+     */
+    public void onSent(long bytes) {
+        if (bytes > 0) {
+            sentBytes.addAndGet(bytes);
+            segments.addAndGet((bytes + SEGMENT_PAYLOAD_BYTES - 1) / SEGMENT_PAYLOAD_BYTES);
+        }
+    }
+
+    /**
+     * Registra bytes da aplicação recebidos em uma resposta.
+     */
+    public void onReceived(long bytes) {
+        if (bytes > 0) {
+            receivedBytes.addAndGet(bytes);
+            segments.addAndGet((bytes + SEGMENT_PAYLOAD_BYTES - 1) / SEGMENT_PAYLOAD_BYTES);
+        }
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Total estimado em bytes IP, nos dois sentidos.
+     */
+    public long getTotalBytes() {
+        return sentBytes.get() + receivedBytes.get() + segments.get() * TCP_IP_HEADER_BYTES
+                + connections.get() * CONNECTION_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,22 @@
+package com.automacao.rstremento2;
+
+/**
+ * Armazenamento dos contadores do {@link DataUsageMeter} por período de cobrança, para que
+ * o consumo do período sobreviva ao reinício do aplicativo.
+ */
+public interface DataUsageStore {
+
+    /**
+     * Lê os contadores salvos de um período.
+     *
+     * @param period Período de cobrança, por exemplo "2024-05".
+     * @return Bytes enviados, bytes recebidos, segmentos e conexões, nessa ordem, ou null
+     * se não houver contadores salvos para o período.
+     */
+    long[] load(String period);
+
+    /**
+     * Salva os contadores de um período, na ordem de {@link #load(String)}.
+     */
+    void save(String period, long[] counters);
+}
@@ -0,0 +1,208 @@
+package com.automacao.rstremento2;
+
+/**
+ * Navegação estimada entre fixes GNSS. Parte do último fix e integra, em passos fixos,
+ * a aceleração longitudinal (velocidade) e a guinada (rumo), corrigindo o rumo pelo
+ * rumo absoluto quando disponível (filtro complementar). As amostras ficam em anéis
+ * primitivos e a integração avança à medida que aceleração e guinada chegam.
+ */
+public class DeadReckoningEstimator implements InertialSensorSource.InertialSampleListener {
+    private static final double EARTH_RADIUS_M = 6371000.0;
+    private static final long STEP_NANOS = 20_000_000L; // Passo fixo de 20 ms (50 Hz)
+    private static final long MAX_ESTIMATE_NANOS = 60_000_000_000L; // Estimativa válida até 60 s após o fix
+    private static final float HEADING_CORRECTION = 0.02f; // Peso do rumo absoluto a cada passo
+    private static final float MAX_SPEED_MPS = 70f;
+    private static final float ZERO_SPEED_MPS = 0.5f; // Abaixo disso, sem aceleração, o veículo está parado
+    private static final float ZERO_ACCELERATION = 0.3f;
+    private static final int RING_CAPACITY = 256;
+
+    private final SensorRing acceleration = new SensorRing(RING_CAPACITY);
+    private final SensorRing yawRate = new SensorRing(RING_CAPACITY);
+    private final SensorRing heading = new SensorRing(RING_CAPACITY);
+    private long accelerationCursor;
+    private long yawRateCursor;
+    private long headingCursor;
+    private float currentAcceleration;
+    private float currentYawRate;
+    private float currentHeading;
+    private boolean hasHeadingSample;
+
+    // Estado integrado, relativo ao último fix
+    private boolean hasFix;
+    private long fixNanos;
+    private double fixLatitude;
+    private double fixLongitude;
+    private long integratedNanos;
+    private double northMeters;
+    private double eastMeters;
+    private float speedMps;
+    private float headingDegrees;
+
+    // Resultado da última estimativa
+    private double estimatedLatitude;
+    private double estimatedLongitude;
+    private float estimatedSpeedMps;
+    private long fixAgeNanos;
+
+    @Override
+    public synchronized void onSample(int channel, long timeNanos, float value) {
+        switch (channel) {
+            case InertialSensorSource.CHANNEL_ACCELERATION:
+                acceleration.add(timeNanos, value);
+                break;
+            case InertialSensorSource.CHANNEL_YAW_RATE:
+                yawRate.add(timeNanos, value);
+                break;
+            case InertialSensorSource.CHANNEL_HEADING:
+                heading.add(timeNanos, value);
+                break;
+            default:
+                return;
+        }
+        if (hasFix) {
+            // Integra até onde aceleração e guinada já são conhecidas
+            integrateTo(Math.min(acceleration.getLatestTime(), yawRate.getLatestTime()));
+        }
+    }
+
+    /**
+     * Reinicia a estimativa a partir de um fix GNSS.
+     *
+     * @param timeNanos  Instante do fix, na base de tempo dos sensores.
+     * @param latitude   Latitude do fix.
+     * @param longitude  Longitude do fix.
+     * @param speedMps   Velocidade em m/s.
+     * @param bearing    Rumo em graus.
+     * @param hasBearing Se o rumo do fix é válido; caso contrário, mantém o rumo estimado.
+     */
+    public synchronized void onFix(long timeNanos, double latitude, double longitude,
+                                   float speedMps, float bearing, boolean hasBearing) {
+        hasFix = true;
+        fixNanos = timeNanos;
+        fixLatitude = latitude;
+        fixLongitude = longitude;
+        integratedNanos = timeNanos;
+        northMeters = 0;
+        eastMeters = 0;
+        this.speedMps = speedMps;
+        if (hasBearing) {
+            headingDegrees = bearing;
+        }
+        // Descarta as amostras anteriores ao fix
+        accelerationCursor = consume(acceleration, accelerationCursor, timeNanos, InertialSensorSource.CHANNEL_ACCELERATION);
+        yawRateCursor = consume(yawRate, yawRateCursor, timeNanos, InertialSensorSource.CHANNEL_YAW_RATE);
+        headingCursor = consume(heading, headingCursor, timeNanos, InertialSensorSource.CHANNEL_HEADING);
+    }
+
+    /**
+     * Avança o cursor de um anel até o instante dado, mantendo o último valor lido.
+     */
+    private long consume(SensorRing ring, long cursor, long timeNanos, int channel) {
+        cursor = Math.max(cursor, ring.getOldest());
+        long written = ring.getWritten();
+        while (cursor < written && ring.timeAt(cursor) <= timeNanos) {
+            float value = ring.valueAt(cursor);
+            switch (channel) {
+                case InertialSensorSource.CHANNEL_ACCELERATION:
+                    currentAcceleration = value;
+                    break;
+                case InertialSensorSource.CHANNEL_YAW_RATE:
+                    currentYawRate = value;
+                    break;
+                default: // CHANNEL_HEADING
+                    currentHeading = value;
+                    hasHeadingSample = true;
+                    break;
+            }
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Integra em passos fixos até o instante dado.
+     */
+    private void integrateTo(long targetNanos) {
+        double dt = STEP_NANOS / 1e9;
+        long limit = Math.min(targetNanos, fixNanos + MAX_ESTIMATE_NANOS);
+        while (integratedNanos + STEP_NANOS <= limit) {
+            long t = integratedNanos + STEP_NANOS;
+            accelerationCursor = consume(acceleration, accelerationCursor, t, InertialSensorSource.CHANNEL_ACCELERATION);
+            yawRateCursor = consume(yawRate, yawRateCursor, t, InertialSensorSource.CHANNEL_YAW_RATE);
+            headingCursor = consume(heading, headingCursor, t, InertialSensorSource.CHANNEL_HEADING);
+
+            speedMps += currentAcceleration * dt;
+            if (speedMps < ZERO_SPEED_MPS && Math.abs(currentAcceleration) < ZERO_ACCELERATION) {
+                speedMps = 0; // Veículo parado: evita a deriva do acelerômetro
+            }
+            speedMps = Math.max(0f, Math.min(MAX_SPEED_MPS, speedMps));
+
+            headingDegrees += currentYawRate * dt;
+            if (hasHeadingSample) {
+                headingDegrees += HEADING_CORRECTION * wrapDegrees(currentHeading - headingDegrees);
+            }
+            headingDegrees = (float) normalizeDegrees(headingDegrees);
+
+            double headingRadians = Math.toRadians(headingDegrees);
+            northMeters += speedMps * Math.cos(headingRadians) * dt;
+            eastMeters += speedMps * Math.sin(headingRadians) * dt;
+            integratedNanos = t;
+        }
+    }
+
+    /**
+     * Calcula a posição estimada no instante dado.
+     *
+     * @param nowNanos Instante atual, na base de tempo dos sensores.
+     * @return true se há estimativa válida (fix recebido há no máximo 60 s).
+     */
+    public synchronized boolean estimate(long nowNanos) {
+        if (!hasFix || nowNanos - fixNanos > MAX_ESTIMATE_NANOS) {
+            return false;
+        }
+        // Estende o último estado até agora com velocidade e rumo constantes
+        double seconds = Math.max(0, nowNanos - integratedNanos) / 1e9;
+        double headingRadians = Math.toRadians(headingDegrees);
+        double north = northMeters + speedMps * Math.cos(headingRadians) * seconds;
+        double east = eastMeters + speedMps * Math.sin(headingRadians) * seconds;
+        estimatedLatitude = fixLatitude + Math.toDegrees(north / EARTH_RADIUS_M);
+        estimatedLongitude = fixLongitude
+                + Math.toDegrees(east / (EARTH_RADIUS_M * Math.cos(Math.toRadians(fixLatitude))));
+        estimatedSpeedMps = speedMps;
+        fixAgeNanos = nowNanos - fixNanos;
+        return true;
+    }
+
+    public synchronized double getEstimatedLatitude() {
+        return estimatedLatitude;
+    }
+
+    public synchronized double getEstimatedLongitude() {
+        return estimatedLongitude;
+    }
+
+    public synchronized float getEstimatedSpeedMps() {
+        return estimatedSpeedMps;
+    }
+
+    public synchronized float getHeadingDegrees() {
+        return headingDegrees;
+    }
+
+    /**
+     * Tempo decorrido desde o fix usado na última estimativa.
+     */
+    public synchronized long getFixAgeNanos() {
+        return fixAgeNanos;
+    }
+
+    private static double wrapDegrees(double degrees) {
+        double wrapped = normalizeDegrees(degrees);
+        return wrapped > 180 ? wrapped - 360 : wrapped;
+    }
+
+    private static double normalizeDegrees(double degrees) {
+        double normalized = degrees % 360;
+        return normalized < 0 ? normalized + 360 : normalized;
+    }
+}
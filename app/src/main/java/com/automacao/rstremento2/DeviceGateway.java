@@ -0,0 +1,226 @@
+package com.automacao.rstremento2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modo gateway: retransmite os registros de muitos dispositivos lógicos, cada um com
+ * IMEI, CPF e placa próprios, por um conjunto limitado de conexões persistentes.
+ * <p>
+ * Cada dispositivo tem sua fila; as conexões (vias) retiram registros das filas por
+ * deficit round robin em bytes, de modo que um dispositivo com muitos registros não
+ * atrasa os demais. Um dispositivo é atendido por no máximo uma via de cada vez, o que
+ * preserva a ordem dos seus registros. O número de threads e de sockets depende apenas
+ * do número de vias, e não do número de dispositivos.
+ */
+public class DeviceGateway {
+    private static final String TAG = "DeviceGateway";
+    static final int QUANTUM_BYTES = 512; // Crédito por rodada do escalonador
+    private static final long IDLE_CHECK_INTERVAL_MS = 60000; // Devolução da memória de filas ociosas
+
+    private final EndpointPool endpointPool;
+    private final TaskScheduler scheduler;
+    private final int connectionCount;
+    private final ConcurrentHashMap<String, GatewayDevice> devices = new ConcurrentHashMap<>();
+    private final ArrayDeque<GatewayDevice> activeDevices = new ArrayDeque<>();
+    private final List<GatewayLane> lanes = new ArrayList<>();
+    private TaskScheduler.Cancellable idleCheckHandle;
+
+    /**
+     * Construtor do gateway.
+     *
+     * @param endpointPool    Endpoints de ingestão.
+     * @param scheduler       Agendador; cada via ganha um laço próprio.
+     * @param connectionCount Número máximo de conexões simultâneas.
+     */
+    public DeviceGateway(EndpointPool endpointPool, TaskScheduler scheduler, int connectionCount) {
+        if (connectionCount <= 0) {
+            throw new IllegalArgumentException("Número de conexões inválido: " + connectionCount);
+        }
+        this.endpointPool = endpointPool;
+        this.scheduler = scheduler;
+        this.connectionCount = connectionCount;
+    }
+
+    /**
+     * Registra um dispositivo. Registrar novamente o mesmo IMEI retorna o dispositivo existente.
+     *
+     * @param imei  IMEI do dispositivo.
+     * @param cpf   CPF associado ao dispositivo.
+     * @param placa Placa do veículo.
+     * @return O dispositivo registrado.
+     */
+    public GatewayDevice register(String imei, String cpf, String placa) {
+        GatewayDevice device = devices.get(imei);
+        if (device == null) {
+            GatewayDevice created = new GatewayDevice(imei, cpf, placa);
+            device = devices.putIfAbsent(imei, created);
+            if (device == null) {
+                device = created;
+            }
+        }
+        return device;
+    }
+
+    /**
+     * Codifica e enfileira uma posição de um dispositivo registrado.
+     *
+     * @return false se o IMEI não estiver registrado ou a fila do dispositivo estiver cheia.
+     */
+    public boolean addPoint(String imei, long timeMillis, double latitude, double longitude, double altitude,
+                            float speedKmh, int satellites) {
+        GatewayDevice device = devices.get(imei);
+        if (device == null) {
+            return false;
+        }
+        if (!device.getBuffer().add(device.encodePoint(timeMillis, latitude, longitude, altitude, speedKmh, satellites))) {
+            return false;
+        }
+        activate(device);
+        return true;
+    }
+
+    /**
+     * Enfileira um registro já codificado de um dispositivo registrado.
+     *
+     * @param urgent true para entregar antes dos registros comuns do dispositivo.
+     * @return false se o IMEI não estiver registrado ou a fila do dispositivo estiver cheia.
+     */
+    public boolean addRecord(String imei, byte[] record, boolean urgent) {
+        GatewayDevice device = devices.get(imei);
+        if (device == null) {
+            return false;
+        }
+        if (urgent) {
+            device.getBuffer().addUrgent(record);
+        } else if (!device.getBuffer().add(record)) {
+            return false;
+        }
+        activate(device);
+        return true;
+    }
+
+    /**
+     * Inicia as vias de envio.
+     */
+    public synchronized void start() {
+        if (!lanes.isEmpty()) {
+            return;
+        }
+        scheduler.start();
+        for (int i = 0; i < connectionCount; i++) {
+            GatewayLane lane = new GatewayLane(this, endpointPool, scheduler, scheduler.newLoop("gateway-" + i));
+            lanes.add(lane);
+            lane.start();
+        }
+        idleCheckHandle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(), this::trimIdleDevices,
+                IDLE_CHECK_INTERVAL_MS, IDLE_CHECK_INTERVAL_MS);
+        AppLog.d(TAG, "Gateway iniciado com {} conexões.", connectionCount);
+    }
+
+    /**
+     * Para as vias e fecha as conexões.
+     */
+    public synchronized void stop() {
+        for (GatewayLane lane : lanes) {
+            lane.shutdown();
+        }
+        lanes.clear();
+        if (idleCheckHandle != null) {
+            idleCheckHandle.cancel();
+            idleCheckHandle = null;
+        }
+    }
+
+    /**
+     * Devolve a memória das filas dos dispositivos que ficaram ociosos desde a verificação anterior.
+     *
+     * @return Quantos dispositivos tiveram a memória devolvida.
+     */
+    int trimIdleDevices() {
+        int trimmed = 0;
+        for (GatewayDevice device : devices.values()) {
+            if (device.trimIfIdle()) {
+                trimmed++;
+            }
+        }
+        return trimmed;
+    }
+
+    private synchronized void activate(GatewayDevice device) {
+        if (!device.scheduled && !device.busy) {
+            device.scheduled = true;
+            activeDevices.addLast(device);
+        }
+    }
+
+    /**
+     * Escolhe o próximo dispositivo a ser atendido (deficit round robin). Cada visita soma
+     * um quantum ao crédito do dispositivo; ele é escolhido quando o registro mais antigo
+     * cabe no crédito e fica reservado para a via até {@link #release(GatewayDevice)}.
+     * A via envia, em ordem, todos os registros que couberem no crédito acumulado.
+     *
+     * @return O dispositivo, ou null se nenhuma fila tiver registros.
+     */
+    synchronized GatewayDevice acquireNext() {
+        while (!activeDevices.isEmpty()) {
+            GatewayDevice device = activeDevices.pollFirst();
+            int length = device.getBuffer().peekLength();
+            if (length < 0) {
+                device.scheduled = false;
+                device.deficit = 0;
+                continue;
+            }
+            device.deficit += QUANTUM_BYTES;
+            if (length <= device.deficit) {
+                device.scheduled = false;
+                device.busy = true;
+                return device;
+            }
+            activeDevices.addLast(device);
+        }
+        return null;
+    }
+
+    /**
+     * Devolve um dispositivo atendido; se ainda houver registros, ele volta ao fim da rodada.
+     */
+    synchronized void release(GatewayDevice device) {
+        device.busy = false;
+        if (!device.getBuffer().isEmpty()) {
+            device.scheduled = true;
+            activeDevices.addLast(device);
+        } else {
+            device.deficit = 0;
+        }
+    }
+
+    public GatewayDevice getDevice(String imei) {
+        return devices.get(imei);
+    }
+
+    /**
+     * Retorna os dispositivos registrados, com suas métricas.
+     */
+    public List<GatewayDevice> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    public synchronized int getActiveDeviceCount() {
+        return activeDevices.size();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public EndpointPool getEndpointPool() {
+        return endpointPool;
+    }
+}
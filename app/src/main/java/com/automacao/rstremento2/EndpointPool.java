@@ -0,0 +1,193 @@
+package com.automacao.rstremento2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conjunto de endpoints de ingestão. Seleciona o endpoint saudável mais rápido,
+ * rebaixa endpoints após falhas consecutivas e volta a testá-los periodicamente.
+ * <p>
+ * Endpoints ainda não medidos não entram na classificação por custo: cada um é testado
+ * à parte, com um envio por intervalo de teste, como os rebaixados, até ter um RTT
+ * medido. Assim um endpoint desconhecido nunca passa na frente de um comprovadamente
+ * rápido, e um endpoint fora do ar recebe um envio por intervalo, não um por pacote.
+ */
+public class EndpointPool {
+    private static final int DEFAULT_MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long DEFAULT_PROBE_INTERVAL_MS = 60000;
+
+    private final List<ServerEndpoint> endpoints;
+    private final int maxConsecutiveFailures;
+    private final long probeIntervalMillis;
+
+    private ServerEndpoint current;
+    private long failoverCount;
+    private long probeCount;
+
+    /**
+     * Construtor com os parâmetros padrão (3 falhas consecutivas, novo teste a cada 60 segundos).
+     *
+     * @param endpoints Endpoints disponíveis, em ordem de preferência inicial.
+     */
+    public EndpointPool(List<ServerEndpoint> endpoints) {
+        this(endpoints, DEFAULT_MAX_CONSECUTIVE_FAILURES, DEFAULT_PROBE_INTERVAL_MS);
+    }
+
+    /**
+     * Construtor do conjunto de endpoints.
+     *
+     * @param endpoints              Endpoints disponíveis, em ordem de preferência inicial.
+     * @param maxConsecutiveFailures Falhas consecutivas para rebaixar um endpoint.
+     * @param probeIntervalMillis    Intervalo entre novos testes de um endpoint rebaixado.
+     */
+    public EndpointPool(List<ServerEndpoint> endpoints, int maxConsecutiveFailures, long probeIntervalMillis) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum endpoint configurado");
+        }
+        this.endpoints = new ArrayList<>(endpoints);
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * Cria um conjunto a partir de uma lista no formato "host:porta,host:porta".
+     *
+     * @param config Lista de endpoints.
+     * @return O conjunto de endpoints.
+     */
+    public static EndpointPool parse(String config) {
+        List<ServerEndpoint> endpoints = new ArrayList<>();
+        for (String entry : config.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Endpoint inválido: " + entry);
+            }
+            endpoints.add(new ServerEndpoint(entry.substring(0, separator),
+                    Integer.parseInt(entry.substring(separator + 1))));
+        }
+        return new EndpointPool(endpoints);
+    }
+
+    /**
+     * Escolhe o endpoint para o próximo envio. Um endpoint rebaixado ou ainda não medido
+     * cujo teste venceu é escolhido uma vez; o envio serve como teste. Fora isso, vence o
+     * endpoint saudável medido de menor custo.
+     *
+     * @param nowMillis Instante atual em milissegundos.
+     * @return O endpoint escolhido.
+     */
+    public synchronized ServerEndpoint select(long nowMillis) {
+        ServerEndpoint chosen = null;
+        boolean probe = false;
+        for (ServerEndpoint endpoint : endpoints) {
+            if ((endpoint.isDemoted() || !endpoint.isMeasured()) && nowMillis >= endpoint.getNextProbeMillis()) {
+                endpoint.scheduleProbe(nowMillis + probeIntervalMillis);
+                probeCount++;
+                chosen = endpoint;
+                probe = true;
+                break;
+            }
+        }
+
+        if (chosen == null) {
+            long bestScore = Long.MAX_VALUE;
+            for (ServerEndpoint endpoint : endpoints) {
+                if (!endpoint.isDemoted() && endpoint.isMeasured() && endpoint.score() < bestScore) {
+                    bestScore = endpoint.score();
+                    chosen = endpoint;
+                }
+            }
+        }
+
+        if (chosen == null) {
+            // Nenhum endpoint medido e saudável: usa o primeiro não rebaixado da configuração
+            for (ServerEndpoint endpoint : endpoints) {
+                if (!endpoint.isDemoted()) {
+                    chosen = endpoint;
+                    break;
+                }
+            }
+        }
+
+        if (chosen == null) {
+            // Todos rebaixados: usa o que será testado primeiro
+            for (ServerEndpoint endpoint : endpoints) {
+                if (chosen == null || endpoint.getNextProbeMillis() < chosen.getNextProbeMillis()) {
+                    chosen = endpoint;
+                }
+            }
+        }
+
+        if (!probe && !chosen.isDemoted()) {
+            if (current != null && chosen != current) {
+                failoverCount++;
+            }
+            current = chosen;
+        }
+        chosen.markSelected();
+        return chosen;
+    }
+
+    /**
+     * Registra um envio confirmado.
+     *
+     * @param endpoint       Endpoint usado.
+     * @param handshakeNanos Tempo de conexão em nanossegundos.
+     * @param ackNanos       Tempo entre o envio e a confirmação em nanossegundos.
+     */
+    public void recordSuccess(ServerEndpoint endpoint, long handshakeNanos, long ackNanos) {
+        endpoint.recordSuccess(handshakeNanos, ackNanos);
+    }
+
+    /**
+     * Registra uma falha (erro de conexão, timeout ou CRC inválido).
+     *
+     * @param endpoint  Endpoint usado.
+     * @param nowMillis Instante atual em milissegundos.
+     * @return true se o endpoint foi rebaixado por esta falha.
+     */
+    public boolean recordFailure(ServerEndpoint endpoint, long nowMillis) {
+        return endpoint.recordFailure(maxConsecutiveFailures, nowMillis + probeIntervalMillis);
+    }
+
+    public List<ServerEndpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Endpoint preferido atualmente, ou null antes da primeira escolha por custo (os testes
+     * de endpoints não medidos ou rebaixados não mudam o preferido).
+     */
+    public synchronized ServerEndpoint getCurrent() {
+        return current;
+    }
+
+    /**
+     * Quantas vezes a seleção trocou de endpoint.
+     */
+    public synchronized long getFailoverCount() {
+        return failoverCount;
+    }
+
+    /**
+     * Quantos novos testes de endpoints rebaixados foram feitos.
+     */
+    public synchronized long getProbeCount() {
+        return probeCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Endpoints (trocas=").append(failoverCount).append(", testes=").append(probeCount).append(")");
+        for (ServerEndpoint endpoint : endpoints) {
+            sb.append("\n  ").append(endpoint == current ? "* " : "  ").append(endpoint);
+        }
+        return sb.toString();
+    }
+}
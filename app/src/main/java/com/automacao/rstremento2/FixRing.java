@@ -0,0 +1,140 @@
+package com.automacao.rstremento2;
+
+/**
+ * Anel de fixes de localização em arrays primitivos, com capacidade fixa. Todos os fixes
+ * entregues pelo provedor, inclusive os intermediários de uma entrega agrupada, são
+ * guardados aqui; o mais antigo é sobrescrito quando o anel enche.
+ *
+ * <p>Os fixes são endereçados por número de sequência. Um consumidor guarda a sequência
+ * do próximo fix a ler e copia os novos em lote para um {@link Batch} reutilizável, sem
+ * alocar. A escrita e a cópia são sincronizadas; a cópia é curta e não chama código externo.
+ */
+public final class FixRing {
+    private static final int MIN_CAPACITY = 4;
+
+    private final long[] times;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] altitudes;
+    private final float[] speeds;
+    private final float[] accuracies;
+    private final int mask;
+    private long written;
+
+    /**
+     * Construtor do anel.
+     *
+     * @param capacity Número mínimo de fixes guardados (arredondado para potência de dois).
+     */
+    public FixRing(int capacity) {
+        int size = RingCapacity.powerOfTwo(capacity, MIN_CAPACITY);
+        this.times = new long[size];
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.altitudes = new double[size];
+        this.speeds = new float[size];
+        this.accuracies = new float[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adiciona um fix ao anel.
+     *
+     * @param timeMillis Instante do fix (milissegundos Unix).
+     * @param latitude   Latitude em graus.
+     * @param longitude  Longitude em graus.
+     * @param altitude   Altitude em metros.
+     * @param speed      Velocidade, na mesma escala de {@link LocationSource#getSpeed()}.
+     * @param accuracy   Precisão horizontal em metros.
+     */
+    public synchronized void add(long timeMillis, double latitude, double longitude, double altitude,
+                                 float speed, float accuracy) {
+        int index = (int) (written & mask);
+        times[index] = timeMillis;
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        altitudes[index] = altitude;
+        speeds[index] = speed;
+        accuracies[index] = accuracy;
+        written++;
+    }
+
+    /**
+     * Copia os fixes a partir de uma sequência para o lote, até a capacidade do lote. Se a
+     * sequência já foi sobrescrita, a cópia começa no fix mais antigo disponível.
+     *
+     * @param fromSequence Sequência do primeiro fix desejado.
+     * @param batch        Lote de destino, sobrescrito.
+     * @return Número de fixes copiados.
+     */
+    public synchronized int read(long fromSequence, Batch batch) {
+        long first = Math.max(fromSequence, Math.max(0, written - times.length));
+        int count = (int) Math.max(0, Math.min(written - first, batch.times.length));
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((first + i) & mask);
+            batch.times[i] = times[index];
+            batch.latitudes[i] = latitudes[index];
+            batch.longitudes[i] = longitudes[index];
+            batch.altitudes[i] = altitudes[index];
+            batch.speeds[i] = speeds[index];
+            batch.accuracies[i] = accuracies[index];
+        }
+        batch.firstSequence = first;
+        batch.count = count;
+        batch.skipped = Math.max(0, first - fromSequence);
+        return count;
+    }
+
+    /**
+     * Sequência do próximo fix a ser escrito, igual ao total de fixes já recebidos.
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Lote de fixes copiados do anel, reutilizado entre leituras.
+     */
+    public static final class Batch {
+        public final long[] times;
+        public final double[] latitudes;
+        public final double[] longitudes;
+        public final double[] altitudes;
+        public final float[] speeds;
+        public final float[] accuracies;
+        private long firstSequence;
+        private int count;
+        private long skipped;
+
+        public Batch(int capacity) {
+            times = new long[capacity];
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            altitudes = new double[capacity];
+            speeds = new float[capacity];
+            accuracies = new float[capacity];
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Sequência a usar na próxima leitura.
+         */
+        public long getNextSequence() {
+            return firstSequence + count;
+        }
+
+        /**
+         * Fixes perdidos por sobrescrita antes desta leitura.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+    }
+}
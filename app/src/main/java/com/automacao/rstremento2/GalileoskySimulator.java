@@ -1,68 +1,112 @@
 package com.automacao.rstremento2;
 
-import android.util.Log;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 public class GalileoskySimulator {
 
     private static final String TAG = "GalileoskySimulator";
-    private static final String SERVER_ADDRESS = "179.131.10.90"; // Endereço do servidor
-    private static final int SERVER_PORT = 20018; // Porta do servidor
+    private static final String DEFAULT_ENDPOINTS = "179.131.10.90:20018"; // Endereços dos servidores
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final int WIRE_CAPTURE_SLOTS = 1024;
+    private static final long WIRE_CAPTURE_FILE_BYTES = 1024 * 1024;
+    private static final int WIRE_CAPTURE_FILES = 5;
+    private static final long WIRE_CAPTURE_FLUSH_MS = 1000;
+    private static final long QUEUE_LOG_INTERVAL_MS = 10000; // Tamanho da fila no log, no máximo a cada 10 s
+    private static final int FLUSH_RECORDS_PER_FRAME = 32;
+    private static final int FLUSH_MAX_FRAME_BYTES = 1024;
+    // Maior pacote trocado com o servidor: o corpo máximo de um pacote agrupado mais cabeçalho e CRC
+    private static final int WIRE_CAPTURE_MAX_PACKET =
+            Math.max(FLUSH_MAX_FRAME_BYTES, PacketSendingTask.MAX_BATCH_BYTES) + PacketBuffer.RECORD_OVERHEAD;
+    private static final int FLUSH_MAX_RECORDS = 20000; // Registros por conexão de esvaziamento
+    private static final long BUDGET_EVALUATION_MS = 60000; // Avaliação da franquia de dados
+    private static final long DATA_USAGE_PERSIST_MS = 60000; // Gravação dos contadores de consumo
 
     private volatile boolean isConnected = false;
-    private final LocationService locationService;
+    private final LocationSource locationService;
+    private final EndpointPool endpointPool;
     private String cpf;
 
-    private PacketSendingThread sendingThread;
-    private PacketSavingThread savingThread;
-    private final BlockingQueue<byte[]> packetQueue;
+    private final TaskScheduler scheduler;
+    private volatile PacketSendingTask sendingTask;
+    private volatile PacketSavingTask savingTask;
+    private final StartupMetrics startupMetrics;
+    private volatile String imei = "IMEI";
+    private volatile boolean lowBandwidthMode = false;
+    private volatile DeadReckoningEstimator deadReckoning;
+    private volatile TrackStore trackStore;
+    private volatile TransmissionWindow transmissionWindow; // null envia assim que possível
+    private final DataUsageMeter dataUsage = new DataUsageMeter();
+    private volatile DataBudgetController dataBudget;
+    private volatile int dataBudgetLevel = DataBudgetController.LEVEL_NORMAL;
+    private TaskScheduler.Cancellable dataBudgetHandle;
+    private TaskScheduler.Cancellable dataUsageHandle;
+    private final PacketBuffer packetBuffer;
+    private final SendRateController rateController = new SendRateController();
+    private final AckFrameDecoder ackDecoder = new AckFrameDecoder(); // Usado apenas no laço de I/O
+    private final LogThrottle queueSizeLog;
+    private final BacklogFlusher backlogFlusher; // Usado apenas no laço de I/O
+    private volatile WireCapture wireCapture; // null quando a captura está desativada
+    private WireCaptureWriter wireCaptureWriter;
+    private TaskScheduler.Cancellable wireCaptureHandle;
 
     /**
      * Construtor que inicializa o serviço de localização e a fila de pacotes.
      *
-     * @param locationService Instância do serviço de localização.
+     * @param locationService Fonte de localização.
      */
-    public GalileoskySimulator(LocationService locationService) {
-        this.locationService = locationService;
-        this.packetQueue = new LinkedBlockingQueue<>();
+    public GalileoskySimulator(LocationSource locationService) {
+        this(locationService, EndpointPool.parse(DEFAULT_ENDPOINTS));
     }
 
     /**
-     * Envia as coordenadas do dispositivo para o servidor, tentando reconectar em caso de falha.
+     * Construtor com uma lista configurável de endpoints.
      *
-     * @param imei IMEI do dispositivo.
-     * @param cpf  CPF associado ao dispositivo.
-     * @return true se a conexão foi estabelecida com sucesso, caso contrário, false.
+     * @param locationService Fonte de localização.
+     * @param endpointPool    Endpoints de ingestão.
      */
-    public boolean sendCoordinates(String imei, String cpf, String placa) {
-        byte[] firstPacket = buildFirstPacket(imei);
-        Log.d(TAG, "Tentando enviar o primeiro pacote para o servidor...");
+    public GalileoskySimulator(LocationSource locationService, EndpointPool endpointPool) {
+        this(locationService, endpointPool, new TaskScheduler());
+    }
 
-        while (!sendPacketToServer(firstPacket, true)) {
-            isConnected = false;
-            Log.d(TAG, "Falha ao estabelecer a conexão inicial com o servidor. Tentando novamente em 5 segundos...");
-            try {
-                Thread.sleep(5000); // Espera 5 segundos antes de tentar novamente
-            } catch (InterruptedException e) {
-                Log.e(TAG, "Erro durante a espera para reconectar: " + e.getMessage());
-                Thread.currentThread().interrupt();
-                return false; // Retorna false se a thread for interrompida
-            }
-        }
+    /**
+     * Construtor com endpoints e agendador configuráveis.
+     *
+     * @param locationService Fonte de localização.
+     * @param endpointPool    Endpoints de ingestão.
+     * @param scheduler       Agendador que executa amostragem, envio e reconexão.
+     */
+    public GalileoskySimulator(LocationSource locationService, EndpointPool endpointPool, TaskScheduler scheduler) {
+        this.locationService = locationService;
+        this.endpointPool = endpointPool;
+        this.scheduler = scheduler;
+        this.packetBuffer = new PacketBuffer();
+        this.backlogFlusher = new BacklogFlusher(packetBuffer, FLUSH_RECORDS_PER_FRAME, FLUSH_MAX_FRAME_BYTES);
+        this.startupMetrics = new StartupMetrics(scheduler.getClock());
+        this.queueSizeLog = LogThrottle.perInterval(scheduler.getClock(), QUEUE_LOG_INTERVAL_MS);
+    }
 
-        isConnected = true;
-        Log.d(TAG, "Conexão estabelecida com o servidor.");
-        startPacketSavingThread(imei, cpf, placa);
-        startPacketSendingThread();
-        return true;
+    /**
+     * Inicia o envio das coordenadas do dispositivo. A amostragem e a codificação começam
+     * no primeiro fix, independentemente da conexão; a tarefa de envio faz a identificação
+     * com o servidor no laço de I/O, com nova tentativa a cada 5 segundos, e então esvazia
+     * os registros acumulados. Não bloqueia.
+     *
+     * @param imei  IMEI do dispositivo.
+     * @param cpf   CPF associado ao dispositivo.
+     * @param placa Placa do veículo.
+     */
+    public void sendCoordinates(String imei, String cpf, String placa) {
+        this.imei = imei;
+        startupMetrics.start();
+        scheduler.start();
+        startPacketSavingTask(imei, cpf, placa);
+        startPacketSendingTask();
     }
 
     /**
@@ -84,7 +128,9 @@ public class GalileoskySimulator {
     }
 
     /**
-     * Envia um pacote para o servidor.
+     * Envia um pacote para o servidor. Pacotes de dados são obtidos com
+     * {@link PacketBuffer#peek()} e só saem do buffer após a confirmação,
+     * portanto uma falha não exige armazená-los novamente.
      *
      * @param packet        O pacote a ser enviado.
      * @param isFirstPacket Indica se é o primeiro pacote a ser enviado.
@@ -93,13 +139,7 @@ public class GalileoskySimulator {
     public boolean sendPacketToServer(byte[] packet, boolean isFirstPacket) {
         boolean success = sendPacketToServerInternal(packet, isFirstPacket);
         if (!success && !isFirstPacket) {
-            // Verifica se o pacote já está na fila antes de adicioná-lo novamente
-            if (!packetQueue.contains(packet)) {
-                packetQueue.add(packet);
-                Log.d(TAG, "Pacote armazenado no buffer.");
-            } else {
-                Log.d(TAG, "Pacote já presente no buffer, não adicionando novamente.");
-            }
+            AppLog.d(TAG, "Pacote permanece no buffer.");
         }
         return success;
     }
@@ -113,79 +153,358 @@ public class GalileoskySimulator {
      */
     private boolean sendPacketToServerInternal(byte[] packet, boolean isFirstPacket) {
         boolean success = false;
-        try (Socket socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-             OutputStream outputStream = socket.getOutputStream();
-             InputStream inputStream = socket.getInputStream()) {
-
-            Log.d(TAG, "Enviando pacote para o servidor...");
+        ServerEndpoint endpoint = endpointPool.select(scheduler.getClock().nowMillis());
+        long connectStart = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            long handshakeNanos = System.nanoTime() - connectStart;
+            dataUsage.onConnection();
+            OutputStream outputStream = socket.getOutputStream();
+            InputStream inputStream = socket.getInputStream();
+
+            if (AppLog.isDebugEnabled()) {
+                AppLog.d(TAG, "Enviando pacote para o servidor {}:{}...", endpoint.getHost(), endpoint.getPort());
+            }
+            WireCapture capture = wireCapture;
+            if (capture != null) {
+                capture.record(WireCapture.DIRECTION_SENT, System.currentTimeMillis(), packet, 0, packet.length);
+            }
+            long sendStart = System.nanoTime();
             outputStream.write(packet);
             outputStream.flush();
+            dataUsage.onSent(packet.length);
 
-            byte[] response = new byte[1024];
-            int bytesRead = inputStream.read(response);
-            if (bytesRead > 0) {
-                Log.d(TAG, "Resposta do servidor recebida:");
-                Log.d(TAG, bytesToHex(Arrays.copyOf(response, bytesRead)));
-
-                // Verificar CRC
-                short crcLocal = (short) (((packet[packet.length - 2] & 0xFF) << 8) | (packet[packet.length - 1] & 0xFF));
-                short crcServer = (short) (((response[1] & 0xFF) << 8) | (response[2] & 0xFF));
+            ackDecoder.reset();
+            long readStart = ackDecoder.getReadBytes();
+            int crcServer;
+            try {
+                crcServer = ackDecoder.readFrame(inputStream);
+            } catch (IOException e) {
+                if (capture != null) {
+                    capture.recordUnframed(System.currentTimeMillis(), ackDecoder);
+                }
+                throw e;
+            } finally {
+                dataUsage.onReceived(ackDecoder.getReadBytes() - readStart);
+            }
+            long ackNanos = System.nanoTime() - sendStart;
+            if (capture != null) {
+                capture.recordAck(System.currentTimeMillis(), ackDecoder);
+            }
 
-                if (crcLocal == crcServer) {
-                    Log.d(TAG, "CRC válido. Resposta do servidor é válida.");
-                    success = true;
+            // Verificar CRC
+            if (crcServer == AckFrameDecoder.packetCrc(packet)) {
+                AppLog.d(TAG, "CRC válido. Resposta do servidor é válida.");
+                endpointPool.recordSuccess(endpoint, handshakeNanos, ackNanos);
+                if (isFirstPacket) {
+                    startupMetrics.markFirstConnection();
                 } else {
-                    Log.d(TAG, "CRC inválido. Resposta do servidor não é válida.");
+                    startupMetrics.markFirstAck();
+                    rateController.onAck(ackNanos);
                 }
+                success = true;
             } else {
-                Log.d(TAG, "Nenhuma resposta do servidor.");
+                AppLog.d(TAG, "CRC inválido. Resposta do servidor não é válida.");
             }
         } catch (IOException e) {
-            Log.e(TAG, "Erro ao enviar o pacote: " + e.getMessage());
+            AppLog.e(TAG, "Erro ao enviar o pacote: {}", e.getMessage());
         }
 
+        if (!success && endpointPool.recordFailure(endpoint, scheduler.getClock().nowMillis())) {
+            AppLog.d(TAG, "Endpoint rebaixado após falhas consecutivas: {}", endpoint);
+        }
+        if (!success && !isFirstPacket) {
+            rateController.onLoss();
+        }
         isConnected = success;  // Atualiza o estado da conexão com base no sucesso do envio
         return success;
     }
 
     /**
-     * Inicia a thread de salvamento de pacotes.
+     * Esvazia o acúmulo de registros comuns em uma única conexão, com a montagem e os CRCs
+     * dos pacotes feitos em paralelo pelo {@link BacklogFlusher}.
      *
-     * @param imei IMEI do dispositivo.
-     * @param cpf  CPF associado ao dispositivo.
+     * @return Registros confirmados, ou -1 se algum pacote enviado ficou sem confirmação.
+     */
+    int flushBacklog() {
+        int confirmed = -1;
+        ServerEndpoint endpoint = endpointPool.select(scheduler.getClock().nowMillis());
+        long connectStart = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            long handshakeNanos = System.nanoTime() - connectStart;
+            dataUsage.onConnection();
+            int records;
+            try {
+                records = backlogFlusher.flush(socket.getInputStream(), socket.getOutputStream(), FLUSH_MAX_RECORDS);
+            } finally {
+                dataUsage.onSent(backlogFlusher.getLastBytes());
+                dataUsage.onReceived(backlogFlusher.getLastReceivedBytes());
+            }
+            int frames = Math.max(1, backlogFlusher.getLastFrames());
+            endpointPool.recordSuccess(endpoint, handshakeNanos, backlogFlusher.getLastElapsedNanos() / frames);
+            startupMetrics.markFirstAck();
+            AppLog.d(TAG, "Acúmulo enviado: {} registros.", records);
+            confirmed = records;
+        } catch (IOException e) {
+            AppLog.e(TAG, "Erro ao esvaziar o acúmulo: {}", e.getMessage());
+        }
+
+        if (confirmed < 0) {
+            if (endpointPool.recordFailure(endpoint, scheduler.getClock().nowMillis())) {
+                AppLog.d(TAG, "Endpoint rebaixado após falhas consecutivas: {}", endpoint);
+            }
+            rateController.onLoss();
+        }
+        isConnected = confirmed >= 0;
+        return confirmed;
+    }
+
+    /**
+     * Retorna o esvaziador de acúmulo usado após longos períodos sem conexão.
+     */
+    public BacklogFlusher getBacklogFlusher() {
+        return backlogFlusher;
+    }
+
+    /**
+     * Retorna os endpoints de ingestão com suas métricas de saúde e seleção.
+     *
+     * @return O conjunto de endpoints.
+     */
+    public EndpointPool getEndpointPool() {
+        return endpointPool;
+    }
+
+    /**
+     * Inicia a tarefa de salvamento de pacotes.
+     *
+     * @param imei  IMEI do dispositivo.
+     * @param cpf   CPF associado ao dispositivo.
+     * @param placa Placa do veículo.
      */
-    private void startPacketSavingThread(String imei, String cpf,String placa) {
-        savingThread = new PacketSavingThread(this, locationService, imei, cpf,placa);
-        savingThread.start();
+    private void startPacketSavingTask(String imei, String cpf, String placa) {
+        savingTask = new PacketSavingTask(this, locationService, imei, cpf, placa);
+        savingTask.setLowBandwidthMode(lowBandwidthMode);
+        savingTask.setDataBudgetLevel(dataBudgetLevel);
+        savingTask.setDeadReckoning(deadReckoning);
+        savingTask.setTrackStore(trackStore);
+        savingTask.start(scheduler);
     }
 
     /**
-     * Inicia a thread de envio de pacotes.
+     * Inicia a tarefa de envio de pacotes.
      */
-    private void startPacketSendingThread() {
-        if (sendingThread == null || !sendingThread.isAlive()) {
-            sendingThread = new PacketSendingThread(this);
-            sendingThread.start();
+    private void startPacketSendingTask() {
+        if (sendingTask == null) {
+            sendingTask = new PacketSendingTask(this);
+            sendingTask.start(scheduler);
         }
     }
 
     /**
-     * Retorna a fila de pacotes.
+     * Retorna o buffer de pacotes aguardando envio.
      *
-     * @return A fila de pacotes.
+     * @return O buffer de pacotes.
      */
-    public BlockingQueue<byte[]> getPacketQueue() {
-        return packetQueue;
+    public PacketBuffer getPacketBuffer() {
+        return packetBuffer;
     }
 
     /**
-     * Adiciona um pacote de dados à fila.
+     * Adiciona um pacote de dados ao buffer.
      *
      * @param packet O pacote de dados a ser adicionado.
      */
     protected void addDataPacket(byte[] packet) {
-        packetQueue.add(packet);
-        Log.d(TAG, "A Lista de dados tem tamanho de: ------> " + packetQueue.size());
+        if (!packetBuffer.add(packet)) {
+            // O histórico local continua no TrackStore; só a fila de envio está cheia
+            AppLog.w(TAG, "Fila de envio cheia: registro descartado ({} no total).", packetBuffer.getDroppedCount());
+            return;
+        }
+        startupMetrics.markFirstRecord();
+        if (AppLog.isDebugEnabled() && queueSizeLog.allow()) {
+            AppLog.d(TAG, "A Lista de dados tem tamanho de: ------> {} (+{} mensagens suprimidas)",
+                    packetBuffer.size(), queueSizeLog.takeSuppressed());
+        }
+    }
+
+    /**
+     * Adiciona um pacote urgente ao buffer, para ser enviado antes dos demais.
+     *
+     * @param packet O pacote urgente a ser adicionado.
+     */
+    protected void addUrgentPacket(byte[] packet) {
+        packetBuffer.addUrgent(packet);
+        AppLog.d(TAG, "Pacote urgente adicionado à fila.");
+        PacketSendingTask task = sendingTask;
+        if (task != null) {
+            task.wakeUp(); // Urgentes não esperam a janela de transmissão
+        }
+    }
+
+    /**
+     * Gera um registro urgente para um evento de cerca.
+     *
+     * @param eventType Tipo do evento (ver {@link GeofenceEngine}).
+     * @param fenceId    Identificador da cerca.
+     * @param timeMillis Instante do fix que gerou o evento.
+     * @param latitude   Latitude do evento.
+     * @param longitude  Longitude do evento.
+     */
+    public void addGeofenceEvent(int eventType, int fenceId, long timeMillis, double latitude, double longitude) {
+        PacketSavingTask task = savingTask;
+        if (task == null) {
+            AppLog.d(TAG, "Evento de cerca descartado: tarefa de salvamento não iniciada.");
+            return;
+        }
+        addUrgentPacket(task.buildGeofencePacket(eventType, fenceId, timeMillis, latitude, longitude));
+    }
+
+    /**
+     * Gera um registro de resumo de viagem.
+     *
+     * @param summary Resumo da viagem encerrada.
+     */
+    public void addTripSummary(TripSummary summary) {
+        PacketSavingTask task = savingTask;
+        if (task == null) {
+            AppLog.d(TAG, "Resumo de viagem descartado: tarefa de salvamento não iniciada.");
+            return;
+        }
+        addDataPacket(task.buildTripSummaryPacket(summary));
+    }
+
+    /**
+     * Ativa ou desativa o modo de baixa banda, em que poucos pontos complementam os resumos de viagem.
+     *
+     * @param enabled true para ativar o modo de baixa banda.
+     */
+    public void setLowBandwidthMode(boolean enabled) {
+        lowBandwidthMode = enabled;
+        PacketSavingTask task = savingTask;
+        if (task != null) {
+            task.setLowBandwidthMode(enabled);
+        }
+    }
+
+    /**
+     * Ativa o controle da franquia de dados, avaliado a cada minuto no laço de trabalho com
+     * o consumo medido em {@link #getDataUsage()}.
+     *
+     * @param budget O controle, ou null para desativar e voltar ao nível normal.
+     */
+    public synchronized void setDataBudget(DataBudgetController budget) {
+        if (dataBudgetHandle != null) {
+            dataBudgetHandle.cancel();
+            dataBudgetHandle = null;
+        }
+        dataBudget = budget;
+        if (budget != null) {
+            dataBudgetHandle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(), this::evaluateDataBudget,
+                    0, BUDGET_EVALUATION_MS);
+        } else {
+            applyDataBudgetLevel(DataBudgetController.LEVEL_NORMAL);
+        }
+    }
+
+    private void evaluateDataBudget() {
+        DataBudgetController budget = dataBudget;
+        if (budget != null) {
+            applyDataBudgetLevel(budget.evaluate(System.currentTimeMillis(), dataUsage.getTotalBytes()));
+        }
+    }
+
+    private void applyDataBudgetLevel(int level) {
+        if (level == dataBudgetLevel) {
+            return;
+        }
+        dataBudgetLevel = level;
+        AppLog.i(TAG, "Nível de economia de dados: {} ({})", level, dataBudget);
+        PacketSavingTask task = savingTask;
+        if (task != null) {
+            task.setDataBudgetLevel(level);
+        }
+    }
+
+    /**
+     * Restaura os contadores de consumo do período de cobrança e passa a gravá-los
+     * periodicamente no laço de trabalho. Deve ser chamado antes de {@link #setDataBudget}.
+     *
+     * @param store Armazenamento dos contadores.
+     */
+    public synchronized void setDataUsageStore(DataUsageStore store) {
+        if (dataUsageHandle != null) {
+            dataUsageHandle.cancel();
+        }
+        dataUsage.restore(store, System.currentTimeMillis());
+        dataUsageHandle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(),
+                () -> dataUsage.persist(System.currentTimeMillis()), DATA_USAGE_PERSIST_MS, DATA_USAGE_PERSIST_MS);
+    }
+
+    /**
+     * Retorna a contabilidade de bytes trafegados com o servidor.
+     */
+    public DataUsageMeter getDataUsage() {
+        return dataUsage;
+    }
+
+    /**
+     * Retorna o controle da franquia de dados, ou null se desativado.
+     */
+    public DataBudgetController getDataBudget() {
+        return dataBudget;
+    }
+
+    /**
+     * Define o estimador de posição usado nos registros quando não há fix GNSS recente.
+     *
+     * @param estimator O estimador, ou null para desativar.
+     */
+    public void setDeadReckoning(DeadReckoningEstimator estimator) {
+        deadReckoning = estimator;
+        PacketSavingTask task = savingTask;
+        if (task != null) {
+            task.setDeadReckoning(estimator);
+        }
+    }
+
+    /**
+     * Define o histórico local alimentado pelas mesmas amostras dos registros.
+     *
+     * @param store O histórico, ou null para desativar.
+     */
+    public void setTrackStore(TrackStore store) {
+        trackStore = store;
+        PacketSavingTask task = savingTask;
+        if (task != null) {
+            task.setTrackStore(store);
+        }
+    }
+
+    /**
+     * Define as janelas de transmissão que agrupam os envios de registros comuns em rajadas.
+     *
+     * @param window As janelas, ou null para enviar assim que possível.
+     */
+    public void setTransmissionWindow(TransmissionWindow window) {
+        transmissionWindow = window;
+    }
+
+    /**
+     * Retorna as janelas de transmissão, com as métricas de rajadas e de rádio, ou null.
+     */
+    public TransmissionWindow getTransmissionWindow() {
+        return transmissionWindow;
+    }
+
+    /**
+     * Retorna o histórico local, ou null se desativado.
+     */
+    public TrackStore getTrackStore() {
+        return trackStore;
     }
 
     /**
@@ -194,15 +513,15 @@ public class GalileoskySimulator {
      * @return true se a reconexão foi bem-sucedida, caso contrário, false.
      */
     public boolean reconnectToServer() {
-        byte[] firstPacket = buildFirstPacket("IMEI"); // Usar o IMEI apropriado
-        Log.d(TAG, "Tentando reconectar ao servidor...");
+        byte[] firstPacket = buildFirstPacket(imei);
+        AppLog.d(TAG, "Tentando reconectar ao servidor...");
         if (sendPacketToServer(firstPacket, true)) {
             isConnected = true;
-            Log.d(TAG, "Reconexão estabelecida com sucesso.");
+            AppLog.d(TAG, "Reconexão estabelecida com sucesso.");
             return true;
         } else {
             isConnected = false;
-            Log.d(TAG, "Falha ao reconectar.");
+            AppLog.d(TAG, "Falha ao reconectar.");
             return false;
         }
     }
@@ -213,82 +532,92 @@ public class GalileoskySimulator {
      * @param imei IMEI do dispositivo.
      * @return O pacote construído.
      */
-    private byte[] buildFirstPacket(String imei) {
-        byte[] imeiBytes = imei.getBytes();
-
-        ByteBuffer buffer = ByteBuffer.allocate(256);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        buffer.put((byte) 0x01); // Header
-        buffer.putShort((short) 0); // Placeholder para o comprimento
-
-        // Tags de versão do hardware e firmware
-        buffer.put((byte) 0x01); // Tag 1 para Hardware version
-        buffer.put((byte) 0x82); // Versão do hardware fictícia
-        buffer.put((byte) 0x02); // Tag 2 para Firmware version
-        buffer.put((byte) 0x15); // Versão do firmware fictícia
-
-        // Tag de IMEI
-        buffer.put((byte) 0x03); // Tag 3 para IMEI
-        buffer.put(imeiBytes);
-
-        int length = buffer.position() - 3; // Exclui o header e o próprio comprimento
-        buffer.putShort(1, (short) length); // Insere o comprimento no lugar correto
-
-        byte[] packetWithoutChecksum = new byte[buffer.position()];
-        buffer.rewind();
-        buffer.get(packetWithoutChecksum);
+    static byte[] buildFirstPacket(String imei) {
+        return new RecordSchema()
+                .constant(TagRegistry.TAG_HARDWARE_VERSION, new byte[]{(byte) 0x82}) // Versão do hardware fictícia
+                .constant(TagRegistry.TAG_FIRMWARE_VERSION, new byte[]{(byte) 0x15}) // Versão do firmware fictícia
+                .constant(TagRegistry.TAG_IMEI, imei.getBytes())
+                .compile()
+                .encode(new long[0]);
+    }
 
-        short crc = calculateCRC16Modbus(packetWithoutChecksum);
-        buffer.putShort(crc);
+    /**
+     * Ativa a captura binária dos pacotes enviados e das respostas do servidor. Os arquivos
+     * são gravados em segundo plano no laço de trabalho e lidos com o
+     * {@code WireCaptureReader} do módulo {@code :tools}.
+     *
+     * @param directory Diretório dos arquivos de captura.
+     */
+    public synchronized void enableWireCapture(File directory) {
+        if (wireCapture != null) {
+            return;
+        }
+        WireCapture capture = new WireCapture(WIRE_CAPTURE_SLOTS, WIRE_CAPTURE_MAX_PACKET);
+        wireCaptureWriter = new WireCaptureWriter(capture, directory, WIRE_CAPTURE_FILE_BYTES, WIRE_CAPTURE_FILES);
+        wireCaptureHandle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(), wireCaptureWriter,
+                WIRE_CAPTURE_FLUSH_MS, WIRE_CAPTURE_FLUSH_MS);
+        wireCapture = capture;
+        backlogFlusher.setWireCapture(capture);
+    }
 
-        byte[] packetWithChecksum = new byte[buffer.position()];
-        buffer.rewind();
-        buffer.get(packetWithChecksum);
+    /**
+     * Desativa a captura binária, gravando os registros pendentes.
+     */
+    public synchronized void disableWireCapture() {
+        if (wireCapture == null) {
+            return;
+        }
+        wireCapture = null;
+        backlogFlusher.setWireCapture(null);
+        wireCaptureHandle.cancel();
+        wireCaptureWriter.close();
+        wireCaptureHandle = null;
+        wireCaptureWriter = null;
+    }
 
-        return packetWithChecksum;
+    /**
+     * Para as tarefas de salvamento e envio de pacotes e o agendador.
+     */
+    public void stop() {
+        disableWireCapture();
+        dataUsage.persist(System.currentTimeMillis());
+        TrackStore store = trackStore;
+        if (store != null) {
+            store.flush();
+        }
+        if (savingTask != null) {
+            savingTask.shutdown();
+        }
+        if (sendingTask != null) {
+            sendingTask.shutdown();
+        }
+        scheduler.stop();
     }
 
     /**
-     * Calcula o CRC16 Modbus para um dado array de bytes.
+     * Retorna o controle AIMD do tamanho dos lotes e do intervalo entre envios.
      *
-     * @param data Os dados para os quais o CRC deve ser calculado.
-     * @return O valor do CRC calculado.
-     */
-    private short calculateCRC16Modbus(byte[] data) {
-        int crc = 0xFFFF;
-        for (int i = 0; i < data.length; i++) {
-            crc ^= (int) data[i] & 0xFF;
-            for (int j = 0; j < 8; j++) {
-                if ((crc & 0x0001) != 0) {
-                    crc = (crc >> 1) ^ 0xA001;
-                } else {
-                    crc = crc >> 1;
-                }
-            }
-        }
-        return (short) crc;
+     * @return O controlador, com o estado atual.
+     */
+    public SendRateController getSendRateController() {
+        return rateController;
     }
 
     /**
-     * Converte um array de bytes para uma string hexadecimal.
+     * Retorna a instrumentação da partida (tempo até o primeiro fix, registro, conexão e confirmação).
      *
-     * @param bytes O array de bytes a ser convertido.
-     * @return A string hexadecimal resultante.
+     * @return As métricas da partida atual.
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X ", b));
-        }
-        return sb.toString().trim();
+    public StartupMetrics getStartupMetrics() {
+        return startupMetrics;
     }
 
     /**
-     * Para as threads de salvamento e envio de pacotes.
+     * Retorna o agendador que executa as tarefas do simulador.
+     *
+     * @return O agendador.
      */
-    public void stopThreads() {
-        savingThread.shutdown();
-        sendingThread.shutdown();
+    public TaskScheduler getScheduler() {
+        return scheduler;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package com.automacao.rstremento2;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Dispositivo lógico retransmitido pelo gateway: identificação, fila própria de
+ * registros e métricas de envio. A fila usa lâminas pequenas alocadas sob demanda;
+ * quando o dispositivo fica ocioso, o {@link DeviceGateway} devolve essas lâminas e o
+ * dispositivo passa a reter apenas a identificação e o modelo de registro.
+ */
+public class GatewayDevice {
+    private static final int SLAB_SIZE = 4 * 1024;
+    private static final double RTT_WEIGHT = 0.25;
+
+    private final String imei;
+    private final byte[] headPacket;
+    private final RecordLayout pointLayout;
+    private final long[] pointValues;
+    private final PacketBuffer buffer;
+
+    // Estado do escalonamento justo, protegido pelo DeviceGateway. Enquanto o dispositivo
+    // está reservado (busy), o crédito é gasto pela via que o reservou
+    int deficit;
+    boolean scheduled;
+    boolean busy;
+
+    // Métricas
+    private long sentRecords;
+    private long sentBytes;
+    private long failedSends;
+    private double ackRttNanos = -1;
+    private long lastSentMillis;
+    private long sentAtLastIdleCheck;
+
+    /**
+     * Construtor do dispositivo.
+     *
+     * @param imei  IMEI do dispositivo.
+     * @param cpf   CPF associado ao dispositivo.
+     * @param placa Placa do veículo.
+     */
+    public GatewayDevice(String imei, String cpf, String placa) {
+        this.imei = imei;
+        byte[] cpfBytes;
+        try {
+            cpfBytes = CPFConverter.compressCPF(cpf);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        this.headPacket = GalileoskySimulator.buildFirstPacket(imei);
+        this.pointLayout = RecordSchema.pointSchema(imei.getBytes(), cpfBytes, CarPlateEncoder.encode(placa)).compile();
+        this.pointValues = new long[pointLayout.getSlotCount()];
+        this.buffer = new PacketBuffer(new PacketArena(SLAB_SIZE, false));
+    }
+
+    public String getImei() {
+        return imei;
+    }
+
+    /**
+     * Pacote de identificação (versões e IMEI) enviado antes dos registros do dispositivo
+     * sempre que uma conexão passa a transportá-lo.
+     */
+    byte[] getHeadPacket() {
+        return headPacket;
+    }
+
+    PacketBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Codifica um registro de posição do dispositivo.
+     *
+     * @param timeMillis Instante da posição.
+     * @param latitude   Latitude.
+     * @param longitude  Longitude.
+     * @param altitude   Altitude em metros.
+     * @param speedKmh   Velocidade em km/h.
+     * @param satellites Número de satélites.
+     * @return Os bytes do registro.
+     */
+    synchronized byte[] encodePoint(long timeMillis, double latitude, double longitude, double altitude,
+                                    float speedKmh, int satellites) {
+        int slot = 0;
+        pointValues[slot++] = timeMillis / 1000;
+        pointValues[slot++] = Math.min(satellites, 15);
+        pointValues[slot++] = (int) (latitude * 1e6);
+        pointValues[slot++] = (int) (longitude * 1e6);
+        pointValues[slot++] = (int) (speedKmh * 10);
+        pointValues[slot] = (short) altitude;
+        return pointLayout.encode(pointValues);
+    }
+
+    synchronized void recordSent(int bytes, long ackNanos, long nowMillis) {
+        sentRecords++;
+        sentBytes += bytes;
+        lastSentMillis = nowMillis;
+        ackRttNanos = ackRttNanos < 0 ? ackNanos : ackRttNanos + RTT_WEIGHT * (ackNanos - ackRttNanos);
+    }
+
+    synchronized void recordFailure() {
+        failedSends++;
+    }
+
+    /**
+     * Devolve as lâminas da fila se ela está vazia e nada foi enviado desde a verificação
+     * anterior. Dispositivos que enviam com frequência mantêm as lâminas e não realocam a
+     * cada registro.
+     *
+     * @return true se a memória da fila foi devolvida.
+     */
+    synchronized boolean trimIfIdle() {
+        boolean idle = sentRecords == sentAtLastIdleCheck && buffer.isEmpty();
+        sentAtLastIdleCheck = sentRecords;
+        if (idle) {
+            buffer.trim();
+        }
+        return idle;
+    }
+
+    /**
+     * Memória retida pela fila, em bytes.
+     */
+    public long getRetainedBytes() {
+        return buffer.getArena().getRetainedBytes();
+    }
+
+    public int getQueuedRecords() {
+        return buffer.size();
+    }
+
+    public long getQueuedBytes() {
+        return buffer.getArena().getRecordBytes();
+    }
+
+    public synchronized long getSentRecords() {
+        return sentRecords;
+    }
+
+    public synchronized long getSentBytes() {
+        return sentBytes;
+    }
+
+    public synchronized long getFailedSends() {
+        return failedSends;
+    }
+
+    /**
+     * Média móvel do tempo até a confirmação, em milissegundos, ou -1 sem medições.
+     */
+    public synchronized double getAckRttMillis() {
+        return ackRttNanos < 0 ? -1 : ackRttNanos / 1e6;
+    }
+
+    public synchronized long getLastSentMillis() {
+        return lastSentMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return imei + "[fila=" + getQueuedRecords() + ", enviados=" + sentRecords
+                + ", bytes=" + sentBytes + ", falhas=" + failedSends
+                + ", rtt=" + String.format(Locale.ROOT, "%.1f", getAckRttMillis()) + "ms]";
+    }
+}
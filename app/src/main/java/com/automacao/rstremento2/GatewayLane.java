@@ -0,0 +1,176 @@
+package com.automacao.rstremento2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Via de envio do gateway: mantém uma conexão persistente e, no seu laço, envia em
+ * sequência os registros do dispositivo escolhido pelo escalonador que couberem no
+ * crédito da rodada. Quando a conexão passa a transportar outro dispositivo, o pacote
+ * de identificação dele é enviado antes.
+ */
+class GatewayLane implements Runnable {
+    private static final String TAG = "GatewayLane";
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final long IDLE_INTERVAL_MS = 500;  // Espera quando não há registros
+    private static final long RETRY_INTERVAL_MS = 2000; // Espera após uma falha
+
+    private final DeviceGateway gateway;
+    private final EndpointPool endpointPool;
+    private final TaskScheduler scheduler;
+    private final TaskScheduler.EventLoop loop;
+    private final AckFrameDecoder ackDecoder = new AckFrameDecoder();
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private ServerEndpoint endpoint;
+    private long handshakeNanos;
+    private String currentImei;
+    private TaskScheduler.Cancellable handle;
+    private volatile boolean running;
+
+    GatewayLane(DeviceGateway gateway, EndpointPool endpointPool, TaskScheduler scheduler, TaskScheduler.EventLoop loop) {
+        this.gateway = gateway;
+        this.endpointPool = endpointPool;
+        this.scheduler = scheduler;
+        this.loop = loop;
+    }
+
+    synchronized void start() {
+        running = true;
+        handle = scheduler.execute(loop, this);
+    }
+
+    synchronized void shutdown() {
+        running = false;
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+        // A conexão é fechada no próprio laço, ao final da execução em andamento
+        scheduler.execute(loop, this::close);
+    }
+
+    @Override
+    public void run() {
+        if (!running) {
+            return;
+        }
+        GatewayDevice device = gateway.acquireNext();
+        long delay = IDLE_INTERVAL_MS;
+        if (device != null) {
+            try {
+                delay = sendBurst(device) ? 0 : RETRY_INTERVAL_MS;
+            } finally {
+                gateway.release(device);
+            }
+        }
+        scheduleNext(delay);
+    }
+
+    private synchronized void scheduleNext(long delayMillis) {
+        if (running) {
+            handle = scheduler.schedule(loop, this, delayMillis);
+        }
+    }
+
+    /**
+     * Envia os registros mais antigos do dispositivo enquanto couberem no seu crédito.
+     *
+     * @return false se um envio falhou.
+     */
+    private boolean sendBurst(GatewayDevice device) {
+        byte[] packet;
+        while ((packet = device.getBuffer().peek()) != null && packet.length <= device.deficit) {
+            if (!send(device, packet)) {
+                return false;
+            }
+            device.deficit -= packet.length;
+        }
+        return true;
+    }
+
+    /**
+     * Envia um registro do dispositivo.
+     *
+     * @return true se o registro foi confirmado pelo servidor.
+     */
+    private boolean send(GatewayDevice device, byte[] packet) {
+        try {
+            if (socket == null) {
+                connect();
+            }
+            if (!device.getImei().equals(currentImei)) {
+                exchange(device.getHeadPacket());
+                currentImei = device.getImei();
+            }
+            long ackNanos = exchange(packet);
+            device.getBuffer().remove(packet);
+            device.recordSent(packet.length, ackNanos, System.currentTimeMillis());
+            endpointPool.recordSuccess(endpoint, handshakeNanos, ackNanos);
+            return true;
+        } catch (IOException e) {
+            AppLog.e(TAG, "Erro ao enviar registro de {}: {}", device.getImei(), e.getMessage());
+            device.recordFailure();
+            if (endpoint != null && endpointPool.recordFailure(endpoint, scheduler.getClock().nowMillis())) {
+                AppLog.d(TAG, "Endpoint rebaixado após falhas consecutivas: {}", endpoint);
+            }
+            close();
+            return false;
+        }
+    }
+
+    private void connect() throws IOException {
+        endpoint = endpointPool.select(scheduler.getClock().nowMillis());
+        long start = System.nanoTime();
+        Socket candidate = new Socket();
+        try {
+            candidate.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), CONNECT_TIMEOUT_MS);
+            candidate.setSoTimeout(READ_TIMEOUT_MS);
+            candidate.setTcpNoDelay(true);
+        } catch (IOException e) {
+            candidate.close();
+            throw e;
+        }
+        socket = candidate;
+        in = socket.getInputStream();
+        out = socket.getOutputStream();
+        currentImei = null;
+        ackDecoder.reset();
+        handshakeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Envia um pacote e aguarda a confirmação 0x02 + CRC.
+     *
+     * @return O tempo até a confirmação, em nanossegundos.
+     */
+    private long exchange(byte[] packet) throws IOException {
+        long start = System.nanoTime();
+        out.write(packet);
+        out.flush();
+        if (ackDecoder.readFrame(in) != AckFrameDecoder.packetCrc(packet)) {
+            throw new IOException("Confirmação inválida");
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                AppLog.e(TAG, "Erro ao fechar conexão: {}", e.getMessage());
+            }
+        }
+        socket = null;
+        in = null;
+        out = null;
+        currentImei = null;
+    }
+}
@@ -0,0 +1,110 @@
+package com.automacao.rstremento2;
+
+/**
+ * Cerca geográfica poligonal (cliente, depósito etc.).
+ * As coordenadas são mantidas em arrays primitivos junto com o retângulo envolvente.
+ */
+public class Geofence {
+
+    /**
+     * Maior identificador aceito: o registro de evento reserva 24 bits para ele.
+     */
+    public static final int MAX_ID = 0xFFFFFF;
+
+    private final int id;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long dwellMillis;
+
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    /**
+     * Construtor da cerca.
+     *
+     * @param id          Identificador da cerca, de 0 a {@link #MAX_ID} (enviado nos registros de evento).
+     * @param latitudes   Latitudes dos vértices do polígono.
+     * @param longitudes  Longitudes dos vértices do polígono.
+     * @param dwellMillis Tempo dentro da cerca para gerar o evento de permanência (0 desativa).
+     */
+    public Geofence(int id, double[] latitudes, double[] longitudes, long dwellMillis) {
+        if (latitudes.length != longitudes.length || latitudes.length < 3) {
+            throw new IllegalArgumentException("Polígono inválido para a cerca " + id);
+        }
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Identificador de cerca fora de 24 bits: " + id);
+        }
+        this.id = id;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.dwellMillis = dwellMillis;
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        this.minLatitude = minLat;
+        this.maxLatitude = maxLat;
+        this.minLongitude = minLon;
+        this.maxLongitude = maxLon;
+    }
+
+    /**
+     * Verifica se o ponto está dentro do retângulo envolvente.
+     */
+    public boolean boundsContain(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    /**
+     * Verifica se o ponto está dentro do polígono (algoritmo de ray casting).
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (!boundsContain(latitude, longitude)) {
+            return false;
+        }
+        boolean inside = false;
+        int n = latitudes.length;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double yi = latitudes[i], yj = latitudes[j];
+            if ((yi > latitude) != (yj > latitude)) {
+                double x = (longitudes[j] - longitudes[i]) * (latitude - yi) / (yj - yi) + longitudes[i];
+                if (longitude < x) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getDwellMillis() {
+        return dwellMillis;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+}
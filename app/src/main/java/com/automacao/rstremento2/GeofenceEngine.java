@@ -0,0 +1,138 @@
+package com.automacao.rstremento2;
+
+import java.util.List;
+
+/**
+ * Avalia cada localização recebida contra um conjunto de cercas e gera eventos
+ * de entrada, saída e permanência. Apenas as cercas da célula do índice espacial
+ * passam pelo teste de ponto no polígono, e o estado de cada cerca é mantido em
+ * arrays primitivos, sem alocação por localização.
+ * <p>
+ * O {@link LocationService} chama {@link #evaluate} com o instante do próprio fix, e não
+ * com o relógio do aparelho: fixes entregues em lote ou com atraso mantêm o tempo real
+ * de entrada, saída e permanência.
+ */
+public class GeofenceEngine {
+
+    public static final int EVENT_ENTER = 1;
+    public static final int EVENT_EXIT = 2;
+    public static final int EVENT_DWELL = 3;
+
+    private static final byte STATE_OUTSIDE = 0;
+    private static final byte STATE_INSIDE = 1;
+    private static final byte STATE_DWELLING = 2;
+
+    private static final double DEFAULT_CELL_SIZE_DEGREES = 0.01;
+
+    /**
+     * Interface para listener de eventos de cerca.
+     */
+    public interface GeofenceEventListener {
+        void onGeofenceEvent(int eventType, Geofence fence, long timeMillis, double latitude, double longitude);
+    }
+
+    private final Geofence[] fences;
+    private final GeofenceIndex index;
+    private final GeofenceEventListener listener;
+
+    // Máquina de estados por cerca
+    private final byte[] states;
+    private final long[] enterTimes;
+    private final int[] seenStamps;
+    private int stamp;
+
+    // Cercas em que o veículo está dentro, para detectar saídas sem varrer todas
+    private final int[] insideFences;
+    private int insideCount;
+
+    /**
+     * Construtor que indexa as cercas com o tamanho de célula padrão.
+     *
+     * @param fences   Cercas a monitorar.
+     * @param listener Listener que recebe os eventos.
+     */
+    public GeofenceEngine(List<Geofence> fences, GeofenceEventListener listener) {
+        this(fences, DEFAULT_CELL_SIZE_DEGREES, listener);
+    }
+
+    /**
+     * Construtor que indexa as cercas.
+     *
+     * @param fences          Cercas a monitorar.
+     * @param cellSizeDegrees Tamanho da célula do índice em graus.
+     * @param listener        Listener que recebe os eventos.
+     */
+    public GeofenceEngine(List<Geofence> fences, double cellSizeDegrees, GeofenceEventListener listener) {
+        this.fences = fences.toArray(new Geofence[0]);
+        this.index = new GeofenceIndex(fences, cellSizeDegrees);
+        this.listener = listener;
+        this.states = new byte[this.fences.length];
+        this.enterTimes = new long[this.fences.length];
+        this.seenStamps = new int[this.fences.length];
+        this.insideFences = new int[this.fences.length];
+    }
+
+    /**
+     * Avalia uma localização contra as cercas.
+     *
+     * @param timeMillis Instante do fix em milissegundos (UTC).
+     * @param latitude   Latitude.
+     * @param longitude  Longitude.
+     */
+    public synchronized void evaluate(long timeMillis, double latitude, double longitude) {
+        stamp++;
+
+        // Entradas: apenas cercas candidatas da célula do ponto
+        int cell = index.findCell(latitude, longitude);
+        if (cell >= 0) {
+            int end = index.candidatesEnd(cell);
+            for (int i = index.candidatesStart(cell); i < end; i++) {
+                int f = index.candidateAt(i);
+                if (fences[f].contains(latitude, longitude)) {
+                    seenStamps[f] = stamp;
+                    if (states[f] == STATE_OUTSIDE) {
+                        states[f] = STATE_INSIDE;
+                        enterTimes[f] = timeMillis;
+                        insideFences[insideCount++] = f;
+                        notifyEvent(EVENT_ENTER, f, timeMillis, latitude, longitude);
+                    }
+                }
+            }
+        }
+
+        // Saídas e permanências: apenas cercas em que o veículo estava dentro
+        for (int i = insideCount - 1; i >= 0; i--) {
+            int f = insideFences[i];
+            if (seenStamps[f] != stamp) {
+                states[f] = STATE_OUTSIDE;
+                insideFences[i] = insideFences[--insideCount];
+                notifyEvent(EVENT_EXIT, f, timeMillis, latitude, longitude);
+            } else if (states[f] == STATE_INSIDE) {
+                long dwell = fences[f].getDwellMillis();
+                if (dwell > 0 && timeMillis - enterTimes[f] >= dwell) {
+                    states[f] = STATE_DWELLING;
+                    notifyEvent(EVENT_DWELL, f, timeMillis, latitude, longitude);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retorna quantas cercas contêm a posição atual.
+     *
+     * @return Número de cercas em que o veículo está dentro.
+     */
+    public synchronized int getInsideCount() {
+        return insideCount;
+    }
+
+    public int getFenceCount() {
+        return fences.length;
+    }
+
+    private void notifyEvent(int eventType, int fenceIndex, long timeMillis, double latitude, double longitude) {
+        if (listener != null) {
+            listener.onGeofenceEvent(eventType, fences[fenceIndex], timeMillis, latitude, longitude);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lê conjuntos de cercas de um arquivo local.
+ * Cada linha tem o formato: id,permanencia_s,lat lon;lat lon;lat lon;...
+ * Linhas vazias e comentários (#) são ignorados.
+ */
+public final class GeofenceFileReader {
+
+    private GeofenceFileReader() {
+    }
+
+    /**
+     * Lê as cercas de um arquivo.
+     *
+     * @param file Arquivo de cercas.
+     * @return Lista de cercas lidas.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public static List<Geofence> read(File file) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Lê as cercas de um reader.
+     *
+     * @param reader Fonte do conteúdo.
+     * @return Lista de cercas lidas.
+     * @throws IOException Se o conteúdo não puder ser lido ou uma linha for inválida.
+     */
+    public static List<Geofence> read(Reader reader) throws IOException {
+        List<Geofence> fences = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] f = line.split(",", 3);
+            if (f.length < 3) {
+                throw new IOException("Linha de cerca inválida: " + lineNumber);
+            }
+            try {
+                String[] vertices = f[2].split(";");
+                double[] latitudes = new double[vertices.length];
+                double[] longitudes = new double[vertices.length];
+                for (int i = 0; i < vertices.length; i++) {
+                    String[] point = vertices[i].trim().split("\\s+");
+                    latitudes[i] = Double.parseDouble(point[0]);
+                    longitudes[i] = Double.parseDouble(point[1]);
+                }
+                fences.add(new Geofence(Integer.parseInt(f[0].trim()), latitudes, longitudes,
+                        Long.parseLong(f[1].trim()) * 1000));
+            } catch (RuntimeException e) {
+                throw new IOException("Linha de cerca inválida: " + lineNumber, e);
+            }
+        }
+        return fences;
+    }
+}
@@ -0,0 +1,155 @@
+package com.automacao.rstremento2;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice espacial de cercas baseado em uma grade uniforme.
+ * Cada célula guarda os índices das cercas cujo retângulo envolvente a intercepta.
+ * As células são armazenadas de forma compacta (chaves ordenadas + listas contíguas),
+ * e a consulta é uma busca binária sem alocação.
+ */
+public class GeofenceIndex {
+
+    /**
+     * Limite de pares (célula, cerca) do índice. Cercas muito grandes para o tamanho de
+     * célula estouram esse limite; nesse caso o construtor falha em vez de alocar gigabytes.
+     */
+    static final int MAX_CELL_REFS = 1 << 24;
+
+    private final double cellSizeDegrees;
+    private final long[] cellKeys;   // Chaves das células não vazias, ordenadas
+    private final int[] cellStarts;  // Início de cada célula em fenceRefs (tamanho = células + 1)
+    private final int[] fenceRefs;   // Índices das cercas, agrupados por célula
+
+    /**
+     * Constrói o índice para as cercas fornecidas.
+     *
+     * @param fences          Cercas a indexar.
+     * @param cellSizeDegrees Tamanho da célula em graus (ex.: 0.01 ~ 1,1 km).
+     * @throws IllegalArgumentException Se as cercas ocuparem mais que {@link #MAX_CELL_REFS}
+     *                                  células somadas.
+     */
+    public GeofenceIndex(List<Geofence> fences, double cellSizeDegrees) {
+        if (!(cellSizeDegrees > 0)) {
+            throw new IllegalArgumentException("Tamanho de célula inválido: " + cellSizeDegrees);
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+
+        // Primeira passada: gera pares (célula, cerca)
+        long total = 0;
+        for (Geofence fence : fences) {
+            total += cellSpan(fence);
+            if (total > MAX_CELL_REFS) {
+                throw new IllegalArgumentException("Cercas grandes demais para células de "
+                        + cellSizeDegrees + " graus; aumente o tamanho da célula");
+            }
+        }
+        int pairs = (int) total;
+        long[] keys = new long[pairs];
+        int[] refs = new int[pairs];
+        int p = 0;
+        for (int f = 0; f < fences.size(); f++) {
+            Geofence fence = fences.get(f);
+            int minRow = row(fence.getMinLatitude()), maxRow = row(fence.getMaxLatitude());
+            int minCol = column(fence.getMinLongitude()), maxCol = column(fence.getMaxLongitude());
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    keys[p] = key(r, c);
+                    refs[p] = f;
+                    p++;
+                }
+            }
+        }
+
+        // Ordena os pares pela chave da célula
+        Integer[] order = new Integer[pairs];
+        for (int i = 0; i < pairs; i++) {
+            order[i] = i;
+        }
+        final long[] sortKeys = keys;
+        Arrays.sort(order, (a, b) -> Long.compare(sortKeys[a], sortKeys[b]));
+
+        int distinct = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                distinct++;
+            }
+        }
+        cellKeys = new long[distinct];
+        cellStarts = new int[distinct + 1];
+        fenceRefs = new int[pairs];
+        int cell = -1;
+        for (int i = 0; i < pairs; i++) {
+            if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                cell++;
+                cellKeys[cell] = keys[order[i]];
+                cellStarts[cell] = i;
+            }
+            fenceRefs[i] = refs[order[i]];
+        }
+        cellStarts[distinct] = pairs;
+    }
+
+    /**
+     * Localiza a célula que contém o ponto.
+     *
+     * @return Posição da célula no índice, ou -1 se não houver cercas nela.
+     */
+    public int findCell(double latitude, double longitude) {
+        int position = Arrays.binarySearch(cellKeys, key(row(latitude), column(longitude)));
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Posição inicial (inclusiva) das cercas candidatas de uma célula.
+     */
+    public int candidatesStart(int cell) {
+        return cellStarts[cell];
+    }
+
+    /**
+     * Posição final (exclusiva) das cercas candidatas de uma célula.
+     */
+    public int candidatesEnd(int cell) {
+        return cellStarts[cell + 1];
+    }
+
+    /**
+     * Índice da cerca candidata na posição informada.
+     */
+    public int candidateAt(int position) {
+        return fenceRefs[position];
+    }
+
+    /**
+     * Células cobertas pelo retângulo envolvente, calculadas em long: o produto de linhas
+     * por colunas estoura int com células pequenas e cercas grandes.
+     */
+    private long cellSpan(Geofence fence) {
+        return ((long) row(fence.getMaxLatitude()) - row(fence.getMinLatitude()) + 1)
+                * ((long) column(fence.getMaxLongitude()) - column(fence.getMinLongitude()) + 1);
+    }
+
+    /**
+     * Linha da grade, limitada ao intervalo de latitudes válido.
+     */
+    private int row(double latitude) {
+        return (int) Math.floor((clamp(latitude, -90.0, 90.0) + 90.0) / cellSizeDegrees);
+    }
+
+    /**
+     * Coluna da grade, limitada ao intervalo de longitudes válido.
+     */
+    private int column(double longitude) {
+        return (int) Math.floor((clamp(longitude, -180.0, 180.0) + 180.0) / cellSizeDegrees);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,299 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+
+/**
+ * Qualidade do GNSS calculada a cada atualização de status: satélites usados no fix,
+ * C/N0 médio e dos quatro mais fortes, constelações usadas e um indicador de geometria
+ * semelhante ao HDOP. A fonte chama {@link #begin()}, {@link #addSatellite} para cada
+ * satélite do status e {@link #end(long)}; os laços usam apenas campos primitivos.
+ *
+ * <p>O HDOP é calculado pela matriz de geometria dos satélites usados no fix (vetores
+ * unitários leste, norte e cima, mais o termo do relógio): HDOP = sqrt(Q_ee + Q_nn),
+ * com Q = (G^T G)^-1.
+ *
+ * <p>As métricas são publicadas a cada {@link #end(long)}, mas o nível de qualidade só muda
+ * (e o listener só é chamado) quando o novo nível persiste por {@code QUALITY_DWELL_MS},
+ * para não notificar a cada callback perto de um limiar.
+ */
+public class GnssQuality {
+
+    public static final int LEVEL_NONE = 0;  // Menos de 4 satélites no fix
+    public static final int LEVEL_POOR = 1;
+    public static final int LEVEL_FAIR = 2;
+    public static final int LEVEL_GOOD = 3;
+
+    /** Valor de HDOP quando a geometria não permite o cálculo. */
+    public static final float HDOP_UNKNOWN = 99.9f;
+
+    /** Constelações conhecidas, na numeração de {@code android.location.GnssStatus}. */
+    public static final int CONSTELLATION_COUNT = 8;
+
+    private static final int TOP_CN0 = 4;
+    private static final long QUALITY_DWELL_MS = 3000;
+
+    // Limiares dos níveis: satélites usados, HDOP máximo e C/N0 mínimo dos quatro mais fortes
+    private static final int GOOD_MIN_USED = 7;
+    private static final float GOOD_MAX_HDOP = 1.5f;
+    private static final float GOOD_MIN_TOP_CN0 = 35f;
+    private static final int FAIR_MIN_USED = 5;
+    private static final float FAIR_MAX_HDOP = 3.0f;
+    private static final float FAIR_MIN_TOP_CN0 = 28f;
+
+    /**
+     * Listener de mudanças do nível de qualidade.
+     */
+    public interface Listener {
+        void onGnssQualityChanged(GnssQuality quality);
+    }
+
+    // Acumuladores da atualização em andamento (somente a thread da fonte)
+    private int visibleAcc;
+    private int usedAcc;
+    private double cn0SumAcc;
+    private final float[] topCn0Acc = new float[TOP_CN0];
+    private final int[] constellationAcc = new int[CONSTELLATION_COUNT];
+    // Triângulo superior de G^T G: ee, en, eu, e1, nn, nu, n1, uu, u1, 11
+    private final double[] geometry = new double[10];
+    private final double[] inverse = new double[16];
+
+    // Métricas publicadas
+    private volatile int visible;
+    private volatile int usedInFix;
+    private volatile float meanCn0;
+    private volatile float topCn0Mean;
+    private volatile float hdop = HDOP_UNKNOWN;
+    private volatile int constellationMask;
+    private final int[] constellationUsed = new int[CONSTELLATION_COUNT];
+    private volatile int level = LEVEL_NONE;
+
+    private int candidate = LEVEL_NONE;
+    private long candidateSince = -1;
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Inicia uma atualização de status.
+     */
+    public void begin() {
+        visibleAcc = 0;
+        usedAcc = 0;
+        cn0SumAcc = 0;
+        for (int i = 0; i < TOP_CN0; i++) {
+            topCn0Acc[i] = 0;
+        }
+        for (int i = 0; i < CONSTELLATION_COUNT; i++) {
+            constellationAcc[i] = 0;
+        }
+        for (int i = 0; i < geometry.length; i++) {
+            geometry[i] = 0;
+        }
+    }
+
+    /**
+     * Acumula um satélite da atualização em andamento.
+     *
+     * @param constellation Tipo de constelação ({@code GnssStatus.CONSTELLATION_*}).
+     * @param cn0DbHz       Densidade portadora/ruído em dB-Hz.
+     * @param usedInFix     Se o satélite foi usado no último fix.
+     * @param elevation     Elevação em graus.
+     * @param azimuth       Azimute em graus.
+     */
+    public void addSatellite(int constellation, float cn0DbHz, boolean usedInFix, float elevation, float azimuth) {
+        visibleAcc++;
+        if (!usedInFix) {
+            return;
+        }
+        usedAcc++;
+        cn0SumAcc += cn0DbHz;
+        if (constellation >= 0 && constellation < CONSTELLATION_COUNT) {
+            constellationAcc[constellation]++;
+        }
+
+        // Inserção ordenada entre os quatro mais fortes
+        float value = cn0DbHz;
+        for (int i = 0; i < TOP_CN0; i++) {
+            if (value > topCn0Acc[i]) {
+                float displaced = topCn0Acc[i];
+                topCn0Acc[i] = value;
+                value = displaced;
+            }
+        }
+
+        double el = Math.toRadians(elevation);
+        double az = Math.toRadians(azimuth);
+        double e = Math.cos(el) * Math.sin(az);
+        double n = Math.cos(el) * Math.cos(az);
+        double u = Math.sin(el);
+        geometry[0] += e * e;
+        geometry[1] += e * n;
+        geometry[2] += e * u;
+        geometry[3] += e;
+        geometry[4] += n * n;
+        geometry[5] += n * u;
+        geometry[6] += n;
+        geometry[7] += u * u;
+        geometry[8] += u;
+        geometry[9] += 1;
+    }
+
+    /**
+     * Publica as métricas da atualização e avalia o nível de qualidade.
+     *
+     * @param nowMillis Instante da atualização, em qualquer base monotônica.
+     * @return true se o nível mudou nesta atualização.
+     */
+    public boolean end(long nowMillis) {
+        int topCount = Math.min(usedAcc, TOP_CN0);
+        float topSum = 0;
+        for (int i = 0; i < topCount; i++) {
+            topSum += topCn0Acc[i];
+        }
+        int mask = 0;
+        synchronized (constellationUsed) {
+            for (int i = 0; i < CONSTELLATION_COUNT; i++) {
+                constellationUsed[i] = constellationAcc[i];
+                if (constellationAcc[i] > 0) {
+                    mask |= 1 << i;
+                }
+            }
+        }
+        visible = visibleAcc;
+        usedInFix = usedAcc;
+        meanCn0 = usedAcc > 0 ? (float) (cn0SumAcc / usedAcc) : 0;
+        topCn0Mean = topCount > 0 ? topSum / topCount : 0;
+        constellationMask = mask;
+        hdop = usedAcc >= 4 ? computeHdop() : HDOP_UNKNOWN;
+
+        int raw = classify(usedAcc, hdop, topCn0Mean);
+        if (raw == level) {
+            candidateSince = -1;
+            return false;
+        }
+        if (candidateSince < 0 || raw != candidate) {
+            candidate = raw;
+            candidateSince = nowMillis;
+        }
+        if (nowMillis - candidateSince < QUALITY_DWELL_MS) {
+            return false;
+        }
+        level = raw;
+        candidateSince = -1;
+        Listener current = listener;
+        if (current != null) {
+            current.onGnssQualityChanged(this);
+        }
+        return true;
+    }
+
+    private static int classify(int used, float hdop, float topCn0) {
+        if (used < 4 || hdop >= HDOP_UNKNOWN) {
+            return LEVEL_NONE;
+        }
+        if (used >= GOOD_MIN_USED && hdop <= GOOD_MAX_HDOP && topCn0 >= GOOD_MIN_TOP_CN0) {
+            return LEVEL_GOOD;
+        }
+        if (used >= FAIR_MIN_USED && hdop <= FAIR_MAX_HDOP && topCn0 >= FAIR_MIN_TOP_CN0) {
+            return LEVEL_FAIR;
+        }
+        return LEVEL_POOR;
+    }
+
+    /**
+     * Inverte a matriz simétrica 4x4 G^T G no próprio array por Gauss-Jordan e retorna
+     * sqrt(Q_ee + Q_nn), ou {@link #HDOP_UNKNOWN} se a geometria for degenerada.
+     */
+    private float computeHdop() {
+        double[] g = geometry;
+        double a00 = g[0], a01 = g[1], a02 = g[2], a03 = g[3];
+        double a11 = g[4], a12 = g[5], a13 = g[6];
+        double a22 = g[7], a23 = g[8];
+        double a33 = g[9];
+        double[] m = inverse;
+        m[0] = a00; m[1] = a01; m[2] = a02; m[3] = a03;
+        m[4] = a01; m[5] = a11; m[6] = a12; m[7] = a13;
+        m[8] = a02; m[9] = a12; m[10] = a22; m[11] = a23;
+        m[12] = a03; m[13] = a13; m[14] = a23; m[15] = a33;
+        for (int k = 0; k < 4; k++) {
+            double pivot = m[k * 4 + k];
+            if (Math.abs(pivot) < 1e-9) {
+                return HDOP_UNKNOWN;
+            }
+            double inv = 1 / pivot;
+            m[k * 4 + k] = 1;
+            for (int j = 0; j < 4; j++) {
+                m[k * 4 + j] *= inv;
+            }
+            for (int i = 0; i < 4; i++) {
+                if (i == k) {
+                    continue;
+                }
+                double factor = m[i * 4 + k];
+                m[i * 4 + k] = 0;
+                for (int j = 0; j < 4; j++) {
+                    m[i * 4 + j] -= factor * m[k * 4 + j];
+                }
+            }
+        }
+        double horizontal = m[0] + m[5];
+        if (!(horizontal > 0)) {
+            return HDOP_UNKNOWN;
+        }
+        return (float) Math.min(HDOP_UNKNOWN, Math.sqrt(horizontal));
+    }
+
+    /** Satélites visíveis na última atualização. */
+    public int getVisible() {
+        return visible;
+    }
+
+    /** Satélites usados no fix na última atualização. */
+    public int getUsedInFix() {
+        return usedInFix;
+    }
+
+    /** C/N0 médio dos satélites usados no fix, em dB-Hz. */
+    public float getMeanCn0() {
+        return meanCn0;
+    }
+
+    /** C/N0 médio dos quatro satélites usados mais fortes, em dB-Hz. */
+    public float getTopCn0Mean() {
+        return topCn0Mean;
+    }
+
+    /** Indicador de geometria horizontal, ou {@link #HDOP_UNKNOWN}. */
+    public float getHdop() {
+        return hdop;
+    }
+
+    /** Bits das constelações com ao menos um satélite usado (bit = tipo de constelação). */
+    public int getConstellationMask() {
+        return constellationMask;
+    }
+
+    /** Satélites usados de uma constelação na última atualização. */
+    public int getUsedInFix(int constellation) {
+        if (constellation < 0 || constellation >= CONSTELLATION_COUNT) {
+            return 0;
+        }
+        synchronized (constellationUsed) {
+            return constellationUsed[constellation];
+        }
+    }
+
+    /** Nível de qualidade estável, de {@link #LEVEL_NONE} a {@link #LEVEL_GOOD}. */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "GNSS (nível=%d, usados=%d/%d, C/N0=%.1f/%.1f dB-Hz, HDOP=%.1f, constelações=0x%02X)",
+                level, usedInFix, visible, meanCn0, topCn0Mean, hdop, constellationMask);
+    }
+}
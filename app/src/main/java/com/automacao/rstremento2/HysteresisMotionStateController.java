@@ -0,0 +1,113 @@
+package com.automacao.rstremento2;
+
+/**
+ * Controlador de estado de movimento com histerese.
+ * Limiares de entrada e saída distintos e um tempo mínimo de permanência evitam
+ * que o estado (e a solicitação de localização) fique oscilando.
+ * <p>
+ * O estado inicial é {@link MotionState#SLOW}: um veículo que já parte em movimento é
+ * acompanhado em alta taxa desde o primeiro fix, e um veículo parado só reduz a taxa
+ * depois do tempo mínimo de permanência.
+ */
+public class HysteresisMotionStateController implements MotionStateController {
+
+    // Limiares de velocidade em km/h (entrada / saída)
+    private static final float STATIONARY_ENTER_KMH = 3.0f;
+    private static final float STATIONARY_EXIT_KMH = 6.0f;
+    private static final float CRUISING_ENTER_KMH = 40.0f;
+    private static final float CRUISING_EXIT_KMH = 30.0f;
+
+    // Limiares de taxa de curva em graus por segundo (entrada / saída)
+    private static final float TURNING_ENTER_DEG_S = 12.0f;
+    private static final float TURNING_EXIT_DEG_S = 5.0f;
+    private static final float TURNING_MIN_SPEED_KMH = 8.0f;
+
+    // Tempo mínimo que um novo estado deve persistir antes de ser aceito
+    private static final long FASTER_STATE_DWELL_MS = 2000;  // Aumentar a taxa rapidamente
+    private static final long SLOWER_STATE_DWELL_MS = 20000; // Reduzir a taxa com cautela
+
+    private MotionState state = MotionState.SLOW;
+    private MotionState candidate = MotionState.SLOW;
+    private long candidateSince = -1;
+
+    private float lastBearing;
+    private long lastBearingTime = -1;
+    private float turnRate; // Taxa de curva suavizada em graus por segundo
+
+    @Override
+    public MotionState update(long timestampMillis, float speedKmh, float bearingDegrees, boolean hasBearing) {
+        updateTurnRate(timestampMillis, speedKmh, bearingDegrees, hasBearing);
+
+        MotionState raw = classify(speedKmh);
+        if (raw == state) {
+            candidate = state;
+            candidateSince = -1;
+            return state;
+        }
+
+        // O prazo conta desde que as amostras começaram a pedir uma taxa maior (ou menor)
+        boolean faster = raw.ordinal() > state.ordinal();
+        if (candidateSince < 0 || faster != (candidate.ordinal() > state.ordinal())) {
+            candidateSince = timestampMillis;
+        }
+        candidate = raw;
+
+        long dwell = faster ? FASTER_STATE_DWELL_MS : SLOWER_STATE_DWELL_MS;
+        if (timestampMillis - candidateSince >= dwell) {
+            state = raw;
+            candidateSince = -1;
+        }
+        return state;
+    }
+
+    @Override
+    public MotionState getState() {
+        return state;
+    }
+
+    /**
+     * Classifica a amostra usando os limiares de saída do estado atual (histerese).
+     *
+     * @param speedKmh Velocidade filtrada em km/h.
+     * @return O estado sugerido pela amostra.
+     */
+    private MotionState classify(float speedKmh) {
+        float turnLimit = state == MotionState.TURNING ? TURNING_EXIT_DEG_S : TURNING_ENTER_DEG_S;
+        if (speedKmh >= TURNING_MIN_SPEED_KMH && turnRate >= turnLimit) {
+            return MotionState.TURNING;
+        }
+
+        float stationaryLimit = state == MotionState.STATIONARY ? STATIONARY_EXIT_KMH : STATIONARY_ENTER_KMH;
+        if (speedKmh < stationaryLimit) {
+            return MotionState.STATIONARY;
+        }
+
+        float cruisingLimit = state == MotionState.CRUISING ? CRUISING_EXIT_KMH : CRUISING_ENTER_KMH;
+        if (speedKmh >= cruisingLimit) {
+            return MotionState.CRUISING;
+        }
+        return MotionState.SLOW;
+    }
+
+    /**
+     * Atualiza a taxa de curva a partir da variação de rumo entre amostras.
+     */
+    private void updateTurnRate(long timestampMillis, float speedKmh, float bearingDegrees, boolean hasBearing) {
+        if (!hasBearing || speedKmh < TURNING_MIN_SPEED_KMH) {
+            // Rumo não confiável parado ou em baixa velocidade
+            lastBearingTime = -1;
+            turnRate = 0;
+            return;
+        }
+        if (lastBearingTime >= 0 && timestampMillis > lastBearingTime) {
+            float delta = Math.abs(bearingDegrees - lastBearing) % 360f;
+            if (delta > 180f) {
+                delta = 360f - delta;
+            }
+            float rate = delta * 1000f / (timestampMillis - lastBearingTime);
+            turnRate = 0.5f * turnRate + 0.5f * rate; // Média exponencial simples
+        }
+        lastBearing = bearingDegrees;
+        lastBearingTime = timestampMillis;
+    }
+}
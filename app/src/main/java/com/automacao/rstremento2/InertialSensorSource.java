@@ -0,0 +1,39 @@
+package com.automacao.rstremento2;
+
+/**
+ * Fonte de amostras inerciais usada pela navegação estimada. As amostras já chegam
+ * reduzidas a canais escalares, o que permite substituir os sensores do aparelho por
+ * um registro gravado na validação em JVM.
+ */
+public interface InertialSensorSource {
+
+    /** Aceleração longitudinal do veículo, em m/s² (positiva para frente). */
+    int CHANNEL_ACCELERATION = 1;
+    /** Velocidade angular de guinada, em graus/s (positiva no sentido horário, como o rumo). */
+    int CHANNEL_YAW_RATE = 2;
+    /** Rumo absoluto, em graus a partir do norte verdadeiro. */
+    int CHANNEL_HEADING = 3;
+
+    /**
+     * Interface para receber as amostras inerciais.
+     */
+    interface InertialSampleListener {
+        void onSample(int channel, long timeNanos, float value);
+    }
+
+    void setListener(InertialSampleListener listener);
+
+    /**
+     * Informa a posição do último fix, usada para converter o rumo magnético dos sensores
+     * em rumo verdadeiro.
+     *
+     * @param latitude  Latitude em graus.
+     * @param longitude Longitude em graus.
+     * @param altitude  Altitude em metros.
+     */
+    void setReferenceLocation(double latitude, double longitude, double altitude);
+
+    void start();
+
+    void stop();
+}
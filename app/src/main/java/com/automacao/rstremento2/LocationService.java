@@ -10,6 +10,7 @@ import android.location.Location;
 import android.location.LocationManager;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -20,28 +21,38 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 
-public class LocationService extends Thread {
+/**
+ * Fonte de localização baseada no provedor do Google Play Services. As atualizações
+ * chegam no looper principal; nenhuma thread própria é mantida.
+ */
+public class LocationService implements LocationSource {
+    private static final String TAG = "LocationService";
     private final FusedLocationProviderClient fusedLocationClient;
     private final Context context;
     private LocationCallback locationCallback;
     private GnssStatus.Callback gnssStatusCallback;
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
-    private boolean isRunning = false;
+    private static final int FIX_RING_CAPACITY = 512; // Fixes guardados até a leitura pelos consumidores
+    private static final long MIN_FASTEST_INTERVAL_MS = 1000; // O GpsSpeedFilter mede o tempo em segundos inteiros
+    private volatile boolean isRunning = false;
     private LocationUpdateListener listener;
+    private final GpsSpeedFilter speedFilter = new GpsSpeedFilter();
+    private final MotionStateController motionController = new HysteresisMotionStateController();
+    private MotionStateController.MotionState requestedState;
+    private TripAggregator tripAggregator;
+    private volatile GeofenceEngine geofenceEngine;
+    private DeadReckoningEstimator deadReckoning;
+    private final FixRing fixRing = new FixRing(FIX_RING_CAPACITY);
+    private final GnssQuality gnssQuality = new GnssQuality();
+    private volatile long maxWaitMillis = 0;
 
     // Atributos de localização
-    private double latitude;
-    private double longitude;
-    private double altitude;
-    private float speed;
-    private int satellitesConnected;
-
-    /**
-     * Interface para listener de atualizações de localização.
-     */
-    public interface LocationUpdateListener {
-        void onLocationUpdate(double latitude, double longitude, double altitude, float speed, int satellites);
-    }
+    private volatile double latitude;
+    private volatile double longitude;
+    private volatile double altitude;
+    private volatile float speed;
+    private volatile int satellitesConnected;
+    private volatile boolean hasFix;
 
     /**
      * Construtor que inicializa o serviço de localização.
@@ -53,13 +64,54 @@ public class LocationService extends Thread {
         this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
     }
 
+    @Override
+    public void setListener(LocationUpdateListener listener) {
+        this.listener = listener;
+    }
+
     /**
-     * Define o listener para receber atualizações de localização.
+     * Define o agregador de viagens alimentado pelas localizações e pela velocidade filtrada.
      *
-     * @param listener O listener a ser definido.
+     * @param tripAggregator O agregador a ser definido.
      */
-    public void setListener(LocationUpdateListener listener) {
-        this.listener = listener;
+    public void setTripAggregator(TripAggregator tripAggregator) {
+        this.tripAggregator = tripAggregator;
+    }
+
+    /**
+     * Define o motor de cercas avaliado a cada localização, com o instante do fix.
+     *
+     * @param geofenceEngine O motor a ser definido, ou null para desativar.
+     */
+    public void setGeofenceEngine(GeofenceEngine geofenceEngine) {
+        this.geofenceEngine = geofenceEngine;
+    }
+
+    /**
+     * Define o estimador de navegação, reiniciado a cada fix recebido.
+     *
+     * @param deadReckoning O estimador a ser definido.
+     */
+    public void setDeadReckoning(DeadReckoningEstimator deadReckoning) {
+        this.deadReckoning = deadReckoning;
+    }
+
+    /**
+     * Ativa a entrega agrupada: o provedor acumula os fixes e os entrega juntos, no máximo
+     * a cada {@code maxWaitMillis}, permitindo que a CPU durma entre as entregas. Todos os
+     * fixes do grupo são guardados no {@link FixRing}.
+     *
+     * @param maxWaitMillis Espera máxima entre entregas, ou 0 para entregar cada fix.
+     */
+    public void setBatchedDelivery(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+        if (isRunning) {
+            new Handler(Looper.getMainLooper()).post(() -> {
+                if (locationCallback != null) {
+                    requestLocationUpdates(motionController.getState());
+                }
+            });
+        }
     }
 
     /**
@@ -74,10 +126,13 @@ public class LocationService extends Thread {
     }
 
     /**
-     * Método principal da thread, responsável por iniciar e gerenciar atualizações de localização.
+     * Inicia as atualizações de localização no looper principal.
      */
     @Override
-    public void run() {
+    public void start() {
+        if (isRunning) {
+            return;
+        }
         if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             // Se as permissões não estão disponíveis, não inicie as atualizações de localização
             return;
@@ -86,11 +141,6 @@ public class LocationService extends Thread {
         isRunning = true;
 
         new Handler(Looper.getMainLooper()).post(() -> {
-            LocationRequest locationRequest = LocationRequest.create();
-            locationRequest.setInterval(0);
-            locationRequest.setFastestInterval(0);
-            locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-
             locationCallback = new LocationCallback() {
                 @Override
                 public void onLocationResult(LocationResult locationResult) {
@@ -101,7 +151,22 @@ public class LocationService extends Thread {
                         latitude = location.getLatitude();
                         longitude = location.getLongitude();
                         altitude = location.getAltitude();
-                        speed = location.getSpeed() * 4;
+                        speed = location.getSpeed() * SPEED_SCALE;
+                        hasFix = true;
+                        fixRing.add(location.getTime(), latitude, longitude, altitude, speed, location.getAccuracy());
+                        float filteredSpeed = speedFilter.getFilteredSpeed(location);
+                        updateMotionState(location, filteredSpeed);
+                        if (deadReckoning != null) {
+                            deadReckoning.onFix(location.getElapsedRealtimeNanos(), latitude, longitude,
+                                    location.getSpeed(), location.getBearing(), location.hasBearing());
+                        }
+                        if (tripAggregator != null) {
+                            tripAggregator.onFix(location.getTime(), latitude, longitude, filteredSpeed);
+                        }
+                        GeofenceEngine fences = geofenceEngine;
+                        if (fences != null) {
+                            fences.evaluate(location.getTime(), latitude, longitude);
+                        }
                         if (listener != null) {
                             listener.onLocationUpdate(latitude, longitude, altitude, speed, satellitesConnected);
                         }
@@ -109,24 +174,63 @@ public class LocationService extends Thread {
                 }
             };
 
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+            requestLocationUpdates(motionController.getState());
 
             // Configura o callback para obter informações de GNSS
             setupGnssStatusCallback();
         });
+    }
 
-        while (isRunning) {
-            try {
-                // Sleep para reduzir o consumo de CPU
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                isRunning = false;
+    /**
+     * Atualiza o estado de movimento e, se ele mudar, reemite a solicitação de localização.
+     *
+     * @param location      A localização recebida.
+     * @param filteredSpeed Velocidade filtrada em km/h.
+     */
+    private void updateMotionState(Location location, float filteredSpeed) {
+        MotionStateController.MotionState state = motionController.update(
+                location.getTime(), filteredSpeed, location.getBearing(), location.hasBearing());
+        if (state != requestedState) {
+            requestLocationUpdates(state);
+        }
+    }
+
+    /**
+     * Solicita atualizações de localização com intervalo adequado ao estado de movimento.
+     * A prioridade é sempre alta: fixes de precisão balanceada não trazem velocidade, e
+     * sem velocidade o controlador não conseguiria sair do estado parado. Reutiliza o
+     * mesmo callback, o que substitui a solicitação anterior.
+     *
+     * @param state Estado de movimento atual.
+     */
+    @SuppressLint("MissingPermission")
+    private void requestLocationUpdates(MotionStateController.MotionState state) {
+        long interval;
+        switch (state) {
+            case STATIONARY:
+                interval = 30000;
                 break;
-            }
+            case SLOW:
+                interval = 5000;
+                break;
+            case CRUISING:
+                interval = 3000;
+                break;
+            default: // TURNING
+                interval = 1000;
+                break;
+        }
+
+        LocationRequest locationRequest = LocationRequest.create();
+        locationRequest.setInterval(interval);
+        locationRequest.setFastestInterval(Math.max(MIN_FASTEST_INTERVAL_MS, interval / 2));
+        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        if (maxWaitMillis > interval) {
+            locationRequest.setMaxWaitTime(maxWaitMillis); // Entrega agrupada
         }
 
-        // Para as atualizações de localização quando a thread é parada
-        stopLocationUpdates();
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        requestedState = state;
     }
 
     /**
@@ -145,7 +249,8 @@ public class LocationService extends Thread {
                         latitude = location.getLatitude();
                         longitude = location.getLongitude();
                         altitude = location.getAltitude();
-                        speed = location.getSpeed() * 4;
+                        speed = location.getSpeed() * SPEED_SCALE;
+                        hasFix = true;
                         if (listener != null) {
                             listener.onLocationUpdate(latitude, longitude, altitude, speed, satellitesConnected);
                         }
@@ -156,6 +261,7 @@ public class LocationService extends Thread {
     /**
      * Para as atualizações de localização e o callback de GNSS.
      */
+    @Override
     public void stopLocationUpdates() {
         if (locationCallback != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
@@ -169,28 +275,50 @@ public class LocationService extends Thread {
     }
 
     // Métodos públicos para obter os dados de localização
+    @Override
     public double getLatitude() {
         return latitude;
     }
 
+    @Override
     public double getLongitude() {
         return longitude;
     }
 
+    @Override
     public double getAltitude() {
         return altitude;
     }
 
+    @Override
     public float getSpeed() {
         return speed;
     }
 
+    @Override
     public int getSatellitesConnected() {
         return satellitesConnected;
     }
 
+    @Override
+    public boolean hasFix() {
+        return hasFix;
+    }
+
+    @Override
+    public FixRing getFixRing() {
+        return fixRing;
+    }
+
+    @Override
+    public GnssQuality getGnssQuality() {
+        return gnssQuality;
+    }
+
     /**
-     * Configura o callback para receber atualizações de status do GNSS.
+     * Configura o callback para receber atualizações de status do GNSS. Cada status é
+     * percorrido por índice, sem alocação, e alimenta o {@link GnssQuality}; o número de
+     * satélites registrado é o de satélites usados no fix, não o de visíveis.
      */
     @SuppressLint("MissingPermission")
     private void setupGnssStatusCallback() {
@@ -199,7 +327,16 @@ public class LocationService extends Thread {
             @Override
             public void onSatelliteStatusChanged(GnssStatus status) {
                 super.onSatelliteStatusChanged(status);
-                satellitesConnected = status.getSatelliteCount();
+                GnssQuality quality = gnssQuality;
+                quality.begin();
+                for (int i = 0, count = status.getSatelliteCount(); i < count; i++) {
+                    quality.addSatellite(status.getConstellationType(i), status.getCn0DbHz(i), status.usedInFix(i),
+                            status.getElevationDegrees(i), status.getAzimuthDegrees(i));
+                }
+                if (quality.end(SystemClock.elapsedRealtime())) {
+                    AppLog.i(TAG, "{}", quality);
+                }
+                satellitesConnected = quality.getUsedInFix();
             }
         };
         new Handler(Looper.getMainLooper()).post(() -> locationManager.registerGnssStatusCallback(gnssStatusCallback));
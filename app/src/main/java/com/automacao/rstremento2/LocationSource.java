@@ -0,0 +1,72 @@
+package com.automacao.rstremento2;
+
+/**
+ * Fonte de localização consumida pelo restante do pipeline de pacotes.
+ * O {@link LocationService} usa o provedor de localização do Android; o
+ * {@link TrackReplaySource} reproduz trajetos gravados sem GPS.
+ */
+public interface LocationSource {
+
+    /**
+     * Escala da velocidade entregue por {@link #getSpeed()} e pelo listener: m/s
+     * multiplicado por este fator, a unidade gravada na tag 0x33 desde as primeiras
+     * versões do app. Toda conversão de m/s para essa unidade passa por aqui.
+     */
+    float SPEED_SCALE = 4f;
+
+    /**
+     * Interface para listener de atualizações de localização.
+     */
+    interface LocationUpdateListener {
+        void onLocationUpdate(double latitude, double longitude, double altitude, float speed, int satellites);
+    }
+
+    /**
+     * Define o listener para receber atualizações de localização.
+     *
+     * @param listener O listener a ser definido.
+     */
+    void setListener(LocationUpdateListener listener);
+
+    /**
+     * Inicia a entrega de atualizações de localização.
+     */
+    void start();
+
+    /**
+     * Para a entrega de atualizações de localização.
+     */
+    void stopLocationUpdates();
+
+    double getLatitude();
+
+    double getLongitude();
+
+    double getAltitude();
+
+    /**
+     * Velocidade do último fix, em m/s multiplicados por {@link #SPEED_SCALE}.
+     */
+    float getSpeed();
+
+    /**
+     * Satélites usados no último fix.
+     */
+    int getSatellitesConnected();
+
+    /**
+     * Indica se alguma localização já foi recebida; antes disso os getters retornam zero.
+     */
+    boolean hasFix();
+
+    /**
+     * Anel com todos os fixes recebidos, lido em lote pelos consumidores.
+     */
+    FixRing getFixRing();
+
+    /**
+     * Qualidade do GNSS calculada a partir do status dos satélites, ou null se a fonte
+     * não recebe status de GNSS.
+     */
+    GnssQuality getGnssQuality();
+}
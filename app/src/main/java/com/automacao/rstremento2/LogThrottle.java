@@ -0,0 +1,84 @@
+package com.automacao.rstremento2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita mensagens de log repetitivas, por intervalo de tempo ou por amostragem (uma a cada N).
+ * As mensagens descartadas são contadas e podem ser informadas na próxima gravação.
+ *
+ * <pre>
+ * if (AppLog.isDebugEnabled() &amp;&amp; EMPTY_QUEUE_LOG.allow()) {
+ *     AppLog.d(TAG, "Fila vazia (+{} suprimidas)", EMPTY_QUEUE_LOG.takeSuppressed());
+ * }
+ * </pre>
+ */
+public class LogThrottle {
+
+    private final TaskScheduler.Clock clock;
+    private final long intervalMillis;
+    private final int sampleEvery;
+    private final AtomicLong nextAllowedMillis = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    private LogThrottle(TaskScheduler.Clock clock, long intervalMillis, int sampleEvery) {
+        this.clock = clock;
+        this.intervalMillis = intervalMillis;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Permite no máximo uma mensagem por intervalo.
+     *
+     * @param intervalMillis Intervalo mínimo entre mensagens, em milissegundos.
+     */
+    public static LogThrottle perInterval(long intervalMillis) {
+        return perInterval(TaskScheduler.SYSTEM_CLOCK, intervalMillis);
+    }
+
+    /**
+     * Permite no máximo uma mensagem por intervalo, medido no relógio informado.
+     */
+    public static LogThrottle perInterval(TaskScheduler.Clock clock, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Intervalo inválido: " + intervalMillis);
+        }
+        return new LogThrottle(clock, intervalMillis, 0);
+    }
+
+    /**
+     * Permite uma mensagem a cada {@code every} ocorrências, começando pela primeira.
+     */
+    public static LogThrottle sampled(int every) {
+        if (every <= 0) {
+            throw new IllegalArgumentException("Amostragem inválida: " + every);
+        }
+        return new LogThrottle(null, 0, every);
+    }
+
+    /**
+     * Indica se a ocorrência atual deve ser gravada; caso contrário, ela é contada como suprimida.
+     */
+    public boolean allow() {
+        boolean allowed;
+        if (sampleEvery > 0) {
+            allowed = counter.getAndIncrement() % sampleEvery == 0;
+        } else {
+            long now = clock.nowMillis();
+            long next = nextAllowedMillis.get();
+            allowed = now >= next && nextAllowedMillis.compareAndSet(next, now + intervalMillis);
+        }
+        if (!allowed) {
+            suppressed.incrementAndGet();
+        }
+        return allowed;
+    }
+
+    /**
+     * Retorna e zera o número de ocorrências suprimidas desde a última chamada.
+     */
+    public int takeSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
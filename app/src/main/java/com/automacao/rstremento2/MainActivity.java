@@ -3,11 +3,19 @@ package com.automacao.rstremento2;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
@@ -17,12 +25,31 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG = "MainActivity";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
+    private static final String GEOFENCE_FILE = "geofences.txt";
+    private static final float MAP_FRAMES_PER_SECOND = 2f; // Taxa máxima de atualização do mapa
+    private static final int MAX_ROUTE_POINTS = 500; // Pontos da rota recente exibidos
+    private static final boolean WIRE_CAPTURE_ENABLED = false; // Captura binária dos pacotes para depuração
+    private static final String WIRE_CAPTURE_DIR = "capture";
+    private static final String TRACK_DIR = "tracks";
+    private static final long TRACK_RETENTION_MS = 7L * 24 * 60 * 60 * 1000; // Uma semana de histórico
+    private static final long TRACK_MAX_BYTES = 20L * 1024 * 1024;
+    private static final long LOCATION_MAX_WAIT_MS = 0; // Entrega agrupada das localizações (0 desativa)
+    private static final long TRANSMISSION_WINDOW_MS = 60000; // Rajadas de envio a cada minuto
+    private static final long RADIO_TAIL_MS = 10000; // Cauda estimada do rádio celular após um envio
+    private static final long MONTHLY_DATA_CAP_BYTES = 50L * 1024 * 1024; // Franquia mensal do chip
+    private static final String DATA_USAGE_PREFERENCES = "data_usage";
     private LocationService locationService;
+    private GeofenceEngine geofenceEngine;
+    private InertialSensorSource inertialSource;
     private GoogleMap mMap;
     private GalileoskySimulator galileoskySimulator;
     private TextView latitude;
@@ -31,6 +58,17 @@ public class MainActivity extends AppCompatActivity {
     private TextView satelite;
     private boolean sendingLocation = false;
 
+    // Renderização agrupada do mapa
+    private RenderCoalescer renderCoalescer;
+    private final RouteSimplifier routeSimplifier = new RouteSimplifier(5, 3);
+    private final List<LatLng> routePoints = new ArrayList<>();
+    private boolean routeChanged = false;
+    private LatLng routeEnd;           // Vértice provisório, desenhado na linha do trecho final
+    private boolean routeEndChanged = false;
+    private Marker marker;
+    private Polyline routeLine;
+    private Polyline routeTail;
+
     /**
      * Método chamado quando a atividade é criada.
      * Inicializa os serviços e configura a interface do usuário.
@@ -50,6 +88,11 @@ public class MainActivity extends AppCompatActivity {
             // Opcionalmente, você pode personalizar as configurações do mapa aqui
         });
 
+        // Agrupa as atualizações do mapa na thread principal
+        Handler uiHandler = new Handler(Looper.getMainLooper());
+        renderCoalescer = new RenderCoalescer(MAP_FRAMES_PER_SECOND, uiHandler::postDelayed,
+                this::renderFrame, SystemClock::uptimeMillis);
+
         // Inicializa o GalileoskySimulator
         galileoskySimulator = new GalileoskySimulator(locationService);
 
@@ -75,7 +118,7 @@ public class MainActivity extends AppCompatActivity {
                 stopLocationService();
                 sendingLocation = false;
                 buttonSendLocation.setText("Enviar Localização"); // Altera o texto do botão
-                galileoskySimulator.stopThreads();
+                galileoskySimulator.stop();
                 finishAffinity();
                 System.exit(0);
             }
@@ -115,7 +158,11 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Atualiza a interface do usuário com os dados de localização recebidos.
+     * Registra a localização recebida. A rota é atualizada a cada localização,
+     * e a interface é redesenhada no máximo na taxa de quadros configurada. Os vértices
+     * fixos da rota ficam em {@code routePoints}; o vértice provisório, que muda a quase
+     * todo fix, fica à parte, para que a linha principal só seja refeita quando um vértice
+     * é fixado.
      *
      * @param satellites Número de satélites.
      * @param lat Latitude.
@@ -123,19 +170,62 @@ public class MainActivity extends AppCompatActivity {
      * @param vel Velocidade.
      */
     private void updateUI(int satellites, double lat, double longi, float vel) {
-        runOnUiThread(() -> {
-            satelite.setText("Satelites: " + satellites);
-            latitude.setText("Latitude: " + lat);
-            longitude.setText("Longitude: " + longi);
-            speed.setText("Speed: " + String.format("%.2f", vel));
-
-            if (mMap != null) {
-                LatLng currentLatLng = new LatLng(lat, longi);
-                mMap.clear(); // Limpa marcadores anteriores
-                mMap.addMarker(new MarkerOptions().position(currentLatLng).title("Current Location"));
+        synchronized (routePoints) {
+            int result = routeSimplifier.add(lat, longi);
+            if (result == RouteSimplifier.APPENDED) {
+                if (routeEnd != null) {
+                    routePoints.add(routeEnd); // O vértice provisório anterior foi fixado
+                    if (routePoints.size() > MAX_ROUTE_POINTS) {
+                        routePoints.remove(0);
+                    }
+                    routeChanged = true;
+                }
+                routeEnd = new LatLng(lat, longi);
+                routeEndChanged = true;
+            } else if (result == RouteSimplifier.REPLACED_LAST) {
+                routeEnd = new LatLng(lat, longi);
+                routeEndChanged = true;
+            }
+        }
+        renderCoalescer.submit(lat, longi, vel, satellites);
+    }
+
+    /**
+     * Desenha um quadro com a posição mais recente, reutilizando o marcador e a linha da rota.
+     */
+    private void renderFrame(double lat, double longi, float vel, int satellites) {
+        satelite.setText("Satelites: " + satellites);
+        latitude.setText("Latitude: " + lat);
+        longitude.setText("Longitude: " + longi);
+        speed.setText("Speed: " + String.format(Locale.getDefault(), "%.2f", vel));
+
+        if (mMap != null) {
+            LatLng currentLatLng = new LatLng(lat, longi);
+            if (marker == null) {
+                marker = mMap.addMarker(new MarkerOptions().position(currentLatLng).title("Current Location"));
+                routeLine = mMap.addPolyline(new PolylineOptions().width(8));
+                routeTail = mMap.addPolyline(new PolylineOptions().width(8));
                 mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(currentLatLng, 15)); // Ajusta o nível de zoom conforme necessário
+            } else {
+                marker.setPosition(currentLatLng);
+                mMap.moveCamera(CameraUpdateFactory.newLatLng(currentLatLng)); // Mantém o zoom escolhido pelo usuário
             }
-        });
+            synchronized (routePoints) {
+                if (routeChanged && routeLine != null) {
+                    routeLine.setPoints(routePoints);
+                    routeChanged = false;
+                }
+                if (routeEndChanged && routeTail != null) {
+                    List<LatLng> tail = new ArrayList<>(2);
+                    if (!routePoints.isEmpty()) {
+                        tail.add(routePoints.get(routePoints.size() - 1));
+                    }
+                    tail.add(routeEnd);
+                    routeTail.setPoints(tail);
+                    routeEndChanged = false;
+                }
+            }
+        }
     }
 
     /**
@@ -148,23 +238,65 @@ public class MainActivity extends AppCompatActivity {
             Log.d("LocationService", "Altitude: " + altitude);
             Log.d("LocationService", "Speed: " + speed);
             Log.d("LocationService", "Satellites: " + satellites);*/
+            if (inertialSource != null) {
+                inertialSource.setReferenceLocation(latitude, longitude, altitude);
+            }
             updateUI(satellites, latitude, longitude, speed);
         });
+        loadGeofences();
+        locationService.setTripAggregator(new TripAggregator(summary -> galileoskySimulator.addTripSummary(summary)));
+        startDeadReckoning();
+        locationService.setBatchedDelivery(LOCATION_MAX_WAIT_MS);
         locationService.start();
         startGalileoskySimulator();
     }
 
     /**
-     * Inicia o simulador Galileosky em uma nova thread.
+     * Inicia a navegação estimada com os sensores inerciais, usada entre fixes GNSS.
+     */
+    private void startDeadReckoning() {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        inertialSource = new AndroidInertialSensorSource(this);
+        inertialSource.setListener(estimator);
+        inertialSource.start();
+        locationService.setDeadReckoning(estimator);
+        galileoskySimulator.setDeadReckoning(estimator);
+    }
+
+    /**
+     * Carrega as cercas do arquivo local, se existir, e encaminha os eventos como registros urgentes.
+     */
+    private void loadGeofences() {
+        File file = new File(getFilesDir(), GEOFENCE_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            geofenceEngine = new GeofenceEngine(GeofenceFileReader.read(file),
+                    (eventType, fence, timeMillis, lat, longi) ->
+                            galileoskySimulator.addGeofenceEvent(eventType, fence.getId(), timeMillis, lat, longi));
+            locationService.setGeofenceEngine(geofenceEngine);
+            AppLog.d(TAG, "Cercas carregadas: {}", geofenceEngine.getFenceCount());
+        } catch (IOException e) {
+            AppLog.e(TAG, "Erro ao carregar cercas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Inicia o simulador Galileosky. A conexão inicial é feita no agendador do simulador.
      */
     private void startGalileoskySimulator() {
-        new Thread(() -> {
-            if (galileoskySimulator.sendCoordinates("357138166785014", "12565696908", "ACC1D23")) {
-                Log.d("MainActivity", "Conexão inicial estabelecida.");
-            } else {
-                Log.d("MainActivity", "Falha ao estabelecer a conexão inicial.");
-            }
-        }).start();
+        galileoskySimulator.setTrackStore(new TrackStore(new File(getFilesDir(), TRACK_DIR),
+                TRACK_RETENTION_MS, TRACK_MAX_BYTES));
+        galileoskySimulator.setTransmissionWindow(new TransmissionWindow(TRANSMISSION_WINDOW_MS, RADIO_TAIL_MS));
+        galileoskySimulator.setDataUsageStore(new SharedPreferencesDataUsageStore(
+                getSharedPreferences(DATA_USAGE_PREFERENCES, MODE_PRIVATE)));
+        galileoskySimulator.setDataBudget(DataBudgetController.forMonthlyCap(MONTHLY_DATA_CAP_BYTES));
+        if (WIRE_CAPTURE_ENABLED) {
+            galileoskySimulator.enableWireCapture(new File(getFilesDir(), WIRE_CAPTURE_DIR));
+        }
+        galileoskySimulator.sendCoordinates("357138166785014", "12565696908", "ACC1D23");
+        AppLog.d(TAG, "Conexão inicial agendada.");
     }
 
     /**
@@ -172,6 +304,9 @@ public class MainActivity extends AppCompatActivity {
      */
     private void stopLocationService() {
         locationService.stopLocationUpdates();
+        if (inertialSource != null) {
+            inertialSource.stop();
+        }
         // Aqui você pode adicionar lógica adicional para parar o GalileoskySimulator se necessário
     }
 
@@ -0,0 +1,37 @@
+package com.automacao.rstremento2;
+
+/**
+ * Decide o estado de movimento do veículo a partir da velocidade filtrada e do rumo.
+ * A lógica não depende do Android, podendo ser exercitada na JVM com trajetos gravados.
+ */
+public interface MotionStateController {
+
+    /**
+     * Estados de movimento usados para ajustar a taxa de solicitação do GNSS,
+     * em ordem crescente de taxa de amostragem.
+     */
+    enum MotionState {
+        STATIONARY,
+        SLOW,
+        CRUISING,
+        TURNING
+    }
+
+    /**
+     * Processa uma nova amostra de movimento.
+     *
+     * @param timestampMillis Instante da amostra em milissegundos.
+     * @param speedKmh        Velocidade filtrada em km/h.
+     * @param bearingDegrees  Rumo em graus (0-360).
+     * @param hasBearing      Indica se o rumo é válido para esta amostra.
+     * @return O estado de movimento após processar a amostra.
+     */
+    MotionState update(long timestampMillis, float speedKmh, float bearingDegrees, boolean hasBearing);
+
+    /**
+     * Retorna o estado de movimento atual.
+     *
+     * @return O estado atual.
+     */
+    MotionState getState();
+}
@@ -0,0 +1,360 @@
+package com.automacao.rstremento2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Armazena registros em poucas lâminas (slabs) grandes em vez de um byte[] por registro.
+ * Cada registro é gravado como um quadro com prefixo de comprimento (2 bytes) e é
+ * identificado por um handle primitivo (número da lâmina e posição). O consumo é FIFO
+ * e as lâminas totalmente consumidas são recicladas.
+ * <p>
+ * O número de lâminas ativas é limitado. Com a arena cheia, {@link #append} recusa o
+ * registro novo e o conta em {@link #getDroppedCount()}: os registros antigos podem estar
+ * em envio, com handles em uso, e não podem ser descartados por baixo de quem os lê.
+ */
+public class PacketArena {
+    static final int LENGTH_PREFIX = 2; // Comprimento do registro, big-endian
+    private static final int DEFAULT_SLAB_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_SLABS = 256; // 16 MB com lâminas de 64 KB
+    private static final int MAX_FREE_SLABS = 2;
+
+    /** Maior lâmina aceita; uma lâmina ociosa continua retida, então não convém que seja enorme. */
+    public static final int MAX_SLAB_SIZE = 16 * 1024 * 1024;
+
+    /** Handle que indica a ausência de registros. */
+    public static final long NO_HANDLE = -1;
+
+    private final int slabSize;
+    private final boolean direct;
+    private final int maxSlabs;
+    private final ArrayDeque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+
+    // Lâminas ativas em um anel; headSlabId é o número da lâmina mais antiga
+    private ByteBuffer[] slabs = new ByteBuffer[4];
+    private int[] slabEnds = new int[4]; // Fim dos quadros gravados em cada lâmina já fechada
+    private int slabStart;
+    private int slabCount;
+    private long headSlabId;
+
+    private int headOffset;  // Posição do próximo quadro a consumir na lâmina mais antiga
+    private int tailOffset;  // Posição livre na lâmina mais recente
+    private int recordCount;
+    private long recordBytes;
+    private long droppedCount;
+
+    /**
+     * Construtor com lâminas de 64 KB no heap, até 16 MB de registros.
+     */
+    public PacketArena() {
+        this(DEFAULT_SLAB_SIZE, false, DEFAULT_MAX_SLABS);
+    }
+
+    /**
+     * Construtor da arena com o limite padrão de lâminas.
+     *
+     * @param slabSize Tamanho de cada lâmina em bytes.
+     * @param direct   true para usar buffers diretos, fora do heap Java.
+     */
+    public PacketArena(int slabSize, boolean direct) {
+        this(slabSize, direct, DEFAULT_MAX_SLABS);
+    }
+
+    /**
+     * Construtor da arena.
+     *
+     * @param slabSize Tamanho de cada lâmina em bytes, de 3 a {@link #MAX_SLAB_SIZE}.
+     * @param direct   true para usar buffers diretos, fora do heap Java.
+     * @param maxSlabs Lâminas ativas no máximo; a memória retida fica limitada a
+     *                 {@code (maxSlabs + 2) * slabSize}.
+     */
+    public PacketArena(int slabSize, boolean direct, int maxSlabs) {
+        if (slabSize <= LENGTH_PREFIX || slabSize > MAX_SLAB_SIZE) {
+            throw new IllegalArgumentException("Tamanho de lâmina inválido: " + slabSize);
+        }
+        if (maxSlabs < 1) {
+            throw new IllegalArgumentException("Limite de lâminas inválido: " + maxSlabs);
+        }
+        this.slabSize = slabSize;
+        this.direct = direct;
+        this.maxSlabs = maxSlabs;
+    }
+
+    /**
+     * Adiciona um registro ao fim da arena.
+     *
+     * @param record Bytes do registro.
+     * @return O handle do registro, ou {@link #NO_HANDLE} se a arena estiver cheia.
+     */
+    public synchronized long append(byte[] record) {
+        int length = record.length;
+        if (length == 0 || length > 0xFFFF || length + LENGTH_PREFIX > slabSize) {
+            throw new IllegalArgumentException("Tamanho de registro inválido: " + length);
+        }
+        if (slabCount == 0 || tailOffset + LENGTH_PREFIX + length > slabSize) {
+            if (slabCount == maxSlabs && !reclaimExhaustedHeadSlab()) {
+                droppedCount++;
+                return NO_HANDLE;
+            }
+            addSlab();
+        }
+        ByteBuffer slab = slabAt(slabCount - 1);
+        int offset = tailOffset;
+        slab.putShort(offset, (short) length);
+        for (int i = 0; i < length; i++) {
+            slab.put(offset + LENGTH_PREFIX + i, record[i]);
+        }
+        tailOffset = offset + LENGTH_PREFIX + length;
+        recordCount++;
+        recordBytes += length;
+        return handle(headSlabId + slabCount - 1, offset);
+    }
+
+    /**
+     * Retorna o handle do registro mais antigo.
+     *
+     * @return O handle, ou {@link #NO_HANDLE} se a arena estiver vazia.
+     */
+    public synchronized long peekHandle() {
+        if (recordCount == 0) {
+            return NO_HANDLE;
+        }
+        skipExhaustedHeadSlab();
+        return handle(headSlabId, headOffset);
+    }
+
+    /**
+     * Retorna o comprimento de um registro.
+     */
+    public synchronized int length(long handle) {
+        return slabFor(handle).getShort(offsetOf(handle)) & 0xFFFF;
+    }
+
+    /**
+     * Copia os bytes de um registro para um array novo.
+     */
+    public synchronized byte[] copy(long handle) {
+        ByteBuffer slab = slabFor(handle);
+        int offset = offsetOf(handle);
+        byte[] record = new byte[slab.getShort(offset) & 0xFFFF];
+        for (int i = 0; i < record.length; i++) {
+            record[i] = slab.get(offset + LENGTH_PREFIX + i);
+        }
+        return record;
+    }
+
+    /**
+     * Copia parte de um registro para um array existente.
+     *
+     * @param handle      Handle do registro.
+     * @param from        Posição inicial dentro do registro.
+     * @param length      Quantidade de bytes.
+     * @param dest        Array de destino.
+     * @param destOffset  Posição no destino.
+     */
+    public synchronized void copyRange(long handle, int from, int length, byte[] dest, int destOffset) {
+        ByteBuffer view = slabFor(handle).duplicate();
+        view.position(offsetOf(handle) + LENGTH_PREFIX + from);
+        view.get(dest, destOffset, length);
+    }
+
+    /**
+     * Copia em bloco os quadros (prefixo de comprimento e registro) de registros
+     * consecutivos, com uma única aquisição da trava. Quem monta pacotes em paralelo
+     * copia para um buffer próprio e percorre os registros fora da trava.
+     *
+     * @param first Handle do primeiro registro.
+     * @param count Número de registros.
+     * @param dest  Destino, com espaço para os registros e {@link #LENGTH_PREFIX} bytes por registro.
+     * @return Quantidade de bytes copiados.
+     */
+    public synchronized int copyFrames(long first, int count, byte[] dest) {
+        long handle = first;
+        int copied = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            long slabId = handle >>> 32;
+            ByteBuffer slab = slabFor(handle);
+            boolean tail = slabId == headSlabId + slabCount - 1;
+            int slabEnd = tail ? tailOffset : slabEnds[(slabStart + (int) (slabId - headSlabId)) % slabs.length];
+            int start = offsetOf(handle);
+            int end = start;
+            while (remaining > 0 && end < slabEnd) {
+                end += LENGTH_PREFIX + (slab.getShort(end) & 0xFFFF);
+                remaining--;
+            }
+            if (remaining > 0 && tail) {
+                throw new IllegalArgumentException("Registros insuficientes a partir de " + first);
+            }
+            ByteBuffer view = slab.duplicate();
+            view.position(start);
+            view.get(dest, copied, end - start);
+            copied += end - start;
+            handle = handle(slabId + 1, 0);
+        }
+        return copied;
+    }
+
+    /**
+     * Retorna o handle do registro seguinte, em ordem FIFO.
+     *
+     * @param handle Handle de um registro armazenado.
+     * @return O handle seguinte, ou {@link #NO_HANDLE} se for o último.
+     */
+    public synchronized long nextHandle(long handle) {
+        long slabId = handle >>> 32;
+        int offset = offsetOf(handle);
+        int next = offset + LENGTH_PREFIX + (slabFor(handle).getShort(offset) & 0xFFFF);
+        long tailSlabId = headSlabId + slabCount - 1;
+        if (slabId == tailSlabId) {
+            return next >= tailOffset ? NO_HANDLE : handle(slabId, next);
+        }
+        int end = slabEnds[(slabStart + (int) (slabId - headSlabId)) % slabs.length];
+        return next < end ? handle(slabId, next) : handle(slabId + 1, 0);
+    }
+
+    /**
+     * Remove o registro mais antigo, reciclando a lâmina quando ela é totalmente consumida.
+     */
+    public synchronized void removeHead() {
+        if (recordCount == 0) {
+            return;
+        }
+        skipExhaustedHeadSlab();
+        ByteBuffer slab = slabAt(0);
+        int length = slab.getShort(headOffset) & 0xFFFF;
+        headOffset += LENGTH_PREFIX + length;
+        recordCount--;
+        recordBytes -= length;
+        if (recordCount == 0) {
+            // Arena vazia: mantém apenas a lâmina atual, reiniciada
+            while (slabCount > 1) {
+                releaseHeadSlab();
+            }
+            headOffset = 0;
+            tailOffset = 0;
+        }
+    }
+
+    /**
+     * Devolve a memória retida sem registros: as lâminas livres e, com a arena vazia,
+     * também a lâmina atual. A próxima inclusão aloca uma lâmina nova.
+     */
+    public synchronized void trim() {
+        if (recordCount == 0) {
+            while (slabCount > 0) {
+                releaseHeadSlab();
+            }
+            headOffset = 0;
+            tailOffset = 0;
+        }
+        freeSlabs.clear();
+    }
+
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    /**
+     * Bytes ocupados pelos registros armazenados (sem o prefixo de comprimento).
+     */
+    public synchronized long getRecordBytes() {
+        return recordBytes;
+    }
+
+    /**
+     * Registros recusados por {@link #append} com a arena cheia.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Memória retida pelas lâminas ativas e livres.
+     */
+    public synchronized long getRetainedBytes() {
+        return (long) (slabCount + freeSlabs.size()) * slabSize;
+    }
+
+    /**
+     * Avança para a próxima lâmina quando todos os quadros da lâmina mais antiga foram consumidos.
+     */
+    private void skipExhaustedHeadSlab() {
+        while (slabCount > 1 && headOffset >= slabEnds[slabStart]) {
+            releaseHeadSlab();
+            headOffset = 0;
+        }
+    }
+
+    /**
+     * Libera a lâmina mais antiga se todos os seus quadros já foram consumidos.
+     *
+     * @return true se uma lâmina foi liberada.
+     */
+    private boolean reclaimExhaustedHeadSlab() {
+        if (slabCount > 1 && headOffset >= slabEnds[slabStart]) {
+            skipExhaustedHeadSlab();
+            return true;
+        }
+        return false;
+    }
+
+    private void addSlab() {
+        ByteBuffer slab = freeSlabs.poll();
+        if (slab == null) {
+            slab = direct ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer.allocate(slabSize);
+        }
+        if (slabCount > 0) {
+            slabEnds[(slabStart + slabCount - 1) % slabs.length] = tailOffset;
+        }
+        if (slabCount == slabs.length) {
+            ByteBuffer[] grown = new ByteBuffer[slabs.length * 2];
+            int[] grownEnds = new int[slabs.length * 2];
+            for (int i = 0; i < slabCount; i++) {
+                grown[i] = slabAt(i);
+                grownEnds[i] = slabEnds[(slabStart + i) % slabs.length];
+            }
+            slabs = grown;
+            slabEnds = grownEnds;
+            slabStart = 0;
+        }
+        slabs[(slabStart + slabCount) % slabs.length] = slab;
+        slabCount++;
+        tailOffset = 0;
+    }
+
+    private void releaseHeadSlab() {
+        ByteBuffer slab = slabs[slabStart];
+        slabs[slabStart] = null;
+        slabStart = (slabStart + 1) % slabs.length;
+        slabCount--;
+        headSlabId++;
+        if (freeSlabs.size() < MAX_FREE_SLABS) {
+            freeSlabs.add(slab);
+        }
+    }
+
+    private ByteBuffer slabAt(int index) {
+        return slabs[(slabStart + index) % slabs.length];
+    }
+
+    private ByteBuffer slabFor(long handle) {
+        long index = (handle >>> 32) - headSlabId;
+        if (index < 0 || index >= slabCount) {
+            throw new IllegalArgumentException("Handle inválido: " + handle);
+        }
+        return slabAt((int) index);
+    }
+
+    private static long handle(long slabId, int offset) {
+        return (slabId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int offsetOf(long handle) {
+        return (int) handle;
+    }
+}
@@ -0,0 +1,28 @@
+package com.automacao.rstremento2;
+
+/**
+ * Pacote montado a partir de um ou mais registros do {@link PacketBuffer}.
+ */
+public final class PacketBatch {
+    private final byte[] packet;
+    private final int recordCount;
+    private final boolean urgent;
+
+    PacketBatch(byte[] packet, int recordCount, boolean urgent) {
+        this.packet = packet;
+        this.recordCount = recordCount;
+        this.urgent = urgent;
+    }
+
+    public byte[] getPacket() {
+        return packet;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public boolean isUrgent() {
+        return urgent;
+    }
+}
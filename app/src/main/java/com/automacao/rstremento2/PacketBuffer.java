@@ -0,0 +1,234 @@
+package com.automacao.rstremento2;
+
+import java.util.ArrayDeque;
+
+/**
+ * Buffer de registros aguardando envio. Os registros comuns ficam em uma
+ * {@link PacketArena}; os urgentes, raros, ficam em uma fila própria e são
+ * entregues antes dos demais.
+ */
+public class PacketBuffer {
+    private final PacketArena arena;
+    static final int RECORD_OVERHEAD = 5; // Header, comprimento e CRC de cada registro
+    private final ArrayDeque<byte[]> urgent = new ArrayDeque<>();
+    // Cópia dos quadros da arena, uma por thread: a montagem em paralelo não disputa a trava da arena
+    private static final ThreadLocal<byte[]> FRAME_SCRATCH = new ThreadLocal<>();
+    private static final int FRAME_SCRATCH_BYTES = 8 * 1024;
+
+    public PacketBuffer() {
+        this(new PacketArena());
+    }
+
+    public PacketBuffer(PacketArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Adiciona um registro comum ao fim do buffer.
+     *
+     * @return false se a arena estiver cheia e o registro foi recusado.
+     */
+    public boolean add(byte[] packet) {
+        return arena.append(packet) != PacketArena.NO_HANDLE;
+    }
+
+    /**
+     * Registros comuns recusados com a arena cheia.
+     */
+    public long getDroppedCount() {
+        return arena.getDroppedCount();
+    }
+
+    /**
+     * Adiciona um registro urgente, entregue antes dos registros comuns.
+     */
+    public synchronized void addUrgent(byte[] packet) {
+        urgent.addLast(packet);
+    }
+
+    /**
+     * Retorna o próximo registro a enviar, sem removê-lo.
+     *
+     * @return Os bytes do registro, ou null se o buffer estiver vazio.
+     */
+    public byte[] peek() {
+        synchronized (this) {
+            byte[] packet = urgent.peekFirst();
+            if (packet != null) {
+                return packet;
+            }
+        }
+        long handle = arena.peekHandle();
+        return handle == PacketArena.NO_HANDLE ? null : arena.copy(handle);
+    }
+
+    /**
+     * Retorna o comprimento do próximo registro a enviar, sem copiá-lo.
+     *
+     * @return O comprimento em bytes, ou -1 se o buffer estiver vazio.
+     */
+    public int peekLength() {
+        synchronized (this) {
+            byte[] packet = urgent.peekFirst();
+            if (packet != null) {
+                return packet.length;
+            }
+        }
+        long handle = arena.peekHandle();
+        return handle == PacketArena.NO_HANDLE ? -1 : arena.length(handle);
+    }
+
+    /**
+     * Monta um pacote com os próximos registros, sem removê-los. Um registro urgente
+     * é sempre enviado sozinho; os comuns são agrupados em um único pacote Galileosky
+     * (header, comprimento, tags de todos os registros e CRC).
+     *
+     * @param maxRecords Número máximo de registros no pacote.
+     * @param maxBytes   Tamanho máximo do corpo do pacote; ao menos um registro é incluído.
+     * @return O lote, ou null se o buffer estiver vazio.
+     */
+    public PacketBatch peekBatch(int maxRecords, int maxBytes) {
+        synchronized (this) {
+            byte[] packet = urgent.peekFirst();
+            if (packet != null) {
+                return new PacketBatch(packet, 1, true);
+            }
+        }
+        long first = arena.peekHandle();
+        if (first == PacketArena.NO_HANDLE) {
+            return null;
+        }
+        int count = 1;
+        int bodyBytes = bodyLength(first);
+        long handle = first;
+        while (count < maxRecords) {
+            long next = arena.nextHandle(handle);
+            if (next == PacketArena.NO_HANDLE) {
+                break;
+            }
+            int nextBody = bodyLength(next);
+            if (bodyBytes + nextBody > maxBytes) {
+                break;
+            }
+            bodyBytes += nextBody;
+            handle = next;
+            count++;
+        }
+        if (count == 1) {
+            return new PacketBatch(arena.copy(first), 1, false);
+        }
+        byte[] packet = assembleFrame(first, count, bodyBytes);
+        sealFrame(packet);
+        return new PacketBatch(packet, count, false);
+    }
+
+    /**
+     * Copia os corpos de registros consecutivos para um novo pacote com header e comprimento.
+     * Os quadros saem da arena em uma única cópia para um buffer da thread; o restante da
+     * montagem não usa a trava da arena. O CRC fica zerado e é calculado em
+     * {@link #sealFrame(byte[])}.
+     *
+     * @param first     Handle do primeiro registro.
+     * @param count     Número de registros.
+     * @param bodyBytes Soma dos corpos dos registros.
+     * @return O pacote sem CRC.
+     */
+    byte[] assembleFrame(long first, int count, int bodyBytes) {
+        byte[] packet = new byte[bodyBytes + RECORD_OVERHEAD];
+        packet[0] = 0x01;
+        packet[1] = (byte) bodyBytes;
+        packet[2] = (byte) (bodyBytes >> 8);
+        int frameBytes = bodyBytes + count * (RECORD_OVERHEAD + PacketArena.LENGTH_PREFIX);
+        byte[] frames = FRAME_SCRATCH.get();
+        if (frames == null || frames.length < frameBytes) {
+            frames = new byte[Math.max(frameBytes, FRAME_SCRATCH_BYTES)];
+            FRAME_SCRATCH.set(frames);
+        }
+        arena.copyFrames(first, count, frames);
+
+        int position = 3;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int length = (frames[offset] & 0xFF) << 8 | (frames[offset + 1] & 0xFF);
+            int body = length - RECORD_OVERHEAD;
+            System.arraycopy(frames, offset + PacketArena.LENGTH_PREFIX + 3, packet, position, body);
+            position += body;
+            offset += PacketArena.LENGTH_PREFIX + length;
+        }
+        return packet;
+    }
+
+    /**
+     * Grava o CRC nos dois últimos bytes de um pacote montado por {@link #assembleFrame(long, int, int)}.
+     */
+    static void sealFrame(byte[] packet) {
+        int end = packet.length - 2;
+        short crc = Crc16Modbus.calculate(packet, 0, end);
+        packet[end] = (byte) crc;
+        packet[end + 1] = (byte) (crc >> 8);
+    }
+
+    /**
+     * Corpo de um registro comum, sem header, comprimento e CRC.
+     */
+    int bodyLength(long handle) {
+        return arena.length(handle) - RECORD_OVERHEAD;
+    }
+
+    /**
+     * Remove os registros comuns mais antigos após a confirmação do envio.
+     */
+    void removeRecords(int count) {
+        for (int i = 0; i < count; i++) {
+            arena.removeHead();
+        }
+    }
+
+    synchronized boolean hasUrgent() {
+        return !urgent.isEmpty();
+    }
+
+    /**
+     * Remove os registros de um lote obtido por {@link #peekBatch(int, int)} após a confirmação.
+     */
+    public void remove(PacketBatch batch) {
+        if (batch.isUrgent()) {
+            remove(batch.getPacket());
+            return;
+        }
+        removeRecords(batch.getRecordCount());
+    }
+
+    /**
+     * Remove o registro obtido por {@link #peek()} após a confirmação do envio.
+     *
+     * @param packet O registro retornado por {@link #peek()}.
+     */
+    public void remove(byte[] packet) {
+        synchronized (this) {
+            if (urgent.removeFirstOccurrence(packet)) {
+                return;
+            }
+        }
+        arena.removeHead();
+    }
+
+    public synchronized int size() {
+        return urgent.size() + arena.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return urgent.isEmpty() && arena.isEmpty();
+    }
+
+    /**
+     * Devolve a memória da arena enquanto não houver registros; veja {@link PacketArena#trim()}.
+     */
+    public void trim() {
+        arena.trim();
+    }
+
+    public PacketArena getArena() {
+        return arena;
+    }
+}
@@ -0,0 +1,419 @@
+package com.automacao.rstremento2;
+
+import android.os.SystemClock;
+
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Tarefa periódica do laço de trabalho que amostra a localização e salva um registro.
+ */
+public class PacketSavingTask implements Runnable {
+    private static final String TAG = "PacketSavingTask";
+    private static final long SAVE_INTERVAL_MS = 10000; // Um registro a cada 10 segundos
+    private static final int LOW_BANDWIDTH_SAMPLE_DIVIDER = 6; // Um ponto por minuto no modo de baixa banda
+    private static final int BUDGET_SAMPLE_DIVIDER = 3; // Um ponto a cada 30 segundos com a franquia apertada
+    private static final long FIX_POLL_INTERVAL_MS = 250; // Verificação do primeiro fix
+    private static final long STALE_FIX_NANOS = 5_000_000_000L; // Fix mais antigo que isso usa a posição estimada
+    private static final int FIX_BATCH_SIZE = 64; // Fixes copiados do anel por leitura
+    private final LocationSource locationService;
+    private final GalileoskySimulator simulator;
+    private TaskScheduler scheduler;
+    private TaskScheduler.Cancellable handle;
+    private volatile boolean lowBandwidthMode = false;
+    private int sampleCounter = 0;
+    private volatile int budgetLevel = DataBudgetController.LEVEL_NORMAL;
+    private final FixRing.Batch fixBatch = new FixRing.Batch(FIX_BATCH_SIZE);
+    private long fixCursor;          // Próximo fix a ler do anel
+    private long lastRecordMillis = Long.MIN_VALUE;
+    private volatile DeadReckoningEstimator deadReckoning;
+    private volatile TrackStore trackStore;
+    private final GnssQuality gnssQuality; // null se a fonte não tem status de GNSS
+
+    // Layouts compilados uma única vez, com IMEI, CPF e placa já gravados
+    private final RecordLayout pointLayout;
+    private final RecordLayout eventLayout;
+    private final RecordLayout tripLayout;
+    private final RecordLayout estimatedLayout;
+    private final RecordLayout compactLayout;
+    private final long[] pointValues;
+    private final long[] estimatedValues;
+    private final long[] compactValues;
+
+    /**
+     * Construtor que inicializa a tarefa de salvamento de pacotes.
+     *
+     * @param simulator       Instância do simulador Galileosky.
+     * @param locationService Fonte de localização para obter dados de GPS.
+     * @param imei            IMEI do dispositivo.
+     * @param cpf             CPF a ser convertido e adicionado aos pacotes.
+     * @param placa           Placa do veículo.
+     */
+    public PacketSavingTask(GalileoskySimulator simulator, LocationSource locationService, String imei, String cpf, String placa) {
+        this.locationService = locationService;
+        this.simulator = simulator;
+
+        byte[] imeiBytes = imei.getBytes();
+        byte[] cpfBytes;
+        try {
+            cpfBytes = CPFConverter.compressCPF(cpf);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        int plate = CarPlateEncoder.encode(placa);
+        this.gnssQuality = locationService.getGnssQuality();
+
+        // Com status de GNSS, o registro de posição leva também a tag de HDOP
+        RecordSchema pointSchema = RecordSchema.pointSchema(imeiBytes, cpfBytes, plate);
+        if (gnssQuality != null) {
+            pointSchema.field(TagRegistry.TAG_HDOP);
+        }
+        this.pointLayout = pointSchema.compile();
+        this.eventLayout = RecordSchema.pointSchema(imeiBytes, cpfBytes, plate).field(TagRegistry.TAG_USER_0).compile();
+        this.tripLayout = new RecordSchema()
+                .constant(TagRegistry.TAG_IMEI, imeiBytes)
+                .field(TagRegistry.TAG_TIME)
+                .field(TagRegistry.TAG_COORDINATES)
+                .field(TagRegistry.TAG_USER_1)
+                .field(TagRegistry.TAG_USER_2)
+                .field(TagRegistry.TAG_USER_3)
+                .field(TagRegistry.TAG_USER_4)
+                .field(TagRegistry.TAG_USER_5)
+                .compile();
+        this.estimatedLayout = RecordSchema.pointSchema(imeiBytes, cpfBytes, plate).field(TagRegistry.TAG_USER_6).compile();
+        this.pointValues = new long[pointLayout.getSlotCount()];
+        this.estimatedValues = new long[estimatedLayout.getSlotCount()];
+        // Registro compacto da franquia apertada: CPF, placa e altitude já foram enviados antes
+        this.compactLayout = new RecordSchema()
+                .constant(TagRegistry.TAG_IMEI, imeiBytes)
+                .field(TagRegistry.TAG_TIME)
+                .field(TagRegistry.TAG_COORDINATES)
+                .field(TagRegistry.TAG_SPEED)
+                .compile();
+        this.compactValues = new long[compactLayout.getSlotCount()];
+    }
+
+    /**
+     * Agenda a tarefa no laço de trabalho. O primeiro registro é salvo assim que a fonte
+     * entregar o primeiro fix, sem depender da conexão com o servidor; os seguintes, a
+     * cada 10 segundos.
+     *
+     * @param scheduler Agendador do aplicativo.
+     */
+    public synchronized void start(TaskScheduler scheduler) {
+        if (handle == null) {
+            this.scheduler = scheduler;
+            handle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(), this::awaitFirstFix, 0, FIX_POLL_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Verifica se já há fix; quando houver, troca a verificação pela amostragem periódica.
+     */
+    private synchronized void awaitFirstFix() {
+        if (handle == null || !locationService.hasFix()) {
+            return;
+        }
+        simulator.getStartupMetrics().markFirstFix();
+        handle.cancel();
+        handle = scheduler.scheduleWithFixedDelay(scheduler.workLoop(), this, 0, SAVE_INTERVAL_MS);
+    }
+
+    /**
+     * Salva os fixes recebidos desde a última execução. Cada fix vai para o histórico local
+     * e, no máximo a cada 10 segundos do tempo dos fixes, vira um registro com o instante do
+     * próprio fix. Sem fixes novos, só uma posição estimada é registrada; se a fonte não
+     * tiver anel de fixes, a posição atual é amostrada.
+     */
+    @Override
+    public void run() {
+        TrackStore store = trackStore;
+        if (store != null) {
+            store.flushIfDue(System.currentTimeMillis()); // Grava o histórico no laço de trabalho
+        }
+        if (!locationService.hasFix()) {
+            return;
+        }
+        FixRing ring = locationService.getFixRing();
+        if (ring != null && saveNewFixes(ring) > 0) {
+            return;
+        }
+        int satellites = locationService.getSatellitesConnected();
+        double latitude = locationService.getLatitude();
+        double longitude = locationService.getLongitude();
+        double altitude = locationService.getAltitude();
+        float speed = locationService.getSpeed();
+        long timeMillis = System.currentTimeMillis();
+
+        DeadReckoningEstimator estimator = deadReckoning;
+        boolean estimated = estimator != null && estimator.estimate(SystemClock.elapsedRealtimeNanos())
+                && estimator.getFixAgeNanos() > STALE_FIX_NANOS;
+        if (estimated) {
+            // Sem fix recente: usa a posição estimada, marcada com a tag 0xE8
+            latitude = estimator.getEstimatedLatitude();
+            longitude = estimator.getEstimatedLongitude();
+            speed = estimator.getEstimatedSpeedMps() * LocationSource.SPEED_SCALE;
+        } else if (ring != null) {
+            return; // A última posição já foi salva a partir do anel
+        }
+
+        // O histórico local recebe todas as amostras medidas, inclusive as não transmitidas.
+        // Posições estimadas ficam fora: o formato do histórico não as distingue de fixes reais
+        if (store != null && !estimated) {
+            store.append(timeMillis, latitude, longitude, altitude, toKmh(speed), satellites);
+        }
+
+        lastRecordMillis = timeMillis;
+        if (skipSample()) {
+            return; // Pontos esparsos: os resumos de viagem cobrem o restante
+        }
+
+        if (estimated) {
+            AppLog.d(TAG, "Posição estimada - Lat: {}, Long: {}, Vel: {}", latitude, longitude, speed);
+            simulator.addDataPacket(buildEstimatedPacket(timeMillis, latitude, longitude, altitude, speed, satellites,
+                    estimator.getFixAgeNanos() / 1_000_000));
+            return;
+        }
+
+        AppLog.d(TAG, "Localização atualizada - Lat: {}, Long: {}, Alt: {}, Vel: {}, Sate: {}",
+                latitude, longitude, altitude, speed, satellites);
+        byte[] packet = buildPacket(timeMillis, latitude, longitude, altitude, speed, satellites);
+        simulator.addDataPacket(packet);
+    }
+
+    /**
+     * Lê em lote os fixes novos do anel e salva cada um.
+     *
+     * @return Número de fixes novos.
+     */
+    private int saveNewFixes(FixRing ring) {
+        int total = 0;
+        int count;
+        while ((count = ring.read(fixCursor, fixBatch)) > 0) {
+            if (fixBatch.getSkipped() > 0) {
+                AppLog.w(TAG, "Fixes sobrescritos antes da leitura: {}", fixBatch.getSkipped());
+            }
+            int satellites = locationService.getSatellitesConnected();
+            for (int i = 0; i < count; i++) {
+                saveFix(fixBatch.times[i], fixBatch.latitudes[i], fixBatch.longitudes[i],
+                        fixBatch.altitudes[i], fixBatch.speeds[i], satellites);
+            }
+            fixCursor = fixBatch.getNextSequence();
+            total += count;
+        }
+        return total;
+    }
+
+    private void saveFix(long timeMillis, double latitude, double longitude, double altitude, float speed,
+                         int satellites) {
+        TrackStore store = trackStore;
+        if (store != null) {
+            store.append(timeMillis, latitude, longitude, altitude, toKmh(speed), satellites);
+        }
+        if (lastRecordMillis != Long.MIN_VALUE && timeMillis < lastRecordMillis + SAVE_INTERVAL_MS) {
+            return; // Já há um registro recente; fixes mais antigos ficam só no histórico
+        }
+        lastRecordMillis = timeMillis;
+        if (skipSample()) {
+            return;
+        }
+        simulator.addDataPacket(buildPacket(timeMillis, latitude, longitude, altitude, speed, satellites));
+    }
+
+    /**
+     * Indica se a amostra atual deve ficar só no histórico, conforme o modo de baixa banda
+     * e o nível da franquia de dados.
+     */
+    private boolean skipSample() {
+        int level = budgetLevel;
+        if (level >= DataBudgetController.LEVEL_SUMMARY_ONLY) {
+            return true;
+        }
+        int divider = Math.max(lowBandwidthMode ? LOW_BANDWIDTH_SAMPLE_DIVIDER : 1,
+                level >= DataBudgetController.LEVEL_REDUCED_RATE ? BUDGET_SAMPLE_DIVIDER : 1);
+        return sampleCounter++ % divider != 0;
+    }
+
+    /**
+     * Cancela a tarefa.
+     */
+    public synchronized void shutdown() {
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+        AppLog.d(TAG, "Tarefa finalizada.");
+    }
+
+    /**
+     * Ativa ou desativa o modo de baixa banda, em que apenas pontos esparsos são salvos.
+     *
+     * @param enabled true para ativar o modo de baixa banda.
+     */
+    public void setLowBandwidthMode(boolean enabled) {
+        lowBandwidthMode = enabled;
+    }
+
+    /**
+     * Define o nível de economia de dados (ver {@link DataBudgetController}).
+     *
+     * @param level O nível, de {@link DataBudgetController#LEVEL_NORMAL} a
+     *              {@link DataBudgetController#LEVEL_SUMMARY_ONLY}.
+     */
+    public void setDataBudgetLevel(int level) {
+        budgetLevel = level;
+    }
+
+    /**
+     * Define o estimador usado quando o último fix GNSS está desatualizado.
+     *
+     * @param estimator O estimador, ou null para registrar sempre a última posição GNSS.
+     */
+    public void setDeadReckoning(DeadReckoningEstimator estimator) {
+        deadReckoning = estimator;
+    }
+
+    /**
+     * Define o histórico local que recebe as amostras.
+     *
+     * @param store O histórico, ou null para não manter histórico.
+     */
+    public void setTrackStore(TrackStore store) {
+        trackStore = store;
+    }
+
+    /**
+     * Constrói um registro de resumo de viagem. A tag de tempo e as coordenadas
+     * correspondem ao fim da viagem; os dados do resumo vão nas tags de usuário:
+     * 0xE3 início (segundos Unix), 0xE4 distância (m), 0xE5 tempo em movimento (s),
+     * 0xE6 tempo parado (s) e 0xE7 velocidade máxima e média (km/h * 10, 16 bits cada).
+     *
+     * @param summary Resumo da viagem.
+     * @return Pacote de dados em bytes.
+     */
+    public byte[] buildTripSummaryPacket(TripSummary summary) {
+        long[] values = new long[tripLayout.getSlotCount()];
+        int slot = 0;
+        values[slot++] = summary.endTimeMillis / 1000;
+        slot = putCoordinates(values, slot, summary.endLatitude, summary.endLongitude,
+                locationService.getSatellitesConnected());
+        values[slot++] = summary.startTimeMillis / 1000;
+        values[slot++] = (long) summary.distanceMeters;
+        values[slot++] = summary.movingMillis / 1000;
+        values[slot++] = summary.idleMillis / 1000;
+        int maxSpeed = Math.min(0xFFFF, (int) (summary.maxSpeedKmh * 10));
+        int averageSpeed = Math.min(0xFFFF, (int) (summary.getAverageMovingSpeedKmh() * 10));
+        values[slot] = ((long) maxSpeed << 16) | averageSpeed;
+        return tripLayout.encode(values);
+    }
+
+    /**
+     * Constrói um registro de evento de cerca, com a posição do evento e a tag 0xE2
+     * contendo o tipo do evento (8 bits) e o identificador da cerca (24 bits).
+     *
+     * @param eventType  Tipo do evento (ver {@link GeofenceEngine}).
+     * @param fenceId    Identificador da cerca, de 0 a {@link Geofence#MAX_ID}.
+     * @param timeMillis Instante do fix que gerou o evento.
+     * @param latitude   Latitude do evento.
+     * @param longitude  Longitude do evento.
+     * @return Pacote de dados em bytes.
+     * @throws IllegalArgumentException Se o identificador não couber nos 24 bits da tag.
+     */
+    public byte[] buildGeofencePacket(int eventType, int fenceId, long timeMillis, double latitude, double longitude) {
+        if (fenceId < 0 || fenceId > Geofence.MAX_ID) {
+            throw new IllegalArgumentException("Identificador de cerca fora de 24 bits: " + fenceId);
+        }
+        long[] values = new long[eventLayout.getSlotCount()];
+        int slot = putPoint(values, timeMillis, latitude, longitude, locationService.getAltitude(),
+                locationService.getSpeed(), locationService.getSatellitesConnected());
+        values[slot] = ((long) eventType << 24) | fenceId;
+        return eventLayout.encode(values);
+    }
+
+    /**
+     * Constrói um pacote de dados com as informações fornecidas.
+     *
+     * @param timeMillis Instante da posição.
+     * @param latitude  Latitude atual.
+     * @param longitude Longitude atual.
+     * @param altitude  Altitude atual.
+     * @param speed     Velocidade atual.
+     * @param satellites Número de satélites conectados.
+     * @return Pacote de dados em bytes.
+     */
+    private byte[] buildPacket(long timeMillis, double latitude, double longitude, double altitude, float speed,
+                               int satellites) {
+        if (budgetLevel >= DataBudgetController.LEVEL_COMPACT) {
+            int slot = 0;
+            compactValues[slot++] = timeMillis / 1000;
+            slot = putCoordinates(compactValues, slot, latitude, longitude, satellites);
+            compactValues[slot] = convertSpeed(speed);
+            return compactLayout.encode(compactValues);
+        }
+        int slot = putPoint(pointValues, timeMillis, latitude, longitude, altitude, speed, satellites);
+        if (gnssQuality != null) {
+            pointValues[slot] = Math.min(0xFF, Math.round(gnssQuality.getHdop() * 10));
+        }
+        return pointLayout.encode(pointValues);
+    }
+
+    /**
+     * Constrói um registro de posição estimada. A tag 0xE8 marca o registro como
+     * estimado e contém o tempo decorrido desde o último fix GNSS, em milissegundos.
+     */
+    private byte[] buildEstimatedPacket(long timeMillis, double latitude, double longitude, double altitude,
+                                        float speed, int satellites, long fixAgeMillis) {
+        int slot = putPoint(estimatedValues, timeMillis, latitude, longitude, altitude, speed, satellites);
+        estimatedValues[slot] = Math.min(fixAgeMillis, 0xFFFFFFFFL);
+        return estimatedLayout.encode(estimatedValues);
+    }
+
+    /**
+     * Preenche os campos comuns do registro de posição (tempo, coordenadas, velocidade e altitude).
+     *
+     * @return O índice do próximo campo livre.
+     */
+    private int putPoint(long[] values, long timeMillis, double latitude, double longitude, double altitude,
+                         float speed, int satellites) {
+        int slot = 0;
+        values[slot++] = timeMillis / 1000;
+        slot = putCoordinates(values, slot, latitude, longitude, satellites);
+        values[slot++] = convertSpeed(speed);
+        values[slot++] = (short) altitude;
+        return slot;
+    }
+
+    /**
+     * Preenche os campos da tag de coordenadas: satélites (limitado a 15), latitude e longitude.
+     *
+     * @param values     Array de valores do registro.
+     * @param slot       Índice do primeiro campo da tag.
+     * @param latitude   Latitude a ser convertida.
+     * @param longitude  Longitude a ser convertida.
+     * @param satellites Número de satélites usados no fix.
+     * @return O índice do próximo campo livre.
+     */
+    private static int putCoordinates(long[] values, int slot, double latitude, double longitude, int satellites) {
+        values[slot++] = Math.min(satellites, 15);
+        values[slot++] = (int) (latitude * 1e6);
+        values[slot++] = (int) (longitude * 1e6);
+        return slot;
+    }
+
+    /**
+     * Converte velocidade no valor da tag de velocidade.
+     *
+     * @param speed Velocidade a ser convertida.
+     * @return Velocidade codificada.
+     */
+    private static int convertSpeed(float speed) {
+        return (int) speed * 10;
+    }
+
+    /**
+     * Converte a velocidade da fonte (m/s * {@link LocationSource#SPEED_SCALE}) para km/h,
+     * a unidade do histórico local.
+     */
+    private static float toKmh(float speed) {
+        return speed / LocationSource.SPEED_SCALE * 3.6f;
+    }
+}
@@ -0,0 +1,182 @@
+package com.automacao.rstremento2;
+
+/**
+ * Tarefa do laço de I/O que envia os registros mais antigos da fila e reconecta quando necessário.
+ * Também faz a identificação inicial com o servidor. O número de registros por pacote e o
+ * intervalo entre envios vêm do {@link SendRateController}; com a fila vazia, a tarefa volta
+ * a verificar a cada 2 segundos. Um acúmulo grande, após um período sem conexão, é enviado
+ * de uma vez pelo {@link BacklogFlusher}. Com uma {@link TransmissionWindow}, os registros
+ * comuns são enviados em rajadas e os urgentes antecipam a rajada com {@link #wakeUp()}.
+ */
+public class PacketSendingTask implements Runnable {
+
+    private static final String TAG = "PacketSendingTask";
+    private static final long SEND_INTERVAL_MS = 2000;      // Verificação da fila vazia
+    private static final long RECONNECT_INTERVAL_MS = 5000; // Intervalo entre tentativas de reconexão
+    static final int MAX_BATCH_BYTES = 1024;                // Corpo máximo de um pacote agrupado
+    private static final int BACKLOG_FLUSH_THRESHOLD = 500; // Acúmulo esvaziado pelo BacklogFlusher
+    private static final int REPEATED_LOG_SAMPLE = 30;      // Mensagens repetidas: uma a cada 30 execuções
+    private final GalileoskySimulator galileoskySimulator;
+    private final PacketBuffer packetBuffer;
+    private final SendRateController rateController;
+    private final LogThrottle idleLog = LogThrottle.sampled(REPEATED_LOG_SAMPLE);
+    private final LogThrottle reconnectLog = LogThrottle.sampled(REPEATED_LOG_SAMPLE);
+    private TaskScheduler scheduler;
+    private TaskScheduler.Cancellable handle;
+    private volatile boolean running = false;
+    private boolean inRun;          // Protegidos pelo monitor da tarefa
+    private boolean wakeRequested;
+
+    /**
+     * Construtor que inicializa a tarefa de envio de pacotes.
+     *
+     * @param galileoskySimulator Instância do simulador Galileosky.
+     */
+    public PacketSendingTask(GalileoskySimulator galileoskySimulator) {
+        this.galileoskySimulator = galileoskySimulator;
+        this.packetBuffer = galileoskySimulator.getPacketBuffer();
+        this.rateController = galileoskySimulator.getSendRateController();
+    }
+
+    /**
+     * Agenda a tarefa no laço de I/O.
+     *
+     * @param scheduler Agendador do aplicativo.
+     */
+    public synchronized void start(TaskScheduler scheduler) {
+        if (running) {
+            return;
+        }
+        this.scheduler = scheduler;
+        running = true;
+        handle = scheduler.execute(scheduler.ioLoop(), this);
+    }
+
+    /**
+     * Envia um pacote ao servidor ou tenta reconectar, e agenda a próxima execução.
+     * Com janelas de transmissão, os registros comuns aguardam a próxima janela e então
+     * são enviados em sequência, sem intervalo, até a fila esvaziar.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            inRun = true;
+            wakeRequested = false;
+        }
+        long delay = SEND_INTERVAL_MS;
+        try {
+            if (galileoskySimulator.isConnected()) {
+                TransmissionWindow window = galileoskySimulator.getTransmissionWindow();
+                long now = scheduler.getClock().nowMillis();
+                long untilOpen = window == null ? 0 : window.millisUntilOpen(now);
+                if (packetBuffer.isEmpty()) {
+                    if (AppLog.isDebugEnabled() && idleLog.allow()) {
+                        AppLog.d(TAG, "Nenhum pacote de dados disponível (+{} mensagens suprimidas).",
+                                idleLog.takeSuppressed());
+                    }
+                    delay = Math.max(SEND_INTERVAL_MS, untilOpen);
+                } else if (untilOpen > 0 && !packetBuffer.hasUrgent()) {
+                    delay = untilOpen; // Registros comuns aguardam a próxima janela
+                } else {
+                    if (window != null) {
+                        window.onBurstStart(now);
+                    }
+                    delay = sendNext(window);
+                }
+            } else {
+                if (galileoskySimulator.reconnectToServer()) {
+                    AppLog.d(TAG, "Reconexão bem-sucedida.");
+                    delay = 0; // Esvazia imediatamente o que foi acumulado
+                } else {
+                    if (AppLog.isDebugEnabled() && reconnectLog.allow()) {
+                        AppLog.d(TAG, "Tentativa de reconexão falhou (+{} falhas suprimidas). Tentando novamente em 5 segundos...",
+                                reconnectLog.takeSuppressed());
+                    }
+                    delay = RECONNECT_INTERVAL_MS;
+                }
+            }
+        } catch (Exception e) {
+            AppLog.e(TAG, "Erro ao enviar pacote: {}", e.getMessage());
+        }
+        scheduleNext(delay);
+    }
+
+    /**
+     * Envia o próximo pacote, ou o acúmulo inteiro se for grande, e retorna o intervalo até o
+     * próximo envio.
+     */
+    private long sendNext(TransmissionWindow window) {
+        TaskScheduler.Clock clock = scheduler.getClock();
+        long start = clock.nowMillis();
+        int before = packetBuffer.size();
+        int confirmed; // Registros confirmados pelo servidor neste envio, ou -1 se falhou
+        if (!packetBuffer.hasUrgent() && packetBuffer.getArena().size() >= BACKLOG_FLUSH_THRESHOLD) {
+            confirmed = galileoskySimulator.flushBacklog();
+        } else {
+            PacketBatch batch = packetBuffer.peekBatch(rateController.getBatchSize(), MAX_BATCH_BYTES);
+            if (galileoskySimulator.sendPacketToServer(batch.getPacket(), false)) {
+                packetBuffer.remove(batch);  // Remove os registros do buffer apenas se forem confirmados
+                confirmed = batch.getRecordCount();
+                AppLog.d(TAG, "Pacote com {} registro(s) enviado e removido da fila.", confirmed);
+            } else {
+                confirmed = -1;
+                AppLog.d(TAG, "Falha ao enviar pacote, permanecendo na fila.");
+            }
+        }
+        boolean success = confirmed >= 0;
+        if (window == null) {
+            if (success && packetBuffer.isEmpty()) {
+                return SEND_INTERVAL_MS;
+            }
+            return success && before >= BACKLOG_FLUSH_THRESHOLD ? 0 : rateController.getSendDelayMillis();
+        }
+
+        long end = clock.nowMillis();
+        if (success) {
+            // O laço de trabalho acrescenta registros ao mesmo tempo; o tamanho do buffer não serve
+            window.onSend(start, end, confirmed);
+        }
+        if (!packetBuffer.isEmpty()) {
+            return success ? 0 : rateController.getSendDelayMillis(); // Rajada sem intervalo entre pacotes
+        }
+        window.onBurstEnd(end);
+        AppLog.d(TAG, "Rajada concluída: {}", window);
+        return Math.max(SEND_INTERVAL_MS, window.millisUntilOpen(end));
+    }
+
+    /**
+     * Antecipa a próxima execução, usado quando chega um registro urgente.
+     */
+    public synchronized void wakeUp() {
+        if (!running) {
+            return;
+        }
+        if (inRun) {
+            wakeRequested = true; // A execução atual agenda a próxima sem espera
+            return;
+        }
+        if (handle != null) {
+            handle.cancel();
+        }
+        handle = scheduler.execute(scheduler.ioLoop(), this);
+    }
+
+    private synchronized void scheduleNext(long delayMillis) {
+        inRun = false;
+        if (running) {
+            handle = scheduler.schedule(scheduler.ioLoop(), this, wakeRequested ? 0 : delayMillis);
+        }
+    }
+
+    /**
+     * Cancela a tarefa de forma segura.
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+        AppLog.d(TAG, "Tarefa finalizada.");
+    }
+}
@@ -0,0 +1,116 @@
+package com.automacao.rstremento2;
+
+/**
+ * Agrupa atualizações de localização para a interface. Apenas a última posição
+ * pendente é mantida, e ela é aplicada no máximo na taxa de quadros configurada.
+ * Não depende do Android: o agendamento e o relógio são fornecidos por quem usa.
+ */
+public class RenderCoalescer {
+
+    /**
+     * Agenda a execução de um quadro (no Android, um Handler da thread principal).
+     */
+    public interface FrameScheduler {
+        void schedule(Runnable frame, long delayMillis);
+    }
+
+    /**
+     * Desenha a posição mais recente.
+     */
+    public interface FrameRenderer {
+        void render(double latitude, double longitude, float speed, int satellites);
+    }
+
+    /**
+     * Fonte de tempo em milissegundos.
+     */
+    public interface Clock {
+        long now();
+    }
+
+    private final FrameScheduler scheduler;
+    private final FrameRenderer renderer;
+    private final Clock clock;
+    private final long frameIntervalMillis;
+    private final Runnable frame = this::runFrame;
+
+    // Última posição pendente
+    private double latitude;
+    private double longitude;
+    private float speed;
+    private int satellites;
+    private boolean pending = false;
+    private boolean frameScheduled = false;
+    private long lastFrameTime = Long.MIN_VALUE;
+
+    private long submittedCount;
+    private long renderedCount;
+
+    /**
+     * Construtor do agrupador.
+     *
+     * @param framesPerSecond Taxa máxima de quadros.
+     * @param scheduler       Agendador dos quadros.
+     * @param renderer        Responsável por desenhar a posição.
+     * @param clock           Fonte de tempo.
+     */
+    public RenderCoalescer(float framesPerSecond, FrameScheduler scheduler, FrameRenderer renderer, Clock clock) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Taxa de quadros inválida: " + framesPerSecond);
+        }
+        this.frameIntervalMillis = (long) (1000 / framesPerSecond);
+        this.scheduler = scheduler;
+        this.renderer = renderer;
+        this.clock = clock;
+    }
+
+    /**
+     * Registra uma nova posição. Substitui a pendente e agenda um quadro se não houver um agendado.
+     */
+    public void submit(double latitude, double longitude, float speed, int satellites) {
+        long delay;
+        synchronized (this) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.speed = speed;
+            this.satellites = satellites;
+            this.pending = true;
+            submittedCount++;
+            if (frameScheduled) {
+                return;
+            }
+            frameScheduled = true;
+            long now = clock.now();
+            delay = lastFrameTime == Long.MIN_VALUE ? 0 : Math.max(0, lastFrameTime + frameIntervalMillis - now);
+        }
+        scheduler.schedule(frame, delay);
+    }
+
+    private void runFrame() {
+        double lat, lon;
+        float vel;
+        int sats;
+        synchronized (this) {
+            frameScheduled = false;
+            if (!pending) {
+                return;
+            }
+            pending = false;
+            lastFrameTime = clock.now();
+            renderedCount++;
+            lat = latitude;
+            lon = longitude;
+            vel = speed;
+            sats = satellites;
+        }
+        renderer.render(lat, lon, vel, sats);
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public synchronized long getRenderedCount() {
+        return renderedCount;
+    }
+}
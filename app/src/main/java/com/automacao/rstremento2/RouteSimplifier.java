@@ -0,0 +1,130 @@
+package com.automacao.rstremento2;
+
+/**
+ * Simplificação incremental de rota por janela deslizante. O último vértice da rota é
+ * provisório: cada novo ponto só o substitui se todos os pontos recebidos desde a âncora
+ * (o penúltimo vértice, já fixo) ficarem a até {@code toleranceMeters} do segmento entre a
+ * âncora e o novo ponto. Caso contrário, o vértice provisório é fixado e passa a ser a
+ * âncora. Como o desvio é sempre medido contra a âncora, ele não se acumula em curvas
+ * suaves: todo ponto aceito fica dentro da tolerância da rota simplificada, e os pontos
+ * descartados ficam a menos de {@code minDistanceMeters} de um ponto aceito.
+ * <p>
+ * A janela guarda no máximo {@link #MAX_WINDOW} pontos; ao encher, o vértice provisório
+ * é fixado, o que limita o custo por ponto.
+ */
+public class RouteSimplifier {
+
+    /** O ponto foi descartado. */
+    public static final int IGNORED = 0;
+    /** O ponto substitui o último vértice da rota. */
+    public static final int REPLACED_LAST = 1;
+    /** O ponto foi adicionado como novo vértice. */
+    public static final int APPENDED = 2;
+
+    /** Pontos verificados a cada novo ponto, no máximo. */
+    static final int MAX_WINDOW = 64;
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private final double minDistanceMeters;
+    private final double toleranceMeters;
+
+    // Penúltimo (âncora, fixo) e último vértice (provisório) da rota
+    private double anchorLat, anchorLon;
+    private double lastLat, lastLon;
+    private int count;
+
+    // Pontos aceitos desde a âncora, incluindo o vértice provisório
+    private final double[] windowLat = new double[MAX_WINDOW];
+    private final double[] windowLon = new double[MAX_WINDOW];
+    private int windowSize;
+
+    /**
+     * Construtor do simplificador.
+     *
+     * @param minDistanceMeters Distância mínima entre pontos consecutivos.
+     * @param toleranceMeters   Desvio máximo de um ponto aceito em relação à rota simplificada.
+     */
+    public RouteSimplifier(double minDistanceMeters, double toleranceMeters) {
+        this.minDistanceMeters = minDistanceMeters;
+        this.toleranceMeters = toleranceMeters;
+    }
+
+    /**
+     * Processa um novo ponto da rota.
+     *
+     * @return {@link #IGNORED}, {@link #REPLACED_LAST} ou {@link #APPENDED}.
+     */
+    public int add(double latitude, double longitude) {
+        if (count > 0 && distance(lastLat, lastLon, latitude, longitude) < minDistanceMeters) {
+            return IGNORED;
+        }
+        if (count >= 2 && windowSize < MAX_WINDOW && windowFits(latitude, longitude)) {
+            windowLat[windowSize] = latitude;
+            windowLon[windowSize] = longitude;
+            windowSize++;
+            lastLat = latitude;
+            lastLon = longitude;
+            return REPLACED_LAST;
+        }
+        // Fixa o vértice provisório como nova âncora e começa outra janela
+        if (count == 0) {
+            anchorLat = latitude;
+            anchorLon = longitude;
+            windowSize = 0;
+        } else {
+            anchorLat = lastLat;
+            anchorLon = lastLon;
+            windowLat[0] = latitude;
+            windowLon[0] = longitude;
+            windowSize = 1;
+        }
+        lastLat = latitude;
+        lastLon = longitude;
+        count++;
+        return APPENDED;
+    }
+
+    /**
+     * Reinicia a rota.
+     */
+    public void reset() {
+        count = 0;
+        windowSize = 0;
+    }
+
+    /**
+     * Verifica se todos os pontos da janela ficam dentro da tolerância do segmento entre a
+     * âncora e o novo ponto.
+     */
+    private boolean windowFits(double latitude, double longitude) {
+        for (int i = 0; i < windowSize; i++) {
+            if (deviation(windowLat[i], windowLon[i], anchorLat, anchorLon, latitude, longitude) > toleranceMeters) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Distância aproximada em metros (projeção equirretangular).
+     */
+    private static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double x = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Distância em metros do ponto P ao segmento A-B.
+     */
+    private static double deviation(double pLat, double pLon, double aLat, double aLon, double bLat, double bLon) {
+        double scale = Math.cos(Math.toRadians(aLat));
+        double bx = (bLon - aLon) * scale, by = bLat - aLat;
+        double px = (pLon - aLon) * scale, py = pLat - aLat;
+        double lengthSquared = bx * bx + by * by;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+        double dx = px - t * bx, dy = py - t * by;
+        return Math.sqrt(dx * dx + dy * dy) * METERS_PER_DEGREE;
+    }
+}
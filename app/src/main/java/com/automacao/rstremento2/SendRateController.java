@@ -0,0 +1,140 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+
+/**
+ * Controle de envio no estilo AIMD. Define quantos registros vão em cada pacote e o
+ * intervalo entre envios a partir do RTT das confirmações e das perdas (timeout, erro
+ * de conexão ou CRC inválido):
+ * <ul>
+ *     <li>confirmação rápida (RTT até {@code SLOW_RTT_FACTOR} vezes o menor RTT observado,
+ *     mais uma margem): o lote cresce em um registro e o intervalo diminui em um passo;</li>
+ *     <li>confirmação lenta: o lote é mantido e o intervalo aumenta em um passo;</li>
+ *     <li>perda: o lote cai pela metade e o intervalo dobra.</li>
+ * </ul>
+ * Os valores ficam sempre dentro dos limites configurados.
+ */
+public class SendRateController {
+    private static final double SLOW_RTT_FACTOR = 2.0;
+    private static final long SLOW_RTT_MARGIN_NANOS = 50_000_000L; // 50 ms
+    private static final double RTT_WEIGHT = 0.125;
+
+    private final int minBatch;
+    private final int maxBatch;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final long delayStepMillis;
+
+    private int batchSize;
+    private long delayMillis;
+    private long minRttNanos = -1;
+    private double smoothedRttNanos = -1;
+    private long ackCount;
+    private long lossCount;
+    private long increaseCount;
+    private long decreaseCount;
+
+    /**
+     * Construtor com limites padrão: 1 a 20 registros por pacote, intervalo de 100 ms a
+     * 30 s começando nos 2 s usados anteriormente, com passos de 200 ms.
+     */
+    public SendRateController() {
+        this(1, 20, 100, 30000, 200, 2000);
+    }
+
+    /**
+     * Construtor do controlador.
+     *
+     * @param minBatch            Menor número de registros por pacote.
+     * @param maxBatch            Maior número de registros por pacote.
+     * @param minDelayMillis      Menor intervalo entre envios.
+     * @param maxDelayMillis      Maior intervalo entre envios.
+     * @param delayStepMillis     Passo aditivo do intervalo.
+     * @param initialDelayMillis  Intervalo inicial.
+     */
+    public SendRateController(int minBatch, int maxBatch, long minDelayMillis, long maxDelayMillis,
+                              long delayStepMillis, long initialDelayMillis) {
+        if (minBatch < 1 || maxBatch < minBatch || minDelayMillis < 0 || maxDelayMillis < minDelayMillis) {
+            throw new IllegalArgumentException("Limites inválidos");
+        }
+        this.minBatch = minBatch;
+        this.maxBatch = maxBatch;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.delayStepMillis = delayStepMillis;
+        this.batchSize = minBatch;
+        this.delayMillis = Math.max(minDelayMillis, Math.min(maxDelayMillis, initialDelayMillis));
+    }
+
+    /**
+     * Registra uma confirmação válida.
+     *
+     * @param rttNanos Tempo entre o envio e a confirmação.
+     */
+    public synchronized void onAck(long rttNanos) {
+        ackCount++;
+        minRttNanos = minRttNanos < 0 ? rttNanos : Math.min(minRttNanos, rttNanos);
+        smoothedRttNanos = smoothedRttNanos < 0 ? rttNanos : smoothedRttNanos + RTT_WEIGHT * (rttNanos - smoothedRttNanos);
+        if (rttNanos <= minRttNanos * SLOW_RTT_FACTOR + SLOW_RTT_MARGIN_NANOS) {
+            batchSize = Math.min(maxBatch, batchSize + 1);
+            delayMillis = Math.max(minDelayMillis, delayMillis - delayStepMillis);
+            increaseCount++;
+        } else {
+            delayMillis = Math.min(maxDelayMillis, delayMillis + delayStepMillis);
+        }
+    }
+
+    /**
+     * Registra uma perda: timeout, falha de conexão ou CRC inválido.
+     */
+    public synchronized void onLoss() {
+        lossCount++;
+        decreaseCount++;
+        batchSize = Math.max(minBatch, batchSize / 2);
+        delayMillis = Math.min(maxDelayMillis, Math.max(delayMillis * 2, minDelayMillis + delayStepMillis));
+    }
+
+    /** Registros por pacote no próximo envio. */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /** Intervalo até o próximo envio, em milissegundos. */
+    public synchronized long getSendDelayMillis() {
+        return delayMillis;
+    }
+
+    /** Menor RTT observado em milissegundos, ou -1 sem medições. */
+    public synchronized double getMinRttMillis() {
+        return minRttNanos < 0 ? -1 : minRttNanos / 1e6;
+    }
+
+    /** Média móvel do RTT em milissegundos, ou -1 sem medições. */
+    public synchronized double getSmoothedRttMillis() {
+        return smoothedRttNanos < 0 ? -1 : smoothedRttNanos / 1e6;
+    }
+
+    public synchronized long getAckCount() {
+        return ackCount;
+    }
+
+    public synchronized long getLossCount() {
+        return lossCount;
+    }
+
+    /** Quantas vezes o lote cresceu (aumentos aditivos). */
+    public synchronized long getIncreaseCount() {
+        return increaseCount;
+    }
+
+    /** Quantas vezes o lote foi reduzido (cortes multiplicativos). */
+    public synchronized long getDecreaseCount() {
+        return decreaseCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "AIMD (lote=%d, intervalo=%dms, rtt=%.1fms, rttMin=%.1fms, acks=%d, perdas=%d)",
+                batchSize, delayMillis, getSmoothedRttMillis(), getMinRttMillis(), ackCount, lossCount);
+    }
+}
@@ -0,0 +1,69 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reproduz um registro gravado de sensores e fixes na navegação estimada, para
+ * validação em JVM. Uma amostra por linha, em ordem cronológica:
+ * <pre>
+ * a,tempo_ns,aceleracao_m_s2
+ * g,tempo_ns,guinada_graus_s
+ * h,tempo_ns,rumo_graus
+ * f,tempo_ns,latitude,longitude,velocidade_m_s,rumo_graus
+ * </pre>
+ * Linhas vazias ou iniciadas por '#' são ignoradas.
+ */
+public final class SensorLogReader {
+
+    private SensorLogReader() {
+    }
+
+    /**
+     * Reproduz o registro no estimador.
+     *
+     * @param reader    Origem do registro.
+     * @param estimator Estimador que recebe amostras e fixes.
+     * @return Quantidade de linhas reproduzidas.
+     * @throws IOException Se a leitura falhar ou uma linha for inválida.
+     */
+    public static int replay(Reader reader, DeadReckoningEstimator estimator) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            try {
+                long time = Long.parseLong(parts[1].trim());
+                switch (parts[0].trim()) {
+                    case "a":
+                        estimator.onSample(InertialSensorSource.CHANNEL_ACCELERATION, time, Float.parseFloat(parts[2]));
+                        break;
+                    case "g":
+                        estimator.onSample(InertialSensorSource.CHANNEL_YAW_RATE, time, Float.parseFloat(parts[2]));
+                        break;
+                    case "h":
+                        estimator.onSample(InertialSensorSource.CHANNEL_HEADING, time, Float.parseFloat(parts[2]));
+                        break;
+                    case "f":
+                        estimator.onFix(time, Double.parseDouble(parts[2]), Double.parseDouble(parts[3]),
+                                Float.parseFloat(parts[4]), Float.parseFloat(parts[5]), true);
+                        break;
+                    default:
+                        throw new IOException("Tipo desconhecido na linha " + lineNumber + ": " + parts[0]);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Linha inválida " + lineNumber + ": " + line, e);
+            }
+            count++;
+        }
+        return count;
+    }
+}
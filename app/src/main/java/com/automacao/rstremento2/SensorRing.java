@@ -0,0 +1,51 @@
+package com.automacao.rstremento2;
+
+/**
+ * Anel de amostras escalares em arrays primitivos. A amostra mais antiga é sobrescrita
+ * quando o anel enche; as amostras são endereçadas por número de sequência.
+ */
+final class SensorRing {
+    private static final int MIN_CAPACITY = 4;
+
+    private final long[] times;
+    private final float[] values;
+    private final int mask;
+    private long written;
+
+    SensorRing(int capacity) {
+        int size = RingCapacity.powerOfTwo(capacity, MIN_CAPACITY);
+        this.times = new long[size];
+        this.values = new float[size];
+        this.mask = size - 1;
+    }
+
+    void add(long timeNanos, float value) {
+        int index = (int) (written & mask);
+        times[index] = timeNanos;
+        values[index] = value;
+        written++;
+    }
+
+    /** Sequência da próxima amostra a ser escrita. */
+    long getWritten() {
+        return written;
+    }
+
+    /** Sequência da amostra mais antiga ainda disponível. */
+    long getOldest() {
+        return Math.max(0, written - times.length);
+    }
+
+    long timeAt(long sequence) {
+        return times[(int) (sequence & mask)];
+    }
+
+    float valueAt(long sequence) {
+        return values[(int) (sequence & mask)];
+    }
+
+    /** Instante da última amostra, ou {@link Long#MIN_VALUE} se vazio. */
+    long getLatestTime() {
+        return written == 0 ? Long.MIN_VALUE : timeAt(written - 1);
+    }
+}
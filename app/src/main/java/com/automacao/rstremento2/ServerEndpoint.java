@@ -0,0 +1,134 @@
+package com.automacao.rstremento2;
+
+/**
+ * Endpoint de ingestão com as métricas de saúde usadas na seleção.
+ * O estado é protegido pelo {@link EndpointPool} que o contém.
+ */
+public class ServerEndpoint {
+    private static final float RTT_SMOOTHING = 0.25f; // Peso da nova amostra na média móvel exponencial
+
+    private final String host;
+    private final int port;
+
+    private long handshakeRttNanos = -1;
+    private long ackRttNanos = -1;
+    private int consecutiveFailures;
+    private boolean demoted;
+    private long nextProbeMillis = Long.MIN_VALUE; // Ainda não medido: testado na primeira seleção
+
+    private long successCount;
+    private long failureCount;
+    private long selectionCount;
+
+    public ServerEndpoint(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * RTT médio do handshake TCP em nanossegundos, ou -1 se ainda não medido.
+     */
+    public synchronized long getHandshakeRttNanos() {
+        return handshakeRttNanos;
+    }
+
+    /**
+     * RTT médio entre o envio do pacote e a confirmação em nanossegundos, ou -1 se ainda não medido.
+     */
+    public synchronized long getAckRttNanos() {
+        return ackRttNanos;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized boolean isDemoted() {
+        return demoted;
+    }
+
+    public synchronized long getSuccessCount() {
+        return successCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    public synchronized long getSelectionCount() {
+        return selectionCount;
+    }
+
+    /**
+     * Indica se o endpoint já tem RTT medido por algum envio confirmado.
+     */
+    synchronized boolean isMeasured() {
+        return ackRttNanos >= 0;
+    }
+
+    /**
+     * Custo estimado de um envio, válido apenas se {@link #isMeasured()}.
+     */
+    synchronized long score() {
+        return Math.max(0, handshakeRttNanos) + ackRttNanos;
+    }
+
+    synchronized long getNextProbeMillis() {
+        return nextProbeMillis;
+    }
+
+    synchronized void markSelected() {
+        selectionCount++;
+    }
+
+    synchronized void scheduleProbe(long probeMillis) {
+        nextProbeMillis = probeMillis;
+    }
+
+    synchronized void recordSuccess(long handshakeNanos, long ackNanos) {
+        handshakeRttNanos = smooth(handshakeRttNanos, handshakeNanos);
+        ackRttNanos = smooth(ackRttNanos, ackNanos);
+        consecutiveFailures = 0;
+        demoted = false;
+        successCount++;
+    }
+
+    /**
+     * Registra uma falha.
+     *
+     * @return true se o endpoint acabou de ser rebaixado.
+     */
+    synchronized boolean recordFailure(int maxConsecutiveFailures, long nextProbe) {
+        failureCount++;
+        consecutiveFailures++;
+        if (consecutiveFailures >= maxConsecutiveFailures) {
+            boolean newlyDemoted = !demoted;
+            demoted = true;
+            nextProbeMillis = nextProbe;
+            return newlyDemoted;
+        }
+        return false;
+    }
+
+    private static long smooth(long average, long sample) {
+        return average < 0 ? sample : (long) (average + RTT_SMOOTHING * (sample - average));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return host + ":" + port
+                + " handshake=" + handshakeRttNanos / 1000000 + "ms"
+                + " ack=" + ackRttNanos / 1000000 + "ms"
+                + " ok=" + successCount
+                + " falhas=" + failureCount
+                + (demoted ? " rebaixado" : "");
+    }
+}
@@ -0,0 +1,39 @@
+package com.automacao.rstremento2;
+
+import android.content.SharedPreferences;
+
+/**
+ * Contadores de consumo de dados nas {@link SharedPreferences}. Só o período mais recente é
+ * guardado; salvar um período novo substitui o anterior.
+ */
+public class SharedPreferencesDataUsageStore implements DataUsageStore {
+    private static final String KEY_PERIOD = "period";
+    private static final String[] KEYS = {"sent_bytes", "received_bytes", "segments", "connections"};
+
+    private final SharedPreferences preferences;
+
+    public SharedPreferencesDataUsageStore(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    @Override
+    public long[] load(String period) {
+        if (!period.equals(preferences.getString(KEY_PERIOD, null))) {
+            return null;
+        }
+        long[] counters = new long[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            counters[i] = preferences.getLong(KEYS[i], 0);
+        }
+        return counters;
+    }
+
+    @Override
+    public void save(String period, long[] counters) {
+        SharedPreferences.Editor editor = preferences.edit().putString(KEY_PERIOD, period);
+        for (int i = 0; i < KEYS.length; i++) {
+            editor.putLong(KEYS[i], counters[i]);
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,93 @@
+package com.automacao.rstremento2;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentação da partida: tempo desde o início até o primeiro fix, o primeiro
+ * registro codificado, a primeira conexão com o servidor e a primeira confirmação
+ * de um registro. Cada marco é registrado uma única vez.
+ */
+public class StartupMetrics {
+    private static final String TAG = "StartupMetrics";
+    private static final long NOT_REACHED = -1;
+
+    private final TaskScheduler.Clock clock;
+    private volatile long startMillis;
+    private final AtomicLong firstFix = new AtomicLong(NOT_REACHED);
+    private final AtomicLong firstRecord = new AtomicLong(NOT_REACHED);
+    private final AtomicLong firstConnection = new AtomicLong(NOT_REACHED);
+    private final AtomicLong firstAck = new AtomicLong(NOT_REACHED);
+
+    /**
+     * Construtor; o instante de início é o momento da criação, até {@link #start()}.
+     *
+     * @param clock Fonte de tempo.
+     */
+    public StartupMetrics(TaskScheduler.Clock clock) {
+        this.clock = clock;
+        this.startMillis = clock.nowMillis();
+    }
+
+    /**
+     * Marca o início da partida e descarta os marcos registrados antes dele.
+     */
+    void start() {
+        startMillis = clock.nowMillis();
+        firstFix.set(NOT_REACHED);
+        firstRecord.set(NOT_REACHED);
+        firstConnection.set(NOT_REACHED);
+        firstAck.set(NOT_REACHED);
+    }
+
+    void markFirstFix() {
+        mark(firstFix, "primeiro fix");
+    }
+
+    void markFirstRecord() {
+        mark(firstRecord, "primeiro registro");
+    }
+
+    void markFirstConnection() {
+        mark(firstConnection, "primeira conexão");
+    }
+
+    void markFirstAck() {
+        mark(firstAck, "primeira confirmação");
+    }
+
+    private void mark(AtomicLong milestone, String name) {
+        if (milestone.get() != NOT_REACHED) {
+            return;
+        }
+        long elapsed = clock.nowMillis() - startMillis;
+        if (milestone.compareAndSet(NOT_REACHED, elapsed)) {
+            AppLog.d(TAG, "Tempo até o {}: {} ms", name, elapsed);
+        }
+    }
+
+    /** Milissegundos até o primeiro fix, ou -1 se ainda não ocorreu. */
+    public long getTimeToFirstFix() {
+        return firstFix.get();
+    }
+
+    /** Milissegundos até o primeiro registro codificado, ou -1 se ainda não ocorreu. */
+    public long getTimeToFirstRecord() {
+        return firstRecord.get();
+    }
+
+    /** Milissegundos até a primeira conexão aceita pelo servidor, ou -1 se ainda não ocorreu. */
+    public long getTimeToFirstConnection() {
+        return firstConnection.get();
+    }
+
+    /** Milissegundos até a primeira confirmação de um registro, ou -1 se ainda não ocorreu. */
+    public long getTimeToFirstAck() {
+        return firstAck.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Partida (fix=" + getTimeToFirstFix() + "ms, registro=" + getTimeToFirstRecord()
+                + "ms, conexão=" + getTimeToFirstConnection() + "ms, ack=" + getTimeToFirstAck() + "ms)";
+    }
+}
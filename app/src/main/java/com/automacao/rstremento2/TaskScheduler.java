@@ -0,0 +1,382 @@
+package com.automacao.rstremento2;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agendador único do aplicativo. Mantém dois laços de eventos: o de trabalho
+ * (amostragem, codificação e temporizadores) e o de I/O (envio e reconexão, que
+ * bloqueiam em sockets). Laços adicionais podem ser criados com {@link #newLoop(String)}
+ * para operações bloqueantes independentes. Substitui as threads com laços de sleep por tarefas
+ * agendadas, com ciclo de vida start/stop/await.
+ * <p>
+ * Com um {@link VirtualClock}, o agendador roda sem threads e o tempo só avança
+ * por {@link #runFor(long)}, tornando a temporização determinística em testes.
+ */
+public class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+
+    /**
+     * Fonte de tempo em milissegundos.
+     */
+    public interface Clock {
+        long nowMillis();
+    }
+
+    /**
+     * Tarefa agendada que pode ser cancelada.
+     */
+    public interface Cancellable {
+        void cancel();
+    }
+
+    /**
+     * Relógio monotônico do sistema.
+     */
+    public static final Clock SYSTEM_CLOCK = () -> System.nanoTime() / 1000000;
+
+    /**
+     * Relógio controlado manualmente, para testes.
+     */
+    public static class VirtualClock implements Clock {
+        private long now;
+
+        @Override
+        public synchronized long nowMillis() {
+            return now;
+        }
+
+        synchronized void set(long timeMillis) {
+            now = Math.max(now, timeMillis);
+        }
+    }
+
+    private final Clock clock;
+    private final boolean threaded;
+    private final AtomicLong sequence = new AtomicLong();
+    private final EventLoop workLoop;
+    private final EventLoop ioLoop;
+    private final List<EventLoop> loops = new CopyOnWriteArrayList<>();
+    private volatile boolean running = false;
+
+    /**
+     * Construtor com o relógio do sistema.
+     */
+    public TaskScheduler() {
+        this(SYSTEM_CLOCK);
+    }
+
+    /**
+     * Construtor do agendador. Com um {@link VirtualClock} nenhuma thread é criada.
+     *
+     * @param clock Fonte de tempo.
+     */
+    public TaskScheduler(Clock clock) {
+        this.clock = clock;
+        this.threaded = !(clock instanceof VirtualClock);
+        this.workLoop = new EventLoop("work");
+        this.ioLoop = new EventLoop("io");
+        loops.add(workLoop);
+        loops.add(ioLoop);
+    }
+
+    /**
+     * Cria um laço de eventos adicional, iniciado junto com os demais.
+     *
+     * @param name Nome do laço (usado no nome da thread).
+     * @return O novo laço.
+     */
+    public synchronized EventLoop newLoop(String name) {
+        EventLoop loop = new EventLoop(name);
+        loops.add(loop);
+        if (running && threaded) {
+            loop.startThread();
+        }
+        return loop;
+    }
+
+    /**
+     * Inicia os laços de eventos. Chamadas repetidas são ignoradas. Depois de {@link #stop()},
+     * a nova thread de cada laço só começa quando a anterior termina a tarefa em execução.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        if (threaded) {
+            for (EventLoop loop : loops) {
+                loop.startThread();
+            }
+        }
+    }
+
+    /**
+     * Para os laços de eventos. Tarefas pendentes são descartadas e as em execução terminam normalmente.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.wake();
+        }
+    }
+
+    /**
+     * Aguarda o término das threads dos laços após {@link #stop()}.
+     *
+     * @param timeoutMillis Tempo máximo de espera.
+     * @return true se os laços terminaram.
+     * @throws InterruptedException Se a espera for interrompida.
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (EventLoop loop : loops) {
+            if (!loop.join(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Laço de trabalho: amostragem, codificação e temporizadores curtos.
+     */
+    public EventLoop workLoop() {
+        return workLoop;
+    }
+
+    /**
+     * Laço de I/O: operações que bloqueiam em rede.
+     */
+    public EventLoop ioLoop() {
+        return ioLoop;
+    }
+
+    /**
+     * Executa uma tarefa o quanto antes no laço informado.
+     */
+    public Cancellable execute(EventLoop loop, Runnable action) {
+        return schedule(loop, action, 0);
+    }
+
+    /**
+     * Agenda uma tarefa única.
+     *
+     * @param loop        Laço que executa a tarefa.
+     * @param action      Tarefa.
+     * @param delayMillis Atraso em milissegundos.
+     * @return Referência para cancelar a tarefa.
+     */
+    public Cancellable schedule(EventLoop loop, Runnable action, long delayMillis) {
+        ScheduledTask task = new ScheduledTask(action, clock.nowMillis() + Math.max(0, delayMillis), 0, sequence.getAndIncrement());
+        loop.add(task);
+        return task;
+    }
+
+    /**
+     * Agenda uma tarefa periódica, com intervalo contado a partir do fim de cada execução.
+     *
+     * @param loop               Laço que executa a tarefa.
+     * @param action             Tarefa.
+     * @param initialDelayMillis Atraso da primeira execução.
+     * @param delayMillis        Intervalo entre execuções.
+     * @return Referência para cancelar a tarefa.
+     */
+    public Cancellable scheduleWithFixedDelay(EventLoop loop, Runnable action, long initialDelayMillis, long delayMillis) {
+        if (delayMillis <= 0) {
+            throw new IllegalArgumentException("Intervalo inválido: " + delayMillis);
+        }
+        ScheduledTask task = new ScheduledTask(action, clock.nowMillis() + Math.max(0, initialDelayMillis), delayMillis, sequence.getAndIncrement());
+        loop.add(task);
+        return task;
+    }
+
+    /**
+     * Avança o relógio virtual executando, em ordem, as tarefas que vencerem no período.
+     *
+     * @param millis Tempo a avançar.
+     */
+    public void runFor(long millis) {
+        if (threaded) {
+            throw new IllegalStateException("runFor exige um VirtualClock");
+        }
+        VirtualClock virtualClock = (VirtualClock) clock;
+        long target = virtualClock.nowMillis() + millis;
+        while (running) {
+            EventLoop loop = null;
+            ScheduledTask next = null;
+            for (EventLoop candidate : loops) {
+                ScheduledTask head = candidate.peek();
+                if (head != null && (next == null || head.compareTo(next) < 0)) {
+                    loop = candidate;
+                    next = head;
+                }
+            }
+            if (next == null || next.dueMillis > target) {
+                break;
+            }
+            virtualClock.set(next.dueMillis);
+            loop.runTask(loop.poll());
+        }
+        virtualClock.set(target);
+    }
+
+    /**
+     * Laço de eventos com uma fila de tarefas ordenada pelo vencimento, executadas por uma
+     * única thread por vez.
+     */
+    public final class EventLoop {
+        private final String name;
+        private final PriorityQueue<ScheduledTask> queue = new PriorityQueue<>();
+        private volatile Thread thread; // Thread dona do laço; as anteriores saem ao perceber a troca
+
+        private EventLoop(String name) {
+            this.name = name;
+        }
+
+        private synchronized void add(ScheduledTask task) {
+            queue.add(task);
+            notifyAll();
+        }
+
+        private synchronized ScheduledTask peek() {
+            return queue.peek();
+        }
+
+        private synchronized ScheduledTask poll() {
+            return queue.poll();
+        }
+
+        private synchronized void wake() {
+            notifyAll();
+        }
+
+        private synchronized void startThread() {
+            Thread previous = thread;
+            Thread next = new Thread(() -> serve(previous), "TaskScheduler-" + name);
+            thread = next;
+            notifyAll(); // A thread anterior, se ainda estiver esperando, deixa o laço
+            next.start();
+        }
+
+        private boolean join(long deadlineMillis) throws InterruptedException {
+            Thread current = thread;
+            if (current == null) {
+                return true;
+            }
+            current.join(Math.max(1, deadlineMillis - System.currentTimeMillis()));
+            return !current.isAlive();
+        }
+
+        /**
+         * Retorna quantas tarefas estão na fila.
+         */
+        public synchronized int getPendingCount() {
+            return queue.size();
+        }
+
+        /**
+         * Executa as tarefas enquanto o agendador estiver rodando e esta thread for a dona do laço.
+         *
+         * @param previous Thread anterior do laço, aguardada antes da primeira tarefa.
+         */
+        private void serve(Thread previous) {
+            Thread self = Thread.currentThread();
+            if (previous != null) {
+                try {
+                    previous.join(); // Nunca duas threads executando tarefas do mesmo laço
+                } catch (InterruptedException e) {
+                    self.interrupt();
+                    AppLog.w(TAG, "Laço {} interrompido antes de iniciar", name);
+                    return;
+                }
+            }
+            while (running && thread == self) {
+                ScheduledTask task = null;
+                synchronized (this) {
+                    while (running && thread == self) {
+                        ScheduledTask head = queue.peek();
+                        long delay = head == null ? 0 : head.dueMillis - clock.nowMillis();
+                        if (head != null && delay <= 0) {
+                            task = queue.poll();
+                            break;
+                        }
+                        try {
+                            wait(delay);
+                        } catch (InterruptedException e) {
+                            // Encerra só este laço; os demais continuam
+                            self.interrupt();
+                            AppLog.w(TAG, "Laço {} interrompido; {} tarefas pendentes descartadas", name, queue.size());
+                            queue.clear();
+                            return;
+                        }
+                    }
+                }
+                if (task != null) {
+                    runTask(task);
+                }
+            }
+            synchronized (this) {
+                if (thread == self) {
+                    queue.clear(); // Parado sem reinício: as pendentes são descartadas
+                }
+            }
+        }
+
+        private void runTask(ScheduledTask task) {
+            if (task.cancelled) {
+                return;
+            }
+            try {
+                task.action.run();
+            } catch (RuntimeException e) {
+                AppLog.e(TAG, "Erro na tarefa do laço {}", name, e);
+            } catch (Error e) {
+                AppLog.e(TAG, "Erro fatal na tarefa do laço {}; o laço será encerrado", name, e);
+                throw e;
+            }
+            if (task.periodMillis > 0 && !task.cancelled) {
+                task.dueMillis = clock.nowMillis() + task.periodMillis;
+                add(task);
+            }
+        }
+    }
+
+    private static final class ScheduledTask implements Cancellable, Comparable<ScheduledTask> {
+        private final Runnable action;
+        private final long periodMillis;
+        private final long sequence;
+        private long dueMillis;
+        private volatile boolean cancelled;
+
+        private ScheduledTask(Runnable action, long dueMillis, long periodMillis, long sequence) {
+            this.action = action;
+            this.dueMillis = dueMillis;
+            this.periodMillis = periodMillis;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            if (dueMillis != other.dueMillis) {
+                return Long.compare(dueMillis, other.dueMillis);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
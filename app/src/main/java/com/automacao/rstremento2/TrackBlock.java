@@ -0,0 +1,174 @@
+package com.automacao.rstremento2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloco colunar de até {@link #MAX_POINTS} pontos. Cada coluna é um fluxo de bits
+ * independente: o tempo usa delta-de-delta, as demais colunas usam delta; o primeiro
+ * valor de cada coluna é gravado integralmente, de modo que um bloco é decodificado
+ * sem depender dos anteriores.
+ * <p>
+ * Formato: quantidade de pontos (4 bytes), tamanho de cada coluna (4 bytes cada) e as colunas.
+ */
+final class TrackBlock {
+    static final int MAX_POINTS = 128;
+
+    private static final int COLUMN_TIME = 0;
+    private static final int COLUMN_LATITUDE = 1;
+    private static final int COLUMN_LONGITUDE = 2;
+    private static final int COLUMN_ALTITUDE = 3;
+    private static final int COLUMN_SPEED = 4;
+    private static final int COLUMN_SATELLITES = 5;
+    private static final int COLUMNS = 6;
+
+    /**
+     * Recebe os pontos decodificados. Coordenadas em graus * 1e6 e velocidade em km/h * 10.
+     */
+    interface PointVisitor {
+        void onPoint(long timeMillis, int latitudeE6, int longitudeE6, int altitude, int speedKmh10, int satellites);
+    }
+
+    private final BitWriter[] columns = new BitWriter[COLUMNS];
+    private int count;
+    private long startTime;
+    private long endTime;
+    private long lastTime;
+    private long lastTimeDelta;
+    private final int[] lastValues = new int[COLUMNS];
+
+    TrackBlock() {
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new BitWriter();
+        }
+    }
+
+    void append(long timeMillis, int latitudeE6, int longitudeE6, int altitude, int speedKmh10, int satellites) {
+        BitWriter time = columns[COLUMN_TIME];
+        if (count == 0) {
+            time.writeBits(timeMillis, 64);
+            startTime = timeMillis;
+            endTime = timeMillis;
+        } else {
+            long delta = timeMillis - lastTime;
+            if (count == 1) {
+                time.writeSigned(delta);
+            } else {
+                time.writeSigned(delta - lastTimeDelta);
+            }
+            lastTimeDelta = delta;
+        }
+        lastTime = timeMillis;
+        startTime = Math.min(startTime, timeMillis);
+        endTime = Math.max(endTime, timeMillis);
+
+        appendValue(COLUMN_LATITUDE, latitudeE6);
+        appendValue(COLUMN_LONGITUDE, longitudeE6);
+        appendValue(COLUMN_ALTITUDE, altitude);
+        appendValue(COLUMN_SPEED, speedKmh10);
+        appendValue(COLUMN_SATELLITES, satellites);
+        count++;
+    }
+
+    private void appendValue(int column, int value) {
+        if (count == 0) {
+            columns[column].writeBits(value, 32);
+        } else {
+            columns[column].writeSigned((long) value - lastValues[column]);
+        }
+        lastValues[column] = value;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count >= MAX_POINTS;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Serializa o bloco.
+     */
+    byte[] toByteArray() {
+        byte[][] encoded = new byte[COLUMNS][];
+        int size = 4 + 4 * COLUMNS;
+        for (int i = 0; i < COLUMNS; i++) {
+            encoded[i] = columns[i].toByteArray();
+            size += encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(count);
+        for (byte[] column : encoded) {
+            buffer.putInt(column.length);
+        }
+        for (byte[] column : encoded) {
+            buffer.put(column);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reinicia o bloco para reutilização.
+     */
+    void reset() {
+        for (BitWriter column : columns) {
+            column.reset();
+        }
+        count = 0;
+        startTime = 0;
+        endTime = 0;
+        lastTimeDelta = 0;
+    }
+
+    /**
+     * Decodifica um bloco serializado, entregando os pontos no intervalo de tempo dado.
+     *
+     * @return Quantidade de pontos entregues.
+     */
+    static int decode(byte[] data, int offset, long fromMillis, long toMillis, PointVisitor visitor) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, data.length - offset);
+        int count = buffer.getInt();
+        BitReader[] readers = new BitReader[COLUMNS];
+        int position = offset + 4 + 4 * COLUMNS;
+        for (int i = 0; i < COLUMNS; i++) {
+            int length = buffer.getInt();
+            readers[i] = new BitReader(data, position, length);
+            position += length;
+        }
+
+        int delivered = 0;
+        long time = 0;
+        long timeDelta = 0;
+        int[] values = new int[COLUMNS];
+        for (int n = 0; n < count; n++) {
+            if (n == 0) {
+                time = readers[COLUMN_TIME].readBits(64);
+            } else if (n == 1) {
+                timeDelta = readers[COLUMN_TIME].readSigned();
+                time += timeDelta;
+            } else {
+                timeDelta += readers[COLUMN_TIME].readSigned();
+                time += timeDelta;
+            }
+            for (int column = COLUMN_LATITUDE; column < COLUMNS; column++) {
+                values[column] = n == 0
+                        ? (int) readers[column].readBits(32)
+                        : (int) (values[column] + readers[column].readSigned());
+            }
+            if (time >= fromMillis && time <= toMillis) {
+                visitor.onPoint(time, values[COLUMN_LATITUDE], values[COLUMN_LONGITUDE],
+                        values[COLUMN_ALTITUDE], values[COLUMN_SPEED], values[COLUMN_SATELLITES]);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+}
@@ -0,0 +1,218 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lê trajetos gravados nos formatos GPX, NMEA (sentenças RMC/GGA) e CSV.
+ * O CSV segue o formato: tempo_ms,latitude,longitude,altitude,velocidade_m_s,satelites
+ */
+public final class TrackFileReader {
+
+    private static final Pattern GPX_POINT = Pattern.compile("<trkpt\\s+([^>]*)>(.*?)</trkpt>", Pattern.DOTALL);
+    private static final Pattern GPX_LAT = Pattern.compile("lat=\"([-0-9.]+)\"");
+    private static final Pattern GPX_LON = Pattern.compile("lon=\"([-0-9.]+)\"");
+    private static final Pattern GPX_ELE = Pattern.compile("<ele>([-0-9.]+)</ele>");
+    private static final Pattern GPX_TIME = Pattern.compile("<time>([^<]+)</time>");
+    private static final Pattern GPX_SPEED = Pattern.compile("<speed>([-0-9.]+)</speed>");
+    private static final Pattern GPX_SAT = Pattern.compile("<sat>(\\d+)</sat>");
+
+    private static final float KNOTS_TO_MS = 0.514444f;
+
+    private TrackFileReader() {
+    }
+
+    /**
+     * Lê um trajeto escolhendo o formato pela extensão do arquivo (.gpx, .nmea/.txt ou .csv).
+     *
+     * @param file Arquivo do trajeto.
+     * @return Lista de pontos em ordem cronológica.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public static List<TrackPoint> read(File file) throws IOException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        try (Reader reader = new FileReader(file)) {
+            if (name.endsWith(".gpx")) {
+                return readGpx(reader);
+            } else if (name.endsWith(".csv")) {
+                return readCsv(reader);
+            }
+            return readNmea(reader);
+        }
+    }
+
+    /**
+     * Lê pontos de um arquivo GPX (elementos trkpt).
+     */
+    public static List<TrackPoint> readGpx(Reader reader) throws IOException {
+        String content = readAll(reader);
+        List<TrackPoint> points = new ArrayList<>();
+        Matcher point = GPX_POINT.matcher(content);
+        while (point.find()) {
+            String attributes = point.group(1);
+            String body = point.group(2);
+            Matcher lat = GPX_LAT.matcher(attributes);
+            Matcher lon = GPX_LON.matcher(attributes);
+            if (!lat.find() || !lon.find()) {
+                continue;
+            }
+            Matcher ele = GPX_ELE.matcher(body);
+            Matcher time = GPX_TIME.matcher(body);
+            Matcher speed = GPX_SPEED.matcher(body);
+            Matcher sat = GPX_SAT.matcher(body);
+            long timeMillis = time.find() ? parseIsoTime(time.group(1)) : 0;
+            points.add(new TrackPoint(
+                    timeMillis,
+                    Double.parseDouble(lat.group(1)),
+                    Double.parseDouble(lon.group(1)),
+                    ele.find() ? Double.parseDouble(ele.group(1)) : 0,
+                    speed.find() ? Float.parseFloat(speed.group(1)) : 0,
+                    sat.find() ? Integer.parseInt(sat.group(1)) : 0));
+        }
+        return points;
+    }
+
+    /**
+     * Lê pontos de sentenças NMEA. Cada RMC válida gera um ponto; altitude e
+     * satélites vêm da última GGA recebida.
+     */
+    public static List<TrackPoint> readNmea(Reader reader) throws IOException {
+        List<TrackPoint> points = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        double altitude = 0;
+        int satellites = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            int checksum = line.indexOf('*');
+            if (checksum >= 0) {
+                line = line.substring(0, checksum);
+            }
+            String[] f = line.trim().split(",", -1);
+            if (f.length == 0 || f[0].length() < 6) {
+                continue;
+            }
+            String type = f[0].substring(f[0].length() - 3);
+            try {
+                if (type.equals("GGA") && f.length > 9) {
+                    satellites = f[7].isEmpty() ? satellites : Integer.parseInt(f[7]);
+                    altitude = f[9].isEmpty() ? altitude : Double.parseDouble(f[9]);
+                } else if (type.equals("RMC") && f.length > 9 && "A".equals(f[2])) {
+                    points.add(new TrackPoint(
+                            parseNmeaTime(f[9], f[1]),
+                            parseNmeaCoordinate(f[3], f[4]),
+                            parseNmeaCoordinate(f[5], f[6]),
+                            altitude,
+                            f[7].isEmpty() ? 0 : Float.parseFloat(f[7]) * KNOTS_TO_MS,
+                            satellites));
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                // Sentença corrompida (campo numérico inválido ou data/hora truncada), ignora
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Lê pontos de um CSV. Linhas vazias, comentários (#) e cabeçalho não numérico são ignorados.
+     */
+    public static List<TrackPoint> readCsv(Reader reader) throws IOException {
+        List<TrackPoint> points = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] f = line.split(",");
+            if (f.length < 3) {
+                continue;
+            }
+            try {
+                points.add(new TrackPoint(
+                        Long.parseLong(f[0].trim()),
+                        Double.parseDouble(f[1].trim()),
+                        Double.parseDouble(f[2].trim()),
+                        f.length > 3 ? Double.parseDouble(f[3].trim()) : 0,
+                        f.length > 4 ? Float.parseFloat(f[4].trim()) : 0,
+                        f.length > 5 ? Integer.parseInt(f[5].trim()) : 0));
+            } catch (NumberFormatException e) {
+                // Cabeçalho ou linha inválida
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Converte uma coordenada NMEA (ddmm.mmmm) em graus decimais.
+     */
+    private static double parseNmeaCoordinate(String value, String hemisphere) {
+        double raw = Double.parseDouble(value);
+        int degrees = (int) (raw / 100);
+        double result = degrees + (raw - degrees * 100) / 60.0;
+        return "S".equals(hemisphere) || "W".equals(hemisphere) ? -result : result;
+    }
+
+    /**
+     * Converte data (ddmmyy) e hora (hhmmss.sss) NMEA em milissegundos UTC.
+     */
+    private static long parseNmeaTime(String date, String time) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        int year = Integer.parseInt(date.substring(4, 6));
+        calendar.set(year < 80 ? 2000 + year : 1900 + year,
+                Integer.parseInt(date.substring(2, 4)) - 1,
+                Integer.parseInt(date.substring(0, 2)),
+                Integer.parseInt(time.substring(0, 2)),
+                Integer.parseInt(time.substring(2, 4)),
+                Integer.parseInt(time.substring(4, 6)));
+        long millis = calendar.getTimeInMillis();
+        if (time.length() > 7) {
+            millis += (long) (Double.parseDouble("0" + time.substring(6)) * 1000);
+        }
+        return millis;
+    }
+
+    /**
+     * Converte um horário ISO 8601 em UTC (ex.: 2024-05-01T12:00:00.500Z) em milissegundos.
+     */
+    private static long parseIsoTime(String value) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            long millis = format.parse(value.substring(0, 19)).getTime();
+            if (value.length() > 20 && value.charAt(19) == '.') {
+                int end = 20;
+                while (end < value.length() && Character.isDigit(value.charAt(end))) {
+                    end++;
+                }
+                millis += (long) (Double.parseDouble("0" + value.substring(19, end)) * 1000);
+            }
+            return millis;
+        } catch (ParseException | StringIndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+}
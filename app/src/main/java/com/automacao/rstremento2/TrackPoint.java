@@ -0,0 +1,22 @@
+package com.automacao.rstremento2;
+
+/**
+ * Ponto de um trajeto gravado.
+ */
+public class TrackPoint {
+    public final long timeMillis;
+    public final double latitude;
+    public final double longitude;
+    public final double altitude;
+    public final float speed; // Velocidade em m/s
+    public final int satellites;
+
+    public TrackPoint(long timeMillis, double latitude, double longitude, double altitude, float speed, int satellites) {
+        this.timeMillis = timeMillis;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.speed = speed;
+        this.satellites = satellites;
+    }
+}
@@ -0,0 +1,171 @@
+package com.automacao.rstremento2;
+
+import java.util.List;
+
+/**
+ * Fonte de localização que reproduz um trajeto gravado, disparando os mesmos
+ * callbacks do {@link LocationService}. Permite exercitar o pipeline de pacotes
+ * na JVM, sem GPS, com tempo original, acelerado ou o mais rápido possível.
+ */
+public class TrackReplaySource extends Thread implements LocationSource {
+
+    /**
+     * Fator de tempo que reproduz os pontos sem nenhuma espera.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private static final String TAG = "TrackReplaySource";
+    private static final int FIX_RING_CAPACITY = 512;
+
+    private final List<TrackPoint> points;
+    private final double timeScale;
+    private final FixRing fixRing;
+    private volatile boolean isRunning = false;
+    private volatile LocationUpdateListener listener;
+
+    // Atributos de localização
+    private volatile double latitude;
+    private volatile double longitude;
+    private volatile double altitude;
+    private volatile float speed;
+    private volatile int satellitesConnected;
+    private volatile boolean hasFix;
+
+    private volatile long replayedCount;
+    private volatile long elapsedNanos;
+
+    /**
+     * Construtor da fonte de reprodução.
+     *
+     * @param points    Pontos do trajeto em ordem cronológica.
+     * @param timeScale Fator de aceleração: 1 reproduz no tempo original, 100 é 100x mais
+     *                  rápido e {@link #AS_FAST_AS_POSSIBLE} não espera entre pontos.
+     */
+    public TrackReplaySource(List<TrackPoint> points, double timeScale) {
+        if (timeScale <= 0) {
+            throw new IllegalArgumentException("Fator de tempo inválido: " + timeScale);
+        }
+        this.points = points;
+        this.timeScale = timeScale;
+        this.fixRing = new FixRing(FIX_RING_CAPACITY);
+    }
+
+    @Override
+    public void setListener(LocationUpdateListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Método principal da thread, responsável por reproduzir os pontos do trajeto.
+     */
+    @Override
+    public void run() {
+        isRunning = true;
+        long start = System.nanoTime();
+        long previousTime = -1;
+
+        for (TrackPoint point : points) {
+            if (!isRunning) {
+                break;
+            }
+            if (previousTime >= 0 && !Double.isInfinite(timeScale)) {
+                long waitMillis = (long) ((point.timeMillis - previousTime) / timeScale);
+                if (waitMillis > 0) {
+                    try {
+                        Thread.sleep(waitMillis);
+                    } catch (InterruptedException e) {
+                        isRunning = false;
+                        break;
+                    }
+                }
+            }
+            previousTime = point.timeMillis;
+
+            latitude = point.latitude;
+            longitude = point.longitude;
+            altitude = point.altitude;
+            speed = point.speed * SPEED_SCALE; // O trajeto guarda m/s
+            satellitesConnected = point.satellites;
+            hasFix = true;
+            replayedCount++;
+            fixRing.add(point.timeMillis, latitude, longitude, altitude, speed, 0);
+
+            LocationUpdateListener current = listener;
+            if (current != null) {
+                current.onLocationUpdate(latitude, longitude, altitude, speed, satellitesConnected);
+            }
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        isRunning = false;
+        AppLog.i(TAG, "Reprodução encerrada: {} pontos em {} ms", replayedCount, elapsedNanos / 1_000_000);
+    }
+
+    @Override
+    public void stopLocationUpdates() {
+        isRunning = false;
+        interrupt(); // Interrompe a thread se estiver dormindo
+    }
+
+    /**
+     * Retorna a quantidade de pontos já reproduzidos.
+     *
+     * @return Número de pontos entregues ao listener.
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Retorna a taxa de reprodução medida após o término do trajeto.
+     *
+     * @return Pontos por segundo, ou 0 se a reprodução ainda não terminou.
+     */
+    public double getPointsPerSecond() {
+        long elapsed = elapsedNanos;
+        return elapsed > 0 ? replayedCount * 1e9 / elapsed : 0;
+    }
+
+    @Override
+    public double getLatitude() {
+        return latitude;
+    }
+
+    @Override
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public double getAltitude() {
+        return altitude;
+    }
+
+    @Override
+    public float getSpeed() {
+        return speed;
+    }
+
+    @Override
+    public int getSatellitesConnected() {
+        return satellitesConnected;
+    }
+
+    @Override
+    public boolean hasFix() {
+        return hasFix;
+    }
+
+    @Override
+    public FixRing getFixRing() {
+        return fixRing;
+    }
+
+    /**
+     * Trajetos gravados só guardam o número de satélites; não há status de GNSS.
+     */
+    @Override
+    public GnssQuality getGnssQuality() {
+        return null;
+    }
+}
@@ -0,0 +1,460 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Histórico local de posições em blocos colunares comprimidos ({@link TrackBlock}),
+ * agrupados em arquivos (chunks). Cada chunk guarda no cabeçalho o intervalo de tempo,
+ * a caixa envolvente e um índice esparso com o intervalo de cada bloco, de modo que
+ * consultas por tempo ou área só leem os chunks e blocos que podem conter resultados.
+ * Os cabeçalhos ficam em memória; os blocos são lidos do arquivo sob demanda.
+ * <p>
+ * O chunk em formação só existe em memória até ser gravado: ao completar
+ * {@value #CHUNK_BLOCKS} blocos, ao cobrir uma hora ou, pelo {@link #flushIfDue(long)}
+ * chamado periodicamente no laço de trabalho, alguns minutos depois de receber dados.
+ * Se a gravação falhar, os blocos continuam em memória e a gravação é tentada outra vez,
+ * até um limite de blocos pendentes.
+ */
+public class TrackStore {
+    private static final String TAG = "TrackStore";
+    private static final int MAGIC = 0x4754524B; // "GTRK"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "track-";
+    private static final String SUFFIX = ".trk";
+    private static final int CHUNK_BLOCKS = 8;                 // Até 1024 pontos por chunk
+    private static final long CHUNK_SPAN_MS = 60 * 60 * 1000L; // Ou uma hora de dados
+    private static final long FLUSH_INTERVAL_MS = 5 * 60 * 1000L; // Dados em memória por no máximo 5 minutos
+    private static final long RETRY_INTERVAL_MS = 30 * 1000L;     // Nova tentativa após falha de gravação
+    private static final int MAX_PENDING_BLOCKS = 4 * CHUNK_BLOCKS; // Além disso, os blocos mais antigos são descartados
+
+    /**
+     * Recebe as posições retornadas por uma consulta.
+     */
+    public interface TrackVisitor {
+        void onPoint(long timeMillis, double latitude, double longitude, double altitude, float speedKmh, int satellites);
+    }
+
+    /**
+     * Cabeçalho de um chunk gravado.
+     */
+    private static final class Chunk {
+        File file;
+        long startTime;
+        long endTime;
+        int pointCount;
+        int minLatitude;
+        int maxLatitude;
+        int minLongitude;
+        int maxLongitude;
+        long[] blockStarts;
+        long[] blockEnds;
+        long[] blockOffsets;
+        int[] blockLengths;
+
+        boolean overlaps(long from, long to) {
+            return startTime <= to && endTime >= from;
+        }
+
+        boolean intersects(int minLat, int minLon, int maxLat, int maxLon) {
+            return minLatitude <= maxLat && maxLatitude >= minLat && minLongitude <= maxLon && maxLongitude >= minLon;
+        }
+    }
+
+    private final File directory;
+    private final long retentionMillis;
+    private final long maxBytes;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int nextChunkId;
+
+    // Chunk em formação
+    private final TrackBlock openBlock = new TrackBlock();
+    private final List<byte[]> sealedBlocks = new ArrayList<>();
+    private final List<long[]> sealedRanges = new ArrayList<>(); // Início, fim e pontos de cada bloco
+    private int activeCount;
+    private long activeStart;
+    private long activeEnd;
+    private int activeMinLat;
+    private int activeMaxLat;
+    private int activeMinLon;
+    private int activeMaxLon;
+    private long pendingSinceMillis = Long.MIN_VALUE;
+    private long retryAtMillis;
+    private boolean flushFailing; // Com a gravação falhando, só o flushIfDue tenta de novo
+    private long failedWrites;
+    private long droppedPoints;
+
+    private int lastQueryChunks;
+    private int lastQueryBlocks;
+
+    /**
+     * Construtor do histórico. Carrega os cabeçalhos dos chunks existentes.
+     *
+     * @param directory       Diretório dos chunks.
+     * @param retentionMillis Idade máxima dos dados; chunks mais antigos são apagados.
+     * @param maxBytes        Espaço máximo em disco; os chunks mais antigos são apagados além disso.
+     */
+    public TrackStore(File directory, long retentionMillis, long maxBytes) {
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+        this.maxBytes = maxBytes;
+        loadCatalog();
+    }
+
+    /**
+     * Acrescenta uma posição ao histórico.
+     *
+     * @param timeMillis Instante da posição.
+     * @param latitude   Latitude.
+     * @param longitude  Longitude.
+     * @param altitude   Altitude em metros.
+     * @param speedKmh   Velocidade em km/h (não na escala de {@link LocationSource#getSpeed()}).
+     * @param satellites Número de satélites.
+     */
+    public synchronized void append(long timeMillis, double latitude, double longitude, double altitude,
+                                    float speedKmh, int satellites) {
+        if (activeCount > 0 && timeMillis - activeStart > CHUNK_SPAN_MS && !flushFailing) {
+            flush();
+        }
+        int lat = (int) Math.round(latitude * 1e6);
+        int lon = (int) Math.round(longitude * 1e6);
+        if (activeCount == 0) {
+            activeStart = timeMillis;
+            activeEnd = timeMillis;
+            activeMinLat = activeMaxLat = lat;
+            activeMinLon = activeMaxLon = lon;
+        } else {
+            activeStart = Math.min(activeStart, timeMillis);
+            activeEnd = Math.max(activeEnd, timeMillis);
+            activeMinLat = Math.min(activeMinLat, lat);
+            activeMaxLat = Math.max(activeMaxLat, lat);
+            activeMinLon = Math.min(activeMinLon, lon);
+            activeMaxLon = Math.max(activeMaxLon, lon);
+        }
+        openBlock.append(timeMillis, lat, lon, (int) Math.round(altitude), Math.round(speedKmh * 10), satellites);
+        activeCount++;
+        if (openBlock.isFull()) {
+            sealBlock();
+            if (sealedBlocks.size() >= CHUNK_BLOCKS && !flushFailing) {
+                flush();
+            }
+        }
+    }
+
+    private void sealBlock() {
+        sealedBlocks.add(openBlock.toByteArray());
+        sealedRanges.add(new long[]{openBlock.getStartTime(), openBlock.getEndTime(), openBlock.getCount()});
+        openBlock.reset();
+    }
+
+    /**
+     * Grava o chunk em formação e aplica a retenção. Se a gravação falhar, os blocos são
+     * mantidos para a próxima tentativa.
+     *
+     * @return true se não restou nada pendente.
+     */
+    public synchronized boolean flush() {
+        if (activeCount == 0) {
+            return true;
+        }
+        if (openBlock.getCount() > 0) {
+            sealBlock();
+        }
+        Chunk chunk;
+        try {
+            chunk = writeChunk();
+        } catch (IOException e) {
+            failedWrites++;
+            flushFailing = true;
+            AppLog.e(TAG, "Erro ao gravar histórico ({} pontos pendentes)", activeCount, e);
+            dropOldestBlocksBeyondLimit();
+            return false;
+        }
+        chunks.add(chunk);
+        sealedBlocks.clear();
+        sealedRanges.clear();
+        activeCount = 0;
+        pendingSinceMillis = Long.MIN_VALUE;
+        flushFailing = false;
+        applyRetention(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Grava o chunk em formação se ele está em memória há mais de {@link #FLUSH_INTERVAL_MS}.
+     * Deve ser chamado periodicamente fora da thread da interface; após uma falha, a nova
+     * tentativa espera {@link #RETRY_INTERVAL_MS}.
+     *
+     * @param nowMillis Instante atual.
+     */
+    public synchronized void flushIfDue(long nowMillis) {
+        if (activeCount == 0) {
+            return;
+        }
+        if (pendingSinceMillis == Long.MIN_VALUE) {
+            pendingSinceMillis = nowMillis;
+        }
+        if (nowMillis - pendingSinceMillis >= FLUSH_INTERVAL_MS && nowMillis >= retryAtMillis && !flush()) {
+            retryAtMillis = nowMillis + RETRY_INTERVAL_MS;
+        }
+    }
+
+    /**
+     * Com a gravação falhando, limita a memória do chunk em formação descartando os blocos mais antigos.
+     */
+    private void dropOldestBlocksBeyondLimit() {
+        while (sealedBlocks.size() > MAX_PENDING_BLOCKS) {
+            int points = (int) sealedRanges.get(0)[2];
+            sealedBlocks.remove(0);
+            sealedRanges.remove(0);
+            activeCount -= points;
+            droppedPoints += points;
+            AppLog.w(TAG, "Histórico sem gravação: {} pontos antigos descartados", points);
+        }
+    }
+
+    private Chunk writeChunk() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar " + directory);
+        }
+        Chunk chunk = new Chunk();
+        chunk.file = new File(directory, String.format(Locale.ROOT, "%s%08d%s", PREFIX, nextChunkId++, SUFFIX));
+        chunk.startTime = activeStart;
+        chunk.endTime = activeEnd;
+        chunk.pointCount = activeCount;
+        chunk.minLatitude = activeMinLat;
+        chunk.maxLatitude = activeMaxLat;
+        chunk.minLongitude = activeMinLon;
+        chunk.maxLongitude = activeMaxLon;
+        int blocks = sealedBlocks.size();
+        chunk.blockStarts = new long[blocks];
+        chunk.blockEnds = new long[blocks];
+        chunk.blockOffsets = new long[blocks];
+        chunk.blockLengths = new int[blocks];
+
+        long offset = headerSize(blocks);
+        for (int i = 0; i < blocks; i++) {
+            chunk.blockStarts[i] = sealedRanges.get(i)[0];
+            chunk.blockEnds[i] = sealedRanges.get(i)[1];
+            chunk.blockOffsets[i] = offset;
+            chunk.blockLengths[i] = sealedBlocks.get(i).length;
+            offset += chunk.blockLengths[i];
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(chunk.file)))) {
+            writeChunkTo(out, chunk, blocks);
+        } catch (IOException e) {
+            if (chunk.file.exists() && !chunk.file.delete()) {
+                AppLog.d(TAG, "Não foi possível apagar o chunk incompleto {}", chunk.file.getName());
+            }
+            throw e;
+        }
+        return chunk;
+    }
+
+    private void writeChunkTo(DataOutputStream out, Chunk chunk, int blocks) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(chunk.pointCount);
+        out.writeLong(chunk.startTime);
+        out.writeLong(chunk.endTime);
+        out.writeInt(chunk.minLatitude);
+        out.writeInt(chunk.maxLatitude);
+        out.writeInt(chunk.minLongitude);
+        out.writeInt(chunk.maxLongitude);
+        out.writeInt(blocks);
+        for (int i = 0; i < blocks; i++) {
+            out.writeLong(chunk.blockStarts[i]);
+            out.writeLong(chunk.blockEnds[i]);
+            out.writeInt(chunk.blockLengths[i]);
+        }
+        for (byte[] block : sealedBlocks) {
+            out.write(block);
+        }
+    }
+
+    private static long headerSize(int blocks) {
+        return 4 + 1 + 4 + 8 + 8 + 4 * 4 + 4 + (long) blocks * (8 + 8 + 4);
+    }
+
+    private void loadCatalog() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                    AppLog.d(TAG, "Chunk ignorado: {}", file.getName());
+                    continue;
+                }
+                Chunk chunk = new Chunk();
+                chunk.file = file;
+                chunk.pointCount = in.readInt();
+                chunk.startTime = in.readLong();
+                chunk.endTime = in.readLong();
+                chunk.minLatitude = in.readInt();
+                chunk.maxLatitude = in.readInt();
+                chunk.minLongitude = in.readInt();
+                chunk.maxLongitude = in.readInt();
+                int blocks = in.readInt();
+                chunk.blockStarts = new long[blocks];
+                chunk.blockEnds = new long[blocks];
+                chunk.blockOffsets = new long[blocks];
+                chunk.blockLengths = new int[blocks];
+                long offset = headerSize(blocks);
+                for (int i = 0; i < blocks; i++) {
+                    chunk.blockStarts[i] = in.readLong();
+                    chunk.blockEnds[i] = in.readLong();
+                    chunk.blockLengths[i] = in.readInt();
+                    chunk.blockOffsets[i] = offset;
+                    offset += chunk.blockLengths[i];
+                }
+                chunks.add(chunk);
+                String name = file.getName();
+                nextChunkId = Math.max(nextChunkId,
+                        Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+            } catch (IOException | NumberFormatException e) {
+                AppLog.e(TAG, "Erro ao ler chunk {}: {}", file.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apaga os chunks além da retenção configurada.
+     *
+     * @param nowMillis Instante atual.
+     */
+    public synchronized void applyRetention(long nowMillis) {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.file.length();
+        }
+        // Os chunks estão em ordem de gravação, do mais antigo para o mais recente
+        while (!chunks.isEmpty()) {
+            Chunk oldest = chunks.get(0);
+            if (oldest.endTime >= nowMillis - retentionMillis && total <= maxBytes) {
+                break;
+            }
+            total -= oldest.file.length();
+            if (!oldest.file.delete()) {
+                AppLog.d(TAG, "Não foi possível apagar {}", oldest.file.getName());
+            }
+            chunks.remove(0);
+        }
+    }
+
+    /**
+     * Consulta as posições em um intervalo de tempo, em ordem de gravação.
+     *
+     * @return Quantidade de posições entregues.
+     */
+    public int query(long fromMillis, long toMillis, TrackVisitor visitor) {
+        return queryArea(-90, -180, 90, 180, fromMillis, toMillis, visitor);
+    }
+
+    /**
+     * Consulta as posições dentro de uma área e de um intervalo de tempo.
+     *
+     * @return Quantidade de posições entregues.
+     */
+    public synchronized int queryArea(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                                      long fromMillis, long toMillis, TrackVisitor visitor) {
+        int minLat = (int) Math.floor(minLatitude * 1e6);
+        int minLon = (int) Math.floor(minLongitude * 1e6);
+        int maxLat = (int) Math.ceil(maxLatitude * 1e6);
+        int maxLon = (int) Math.ceil(maxLongitude * 1e6);
+        int[] delivered = new int[1];
+        TrackBlock.PointVisitor filter = (time, lat, lon, altitude, speed, satellites) -> {
+            if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                visitor.onPoint(time, lat / 1e6, lon / 1e6, altitude, speed / 10f, satellites);
+                delivered[0]++;
+            }
+        };
+
+        lastQueryChunks = 0;
+        lastQueryBlocks = 0;
+        for (Chunk chunk : chunks) {
+            if (!chunk.overlaps(fromMillis, toMillis) || !chunk.intersects(minLat, minLon, maxLat, maxLon)) {
+                continue;
+            }
+            lastQueryChunks++;
+            try (RandomAccessFile file = new RandomAccessFile(chunk.file, "r")) {
+                for (int i = 0; i < chunk.blockStarts.length; i++) {
+                    if (chunk.blockStarts[i] > toMillis || chunk.blockEnds[i] < fromMillis) {
+                        continue;
+                    }
+                    byte[] block = new byte[chunk.blockLengths[i]];
+                    file.seek(chunk.blockOffsets[i]);
+                    file.readFully(block);
+                    TrackBlock.decode(block, 0, fromMillis, toMillis, filter);
+                    lastQueryBlocks++;
+                }
+            } catch (IOException e) {
+                AppLog.e(TAG, "Erro ao ler chunk {}: {}", chunk.file.getName(), e.getMessage());
+            }
+        }
+
+        // Chunk em formação
+        if (activeCount > 0 && activeStart <= toMillis && activeEnd >= fromMillis
+                && activeMinLat <= maxLat && activeMaxLat >= minLat && activeMinLon <= maxLon && activeMaxLon >= minLon) {
+            for (byte[] block : sealedBlocks) {
+                TrackBlock.decode(block, 0, fromMillis, toMillis, filter);
+            }
+            if (openBlock.getCount() > 0) {
+                TrackBlock.decode(openBlock.toByteArray(), 0, fromMillis, toMillis, filter);
+            }
+        }
+        return delivered[0];
+    }
+
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Quantidade de posições ainda não gravadas em arquivo.
+     */
+    public synchronized int getPendingCount() {
+        return activeCount;
+    }
+
+    /**
+     * Gravações de chunk que falharam.
+     */
+    public synchronized long getFailedWriteCount() {
+        return failedWrites;
+    }
+
+    /**
+     * Pontos descartados porque a gravação falhou por tempo demais.
+     */
+    public synchronized long getDroppedPointCount() {
+        return droppedPoints;
+    }
+
+    /**
+     * Chunks lidos do disco na última consulta (os demais foram descartados pelo cabeçalho).
+     */
+    public synchronized int getLastQueryChunks() {
+        return lastQueryChunks;
+    }
+
+    /**
+     * Blocos decodificados do disco na última consulta.
+     */
+    public synchronized int getLastQueryBlocks() {
+        return lastQueryBlocks;
+    }
+}
@@ -0,0 +1,161 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+
+/**
+ * Janelas de transmissão para economizar energia do rádio celular. Depois de cada
+ * transmissão o modem fica um tempo em alta potência (cauda do rádio); enviar um pacote
+ * pequeno a cada poucos segundos o mantém ligado o tempo todo. Com as janelas, os
+ * registros comuns são acumulados e enviados em rajadas, uma a cada {@code intervalMillis};
+ * registros urgentes abrem uma rajada imediatamente.
+ *
+ * <p>O tempo de rádio ativo é estimado com um modelo simples: cada envio mantém o rádio
+ * ativo até {@code radioTailMillis} depois do seu fim, e envios dentro desse período não
+ * acordam o rádio de novo. A economia estimada compara com o envio de cada registro
+ * separadamente, com uma cauda completa para cada um.
+ */
+public class TransmissionWindow {
+    private final long intervalMillis;
+    private final long radioTailMillis;
+
+    private boolean bursting;
+    private boolean burstSent;          // A rajada atual já teve um envio confirmado
+    private long burstStartMillis;
+    private long nextOpenMillis;        // 0 enquanto nenhuma rajada foi feita
+    private long firstSendMillis = -1;
+    private long lastSendMillis;
+
+    // Modelo do rádio
+    private long radioActiveUntilMillis = Long.MIN_VALUE;
+    private long radioActiveMillis;
+    private long radioWakeups;
+    private long transferMillis;
+
+    private long bursts;
+    private long burstRecords;
+    private long packets;
+
+    /**
+     * Construtor das janelas.
+     *
+     * @param intervalMillis  Intervalo entre rajadas de registros comuns.
+     * @param radioTailMillis Tempo em que o rádio continua em alta potência após um envio.
+     */
+    public TransmissionWindow(long intervalMillis, long radioTailMillis) {
+        if (intervalMillis <= 0 || radioTailMillis < 0) {
+            throw new IllegalArgumentException("Parâmetros de janela inválidos");
+        }
+        this.intervalMillis = intervalMillis;
+        this.radioTailMillis = radioTailMillis;
+    }
+
+    /**
+     * Tempo até a próxima janela, ou 0 se uma rajada está em andamento ou já pode começar.
+     */
+    public synchronized long millisUntilOpen(long nowMillis) {
+        return bursting ? 0 : Math.max(0, nextOpenMillis - nowMillis);
+    }
+
+    public synchronized boolean isBursting() {
+        return bursting;
+    }
+
+    /**
+     * Inicia uma rajada, na abertura da janela ou por um registro urgente.
+     */
+    public synchronized void onBurstStart(long nowMillis) {
+        if (!bursting) {
+            bursting = true;
+            burstSent = false;
+            burstStartMillis = nowMillis;
+        }
+    }
+
+    /**
+     * Registra um envio confirmado dentro da rajada. A rajada só é contada no primeiro
+     * envio confirmado; rajadas em que todos os envios falharam não entram nas estatísticas.
+     *
+     * @param startMillis Início do envio.
+     * @param endMillis   Fim do envio (confirmação recebida).
+     * @param records     Registros confirmados.
+     */
+    public synchronized void onSend(long startMillis, long endMillis, int records) {
+        if (firstSendMillis < 0) {
+            firstSendMillis = startMillis;
+        }
+        lastSendMillis = endMillis;
+        if (!burstSent) {
+            burstSent = true;
+            bursts++;
+        }
+        packets++;
+        burstRecords += records;
+        transferMillis += endMillis - startMillis;
+        if (startMillis > radioActiveUntilMillis) {
+            radioWakeups++;
+            radioActiveMillis += endMillis - startMillis + radioTailMillis;
+        } else {
+            radioActiveMillis += Math.max(0, endMillis + radioTailMillis - radioActiveUntilMillis);
+        }
+        radioActiveUntilMillis = Math.max(radioActiveUntilMillis, endMillis + radioTailMillis);
+    }
+
+    /**
+     * Encerra a rajada quando a fila esvazia; a próxima janela abre um intervalo depois
+     * do início desta.
+     */
+    public synchronized void onBurstEnd(long nowMillis) {
+        if (bursting) {
+            bursting = false;
+            nextOpenMillis = burstStartMillis + intervalMillis;
+        }
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /** Rajadas (transmissões) por hora desde o primeiro envio. */
+    public synchronized double getTransmissionsPerHour() {
+        long elapsed = lastSendMillis - firstSendMillis;
+        return firstSendMillis < 0 ? 0 : bursts * 3_600_000.0 / Math.max(intervalMillis, elapsed);
+    }
+
+    /** Média de registros por rajada. */
+    public synchronized double getAverageBurstRecords() {
+        return bursts == 0 ? 0 : (double) burstRecords / bursts;
+    }
+
+    /** Rajadas com ao menos um envio confirmado. */
+    public synchronized long getBursts() {
+        return bursts;
+    }
+
+    public synchronized long getRadioWakeups() {
+        return radioWakeups;
+    }
+
+    /** Tempo estimado de rádio ativo, em milissegundos. */
+    public synchronized long getRadioActiveMillis() {
+        return radioActiveMillis;
+    }
+
+    /**
+     * Tempo de rádio ativo economizado em relação ao envio de cada registro com sua própria cauda.
+     */
+    public synchronized long getEstimatedSavedMillis() {
+        return Math.max(0, transferMillis + burstRecords * radioTailMillis - radioActiveMillis);
+    }
+
+    public synchronized long getPackets() {
+        return packets;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT,
+                "Janelas (intervalo=%ds, rajadas=%d, %.1f/h, %.1f registros/rajada, rádio ativo=%ds, economia=%ds)",
+                intervalMillis / 1000, bursts, getTransmissionsPerHour(), getAverageBurstRecords(),
+                radioActiveMillis / 1000, getEstimatedSavedMillis() / 1000);
+    }
+}
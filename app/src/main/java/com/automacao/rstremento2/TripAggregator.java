@@ -0,0 +1,180 @@
+package com.automacao.rstremento2;
+
+/**
+ * Segmenta viagens de forma incremental a partir das localizações e da velocidade
+ * filtrada. Detecta partida e parada pelo movimento (como uma ignição) e mantém
+ * distância, tempos em movimento/parado e velocidade máxima em estado O(1).
+ * <p>
+ * A distância soma o trecho entre fixes consecutivos qualquer que seja a velocidade
+ * filtrada, que pode zerar por um fix em movimento. O trecho percorrido durante uma
+ * parada fica pendente, como o tempo parado: entra na viagem se o veículo voltar a andar
+ * e é descartado se a parada encerrar a viagem, para que o ruído do GPS parado não conte.
+ */
+public class TripAggregator {
+
+    private static final float START_SPEED_KMH = 10.0f;
+    private static final long START_CONFIRM_MS = 20000;   // Movimento contínuo para iniciar a viagem
+    private static final float STOP_SPEED_KMH = 3.0f;
+    private static final long STOP_CONFIRM_MS = 300000;   // Parada contínua para encerrar a viagem
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    /**
+     * Interface para listener de viagens encerradas.
+     */
+    public interface TripListener {
+        void onTripCompleted(TripSummary summary);
+    }
+
+    private final TripListener listener;
+
+    private boolean inTrip = false;
+    private boolean hasLast = false;
+    private long lastTime;
+    private double lastLat, lastLon;
+
+    // Candidata a partida
+    private long moveSince = -1;
+
+    // Estado da viagem
+    private long startTime;
+    private double startLat, startLon;
+    private double distance;
+    private long movingMillis;
+    private long idleMillis;
+    private float maxSpeed;
+
+    // Parada em andamento (ainda não contabilizada como tempo parado)
+    private long stopSince = -1;
+    private long pendingIdleMillis;
+    private double pendingDistance;
+    private double stopLat, stopLon;
+
+    /**
+     * Construtor do agregador.
+     *
+     * @param listener Listener que recebe o resumo de cada viagem encerrada.
+     */
+    public TripAggregator(TripListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Processa uma nova localização.
+     *
+     * @param timeMillis Instante da localização em milissegundos.
+     * @param latitude   Latitude.
+     * @param longitude  Longitude.
+     * @param speedKmh   Velocidade filtrada em km/h.
+     */
+    public synchronized void onFix(long timeMillis, double latitude, double longitude, float speedKmh) {
+        if (hasLast && timeMillis <= lastTime) {
+            return; // Localização repetida ou fora de ordem
+        }
+        long dt = hasLast ? timeMillis - lastTime : 0;
+        double step = hasLast ? haversine(lastLat, lastLon, latitude, longitude) : 0;
+
+        if (!inTrip) {
+            if (speedKmh >= START_SPEED_KMH) {
+                if (moveSince < 0) {
+                    beginCandidate(timeMillis, latitude, longitude);
+                } else {
+                    accumulate(dt, step, speedKmh);
+                    if (timeMillis - moveSince >= START_CONFIRM_MS) {
+                        inTrip = true;
+                    }
+                }
+            } else if (moveSince >= 0) {
+                moveSince = -1; // Movimento curto demais, descarta a candidata
+            }
+        } else {
+            accumulate(dt, step, speedKmh);
+            if (speedKmh < STOP_SPEED_KMH) {
+                if (stopSince < 0) {
+                    stopSince = timeMillis;
+                    stopLat = latitude;
+                    stopLon = longitude;
+                } else if (timeMillis - stopSince >= STOP_CONFIRM_MS) {
+                    endTrip();
+                }
+            } else if (stopSince >= 0) {
+                // Retomou o movimento: a parada passa a contar como tempo parado
+                idleMillis += pendingIdleMillis;
+                pendingIdleMillis = 0;
+                distance += pendingDistance;
+                pendingDistance = 0;
+                stopSince = -1;
+            }
+        }
+
+        hasLast = true;
+        lastTime = timeMillis;
+        lastLat = latitude;
+        lastLon = longitude;
+    }
+
+    /**
+     * Indica se há uma viagem em andamento.
+     */
+    public synchronized boolean isInTrip() {
+        return inTrip;
+    }
+
+    private void beginCandidate(long timeMillis, double latitude, double longitude) {
+        moveSince = timeMillis;
+        startTime = hasLast ? lastTime : timeMillis;
+        startLat = hasLast ? lastLat : latitude;
+        startLon = hasLast ? lastLon : longitude;
+        distance = hasLast ? haversine(lastLat, lastLon, latitude, longitude) : 0;
+        movingMillis = hasLast ? timeMillis - lastTime : 0;
+        idleMillis = 0;
+        pendingIdleMillis = 0;
+        pendingDistance = 0;
+        maxSpeed = 0;
+        stopSince = -1;
+    }
+
+    private void accumulate(long dt, double step, float speedKmh) {
+        if (stopSince >= 0) {
+            pendingDistance += step;
+        } else {
+            distance += step;
+        }
+        if (speedKmh >= STOP_SPEED_KMH) {
+            movingMillis += dt;
+        } else if (stopSince >= 0) {
+            pendingIdleMillis += dt;
+        } else {
+            idleMillis += dt;
+        }
+        if (speedKmh > maxSpeed) {
+            maxSpeed = speedKmh;
+        }
+    }
+
+    private void endTrip() {
+        TripSummary summary = new TripSummary(startTime, stopSince, startLat, startLon, stopLat, stopLon,
+                distance, movingMillis, idleMillis, maxSpeed);
+        inTrip = false;
+        moveSince = -1;
+        stopSince = -1;
+        pendingIdleMillis = 0;
+        pendingDistance = 0;
+        if (listener != null) {
+            listener.onTripCompleted(summary);
+        }
+    }
+
+    /**
+     * Distância entre dois pontos pela fórmula de haversine.
+     *
+     * @return Distância em metros.
+     */
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,41 @@
+package com.automacao.rstremento2;
+
+/**
+ * Resumo de uma viagem detectada no dispositivo.
+ */
+public class TripSummary {
+    public final long startTimeMillis;
+    public final long endTimeMillis;
+    public final double startLatitude;
+    public final double startLongitude;
+    public final double endLatitude;
+    public final double endLongitude;
+    public final double distanceMeters;
+    public final long movingMillis;
+    public final long idleMillis;
+    public final float maxSpeedKmh;
+
+    public TripSummary(long startTimeMillis, long endTimeMillis, double startLatitude, double startLongitude,
+                       double endLatitude, double endLongitude, double distanceMeters,
+                       long movingMillis, long idleMillis, float maxSpeedKmh) {
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+        this.startLatitude = startLatitude;
+        this.startLongitude = startLongitude;
+        this.endLatitude = endLatitude;
+        this.endLongitude = endLongitude;
+        this.distanceMeters = distanceMeters;
+        this.movingMillis = movingMillis;
+        this.idleMillis = idleMillis;
+        this.maxSpeedKmh = maxSpeedKmh;
+    }
+
+    /**
+     * Velocidade média em movimento.
+     *
+     * @return Velocidade média em km/h.
+     */
+    public float getAverageMovingSpeedKmh() {
+        return movingMillis > 0 ? (float) (distanceMeters / movingMillis * 3600.0) : 0;
+    }
+}
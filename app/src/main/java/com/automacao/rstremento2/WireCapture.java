@@ -0,0 +1,181 @@
+package com.automacao.rstremento2;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Captura dos bytes trocados com o servidor em um anel sem travas (vários produtores,
+ * um consumidor). Os produtores copiam o pacote para um slot pré-alocado e publicam;
+ * o {@link WireCaptureWriter} drena o anel em segundo plano. Com o anel cheio, a
+ * captura é descartada e contabilizada, sem bloquear o envio.
+ */
+public class WireCapture {
+
+    public static final byte DIRECTION_SENT = WireCaptureFormat.DIRECTION_SENT;
+    public static final byte DIRECTION_RECEIVED = WireCaptureFormat.DIRECTION_RECEIVED;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private final int capacity;
+    private final int mask;
+    private final int maxPayload;
+    private final byte[] payloads;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final byte[] directions;
+    private final AtomicLongArray published;
+
+    private final AtomicLong tail = new AtomicLong(); // Próxima sequência a reservar
+    private final AtomicLong head = new AtomicLong(); // Próxima sequência a consumir
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Construtor da captura.
+     *
+     * @param capacity   Quantidade de slots (arredondada para potência de 2).
+     * @param maxPayload Tamanho máximo capturado de cada pacote; o excedente é truncado.
+     */
+    public WireCapture(int capacity, int maxPayload) {
+        int size = RingCapacity.powerOfTwo(capacity, MIN_CAPACITY);
+        this.capacity = size;
+        this.mask = size - 1;
+        this.maxPayload = maxPayload;
+        this.payloads = new byte[size * maxPayload];
+        this.lengths = new int[size];
+        this.timestamps = new long[size];
+        this.directions = new byte[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, i - size); // Nenhum slot publicado
+        }
+    }
+
+    /**
+     * Registra um pacote trocado com o servidor.
+     *
+     * @param direction  {@link #DIRECTION_SENT} ou {@link #DIRECTION_RECEIVED}.
+     * @param timeMillis Instante em milissegundos.
+     * @param data       Bytes do pacote.
+     * @param offset     Posição inicial.
+     * @param length     Quantidade de bytes.
+     */
+    public void record(byte direction, long timeMillis, byte[] data, int offset, int length) {
+        long sequence = reserve();
+        if (sequence < 0) {
+            return;
+        }
+        int slot = (int) (sequence & mask);
+        int size = Math.min(length, maxPayload);
+        System.arraycopy(data, offset, payloads, slot * maxPayload, size);
+        publish(sequence, direction, timeMillis, size);
+    }
+
+    /**
+     * Registra os bytes recebidos para a última confirmação, como vieram do fluxo:
+     * os descartados antes do quadro e o próprio quadro.
+     *
+     * @param timeMillis Instante em milissegundos.
+     * @param decoder    Decodificador que acabou de retornar a confirmação.
+     */
+    public void recordAck(long timeMillis, AckFrameDecoder decoder) {
+        recordRing(DIRECTION_RECEIVED, timeMillis, decoder.getRing(),
+                decoder.getLastFrameStart(), decoder.getLastFrameLength());
+    }
+
+    /**
+     * Registra os bytes recebidos que não formaram uma confirmação, por exemplo quando a
+     * resposta é inválida ou a conexão termina no meio do quadro. Nada é registrado se
+     * não houver bytes pendentes.
+     *
+     * @param timeMillis Instante em milissegundos.
+     * @param decoder    Decodificador cuja leitura falhou.
+     */
+    public void recordUnframed(long timeMillis, AckFrameDecoder decoder) {
+        if (decoder.getUnframedLength() > 0) {
+            recordRing(DIRECTION_RECEIVED, timeMillis, decoder.getRing(),
+                    decoder.getUnframedStart(), decoder.getUnframedLength());
+        }
+    }
+
+    /**
+     * Registra um trecho de um anel de tamanho potência de 2, que pode dar a volta no fim do anel.
+     */
+    private void recordRing(byte direction, long timeMillis, byte[] ring, int start, int length) {
+        long sequence = reserve();
+        if (sequence < 0) {
+            return;
+        }
+        int slot = (int) (sequence & mask);
+        int size = Math.min(length, maxPayload);
+        int position = start & (ring.length - 1);
+        int first = Math.min(size, ring.length - position);
+        System.arraycopy(ring, position, payloads, slot * maxPayload, first);
+        System.arraycopy(ring, 0, payloads, slot * maxPayload + first, size - first);
+        publish(sequence, direction, timeMillis, size);
+    }
+
+    /**
+     * Reserva o próximo slot.
+     *
+     * @return A sequência reservada, ou -1 se o anel estiver cheio.
+     */
+    private long reserve() {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= capacity) {
+                dropped.incrementAndGet();
+                return -1;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        return sequence;
+    }
+
+    private void publish(long sequence, byte direction, long timeMillis, int size) {
+        int slot = (int) (sequence & mask);
+        lengths[slot] = size;
+        timestamps[slot] = timeMillis;
+        directions[slot] = direction;
+        published.lazySet(slot, sequence); // Publica o slot após a escrita dos dados
+    }
+
+    /**
+     * Grava no fluxo os registros publicados até o momento. Deve ser chamado por um único consumidor.
+     *
+     * @param out Fluxo de destino no formato de captura.
+     * @return Quantidade de registros gravados.
+     * @throws IOException Se a escrita falhar.
+     */
+    public int drainTo(DataOutputStream out) throws IOException {
+        int count = 0;
+        long sequence = head.get();
+        while (true) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence) {
+                break;
+            }
+            WireCaptureFormat.writeRecord(out, timestamps[slot], directions[slot],
+                    payloads, slot * maxPayload, lengths[slot]);
+            sequence++;
+            head.lazySet(sequence); // Libera o slot para os produtores
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Quantos registros foram descartados por falta de espaço no anel.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Quantos registros aguardam gravação.
+     */
+    public long getPendingCount() {
+        return tail.get() - head.get();
+    }
+}
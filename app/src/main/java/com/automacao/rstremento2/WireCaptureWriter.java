@@ -0,0 +1,118 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Tarefa periódica que drena a {@link WireCapture} para arquivos de captura,
+ * com rotação por tamanho e retenção de um número máximo de arquivos.
+ */
+public class WireCaptureWriter implements Runnable {
+    private static final String TAG = "WireCaptureWriter";
+    private static final String PREFIX = "wire-";
+    private static final String SUFFIX = ".gscap";
+
+    private final WireCapture capture;
+    private final File directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private DataOutputStream out;
+    private int fileIndex;
+
+    /**
+     * Construtor do gravador.
+     *
+     * @param capture      Captura a drenar.
+     * @param directory    Diretório dos arquivos de captura.
+     * @param maxFileBytes Tamanho a partir do qual um novo arquivo é iniciado.
+     * @param maxFiles     Quantidade de arquivos mantidos; os mais antigos são apagados.
+     */
+    public WireCaptureWriter(WireCapture capture, File directory, long maxFileBytes, int maxFiles) {
+        this.capture = capture;
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            if (capture.getPendingCount() == 0) {
+                return;
+            }
+            if (out == null || out.size() >= maxFileBytes) {
+                rotate();
+            }
+            capture.drainTo(out);
+            out.flush();
+        } catch (IOException e) {
+            AppLog.e(TAG, "Erro ao gravar captura: {}", e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Grava os registros pendentes e fecha o arquivo atual.
+     */
+    public synchronized void close() {
+        run();
+        closeQuietly();
+    }
+
+    private void rotate() throws IOException {
+        closeQuietly();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar " + directory);
+        }
+        File[] existing = listCaptureFiles();
+        if (existing.length > 0) {
+            fileIndex = Math.max(fileIndex, indexOf(existing[existing.length - 1]) + 1);
+        }
+        File file = new File(directory, String.format(Locale.ROOT, "%s%06d%s", PREFIX, fileIndex++, SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        WireCaptureFormat.writeHeader(out);
+
+        // Retenção: mantém apenas os arquivos mais recentes
+        File[] files = listCaptureFiles();
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            if (!files[i].delete()) {
+                AppLog.d(TAG, "Não foi possível apagar {}", files[i]);
+            }
+        }
+    }
+
+    private File[] listCaptureFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static int indexOf(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                AppLog.e(TAG, "Erro ao fechar captura: {}", e.getMessage());
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do esvaziamento do acúmulo: ordem de envio, remoção só dos registros confirmados
+ * e limites das filas entre os estágios.
+ */
+public class BacklogFlusherTest {
+
+    private static final int BODY_BYTES = 20;
+
+    /** Registro completo cujo corpo começa com o número de sequência. */
+    private static byte[] record(int sequence) {
+        byte[] packet = new byte[BODY_BYTES + PacketBuffer.RECORD_OVERHEAD];
+        packet[0] = 0x01;
+        packet[1] = (byte) BODY_BYTES;
+        packet[2] = (byte) (BODY_BYTES >> 8);
+        packet[3] = (byte) sequence;
+        packet[4] = (byte) (sequence >> 8);
+        for (int i = 5; i < 3 + BODY_BYTES; i++) {
+            packet[i] = (byte) (sequence * 31 + i);
+        }
+        PacketBuffer.sealFrame(packet);
+        return packet;
+    }
+
+    private static PacketBuffer buffer(int records) {
+        // Lâminas pequenas: os pacotes agrupados atravessam fronteiras de lâmina
+        PacketBuffer buffer = new PacketBuffer(new PacketArena(128, false, 64));
+        for (int i = 0; i < records; i++) {
+            assertTrue(buffer.add(record(i)));
+        }
+        return buffer;
+    }
+
+    /**
+     * Servidor em memória: separa os pacotes gravados e entrega uma confirmação por leitura,
+     * sempre do pacote mais antigo ainda não confirmado. Depois de {@code ackLimit}
+     * confirmações, a conexão é encerrada.
+     */
+    private static final class AckingChannel {
+        final List<byte[]> packets = new ArrayList<>();
+        final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int ackLimit = Integer.MAX_VALUE;
+        int acks;
+        int maxOutstanding;
+        boolean corruptAcks;
+        byte[] noise = {}; // Bytes entregues antes de cada confirmação
+
+        final OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                received.write(b);
+                byte[] data = received.toByteArray();
+                if (data.length >= 3) {
+                    int length = PacketBuffer.RECORD_OVERHEAD + ((data[1] & 0xFF) | (data[2] & 0xFF) << 8);
+                    if (data.length == length) {
+                        packets.add(data);
+                        pending.addLast(data);
+                        received.reset();
+                        maxOutstanding = Math.max(maxOutstanding, pending.size());
+                    }
+                }
+            }
+        };
+
+        final InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (acks == ackLimit || pending.isEmpty()) {
+                    return -1;
+                }
+                int crc = AckFrameDecoder.packetCrc(pending.pollFirst());
+                System.arraycopy(noise, 0, b, off, noise.length);
+                off += noise.length;
+                b[off] = 0x02;
+                b[off + 1] = (byte) (corruptAcks ? ~crc : crc);
+                b[off + 2] = (byte) (crc >> 8);
+                acks++;
+                return noise.length + 3;
+            }
+        };
+    }
+
+    /** Sequências dos registros de um pacote agrupado, na ordem do pacote. */
+    private static List<Integer> sequences(byte[] packet) {
+        List<Integer> sequences = new ArrayList<>();
+        for (int i = 3; i < packet.length - 2; i += BODY_BYTES) {
+            sequences.add((packet[i] & 0xFF) | (packet[i + 1] & 0xFF) << 8);
+        }
+        return sequences;
+    }
+
+    @Test
+    public void flush_sendsRecordsInOrderAndRemovesThemAfterAck() throws IOException {
+        PacketBuffer buffer = buffer(50);
+        AckingChannel channel = new AckingChannel();
+        BacklogFlusher flusher = new BacklogFlusher(buffer, Runnable::run, 4, 1024, 3, 2);
+
+        assertEquals(40, flusher.flush(channel.in, channel.out, 40));
+        assertEquals(10, flusher.getLastFrames());
+        assertEquals(10, channel.packets.size());
+        assertEquals(30, flusher.getLastReceivedBytes()); // Uma confirmação de 3 bytes por pacote
+
+        List<Integer> sent = new ArrayList<>();
+        for (byte[] packet : channel.packets) {
+            assertEquals(4 * BODY_BYTES + PacketBuffer.RECORD_OVERHEAD, packet.length);
+            assertEquals(Crc16Modbus.calculate(packet, 0, packet.length - 2) & 0xFFFF,
+                    AckFrameDecoder.packetCrc(packet));
+            sent.addAll(sequences(packet));
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, (int) sent.get(i));
+        }
+        assertEquals(10, buffer.size());
+        assertArrayEquals(record(40), buffer.peek());
+    }
+
+    @Test
+    public void partialAck_removesOnlyAcknowledgedRecords() {
+        PacketBuffer buffer = buffer(30);
+        AckingChannel channel = new AckingChannel();
+        channel.ackLimit = 3;
+        BacklogFlusher flusher = new BacklogFlusher(buffer, Runnable::run, 4, 1024, 2, 5);
+
+        try {
+            flusher.flush(channel.in, channel.out, 30);
+            fail("A conexão encerrada deveria interromper o esvaziamento");
+        } catch (IOException expected) {
+            // Conexão encerrada com pacotes sem confirmação
+        }
+        assertEquals(12, flusher.getLastRecords());
+        assertEquals(18, buffer.size());
+        assertArrayEquals(record(12), buffer.peek());
+    }
+
+    @Test
+    public void invalidAck_removesNothing() {
+        PacketBuffer buffer = buffer(8);
+        AckingChannel channel = new AckingChannel();
+        channel.corruptAcks = true;
+        BacklogFlusher flusher = new BacklogFlusher(buffer, Runnable::run, 4, 1024, 2, 2);
+
+        try {
+            flusher.flush(channel.in, channel.out, 8);
+            fail("A confirmação com CRC inválido deveria interromper o esvaziamento");
+        } catch (IOException expected) {
+            // CRC da confirmação não corresponde ao pacote
+        }
+        assertEquals(0, flusher.getLastRecords());
+        assertEquals(8, buffer.size());
+        assertArrayEquals(record(0), buffer.peek());
+    }
+
+    @Test
+    public void backpressure_boundsEncodedAndUnacknowledgedFrames() throws IOException {
+        PacketBuffer buffer = buffer(100);
+        AckingChannel channel = new AckingChannel();
+        BacklogFlusher[] flusher = new BacklogFlusher[1];
+        int[] tasks = new int[1];
+        int[] maxAhead = new int[1];
+        // Cada pacote passa por duas tarefas (montagem e CRC), executadas na própria thread
+        Executor workers = task -> {
+            tasks[0]++;
+            maxAhead[0] = Math.max(maxAhead[0], (tasks[0] + 1) / 2 - flusher[0].getLastFrames());
+            task.run();
+        };
+        flusher[0] = new BacklogFlusher(buffer, workers, 2, 1024, 3, 4);
+
+        assertEquals(100, flusher[0].flush(channel.in, channel.out, 100));
+        assertEquals(50, channel.packets.size());
+        assertEquals(3, maxAhead[0]);
+        assertEquals(4, channel.maxOutstanding);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void flush_recordsSentFramesAndAcksInWireCapture() throws IOException {
+        PacketBuffer buffer = buffer(6);
+        AckingChannel channel = new AckingChannel();
+        channel.noise = new byte[]{0x7F, 0x00};
+        BacklogFlusher flusher = new BacklogFlusher(buffer, Runnable::run, 3, 1024, 2, 2);
+        WireCapture capture = new WireCapture(16, 256);
+        flusher.setWireCapture(capture);
+
+        assertEquals(6, flusher.flush(channel.in, channel.out, 6));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(4, capture.drainTo(new DataOutputStream(bytes)));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<WireCaptureFormat.Record> records = new ArrayList<>();
+        WireCaptureFormat.Record record = new WireCaptureFormat.Record();
+        while (WireCaptureFormat.readRecord(in, record)) {
+            records.add(record);
+            record = new WireCaptureFormat.Record();
+        }
+
+        // Dois pacotes gravados antes de esperar as duas confirmações da janela
+        assertEquals(4, records.size());
+        byte[] first = channel.packets.get(0);
+        assertEquals(WireCapture.DIRECTION_SENT, records.get(0).direction);
+        assertArrayEquals(first, records.get(0).data);
+        int crc = AckFrameDecoder.packetCrc(first);
+        // A confirmação é capturada como veio do fluxo, com os bytes descartados antes dela
+        assertEquals(WireCapture.DIRECTION_RECEIVED, records.get(2).direction);
+        assertArrayEquals(new byte[]{0x7F, 0x00, 0x02, (byte) crc, (byte) (crc >> 8)}, records.get(2).data);
+    }
+
+    @Test
+    public void truncatedAck_isCapturedAsReceived() throws IOException {
+        PacketBuffer buffer = buffer(2);
+        AckingChannel channel = new AckingChannel();
+        BacklogFlusher flusher = new BacklogFlusher(buffer, Runnable::run, 2, 1024, 1, 1);
+        WireCapture capture = new WireCapture(16, 256);
+        flusher.setWireCapture(capture);
+        // Resposta com lixo e um quadro incompleto antes de a conexão terminar
+        InputStream truncated = new ByteArrayInputStream(new byte[]{0x55, 0x02, 0x01});
+
+        try {
+            flusher.flush(truncated, channel.out, 2);
+            fail("A conexão encerrada deveria interromper o esvaziamento");
+        } catch (IOException expected) {
+            // Conexão encerrada no meio da confirmação
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(2, capture.drainTo(new DataOutputStream(bytes)));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        WireCaptureFormat.Record record = new WireCaptureFormat.Record();
+        assertTrue(WireCaptureFormat.readRecord(in, record));
+        assertEquals(WireCapture.DIRECTION_SENT, record.direction);
+        assertTrue(WireCaptureFormat.readRecord(in, record));
+        assertEquals(WireCapture.DIRECTION_RECEIVED, record.direction);
+        assertArrayEquals(new byte[]{0x55, 0x02, 0x01}, record.data);
+        assertEquals(2, buffer.size());
+    }
+}
@@ -0,0 +1,167 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do controle de franquia e da contabilidade de dados com tráfego sintético, sem
+ * relógio nem rede.
+ */
+public class DataBudgetControllerTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOLD = 10 * MINUTE;
+    private static final long DAILY = 1_000_000L;
+    private static final long DAY_START = 20_000 * DataBudgetController.DAY_MS; // Meia-noite UTC
+
+    @Test
+    public void steadyTrafficUnderBudget_staysNormal() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        long perMinute = DAILY / (24 * 60) / 2; // Metade da franquia ao longo do dia
+        long total = 0;
+        for (long t = 0; t < DataBudgetController.DAY_MS; t += MINUTE) {
+            assertEquals(DataBudgetController.LEVEL_NORMAL, budget.evaluate(DAY_START + t, total));
+            total += perMinute;
+        }
+    }
+
+    @Test
+    public void heavyTraffic_escalatesOneLevelPerHold() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        long perMinute = DAILY / (24 * 60) * 4; // Projeção de quatro vezes a franquia
+        long total = 0;
+        int previous = DataBudgetController.LEVEL_NORMAL;
+        long lastChange = DAY_START;
+        for (long t = 0; t <= 40 * MINUTE; t += MINUTE) {
+            int level = budget.evaluate(DAY_START + t, total);
+            if (level != previous) {
+                assertEquals(previous + 1, level);
+                assertTrue(DAY_START + t - lastChange >= HOLD || previous == DataBudgetController.LEVEL_NORMAL);
+                lastChange = DAY_START + t;
+                previous = level;
+            }
+            total += perMinute;
+        }
+        assertEquals(DataBudgetController.LEVEL_SUMMARY_ONLY, budget.getLevel());
+        assertTrue(budget.getProjectedBytes() > DAILY);
+    }
+
+    @Test
+    public void budgetExhausted_jumpsToSummaryOnly() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        assertEquals(DataBudgetController.LEVEL_NORMAL, budget.evaluate(DAY_START + 12 * 60 * MINUTE, 0));
+        assertEquals(DataBudgetController.LEVEL_SUMMARY_ONLY, budget.evaluate(DAY_START + 12 * 60 * MINUTE + 1000, DAILY));
+        assertEquals(DAILY, budget.getUsedTodayBytes());
+    }
+
+    @Test
+    public void newDayAndLowTraffic_recoverOneLevelPerHold() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        long late = DAY_START + 23 * 60 * MINUTE;
+        budget.evaluate(late, 0);
+        assertEquals(DataBudgetController.LEVEL_SUMMARY_ONLY, budget.evaluate(late + MINUTE, DAILY));
+
+        // Dia seguinte, tráfego quase nulo: desce um nível por vez, respeitando o tempo mínimo
+        long total = DAILY;
+        long next = DAY_START + DataBudgetController.DAY_MS;
+        int previous = DataBudgetController.LEVEL_SUMMARY_ONLY;
+        long lastChange = late + MINUTE;
+        for (long t = next; t < next + 2 * 60 * MINUTE; t += MINUTE) {
+            int level = budget.evaluate(t, total);
+            if (level != previous) {
+                assertEquals(previous - 1, level);
+                assertTrue(t - lastChange >= HOLD);
+                lastChange = t;
+                previous = level;
+            }
+            total += 10;
+        }
+        assertEquals(DataBudgetController.LEVEL_NORMAL, budget.getLevel());
+        assertTrue(budget.getUsedTodayBytes() < DAILY / 100);
+    }
+
+    @Test
+    public void usageMeter_addsHeaderAndConnectionOverhead() {
+        DataUsageMeter meter = new DataUsageMeter();
+        meter.onConnection();
+        meter.onSent(3000);  // Três segmentos
+        meter.onReceived(3); // Um segmento
+
+        assertEquals(3000, meter.getSentBytes());
+        assertEquals(3, meter.getReceivedBytes());
+        assertEquals(3003 + 4 * DataUsageMeter.TCP_IP_HEADER_BYTES + DataUsageMeter.CONNECTION_OVERHEAD_BYTES,
+                meter.getTotalBytes());
+    }
+
+    @Test
+    public void restoredTotal_isNotCountedAsTodaysUsage() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        long restored = 20 * DAILY; // Consumo do mês salvo antes do reinício
+        assertEquals(DataBudgetController.LEVEL_NORMAL, budget.evaluate(DAY_START + 12 * 60 * MINUTE, restored));
+        assertEquals(DataBudgetController.LEVEL_NORMAL,
+                budget.evaluate(DAY_START + 12 * 60 * MINUTE + MINUTE, restored + 100));
+        assertEquals(100, budget.getUsedTodayBytes());
+    }
+
+    @Test
+    public void countersResetMidDay_keepTodaysUsage() {
+        DataBudgetController budget = new DataBudgetController(DAILY, HOLD, 0);
+        budget.evaluate(DAY_START + 60 * MINUTE, 5000);
+        budget.evaluate(DAY_START + 61 * MINUTE, 8000);
+        assertEquals(3000, budget.getUsedTodayBytes());
+
+        budget.evaluate(DAY_START + 62 * MINUTE, 200); // Virada do período de cobrança
+        assertEquals(3200, budget.getUsedTodayBytes());
+        budget.evaluate(DAY_START + 63 * MINUTE, 500);
+        assertEquals(3500, budget.getUsedTodayBytes());
+    }
+
+    @Test
+    public void usageMeter_restoresAndRollsOverBillingPeriod() {
+        Map<String, long[]> saved = new HashMap<>();
+        DataUsageStore store = new DataUsageStore() {
+            @Override
+            public long[] load(String period) {
+                return saved.get(period);
+            }
+
+            @Override
+            public void save(String period, long[] counters) {
+                saved.put(period, counters.clone());
+            }
+        };
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        long may31 = 1_717_156_800_000L; // 2024-05-31 12:00 UTC
+        saved.put("2024-05", new long[]{1000, 30, 2, 1});
+
+        DataUsageMeter meter = new DataUsageMeter(utc);
+        meter.onSent(500); // Antes da restauração, também conta
+        meter.restore(store, may31);
+        assertEquals("2024-05", meter.getPeriod());
+        assertEquals(1500, meter.getSentBytes());
+        assertEquals(30, meter.getReceivedBytes());
+        assertEquals(1, meter.getConnections());
+
+        meter.onConnection();
+        meter.persist(may31 + MINUTE);
+        assertArrayEquals(new long[]{1500, 30, 3, 2}, saved.get("2024-05"));
+
+        // Após um reinício, o mesmo período é restaurado
+        DataUsageMeter restarted = new DataUsageMeter(utc);
+        restarted.restore(store, may31 + 2 * MINUTE);
+        assertEquals(meter.getTotalBytes(), restarted.getTotalBytes());
+
+        // Virada do mês: o acumulado fecha maio e junho começa do zero
+        meter.onReceived(3);
+        meter.persist(may31 + DataBudgetController.DAY_MS);
+        assertEquals("2024-06", meter.getPeriod());
+        assertArrayEquals(new long[]{1500, 33, 4, 2}, saved.get("2024-05"));
+        assertArrayEquals(new long[]{0, 0, 0, 0}, saved.get("2024-06"));
+        assertEquals(0, meter.getTotalBytes());
+    }
+}
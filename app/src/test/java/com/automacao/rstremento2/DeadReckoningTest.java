@@ -0,0 +1,101 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validação da navegação estimada com registros de sensores sintéticos reproduzidos
+ * pelo {@link SensorLogReader}.
+ */
+public class DeadReckoningTest {
+
+    private static final double LAT = -19.90;
+    private static final double LON = -43.90;
+    private static final long SAMPLE_NANOS = 20_000_000L; // 50 Hz
+
+    /**
+     * Gera um registro com um fix no instante zero seguido de amostras constantes.
+     */
+    private static String log(float speedMps, float bearing, float acceleration, float yawRate,
+                              Float heading, double seconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# fix inicial\n");
+        sb.append("f,0,").append(LAT).append(',').append(LON).append(',')
+                .append(speedMps).append(',').append(bearing).append('\n');
+        for (long t = SAMPLE_NANOS; t <= (long) (seconds * 1e9); t += SAMPLE_NANOS) {
+            sb.append("a,").append(t).append(',').append(acceleration).append('\n');
+            sb.append("g,").append(t).append(',').append(yawRate).append('\n');
+            if (heading != null) {
+                sb.append("h,").append(t).append(',').append(heading).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double northMeters(DeadReckoningEstimator estimator) {
+        return Math.toRadians(estimator.getEstimatedLatitude() - LAT) * 6371000.0;
+    }
+
+    private static double eastMeters(DeadReckoningEstimator estimator) {
+        return Math.toRadians(estimator.getEstimatedLongitude() - LON) * 6371000.0 * Math.cos(Math.toRadians(LAT));
+    }
+
+    @Test
+    public void constantSpeed_movesAlongBearing() throws IOException {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        SensorLogReader.replay(new StringReader(log(10, 0, 0, 0, null, 10)), estimator);
+
+        assertTrue(estimator.estimate(10_000_000_000L));
+        assertEquals(100.0, northMeters(estimator), 0.5);
+        assertEquals(0.0, eastMeters(estimator), 0.5);
+        assertEquals(10_000_000_000L, estimator.getFixAgeNanos());
+    }
+
+    @Test
+    public void acceleration_integratesSpeedAndDistance() throws IOException {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        SensorLogReader.replay(new StringReader(log(0, 90, 1, 0, null, 5)), estimator);
+
+        assertTrue(estimator.estimate(5_000_000_000L));
+        assertEquals(5.0, estimator.getEstimatedSpeedMps(), 0.05);
+        assertEquals(12.5, eastMeters(estimator), 0.3);
+    }
+
+    @Test
+    public void yawRate_followsQuarterCircle() throws IOException {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        SensorLogReader.replay(new StringReader(log(10, 0, 0, 9, null, 10)), estimator);
+
+        assertTrue(estimator.estimate(10_000_000_000L));
+        double radius = 10 / Math.toRadians(9);
+        assertEquals(90.0, estimator.getHeadingDegrees(), 0.5);
+        assertEquals(radius, northMeters(estimator), 1.0);
+        assertEquals(radius, eastMeters(estimator), 1.0);
+    }
+
+    @Test
+    public void absoluteHeading_boundsGyroBias() throws IOException {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        // Giroscópio com viés de 1 grau/s e rumo absoluto constante em 0
+        SensorLogReader.replay(new StringReader(log(10, 0, 0, 1, 0f, 30)), estimator);
+
+        assertTrue(estimator.estimate(30_000_000_000L));
+        assertEquals(0.0, wrapped(estimator.getHeadingDegrees()), 2.0);
+    }
+
+    @Test
+    public void estimate_expiresLongAfterFix() throws IOException {
+        DeadReckoningEstimator estimator = new DeadReckoningEstimator();
+        assertFalse(estimator.estimate(0));
+        SensorLogReader.replay(new StringReader(log(10, 0, 0, 0, null, 1)), estimator);
+        assertFalse(estimator.estimate(61_000_000_000L));
+    }
+
+    private static double wrapped(double degrees) {
+        return degrees > 180 ? degrees - 360 : degrees;
+    }
+}
@@ -0,0 +1,179 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do escalonamento do gateway contra um receptor local, com as vias executadas
+ * no relógio virtual.
+ */
+public class DeviceGatewayTest {
+
+    private static final String CPF = "12345678909";
+    private static final long T0 = 1_700_000_000_000L;
+
+    /** Registros enfileirados, identificados pelo conteúdo. */
+    private final Map<String, String> recordIds = new HashMap<>();
+
+    private void enqueue(DeviceGateway gateway, GatewayDevice device, String name, int count) {
+        for (int i = 0; i < count; i++) {
+            byte[] record = device.encodePoint(T0 + i * 1000L, -19.9 - i * 1e-4, -43.9, 850, 40f, 9);
+            recordIds.put(Arrays.toString(record), name + i);
+            assertTrue(gateway.addRecord(device.getImei(), record, false));
+        }
+    }
+
+    /**
+     * Traduz os pacotes recebidos: "A3" para o quarto registro de A, "head:A" para a identificação.
+     */
+    private List<String> decode(List<byte[]> packets, Map<String, GatewayDevice> devices) {
+        List<String> ids = new ArrayList<>();
+        for (byte[] packet : packets) {
+            String id = recordIds.get(Arrays.toString(packet));
+            if (id == null) {
+                for (Map.Entry<String, GatewayDevice> entry : devices.entrySet()) {
+                    if (Arrays.equals(entry.getValue().getHeadPacket(), packet)) {
+                        id = "head:" + entry.getKey();
+                    }
+                }
+            }
+            assertNotNull(id);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static DeviceGateway newGateway(TaskScheduler scheduler, MockReceiver receiver, int connections) {
+        EndpointPool pool = new EndpointPool(Collections.singletonList(new ServerEndpoint("127.0.0.1", receiver.getPort())));
+        return new DeviceGateway(pool, scheduler, connections);
+    }
+
+    @Test
+    public void heavyDevice_doesNotDelayOthers_andHeadPrecedesEachSwitch() throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            TaskScheduler scheduler = new TaskScheduler(new TaskScheduler.VirtualClock());
+            DeviceGateway gateway = newGateway(scheduler, receiver, 1);
+            Map<String, GatewayDevice> devices = new HashMap<>();
+            devices.put("A", gateway.register("860000000000001", CPF, "ABC1D23"));
+            devices.put("B", gateway.register("860000000000002", CPF, "XYZ9K88"));
+            enqueue(gateway, devices.get("A"), "A", 60);
+            enqueue(gateway, devices.get("B"), "B", 5);
+            int recordLength = devices.get("A").encodePoint(T0, 0, 0, 0, 0, 0).length;
+
+            gateway.start();
+            scheduler.runFor(1000);
+            gateway.stop();
+            scheduler.stop();
+
+            List<String> ids = decode(receiver.getPackets(), devices);
+            assertEquals(60 + 5 + 3, ids.size()); // Identificação de A, de B e de A outra vez
+
+            // B é atendido depois de no máximo um quantum de registros de A
+            int firstB = ids.indexOf("B0");
+            int maxBurst = DeviceGateway.QUANTUM_BYTES / recordLength;
+            assertTrue("Primeiro registro de B em " + firstB, firstB <= 1 + maxBurst + 1);
+            assertTrue(ids.indexOf("B4") < ids.indexOf("A" + (2 * maxBurst)));
+
+            // Cada troca de dispositivo na conexão é precedida pela identificação do novo dispositivo
+            String current = null;
+            int[] next = new int[2];
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                if (id.startsWith("head:")) {
+                    current = id.substring(5);
+                    continue;
+                }
+                String name = id.substring(0, 1);
+                assertEquals("Registro " + id + " sem identificação", name, current);
+                // Ordem preservada dentro de cada dispositivo
+                assertEquals(name + next[name.charAt(0) - 'A'], id);
+                next[name.charAt(0) - 'A']++;
+            }
+            assertEquals(60, devices.get("A").getSentRecords());
+            assertEquals(5, devices.get("B").getSentRecords());
+        }
+    }
+
+    @Test
+    public void severalLanes_keepPerDeviceOrderAndShareFairly() throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            TaskScheduler scheduler = new TaskScheduler(new TaskScheduler.VirtualClock());
+            DeviceGateway gateway = newGateway(scheduler, receiver, 2);
+            Map<String, GatewayDevice> devices = new HashMap<>();
+            String[] names = {"A", "B", "C", "D"};
+            for (int d = 0; d < names.length; d++) {
+                devices.put(names[d], gateway.register("86000000000001" + d, CPF, "ABC1D2" + d));
+                enqueue(gateway, devices.get(names[d]), names[d], 30);
+            }
+
+            gateway.start();
+            scheduler.runFor(1000);
+            gateway.stop();
+            scheduler.stop();
+
+            List<String> ids = decode(receiver.getPackets(), devices);
+            int[] next = new int[names.length];
+            int[] deliveredAtHalf = new int[names.length];
+            int records = 0;
+            for (String id : ids) {
+                if (id.startsWith("head:")) {
+                    continue;
+                }
+                int device = id.charAt(0) - 'A';
+                assertEquals(names[device] + next[device], id);
+                next[device]++;
+                if (++records == 60) {
+                    deliveredAtHalf = next.clone();
+                }
+            }
+            assertEquals(120, records);
+            // Na metade da entrega nenhum dispositivo ficou para trás
+            for (int count : deliveredAtHalf) {
+                assertTrue("Entregues na metade: " + Arrays.toString(deliveredAtHalf), count >= 8 && count <= 22);
+            }
+        }
+    }
+
+    @Test
+    public void idleDevices_releaseQueueMemory() throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            TaskScheduler scheduler = new TaskScheduler(new TaskScheduler.VirtualClock());
+            DeviceGateway gateway = newGateway(scheduler, receiver, 1);
+            GatewayDevice idle = gateway.register("860000000000021", CPF, "ABC1D23");
+            GatewayDevice busy = gateway.register("860000000000022", CPF, "XYZ9K88");
+            assertEquals(0, idle.getRetainedBytes()); // Lâminas alocadas só sob demanda
+            enqueue(gateway, idle, "I", 3);
+            enqueue(gateway, busy, "B", 3);
+            assertTrue(idle.getRetainedBytes() > 0);
+
+            gateway.start();
+            scheduler.runFor(1000);
+            // Acabaram de enviar: a memória é mantida até a próxima verificação
+            assertEquals(0, gateway.trimIdleDevices());
+            assertTrue(idle.getRetainedBytes() > 0);
+
+            // Só o dispositivo ocupado continua enviando
+            assertTrue(gateway.addPoint(busy.getImei(), T0 + 10_000, -19.9, -43.9, 850, 40f, 9));
+            scheduler.runFor(1000);
+            assertEquals(1, gateway.trimIdleDevices());
+            assertEquals(0, idle.getRetainedBytes());
+            assertTrue(busy.getRetainedBytes() > 0);
+
+            // O dispositivo ocioso volta a enviar normalmente
+            assertTrue(gateway.addPoint(idle.getImei(), T0 + 20_000, -19.9, -43.9, 850, 40f, 9));
+            scheduler.runFor(1000);
+            assertEquals(4, idle.getSentRecords());
+            assertEquals(0, idle.getQueuedRecords());
+            gateway.stop();
+            scheduler.stop();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes de seleção e failover de endpoints contra receptores locais com latências diferentes.
+ */
+public class EndpointPoolTest {
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void prefersFastestHealthyEndpoint_andProbesDeadOneOnce() throws Exception {
+        try (MockReceiver slow = new MockReceiver(80);
+             MockReceiver fast = new MockReceiver(5)) {
+            ServerEndpoint dead = new ServerEndpoint("127.0.0.1", closedPort());
+            ServerEndpoint slowEndpoint = new ServerEndpoint("127.0.0.1", slow.getPort());
+            ServerEndpoint fastEndpoint = new ServerEndpoint("127.0.0.1", fast.getPort());
+            EndpointPool pool = new EndpointPool(Arrays.asList(dead, slowEndpoint, fastEndpoint), 2, 60000);
+            GalileoskySimulator simulator = new GalileoskySimulator(null, pool);
+
+            int delivered = 0;
+            for (int i = 0; i < 12; i++) {
+                if (simulator.sendPacketToServer(MockReceiver.samplePacket(i), true)) {
+                    delivered++;
+                }
+            }
+
+            // Cada endpoint não medido é testado uma vez; o morto não volta antes do intervalo
+            assertEquals(1, dead.getSelectionCount());
+            assertEquals(1, dead.getFailureCount());
+            assertEquals(1, slowEndpoint.getSelectionCount());
+            assertSame(fastEndpoint, pool.getCurrent());
+            assertEquals(11, delivered);
+            assertTrue(fast.getPacketCount() > slow.getPacketCount());
+            assertTrue(fastEndpoint.getAckRttNanos() < slowEndpoint.getAckRttNanos());
+        }
+    }
+
+    @Test
+    public void failsOverOnBadAcks_andReprobesDemotedEndpoint() throws Exception {
+        try (MockReceiver primary = new MockReceiver(0);
+             MockReceiver backup = new MockReceiver(40)) {
+            ServerEndpoint primaryEndpoint = new ServerEndpoint("127.0.0.1", primary.getPort());
+            ServerEndpoint backupEndpoint = new ServerEndpoint("127.0.0.1", backup.getPort());
+            EndpointPool pool = new EndpointPool(Arrays.asList(primaryEndpoint, backupEndpoint), 3, 60000);
+            TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+            GalileoskySimulator simulator = new GalileoskySimulator(null, pool, new TaskScheduler(clock));
+
+            for (int i = 0; i < 4; i++) {
+                assertTrue(simulator.sendPacketToServer(MockReceiver.samplePacket(i), true));
+            }
+            assertSame(primaryEndpoint, pool.getCurrent());
+
+            // CRC inválido conta como falha: após 3 falhas o primário é rebaixado
+            primary.setCorruptAck(true);
+            for (int i = 0; i < 6; i++) {
+                simulator.sendPacketToServer(MockReceiver.samplePacket(i), true);
+            }
+            assertTrue(primaryEndpoint.isDemoted());
+            assertSame(backupEndpoint, pool.getCurrent());
+            assertTrue(pool.getFailoverCount() >= 1);
+
+            // Depois do intervalo de teste, o primário recuperado volta a ser escolhido
+            primary.setCorruptAck(false);
+            clock.set(59_999);
+            simulator.sendPacketToServer(MockReceiver.samplePacket(0), true);
+            assertTrue(primaryEndpoint.isDemoted());
+            clock.set(60_000);
+            for (int i = 0; i < 3; i++) {
+                simulator.sendPacketToServer(MockReceiver.samplePacket(i), true);
+            }
+            assertFalse(primaryEndpoint.isDemoted());
+            assertTrue(pool.getProbeCount() >= 1);
+            assertSame(primaryEndpoint, pool.getCurrent());
+        }
+    }
+
+    @Test
+    public void unmeasuredEndpoint_neverOutranksMeasuredOne() {
+        ServerEndpoint fast = new ServerEndpoint("a", 1);
+        ServerEndpoint fresh = new ServerEndpoint("b", 2);
+        EndpointPool pool = new EndpointPool(Arrays.asList(fast, fresh), 3, 1000);
+
+        // Primeira seleção: ninguém medido, o primeiro da configuração é testado
+        assertSame(fast, pool.select(0));
+        pool.recordSuccess(fast, 1_000_000, 2_000_000);
+
+        // O novo endpoint recebe um único teste e falha
+        assertSame(fresh, pool.select(1));
+        pool.recordFailure(fresh, 1);
+        for (long now = 2; now < 1001; now += 100) {
+            assertSame(fast, pool.select(now));
+        }
+        assertSame(fast, pool.getCurrent());
+
+        // Depois do intervalo, novo teste; medido e mais lento, só é usado se o rápido cair
+        assertSame(fresh, pool.select(1001));
+        pool.recordSuccess(fresh, 5_000_000, 9_000_000);
+        assertSame(fast, pool.select(1002));
+        for (int i = 0; i < 3; i++) {
+            pool.recordFailure(fast, 1003);
+        }
+        assertSame(fresh, pool.select(1004));
+        assertEquals(1, pool.getFailoverCount());
+        assertEquals(3, pool.getProbeCount()); // Primeiro teste do rápido mais os dois do novo
+    }
+}
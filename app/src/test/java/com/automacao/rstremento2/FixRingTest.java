@@ -0,0 +1,82 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do anel de fixes: capacidade, volta do anel e contagem de fixes sobrescritos.
+ */
+public class FixRingTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static void addFixes(FixRing ring, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            ring.add(T0 + i * 1000L, -19.9 + i * 1e-5, -43.9, 850 + i, i, 5f);
+        }
+    }
+
+    @Test
+    public void capacity_isRoundedUpToPowerOfTwo() {
+        assertEquals(4, new FixRing(1).getCapacity());
+        assertEquals(4, new FixRing(4).getCapacity());
+        assertEquals(8, new FixRing(5).getCapacity());
+        assertEquals(64, new FixRing(64).getCapacity());
+        assertEquals(128, new FixRing(65).getCapacity());
+        try {
+            new FixRing(RingCapacity.MAX_CAPACITY + 1);
+            fail("Capacidade acima do limite deveria ser recusada");
+        } catch (IllegalArgumentException expected) {
+            // Não cabe em uma potência de dois de int
+        }
+    }
+
+    @Test
+    public void read_wrapsAroundKeepingSequenceOrder() {
+        FixRing ring = new FixRing(8);
+        FixRing.Batch batch = new FixRing.Batch(8);
+        long next = 0;
+        // Consumidor acompanha o produtor: o índice dá várias voltas sem perder fixes
+        for (int round = 0; round < 10; round++) {
+            addFixes(ring, round * 5, 5);
+            assertEquals(5, ring.read(next, batch));
+            assertEquals(0, batch.getSkipped());
+            for (int i = 0; i < 5; i++) {
+                int sequence = round * 5 + i;
+                assertEquals(T0 + sequence * 1000L, batch.times[i]);
+                assertEquals(850 + sequence, batch.altitudes[i], 0);
+                assertEquals(sequence, batch.speeds[i], 0);
+            }
+            next = batch.getNextSequence();
+        }
+        assertEquals(50, next);
+        assertEquals(50, ring.getWritten());
+        assertEquals(0, ring.read(next, batch));
+    }
+
+    @Test
+    public void read_countsOverwrittenFixesAsSkipped() {
+        FixRing ring = new FixRing(8);
+        FixRing.Batch batch = new FixRing.Batch(4);
+        addFixes(ring, 0, 20);
+
+        // Sequências 0 a 11 já foram sobrescritas; a leitura começa na 12
+        assertEquals(4, ring.read(0, batch));
+        assertEquals(12, batch.getSkipped());
+        assertEquals(T0 + 12_000, batch.times[0]);
+        assertEquals(16, batch.getNextSequence());
+
+        // O restante é lido sem perdas, limitado à capacidade do lote
+        assertEquals(4, ring.read(batch.getNextSequence(), batch));
+        assertEquals(0, batch.getSkipped());
+        assertEquals(T0 + 19_000, batch.times[3]);
+        assertEquals(20, batch.getNextSequence());
+
+        // Consumidor atrasado em parte da volta
+        addFixes(ring, 20, 10);
+        assertEquals(4, ring.read(20, batch));
+        assertEquals(2, batch.getSkipped());
+        assertEquals(T0 + 22_000, batch.times[0]);
+    }
+}
@@ -0,0 +1,58 @@
+package com.automacao.rstremento2;
+
+/**
+ * Fonte com fix desde o início e sem anel de fixes: a posição atual é amostrada.
+ */
+class FixedLocationSource implements LocationSource {
+    @Override
+    public void setListener(LocationUpdateListener listener) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stopLocationUpdates() {
+    }
+
+    @Override
+    public double getLatitude() {
+        return -19.9167;
+    }
+
+    @Override
+    public double getLongitude() {
+        return -43.9345;
+    }
+
+    @Override
+    public double getAltitude() {
+        return 850;
+    }
+
+    @Override
+    public float getSpeed() {
+        return 10f * SPEED_SCALE;
+    }
+
+    @Override
+    public int getSatellitesConnected() {
+        return 9;
+    }
+
+    @Override
+    public boolean hasFix() {
+        return true;
+    }
+
+    @Override
+    public FixRing getFixRing() {
+        return null;
+    }
+
+    @Override
+    public GnssQuality getGnssQuality() {
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.automacao.rstremento2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Medição do motor de cercas com 10 mil cercas. Fica fora dos testes unitários, que não
+ * devem depender do tempo de relógio da máquina; execute o {@code main} pela IDE.
+ */
+public final class GeofenceBenchmark {
+
+    private GeofenceBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int fenceCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int fixes = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        Random random = new Random(42);
+        List<Geofence> fences = new ArrayList<>();
+        for (int i = 0; i < fenceCount; i++) {
+            double lat = -20 + random.nextDouble();
+            double lon = -44 + random.nextDouble();
+            fences.add(new Geofence(i,
+                    new double[]{lat - 0.0015, lat - 0.0015, lat + 0.0015, lat + 0.0015},
+                    new double[]{lon - 0.0015, lon + 0.0015, lon + 0.0015, lon - 0.0015}, 0));
+        }
+        int[] events = new int[1];
+        GeofenceEngine engine = new GeofenceEngine(fences, (type, fence, time, lat, lon) -> events[0]++);
+
+        double[] lats = new double[fixes];
+        double[] lons = new double[fixes];
+        for (int i = 0; i < fixes; i++) {
+            lats[i] = -20 + random.nextDouble();
+            lons[i] = -44 + random.nextDouble();
+        }
+        for (int i = 0; i < fixes; i++) { // Aquecimento
+            engine.evaluate(i, lats[i], lons[i]);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < fixes; i++) {
+            engine.evaluate(fixes + i, lats[i], lons[i]);
+        }
+        double microsPerFix = (System.nanoTime() - start) / 1000.0 / fixes;
+        System.out.println(String.format(Locale.ROOT, "GeofenceEngine: %.2f us/fix com %d cercas (%d eventos)",
+                microsPerFix, fenceCount, events[0]));
+    }
+}
@@ -0,0 +1,122 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes locais do motor de cercas. A medição de desempenho fica em {@link GeofenceBenchmark}.
+ */
+public class GeofenceEngineTest {
+
+    private static Geofence square(int id, double lat, double lon, double half, long dwellMillis) {
+        return new Geofence(id,
+                new double[]{lat - half, lat - half, lat + half, lat + half},
+                new double[]{lon - half, lon + half, lon + half, lon - half},
+                dwellMillis);
+    }
+
+    @Test
+    public void enterDwellExit_areReportedOnce() {
+        List<Geofence> fences = new ArrayList<>();
+        fences.add(square(7, -19.90, -43.90, 0.001, 60000));
+        List<String> events = new ArrayList<>();
+        GeofenceEngine engine = new GeofenceEngine(fences,
+                (type, fence, time, lat, lon) -> events.add(type + ":" + fence.getId() + "@" + time));
+
+        engine.evaluate(0, -19.95, -43.95);
+        engine.evaluate(1000, -19.90, -43.90);
+        engine.evaluate(30000, -19.9001, -43.9001);
+        engine.evaluate(61000, -19.90, -43.90);
+        engine.evaluate(62000, -19.90, -43.90);
+        engine.evaluate(63000, -19.95, -43.95);
+
+        assertEquals(3, events.size());
+        assertEquals("1:7@1000", events.get(0));
+        assertEquals("3:7@61000", events.get(1));
+        assertEquals("2:7@63000", events.get(2));
+        assertEquals(0, engine.getInsideCount());
+    }
+
+    @Test
+    public void concavePolygon_excludesPointInsideBoundingBox() throws Exception {
+        // Polígono em "U": o centro está no retângulo envolvente, mas fora do polígono
+        String file = "# cerca em U\n"
+                + "1,0,0 0;0 3;3 3;3 2;1 2;1 1;3 1;3 0\n";
+        List<Geofence> fences = GeofenceFileReader.read(new StringReader(file));
+        Geofence fence = fences.get(0);
+
+        assertTrue(fence.boundsContain(1.5, 1.5));
+        assertFalse(fence.contains(1.5, 1.5));
+        assertTrue(fence.contains(0.5, 1.5));
+    }
+
+    @Test
+    public void tenThousandFences_matchBruteForce() {
+        Random random = new Random(42);
+        List<Geofence> fences = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            fences.add(square(i, -20 + random.nextDouble(), -44 + random.nextDouble(), 0.0015, 0));
+        }
+        int[] events = new int[1];
+        GeofenceEngine engine = new GeofenceEngine(fences, (type, fence, time, lat, lon) -> events[0]++);
+
+        for (int i = 0; i < 20000; i++) {
+            double lat = -20 + random.nextDouble();
+            double lon = -44 + random.nextDouble();
+            engine.evaluate(i * 1000L, lat, lon);
+            int expected = 0;
+            for (Geofence fence : fences) {
+                if (fence.contains(lat, lon)) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, engine.getInsideCount());
+        }
+        assertTrue(events[0] > 0);
+    }
+
+    @Test
+    public void fenceIdOutside24Bits_isRejected() throws Exception {
+        new Geofence(Geofence.MAX_ID, new double[]{0, 0, 1}, new double[]{0, 1, 1}, 0);
+        try {
+            new Geofence(Geofence.MAX_ID + 1, new double[]{0, 0, 1}, new double[]{0, 1, 1}, 0);
+            fail("Identificador acima de 24 bits aceito");
+        } catch (IllegalArgumentException expected) {
+            // Esperado
+        }
+        try {
+            GeofenceFileReader.read(new StringReader("-1,0,0 0;0 1;1 1\n"));
+            fail("Identificador negativo aceito");
+        } catch (IOException expected) {
+            assertEquals("Linha de cerca inválida: 1", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void hugeFence_cellCountDoesNotOverflow() {
+        List<Geofence> fences = new ArrayList<>();
+        // 180 x 360 graus com células de 0,001 grau: 6,5e10 células, acima de int
+        fences.add(new Geofence(1, new double[]{-90, -90, 90, 90}, new double[]{-180, 180, 180, -180}, 0));
+        try {
+            new GeofenceIndex(fences, 0.001);
+            fail("Índice aceitou mais células que o limite");
+        } catch (IllegalArgumentException expected) {
+            // Esperado
+        }
+
+        // Coordenadas fora do intervalo válido são limitadas às bordas da grade
+        List<Geofence> edge = new ArrayList<>();
+        edge.add(new Geofence(2, new double[]{89, 89, 95, 95}, new double[]{179, 185, 185, 179}, 0));
+        GeofenceEngine engine = new GeofenceEngine(edge, 1.0, (type, fence, time, lat, lon) -> {
+        });
+        engine.evaluate(0, 89.5, 179.5);
+        assertEquals(1, engine.getInsideCount());
+    }
+}
@@ -0,0 +1,92 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes das métricas de GNSS com status sintéticos.
+ */
+public class GnssQualityTest {
+
+    private static final int GPS = 1;
+    private static final int GALILEO = 6;
+
+    @Test
+    public void metrics_countOnlySatellitesUsedInFix() {
+        GnssQuality quality = new GnssQuality();
+        goodSky(quality);
+        quality.addSatellite(3, 45, false, 10, 10); // Visível, fora do fix
+        quality.end(0);
+
+        assertEquals(9, quality.getVisible());
+        assertEquals(8, quality.getUsedInFix());
+        assertEquals(4, quality.getUsedInFix(GPS));
+        assertEquals(4, quality.getUsedInFix(GALILEO));
+        assertEquals((1 << GPS) | (1 << GALILEO), quality.getConstellationMask());
+        assertEquals(33.5f, quality.getMeanCn0(), 0.01f);
+        assertEquals(35.5f, quality.getTopCn0Mean(), 0.01f); // 37, 36, 35, 34
+    }
+
+    @Test
+    public void hdop_matchesKnownGeometry() {
+        GnssQuality quality = new GnssQuality();
+        // Um satélite no zênite e três no horizonte a 120°: HDOP = sqrt(4/3)
+        quality.begin();
+        quality.addSatellite(GPS, 40, true, 90, 0);
+        for (int i = 0; i < 3; i++) {
+            quality.addSatellite(GPS, 40, true, 0, 120 * i);
+        }
+        quality.end(0);
+        assertEquals(Math.sqrt(4.0 / 3), quality.getHdop(), 1e-3);
+
+        // Todos na mesma direção: geometria degenerada
+        quality.begin();
+        for (int i = 0; i < 5; i++) {
+            quality.addSatellite(GPS, 40, true, 45, 90);
+        }
+        quality.end(0);
+        assertEquals(GnssQuality.HDOP_UNKNOWN, quality.getHdop(), 0);
+    }
+
+    @Test
+    public void levelChange_reportedOnlyAfterItPersists() {
+        GnssQuality quality = new GnssQuality();
+        int[] changes = new int[1];
+        quality.setListener(q -> changes[0]++);
+
+        // Céu aberto a 1 Hz: o nível só muda depois do tempo mínimo
+        long t = 0;
+        for (; t < 3000; t += 1000) {
+            goodSky(quality);
+            assertFalse(quality.end(t));
+        }
+        goodSky(quality);
+        assertTrue(quality.end(t));
+        assertEquals(GnssQuality.LEVEL_GOOD, quality.getLevel());
+
+        // Quedas isoladas abaixo do limiar não geram notificação
+        for (int i = 0; i < 10; i++) {
+            t += 1000;
+            if (i % 2 == 0) {
+                quality.begin();
+                quality.end(t);
+            } else {
+                goodSky(quality);
+                quality.end(t);
+            }
+        }
+        assertEquals(GnssQuality.LEVEL_GOOD, quality.getLevel());
+        assertEquals(1, changes[0]);
+    }
+
+    /**
+     * Oito satélites bem distribuídos, GPS e Galileo alternados, C/N0 de 30 a 37 dB-Hz.
+     */
+    private static void goodSky(GnssQuality quality) {
+        quality.begin();
+        for (int i = 0; i < 8; i++) {
+            quality.addSatellite(i % 2 == 0 ? GPS : GALILEO, 30 + i, true, i == 0 ? 80 : 30, 45 * i);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reproduz trajetos gravados (CSV) pelo controlador de movimento e verifica as transições.
+ */
+public class HysteresisMotionStateControllerTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    public void coldStartInMotion_neverDropsToStationary() throws IOException {
+        TrackBuilder track = new TrackBuilder();
+        track.drive(60, 14f, 0, 0); // Parte já a 50 km/h em linha reta
+
+        List<MotionStateController.MotionState> states = replay(track.toCsv());
+        assertFalse(states.contains(MotionStateController.MotionState.STATIONARY));
+        assertEquals(MotionStateController.MotionState.CRUISING, states.get(states.size() - 1));
+        // A taxa alta é alcançada em poucos segundos
+        assertEquals(MotionStateController.MotionState.CRUISING, states.get(3));
+    }
+
+    @Test
+    public void parkedThenTrip_followsExpectedTransitions() throws IOException {
+        TrackBuilder track = new TrackBuilder();
+        track.drive(60, 0.3f, 0, 0);   // Estacionado com ruído de GPS
+        track.drive(10, 4f, 0, 0);     // Saída lenta
+        track.drive(60, 14f, 0, 0);    // Avenida a 50 km/h
+        track.drive(6, 8f, 0, 15);     // Curva de 90° a 29 km/h
+        track.drive(30, 14f, 90, 0);
+        track.drive(60, 0.2f, 90, 0);  // Estaciona
+
+        List<MotionStateController.MotionState> states = replay(track.toCsv());
+        List<MotionStateController.MotionState> transitions = new ArrayList<>();
+        for (MotionStateController.MotionState state : states) {
+            if (transitions.isEmpty() || transitions.get(transitions.size() - 1) != state) {
+                transitions.add(state);
+            }
+        }
+        assertEquals(listOf(
+                MotionStateController.MotionState.SLOW,
+                MotionStateController.MotionState.STATIONARY,
+                MotionStateController.MotionState.SLOW,
+                MotionStateController.MotionState.CRUISING,
+                MotionStateController.MotionState.TURNING,
+                MotionStateController.MotionState.CRUISING,
+                MotionStateController.MotionState.STATIONARY), transitions);
+
+        // Só deixa o estado parado depois do tempo mínimo (20 s a partir do primeiro fix)
+        assertEquals(MotionStateController.MotionState.SLOW, states.get(19));
+        assertEquals(MotionStateController.MotionState.STATIONARY, states.get(21));
+    }
+
+    @Test
+    public void speedNoiseInsideHysteresisBand_doesNotFlap() throws IOException {
+        TrackBuilder track = new TrackBuilder();
+        track.drive(30, 0f, 0, 0);
+        for (int i = 0; i < 30; i++) {
+            track.drive(1, i % 2 == 0 ? 1.1f : 1.5f, 0, 0); // 4 a 5,4 km/h, entre os limiares de 3 e 6
+        }
+
+        List<MotionStateController.MotionState> states = replay(track.toCsv());
+        for (int i = 25; i < states.size(); i++) {
+            assertEquals(MotionStateController.MotionState.STATIONARY, states.get(i));
+        }
+    }
+
+    /**
+     * Lê o CSV como um trajeto gravado e alimenta o controlador a 1 Hz, com o rumo
+     * calculado entre pontos consecutivos.
+     */
+    private static List<MotionStateController.MotionState> replay(String csv) throws IOException {
+        List<TrackPoint> points = TrackFileReader.readCsv(new StringReader(csv));
+        MotionStateController controller = new HysteresisMotionStateController();
+        List<MotionStateController.MotionState> states = new ArrayList<>();
+        TrackPoint previous = null;
+        for (TrackPoint point : points) {
+            boolean hasBearing = previous != null && point.speed > 1f;
+            float bearing = previous == null ? 0 : bearing(previous, point);
+            states.add(controller.update(point.timeMillis, point.speed * 3.6f, bearing, hasBearing));
+            previous = point;
+        }
+        return states;
+    }
+
+    private static float bearing(TrackPoint from, TrackPoint to) {
+        double lat1 = Math.toRadians(from.latitude);
+        double lat2 = Math.toRadians(to.latitude);
+        double dLon = Math.toRadians(to.longitude - from.longitude);
+        double y = Math.sin(dLon) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1) * Math.cos(lat2) * Math.cos(dLon);
+        return (float) ((Math.toDegrees(Math.atan2(y, x)) + 360) % 360);
+    }
+
+    @SafeVarargs
+    private static <T> List<T> listOf(T... values) {
+        List<T> list = new ArrayList<>();
+        for (T value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Gera um trajeto CSV a 1 Hz integrando velocidade e rumo.
+     */
+    private static final class TrackBuilder {
+        private final StringBuilder csv = new StringBuilder("tempo_ms,lat,lon,alt,vel,sat\n");
+        private long time = T0;
+        private double latitude = -19.9167;
+        private double longitude = -43.9345;
+
+        void drive(int seconds, float speedMs, float startBearing, float turnDegPerSecond) {
+            float bearing = startBearing;
+            for (int i = 0; i < seconds; i++) {
+                double distance = speedMs;
+                latitude += distance * Math.cos(Math.toRadians(bearing)) / 111_320.0;
+                longitude += distance * Math.sin(Math.toRadians(bearing))
+                        / (111_320.0 * Math.cos(Math.toRadians(latitude)));
+                csv.append(String.format(Locale.ROOT, "%d,%.7f,%.7f,850,%.2f,9%n", time, latitude, longitude, speedMs));
+                time += 1000;
+                bearing += turnDegPerSecond;
+            }
+        }
+
+        String toCsv() {
+            return csv.toString();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da limitação de mensagens de log.
+ */
+public class LogThrottleTest {
+
+    @Test
+    public void intervalThrottle_countsSuppressedMessages() {
+        TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+        LogThrottle throttle = LogThrottle.perInterval(clock, 1000);
+
+        assertTrue(throttle.allow());
+        assertFalse(throttle.allow());
+        assertFalse(throttle.allow());
+        clock.set(999);
+        assertFalse(throttle.allow());
+        clock.set(1000);
+        assertTrue(throttle.allow());
+        assertEquals(3, throttle.takeSuppressed());
+        assertEquals(0, throttle.takeSuppressed());
+    }
+
+    @Test
+    public void sampledThrottle_allowsOneInN() {
+        LogThrottle throttle = LogThrottle.sampled(4);
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (throttle.allow()) {
+                allowed++;
+            }
+        }
+        assertEquals(5, allowed);
+        assertEquals(15, throttle.takeSuppressed());
+    }
+}
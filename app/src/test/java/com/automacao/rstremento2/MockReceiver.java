@@ -0,0 +1,113 @@
+package com.automacao.rstremento2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Receptor Galileosky local para testes. Lê cada pacote, espera a latência
+ * configurada e responde com 0x02 + CRC do pacote.
+ */
+class MockReceiver implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private volatile long latencyMillis;
+    private volatile boolean corruptAck;
+    private final AtomicInteger packetCount = new AtomicInteger();
+    private final List<byte[]> packets = new CopyOnWriteArrayList<>();
+
+    MockReceiver(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.serverSocket = new ServerSocket(0);
+        this.acceptThread = new Thread(this::acceptLoop, "MockReceiver-" + serverSocket.getLocalPort());
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getPacketCount() {
+        return packetCount.get();
+    }
+
+    /**
+     * Pacotes recebidos, na ordem de chegada, de todas as conexões.
+     */
+    List<byte[]> getPackets() {
+        return packets;
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    void setCorruptAck(boolean corruptAck) {
+        this.corruptAck = corruptAck;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> handle(socket));
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                byte[] header = new byte[3];
+                in.readFully(header);
+                int length = (header[1] & 0xFF) | ((header[2] & 0xFF) << 8);
+                byte[] rest = new byte[length + 2];
+                in.readFully(rest);
+                byte[] packet = new byte[3 + rest.length];
+                System.arraycopy(header, 0, packet, 0, 3);
+                System.arraycopy(rest, 0, packet, 3, rest.length);
+                packets.add(packet);
+                packetCount.incrementAndGet();
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                byte[] ack = {0x02, rest[length], rest[length + 1]};
+                if (corruptAck) {
+                    ack[1] ^= 0x55;
+                }
+                out.write(ack);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Conexão encerrada pelo cliente
+        }
+    }
+
+    /**
+     * Monta um pacote mínimo válido (header, comprimento, uma tag e CRC).
+     */
+    static byte[] samplePacket(int seed) {
+        byte[] packet = {0x01, 0x05, 0x00, 0x20, (byte) seed, (byte) (seed >> 8), 0, 0, 0, 0};
+        short crc = Crc16Modbus.calculate(packet, 0, 8);
+        packet[8] = (byte) crc;
+        packet[9] = (byte) (crc >> 8);
+        return packet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
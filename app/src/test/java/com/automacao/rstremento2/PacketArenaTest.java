@@ -0,0 +1,162 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da arena de registros: travessia entre lâminas, anel de lâminas, reciclagem e limite.
+ */
+public class PacketArenaTest {
+
+    /** Registro de {@code length} bytes identificado pelo número de sequência. */
+    private static byte[] record(int sequence, int length) {
+        byte[] record = new byte[length];
+        for (int i = 0; i < length; i++) {
+            record[i] = (byte) (sequence + i);
+        }
+        record[0] = (byte) sequence;
+        record[length - 1] = (byte) (sequence >> 8);
+        return record;
+    }
+
+    @Test
+    public void nextHandle_walksRecordsAcrossSlabs() {
+        PacketArena arena = new PacketArena(64, false, 16); // 3 registros de 18 bytes por lâmina
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(record(i, 16));
+            assertNotEquals(PacketArena.NO_HANDLE, arena.append(expected.get(i)));
+        }
+
+        int index = 0;
+        for (long handle = arena.peekHandle(); handle != PacketArena.NO_HANDLE; handle = arena.nextHandle(handle)) {
+            assertArrayEquals(expected.get(index), arena.copy(handle));
+            assertEquals(16, arena.length(handle));
+            index++;
+        }
+        assertEquals(10, index);
+
+        byte[] part = new byte[4];
+        arena.copyRange(arena.nextHandle(arena.nextHandle(arena.nextHandle(arena.peekHandle()))), 0, 4, part, 0);
+        assertEquals(3, part[0]); // Quarto registro, primeiro da segunda lâmina
+    }
+
+    @Test
+    public void slabRing_wrapsAroundAndGrowsWithoutLosingOrder() {
+        PacketArena arena = new PacketArena(64, false, 64);
+        int appended = 0;
+        int removed = 0;
+        // Produtor um pouco mais rápido que o consumidor: o início do anel dá várias voltas
+        // enquanto o anel cresce de 4 para 8 e 16 lâminas
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertNotEquals(PacketArena.NO_HANDLE, arena.append(record(appended++, 16)));
+            }
+            for (int i = 0; i < 2 + (round % 10 == 9 ? 10 : 0) && !arena.isEmpty(); i++) {
+                assertArrayEquals(record(removed++, 16), arena.copy(arena.peekHandle()));
+                arena.removeHead();
+            }
+        }
+        assertEquals(appended - removed, arena.size());
+        assertEquals((long) (appended - removed) * 16, arena.getRecordBytes());
+        while (!arena.isEmpty()) {
+            assertArrayEquals(record(removed++, 16), arena.copy(arena.peekHandle()));
+            arena.removeHead();
+        }
+        assertEquals(appended, removed);
+        assertEquals(PacketArena.NO_HANDLE, arena.peekHandle());
+    }
+
+    @Test
+    public void consumedSlabs_areRecycledAndMemoryStaysBounded() {
+        PacketArena arena = new PacketArena(1024, false, 64);
+        long maxRetained = 0;
+        for (int i = 0; i < 100_000; i++) {
+            arena.append(record(i, 60));
+            if (arena.size() > 40) {
+                arena.removeHead();
+            }
+            maxRetained = Math.max(maxRetained, arena.getRetainedBytes());
+        }
+        // 40 registros de 62 bytes ocupam 3 lâminas; mais no máximo 2 livres
+        assertTrue("Memória retida: " + maxRetained, maxRetained <= 5 * 1024);
+
+        while (!arena.isEmpty()) {
+            arena.removeHead();
+        }
+        // Vazia: a lâmina atual e até duas livres
+        assertTrue(arena.getRetainedBytes() <= 3 * 1024);
+        assertEquals(0, arena.getRecordBytes());
+    }
+
+    @Test
+    public void trim_releasesAllSlabsOnlyWhenEmpty() {
+        PacketArena arena = new PacketArena(64, false, 16);
+        for (int i = 0; i < 9; i++) {
+            arena.append(record(i, 16));
+        }
+        arena.removeHead();
+        arena.trim();
+        assertEquals(3 * 64, arena.getRetainedBytes()); // Com registros, só as lâminas livres saem
+        assertArrayEquals(record(1, 16), arena.copy(arena.peekHandle()));
+
+        while (!arena.isEmpty()) {
+            arena.removeHead();
+        }
+        arena.trim();
+        assertEquals(0, arena.getRetainedBytes());
+        assertEquals(PacketArena.NO_HANDLE, arena.peekHandle());
+
+        long handle = arena.append(record(20, 16));
+        assertArrayEquals(record(20, 16), arena.copy(handle));
+        assertEquals(64, arena.getRetainedBytes());
+    }
+
+    @Test
+    public void fullArena_rejectsNewRecordsUntilSlabIsConsumed() {
+        PacketArena arena = new PacketArena(64, false, 2);
+        for (int i = 0; i < 6; i++) {
+            assertNotEquals(PacketArena.NO_HANDLE, arena.append(record(i, 16)));
+        }
+        assertEquals(PacketArena.NO_HANDLE, arena.append(record(6, 16)));
+        assertEquals(1, arena.getDroppedCount());
+        assertEquals(6, arena.size());
+        assertEquals(2 * 64, arena.getRetainedBytes());
+
+        // Consumida a primeira lâmina inteira, há espaço outra vez; a ordem é preservada
+        for (int i = 0; i < 3; i++) {
+            arena.removeHead();
+        }
+        assertNotEquals(PacketArena.NO_HANDLE, arena.append(record(7, 16)));
+        int[] expected = {3, 4, 5, 7};
+        int index = 0;
+        for (long handle = arena.peekHandle(); handle != PacketArena.NO_HANDLE; handle = arena.nextHandle(handle)) {
+            assertEquals(expected[index++], arena.copy(handle)[0]);
+        }
+        assertEquals(4, index);
+    }
+
+    @Test
+    public void invalidSizes_areRejected() {
+        for (int slabSize : new int[]{0, 2, PacketArena.MAX_SLAB_SIZE + 1, Integer.MAX_VALUE}) {
+            try {
+                new PacketArena(slabSize, false);
+                fail("Lâmina aceita: " + slabSize);
+            } catch (IllegalArgumentException expected) {
+                // Esperado
+            }
+        }
+        PacketArena arena = new PacketArena(3, false);
+        arena.append(new byte[1]);
+        try {
+            arena.append(new byte[2]); // Não cabe na lâmina com o prefixo
+            fail("Registro maior que a lâmina aceito");
+        } catch (IllegalArgumentException expected) {
+            // Esperado
+        }
+    }
+}
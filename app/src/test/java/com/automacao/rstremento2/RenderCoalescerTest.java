@@ -0,0 +1,84 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do agrupamento de quadros, com agendador e relógio manuais.
+ */
+public class RenderCoalescerTest {
+
+    private long now;
+    private final List<Runnable> frames = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<double[]> rendered = new ArrayList<>();
+
+    private RenderCoalescer create(float framesPerSecond) {
+        return new RenderCoalescer(framesPerSecond,
+                (frame, delayMillis) -> {
+                    frames.add(frame);
+                    delays.add(delayMillis);
+                },
+                (latitude, longitude, speed, satellites) -> rendered.add(new double[]{latitude, longitude, speed, satellites}),
+                () -> now);
+    }
+
+    private void runNextFrame() {
+        Runnable frame = frames.remove(0);
+        now += delays.remove(0);
+        frame.run();
+    }
+
+    @Test
+    public void burstOfUpdates_rendersOnlyLatestOncePerFrame() {
+        RenderCoalescer coalescer = create(10); // Um quadro a cada 100 ms
+
+        coalescer.submit(1, 1, 0, 5);
+        assertEquals(1, frames.size());
+        assertEquals(Long.valueOf(0), delays.get(0)); // Primeiro quadro sem espera
+        runNextFrame();
+
+        // Rajada de fixes em lote: um único quadro agendado para o fim do intervalo
+        now += 10;
+        for (int i = 2; i <= 20; i++) {
+            coalescer.submit(i, i, i, 9);
+        }
+        assertEquals(1, frames.size());
+        assertEquals(Long.valueOf(90), delays.get(0));
+        runNextFrame();
+
+        assertEquals(20, coalescer.getSubmittedCount());
+        assertEquals(2, coalescer.getRenderedCount());
+        assertEquals(2, rendered.size());
+        assertArrayEquals(new double[]{20, 20, 20, 9}, rendered.get(1), 0);
+    }
+
+    @Test
+    public void updateAfterIdlePeriod_rendersImmediately() {
+        RenderCoalescer coalescer = create(10);
+        coalescer.submit(1, 1, 0, 5);
+        runNextFrame();
+
+        now += 5000;
+        coalescer.submit(2, 2, 0, 5);
+        assertEquals(Long.valueOf(0), delays.get(0));
+        runNextFrame();
+        assertEquals(2, rendered.size());
+    }
+
+    @Test
+    public void frameWithoutPendingPosition_rendersNothing() {
+        RenderCoalescer coalescer = create(10);
+        coalescer.submit(1, 1, 0, 5);
+        Runnable frame = frames.get(0);
+        runNextFrame();
+        frame.run(); // Quadro extra, sem posição nova
+
+        assertEquals(1, coalescer.getRenderedCount());
+        assertTrue(frames.isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da simplificação incremental de rota.
+ */
+public class RouteSimplifierTest {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double LAT0 = -19.9167;
+    private static final double LON0 = -43.9345;
+
+    @Test
+    public void gentleCurve_errorStaysWithinTolerance() {
+        // Arco de 90° com raio de 2 km, um ponto a cada 10 m: cada ponto desvia pouco do
+        // anterior, mas o desvio acumulado em relação à âncora passa da tolerância
+        double radius = 2000;
+        List<double[]> input = new ArrayList<>();
+        for (double arc = 0; arc <= Math.PI / 2 * radius; arc += 10) {
+            double angle = arc / radius;
+            input.add(point(radius * Math.sin(angle), radius * (1 - Math.cos(angle))));
+        }
+
+        RouteSimplifier simplifier = new RouteSimplifier(5, 3);
+        List<double[]> route = simplify(simplifier, input);
+
+        assertTrue("Rota pouco simplificada: " + route.size(), route.size() < input.size() / 5);
+        for (double[] p : input) {
+            assertTrue("Ponto fora da tolerância", distanceToRoute(p, route) <= 3.0 + 1e-6);
+        }
+    }
+
+    @Test
+    public void straightLine_keepsOnlyWindowVertices() {
+        List<double[]> input = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            input.add(point(i * 10.0, 0));
+        }
+
+        List<double[]> route = simplify(new RouteSimplifier(5, 3), input);
+
+        // Uma reta só é cortada quando a janela enche
+        int expected = 1 + (int) Math.ceil((input.size() - 1) / (double) RouteSimplifier.MAX_WINDOW);
+        assertEquals(expected, route.size());
+        assertArrayEquals(input.get(input.size() - 1), route.get(route.size() - 1), 0);
+    }
+
+    @Test
+    public void closePoints_areIgnoredAndCornersKept() {
+        RouteSimplifier simplifier = new RouteSimplifier(5, 3);
+        assertEquals(RouteSimplifier.APPENDED, add(simplifier, point(0, 0)));
+        assertEquals(RouteSimplifier.IGNORED, add(simplifier, point(2, 1)));
+        assertEquals(RouteSimplifier.APPENDED, add(simplifier, point(100, 0)));
+        assertEquals(RouteSimplifier.REPLACED_LAST, add(simplifier, point(200, 1)));
+        // Esquina de 90°: o vértice provisório é fixado
+        assertEquals(RouteSimplifier.APPENDED, add(simplifier, point(200, 100)));
+
+        simplifier.reset();
+        assertEquals(RouteSimplifier.APPENDED, add(simplifier, point(200, 101)));
+    }
+
+    /**
+     * Aplica os resultados do simplificador a uma lista, como a interface faz.
+     */
+    private static List<double[]> simplify(RouteSimplifier simplifier, List<double[]> input) {
+        List<double[]> route = new ArrayList<>();
+        for (double[] p : input) {
+            int result = add(simplifier, p);
+            if (result == RouteSimplifier.APPENDED) {
+                route.add(p);
+            } else if (result == RouteSimplifier.REPLACED_LAST) {
+                route.set(route.size() - 1, p);
+            }
+        }
+        return route;
+    }
+
+    private static int add(RouteSimplifier simplifier, double[] p) {
+        return simplifier.add(p[0], p[1]);
+    }
+
+    /**
+     * Ponto deslocado de (LAT0, LON0) em metros para leste e para norte.
+     */
+    private static double[] point(double eastMeters, double northMeters) {
+        double lat = LAT0 + northMeters / METERS_PER_DEGREE;
+        double lon = LON0 + eastMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT0)));
+        return new double[]{lat, lon};
+    }
+
+    private static double distanceToRoute(double[] p, List<double[]> route) {
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < route.size(); i++) {
+            best = Math.min(best, distanceToSegment(p, route.get(i - 1), route.get(i)));
+        }
+        return best;
+    }
+
+    private static double distanceToSegment(double[] p, double[] a, double[] b) {
+        double scale = Math.cos(Math.toRadians(a[0]));
+        double bx = (b[1] - a[1]) * scale, by = b[0] - a[0];
+        double px = (p[1] - a[1]) * scale, py = p[0] - a[0];
+        double lengthSquared = bx * bx + by * by;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+        double dx = px - t * bx, dy = py - t * by;
+        return Math.sqrt(dx * dx + dy * dy) * METERS_PER_DEGREE;
+    }
+}
@@ -0,0 +1,115 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do controle AIMD, isolado e contra o receptor simulado com perfis de latência e perda.
+ */
+public class SendRateControllerTest {
+
+    private static final long FAST_RTT = 1_000_000L; // 1 ms
+
+    @Test
+    public void fastAcks_growAdditively_lossCutsMultiplicatively() {
+        SendRateController controller = new SendRateController(1, 16, 100, 8000, 200, 2000);
+
+        for (int i = 0; i < 5; i++) {
+            controller.onAck(FAST_RTT);
+        }
+        assertEquals(6, controller.getBatchSize());
+        assertEquals(1000, controller.getSendDelayMillis());
+
+        for (int i = 0; i < 50; i++) {
+            controller.onAck(FAST_RTT);
+        }
+        assertEquals(16, controller.getBatchSize());
+        assertEquals(100, controller.getSendDelayMillis());
+
+        controller.onLoss();
+        assertEquals(8, controller.getBatchSize());
+        assertEquals(300, controller.getSendDelayMillis());
+        for (int i = 0; i < 10; i++) {
+            controller.onLoss();
+        }
+        assertEquals(1, controller.getBatchSize());
+        assertEquals(8000, controller.getSendDelayMillis());
+        assertEquals(11, controller.getLossCount());
+    }
+
+    @Test
+    public void slowAcks_holdBatchAndStretchDelay() {
+        SendRateController controller = new SendRateController(1, 16, 100, 8000, 200, 2000);
+        for (int i = 0; i < 3; i++) {
+            controller.onAck(FAST_RTT);
+        }
+        int batch = controller.getBatchSize();
+        long delay = controller.getSendDelayMillis();
+
+        controller.onAck(500_000_000L); // 500 ms, bem acima do RTT mínimo
+        assertEquals(batch, controller.getBatchSize());
+        assertEquals(delay + 200, controller.getSendDelayMillis());
+        assertEquals(1.0, controller.getMinRttMillis(), 0.001);
+    }
+
+    @Test
+    public void mockReceiver_scriptedLatencyAndLossProfiles() throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+            TaskScheduler scheduler = new TaskScheduler(clock);
+            GalileoskySimulator simulator = new GalileoskySimulator(
+                    new TrackReplaySource(new ArrayList<>(), 1),
+                    EndpointPool.parse("127.0.0.1:" + receiver.getPort()), scheduler);
+            SendRateController controller = simulator.getSendRateController();
+            addRecords(simulator, 200);
+            simulator.sendCoordinates("357138166785014", "12565696908", "ACC1D23");
+
+            // Enlace rápido e sem perdas: lotes crescem e o intervalo encurta
+            scheduler.runFor(20000);
+            assertTrue(simulator.getPacketBuffer().isEmpty());
+            assertEquals(0, controller.getLossCount());
+            assertTrue(controller.toString(), controller.getBatchSize() >= 10);
+            assertEquals(100, controller.getSendDelayMillis());
+            assertTrue(receiver.getPacketCount() < 200); // Vários registros por pacote
+
+            // Latência alta: o lote é mantido e o intervalo aumenta
+            int batchBeforeLatency = controller.getBatchSize();
+            receiver.setLatencyMillis(100);
+            addRecords(simulator, 100);
+            scheduler.runFor(5000);
+            assertEquals(batchBeforeLatency, controller.getBatchSize());
+            assertTrue(controller.toString(), controller.getSendDelayMillis() > 100);
+            receiver.setLatencyMillis(0);
+            scheduler.runFor(60000);
+            assertTrue(simulator.getPacketBuffer().isEmpty());
+
+            // Perdas (CRC inválido): corte multiplicativo
+            int batchBeforeLoss = controller.getBatchSize();
+            long delayBeforeLoss = controller.getSendDelayMillis();
+            receiver.setCorruptAck(true);
+            addRecords(simulator, 100);
+            scheduler.runFor(30000);
+            assertEquals(1, controller.getLossCount()); // Depois da perda, só há tentativas de reconexão
+            assertEquals(batchBeforeLoss / 2, controller.getBatchSize());
+            assertEquals(delayBeforeLoss * 2, controller.getSendDelayMillis());
+            assertFalse(simulator.getPacketBuffer().isEmpty());
+
+            // Recuperação: o enlace volta e a fila é esvaziada
+            receiver.setCorruptAck(false);
+            scheduler.runFor(120000);
+            assertTrue(simulator.getPacketBuffer().isEmpty());
+            assertTrue(controller.toString(), controller.getBatchSize() >= 10);
+
+            simulator.stop();
+        }
+    }
+
+    private static void addRecords(GalileoskySimulator simulator, int count) {
+        for (int i = 0; i < count; i++) {
+            simulator.addDataPacket(MockReceiver.samplePacket(i));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mede a partida do simulador no relógio virtual, com o primeiro endpoint fora do ar.
+ */
+public class StartupMetricsTest {
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void deadEndpointThenReceiver_milestonesFollowTheRetry() throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            ServerEndpoint dead = new ServerEndpoint("127.0.0.1", closedPort());
+            ServerEndpoint live = new ServerEndpoint("127.0.0.1", receiver.getPort());
+            EndpointPool pool = new EndpointPool(Arrays.asList(dead, live), 2, 60000);
+            TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+            TaskScheduler scheduler = new TaskScheduler(clock);
+            GalileoskySimulator simulator = new GalileoskySimulator(new FixedLocationSource(), pool, scheduler);
+            StartupMetrics metrics = simulator.getStartupMetrics();
+
+            clock.set(30_000); // A partida conta a partir do envio, não da criação do simulador
+            simulator.sendCoordinates("357138166785014", "12345678909", "ABC1D23");
+            assertSame(metrics, simulator.getStartupMetrics());
+            scheduler.runFor(20_000);
+            simulator.stop();
+
+            // O fix e o primeiro registro não esperam a conexão
+            assertEquals(0, metrics.getTimeToFirstFix());
+            assertEquals(0, metrics.getTimeToFirstRecord());
+            // O endpoint morto falha na primeira tentativa; o receptor aceita na seguinte, 5 s depois
+            assertEquals(1, dead.getFailureCount());
+            assertEquals(5000, metrics.getTimeToFirstConnection());
+            assertTrue(metrics.getTimeToFirstAck() >= metrics.getTimeToFirstConnection());
+            assertTrue(metrics.getTimeToFirstAck() < 20_000);
+            assertTrue(receiver.getPacketCount() >= 2); // Identificação e ao menos um registro
+        }
+    }
+
+    @Test
+    public void start_discardsEarlierMilestones() {
+        TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+        StartupMetrics metrics = new StartupMetrics(clock);
+        clock.set(100);
+        metrics.markFirstFix();
+        assertEquals(100, metrics.getTimeToFirstFix());
+
+        metrics.start();
+        assertEquals(-1, metrics.getTimeToFirstFix());
+        clock.set(350);
+        metrics.markFirstFix();
+        metrics.markFirstAck();
+        clock.set(900);
+        metrics.markFirstAck(); // Cada marco só é registrado uma vez
+        assertEquals(250, metrics.getTimeToFirstFix());
+        assertEquals(250, metrics.getTimeToFirstAck());
+    }
+}
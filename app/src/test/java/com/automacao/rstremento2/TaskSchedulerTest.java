@@ -0,0 +1,177 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do agendador com relógio virtual e com threads reais.
+ */
+public class TaskSchedulerTest {
+
+    @Test
+    public void virtualClock_runsTasksInDueOrderAcrossLoops() {
+        TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+        TaskScheduler scheduler = new TaskScheduler(clock);
+        scheduler.start();
+        List<String> log = new ArrayList<>();
+
+        scheduler.scheduleWithFixedDelay(scheduler.workLoop(), () -> log.add("save@" + clock.nowMillis()), 10000, 10000);
+        TaskScheduler.Cancellable send = scheduler.scheduleWithFixedDelay(scheduler.ioLoop(),
+                () -> log.add("send@" + clock.nowMillis()), 0, 4000);
+        scheduler.schedule(scheduler.ioLoop(), () -> log.add("once@" + clock.nowMillis()), 9000);
+
+        scheduler.runFor(12000);
+        send.cancel();
+        scheduler.runFor(10000);
+
+        assertEquals("[send@0, send@4000, send@8000, once@9000, save@10000, send@12000, save@20000]", log.toString());
+        assertEquals(22000, clock.nowMillis());
+    }
+
+    @Test
+    public void failingTask_isLoggedWithThrowableAndRescheduled() {
+        List<Throwable> errors = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        LogBackend previous = AppLog.getBackend();
+        AppLog.setBackend((level, tag, message, error) -> {
+            messages.add(message);
+            errors.add(error);
+        });
+        try {
+            TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+            TaskScheduler scheduler = new TaskScheduler(clock);
+            scheduler.start();
+            int[] runs = {0};
+            IllegalStateException failure = new IllegalStateException("falhou");
+            scheduler.scheduleWithFixedDelay(scheduler.workLoop(), () -> {
+                runs[0]++;
+                throw failure;
+            }, 0, 1000);
+
+            scheduler.runFor(2500);
+
+            assertEquals(3, runs[0]); // A falha não cancela a tarefa periódica
+            assertEquals(3, errors.size());
+            assertSame(failure, errors.get(0));
+            assertEquals("Erro na tarefa do laço work", messages.get(0));
+        } finally {
+            AppLog.setBackend(previous);
+        }
+    }
+
+    @Test
+    public void stop_endsLoopThreads() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        scheduler.start();
+        CountDownLatch latch = new CountDownLatch(3);
+        scheduler.scheduleWithFixedDelay(scheduler.workLoop(), latch::countDown, 0, 10);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        scheduler.stop();
+        assertTrue(scheduler.await(2000));
+        assertFalse(scheduler.isRunning());
+    }
+
+    @Test
+    public void failingTaskWithError_isLoggedBeforeRethrow() {
+        List<Throwable> errors = new ArrayList<>();
+        LogBackend previous = AppLog.getBackend();
+        AppLog.setBackend((level, tag, message, error) -> errors.add(error));
+        try {
+            TaskScheduler scheduler = new TaskScheduler(new TaskScheduler.VirtualClock());
+            scheduler.start();
+            StackOverflowError failure = new StackOverflowError();
+            scheduler.execute(scheduler.ioLoop(), () -> {
+                throw failure;
+            });
+            try {
+                scheduler.runFor(10);
+                fail("O Error deveria ser propagado");
+            } catch (StackOverflowError expected) {
+                assertSame(failure, expected);
+            }
+            assertEquals(1, errors.size());
+            assertSame(failure, errors.get(0));
+        } finally {
+            AppLog.setBackend(previous);
+        }
+    }
+
+    @Test
+    public void restartAfterStop_waitsForThePreviousThreadOfEachLoop() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        scheduler.start();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        Runnable tracked = () -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+        };
+        scheduler.execute(scheduler.ioLoop(), () -> {
+            started.countDown();
+            tracked.run();
+            try {
+                release.await(); // Tarefa longa em andamento durante o stop/start
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        scheduler.stop();
+        scheduler.start();
+        CountDownLatch done = new CountDownLatch(20);
+        scheduler.scheduleWithFixedDelay(scheduler.ioLoop(), () -> {
+            tracked.run();
+            done.countDown();
+        }, 0, 1);
+        Thread.sleep(50);
+        assertEquals(20, done.getCount()); // A nova thread espera a anterior terminar a tarefa
+
+        release.countDown();
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, maxActive.get());
+        scheduler.stop();
+        assertTrue(scheduler.await(2000));
+    }
+
+    @Test
+    public void interrupt_endsOnlyThatLoop() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler();
+        scheduler.start();
+        AtomicReference<Thread> workThread = new AtomicReference<>();
+        CountDownLatch captured = new CountDownLatch(1);
+        scheduler.execute(scheduler.workLoop(), () -> {
+            workThread.set(Thread.currentThread());
+            captured.countDown();
+        });
+        assertTrue(captured.await(2, TimeUnit.SECONDS));
+
+        workThread.get().interrupt();
+        workThread.get().join(2000);
+        assertFalse(workThread.get().isAlive());
+
+        // O agendador e o laço de I/O continuam
+        assertTrue(scheduler.isRunning());
+        CountDownLatch io = new CountDownLatch(1);
+        scheduler.execute(scheduler.ioLoop(), io::countDown);
+        assertTrue(io.await(2, TimeUnit.SECONDS));
+        scheduler.stop();
+        assertTrue(scheduler.await(2000));
+    }
+}
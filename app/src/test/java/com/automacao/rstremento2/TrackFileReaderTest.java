@@ -0,0 +1,139 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da leitura de trajetos (GPX, NMEA e CSV) e da reprodução na JVM.
+ */
+public class TrackFileReaderTest {
+
+    private static final long T_2024_05_01_12_00_00 = 1_714_564_800_000L;
+
+    @Test
+    public void gpx_parsesPointsAndIsoTime() throws IOException {
+        String gpx = "<gpx><trk><trkseg>"
+                + "<trkpt lat=\"-19.9167\" lon=\"-43.9345\"><ele>852.5</ele>"
+                + "<time>2024-05-01T12:00:00Z</time><speed>13.9</speed><sat>9</sat></trkpt>"
+                + "<trkpt lat=\"-19.9168\" lon=\"-43.9346\"><time>2024-05-01T12:00:01.250Z</time></trkpt>"
+                + "</trkseg></trk></gpx>";
+
+        List<TrackPoint> points = TrackFileReader.readGpx(new StringReader(gpx));
+        assertEquals(2, points.size());
+        TrackPoint first = points.get(0);
+        assertEquals(T_2024_05_01_12_00_00, first.timeMillis);
+        assertEquals(-19.9167, first.latitude, 1e-9);
+        assertEquals(-43.9345, first.longitude, 1e-9);
+        assertEquals(852.5, first.altitude, 1e-9);
+        assertEquals(13.9f, first.speed, 1e-6f);
+        assertEquals(9, first.satellites);
+
+        // Fração de segundo preservada; campos ausentes ficam em zero
+        TrackPoint second = points.get(1);
+        assertEquals(T_2024_05_01_12_00_00 + 1250, second.timeMillis);
+        assertEquals(0, second.altitude, 0);
+        assertEquals(0f, second.speed, 0);
+    }
+
+    @Test
+    public void gpx_malformedPointsAndTimes() throws IOException {
+        String gpx = "<trkpt lon=\"-43.9\"><time>2024-05-01T12:00:00Z</time></trkpt>" // Sem latitude
+                + "<trkpt lat=\"-19.9\" lon=\"-43.9\"><time>ontem</time></trkpt>"
+                + "<trkpt lat=\"-19.9\" lon=\"-43.9\"><time>2024-05-01</time></trkpt>"
+                + "<trkpt lat=\"-19.9\" lon=\"-43.9\"></trkpt>";
+
+        List<TrackPoint> points = TrackFileReader.readGpx(new StringReader(gpx));
+        assertEquals(3, points.size());
+        for (TrackPoint point : points) {
+            assertEquals(0, point.timeMillis); // Horário ilegível ou ausente
+        }
+    }
+
+    @Test
+    public void nmea_combinesRmcWithLastGga() throws IOException {
+        String nmea = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\n"
+                + "$GPRMC,123519.50,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n";
+
+        List<TrackPoint> points = TrackFileReader.readNmea(new StringReader(nmea));
+        assertEquals(1, points.size());
+        TrackPoint point = points.get(0);
+        assertEquals(764_426_119_500L, point.timeMillis); // 1994-03-23 12:35:19.5 UTC
+        assertEquals(48.1173, point.latitude, 1e-9);
+        assertEquals(11.516666, point.longitude, 1e-6);
+        assertEquals(545.4, point.altitude, 1e-9);
+        assertEquals(22.4f * 0.514444f, point.speed, 1e-4f);
+        assertEquals(8, point.satellites);
+    }
+
+    @Test
+    public void nmea_twoDigitYearAndHemispheres() throws IOException {
+        String nmea = "$GNRMC,235959,A,1955.002,S,04356.070,W,0.0,0.0,311279,,,A*00\n";
+
+        TrackPoint point = TrackFileReader.readNmea(new StringReader(nmea)).get(0);
+        assertEquals(3_471_292_799_000L, point.timeMillis); // Ano 79 é 2079
+        assertTrue(point.latitude < 0);
+        assertTrue(point.longitude < 0);
+    }
+
+    @Test
+    public void nmea_skipsMalformedSentences() throws IOException {
+        String nmea = "lixo\n"
+                + "\n"
+                + "$GPRMC,123519,V,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n" // Sem fix
+                + "$GPRMC,123519,A,48O7.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n" // Número inválido
+                + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,2303,003.1,W*6A\n"   // Data truncada
+                + "$GPRMC,12,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n"     // Hora truncada
+                + "$GPRMC,123519,A,4807.038,N\n"                                          // Linha cortada
+                + "$GPGGA,123519,4807.038,N,01131.000,E,1,xx,0.9,545.4,M,46.9,M,,*47\n"
+                + "$GPRMC,123520,A,4807.038,N,01131.000,E,,084.4,230394,003.1,W*6A\n";
+
+        List<TrackPoint> points = TrackFileReader.readNmea(new StringReader(nmea));
+        assertEquals(1, points.size());
+        assertEquals(0f, points.get(0).speed, 0); // Velocidade vazia
+        assertEquals(0, points.get(0).satellites); // GGA corrompida não altera os satélites
+    }
+
+    @Test
+    public void csv_skipsHeaderCommentsAndMalformedLines() throws IOException {
+        String csv = "tempo_ms,lat,lon,alt,vel,sat\n"
+                + "# comentário\n"
+                + "\n"
+                + "1714564800000,-19.9167,-43.9345,850,13.9,9\n"
+                + "1714564801000,-19.9168\n"               // Poucas colunas
+                + "1714564802000,-19.9x69,-43.9347\n"      // Número inválido
+                + "1714564803.5,-19.9170,-43.9348\n"       // Tempo não inteiro
+                + " 1714564804000 , -19.9171 , -43.9349 \n"; // Só as colunas obrigatórias
+
+        List<TrackPoint> points = TrackFileReader.readCsv(new StringReader(csv));
+        assertEquals(2, points.size());
+        assertEquals(T_2024_05_01_12_00_00, points.get(0).timeMillis);
+        assertEquals(13.9f, points.get(0).speed, 1e-6f);
+        assertEquals(9, points.get(0).satellites);
+        assertEquals(T_2024_05_01_12_00_00 + 4000, points.get(1).timeMillis);
+        assertEquals(-19.9171, points.get(1).latitude, 1e-9);
+        assertEquals(0, points.get(1).satellites);
+    }
+
+    @Test
+    public void replay_deliversSpeedInSourceScale() {
+        List<TrackPoint> points = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            points.add(new TrackPoint(T_2024_05_01_12_00_00 + i * 1000L, -19.9, -43.9, 850, 10f, 9));
+        }
+        List<Float> speeds = new ArrayList<>();
+        TrackReplaySource source = new TrackReplaySource(points, TrackReplaySource.AS_FAST_AS_POSSIBLE);
+        source.setListener((latitude, longitude, altitude, speed, satellites) -> speeds.add(speed));
+        source.run(); // Na própria thread do teste
+
+        assertEquals(5, source.getReplayedCount());
+        assertEquals(5, speeds.size());
+        assertEquals(10f * LocationSource.SPEED_SCALE, speeds.get(0), 0);
+        assertEquals(10f * LocationSource.SPEED_SCALE, source.getSpeed(), 0);
+    }
+}
@@ -0,0 +1,199 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do histórico local: codificação dos blocos, consultas, retenção e gravação.
+ */
+public class TrackStoreTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void block_roundTripsNegativeDeltasAndLargeGaps() {
+        long[] times = {T0, T0 + 1000, T0 + 2000, T0 + 1500, T0 + 86_400_000L * 400, T0 + 86_400_000L * 400 + 1,
+                T0 - 5_000_000_000L, Long.MAX_VALUE / 2};
+        int[][] values = {
+                {-19_916_700, -43_934_500, 850, 500, 9},
+                {-19_916_701, -43_934_499, 851, 499, 9},
+                {-19_916_650, -43_934_560, 849, 0, 12},
+                {90_000_000, 180_000_000, -400, 3000, 0},       // Salto de um extremo ao outro
+                {-90_000_000, -180_000_000, 8848, 0, 31},
+                {Integer.MAX_VALUE, Integer.MIN_VALUE, 32767, 65535, 255},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, -32768, 0, 0},
+                {0, 0, 0, 0, 0},
+        };
+        TrackBlock block = new TrackBlock();
+        for (int i = 0; i < times.length; i++) {
+            block.append(times[i], values[i][0], values[i][1], values[i][2], values[i][3], values[i][4]);
+        }
+        assertEquals(T0 - 5_000_000_000L, block.getStartTime());
+        assertEquals(Long.MAX_VALUE / 2, block.getEndTime());
+
+        List<long[]> decoded = new ArrayList<>();
+        int delivered = TrackBlock.decode(block.toByteArray(), 0, Long.MIN_VALUE, Long.MAX_VALUE,
+                (time, lat, lon, altitude, speed, satellites) -> decoded.add(new long[]{time, lat, lon, altitude, speed, satellites}));
+        assertEquals(times.length, delivered);
+        for (int i = 0; i < times.length; i++) {
+            assertArrayEquals(new long[]{times[i], values[i][0], values[i][1], values[i][2], values[i][3], values[i][4]},
+                    decoded.get(i));
+        }
+
+        // Reutilizado após reset, o bloco não carrega estado do anterior
+        block.reset();
+        block.append(T0, 1, 2, 3, 4, 5);
+        block.append(T0 + 10, 1, 2, 3, 4, 5);
+        assertEquals(2, TrackBlock.decode(block.toByteArray(), 0, T0, T0 + 10,
+                (time, lat, lon, altitude, speed, satellites) -> assertEquals(1, lat)));
+    }
+
+    @Test
+    public void bitStreams_roundTripEveryPrefixWidth() {
+        long[] values = {0, 1, -1, 31, -32, 32, 4095, -4096, 4096, 524_287, -524_288, 524_288,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+        BitWriter writer = new BitWriter();
+        for (long value : values) {
+            writer.writeSigned(value);
+            writer.writeBits(0b101, 3);
+        }
+        byte[] bytes = writer.toByteArray();
+        BitReader reader = new BitReader(bytes, 0, bytes.length);
+        for (long value : values) {
+            assertEquals(value, reader.readSigned());
+            assertEquals(0b101, reader.readBits(3));
+        }
+        try {
+            new BitReader(bytes, 0, 0).readBit();
+            fail("Leitura além do fim aceita");
+        } catch (IllegalStateException expected) {
+            // Esperado
+        }
+    }
+
+    @Test
+    public void queries_skipChunksAndBlocksOutsideTheRange() throws IOException {
+        File directory = Files.createTempDirectory("track").toFile();
+        try {
+            TrackStore store = new TrackStore(directory, Long.MAX_VALUE / 4, Long.MAX_VALUE);
+            // Três horas a 1 Hz em três regiões diferentes
+            for (int i = 0; i < 3 * 3600; i++) {
+                double base = i < 3600 ? -19.9 : i < 7200 ? -23.5 : -15.8;
+                store.append(T0 + i * 1000L, base + (i % 3600) * 1e-5, -43.9, 850, 36f, 9);
+            }
+            store.flush();
+            assertEquals(0, store.getPendingCount());
+            int chunks = store.getChunkCount();
+            assertTrue(chunks >= 3);
+
+            List<Long> times = new ArrayList<>();
+            assertEquals(61, store.query(T0 + 4000 * 1000L, T0 + 4060 * 1000L,
+                    (time, lat, lon, alt, speed, sats) -> {
+                        times.add(time);
+                        assertEquals(36f, speed, 0.01f);
+                    }));
+            assertEquals(T0 + 4000 * 1000L, (long) times.get(0));
+            assertEquals(1, store.getLastQueryChunks());
+            assertEquals(1, store.getLastQueryBlocks());
+
+            // Por área: só a segunda hora está perto de -23,5
+            assertEquals(3600, store.queryArea(-23.6, -44, -23.4, -43.8, Long.MIN_VALUE, Long.MAX_VALUE,
+                    (time, lat, lon, alt, speed, sats) -> assertTrue(lat < -23.4)));
+            assertTrue(store.getLastQueryChunks() < chunks);
+
+            // Os cabeçalhos são recarregados do disco
+            TrackStore reopened = new TrackStore(directory, Long.MAX_VALUE / 4, Long.MAX_VALUE);
+            assertEquals(chunks, reopened.getChunkCount());
+            assertEquals(3 * 3600, reopened.query(Long.MIN_VALUE, Long.MAX_VALUE, (time, lat, lon, alt, speed, sats) -> { }));
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void retention_dropsOldestChunksByAgeAndSize() throws IOException {
+        File directory = Files.createTempDirectory("track").toFile();
+        try {
+            // O flush aplica a retenção com o relógio do sistema: o trajeto termina agora
+            long start = System.currentTimeMillis() - 4 * HOUR;
+            TrackStore store = new TrackStore(directory, 2 * HOUR, Long.MAX_VALUE);
+            for (int hour = 0; hour < 4; hour++) {
+                for (int i = 0; i < 10; i++) {
+                    store.append(start + hour * HOUR + i * 1000L, -19.9, -43.9, 850, 0f, 9);
+                }
+                store.flush();
+            }
+            // Os chunks com mais de duas horas saíram a cada gravação
+            assertEquals(2, store.getChunkCount());
+            assertEquals(0, store.query(Long.MIN_VALUE, start + 2 * HOUR - 1, (time, lat, lon, alt, speed, sats) -> { }));
+            assertEquals(20, store.query(Long.MIN_VALUE, Long.MAX_VALUE, (time, lat, lon, alt, speed, sats) -> { }));
+
+            // Limite de espaço: sobra só o chunk mais recente
+            long newest = new File(directory, directory.list()[0]).length();
+            TrackStore small = new TrackStore(directory, Long.MAX_VALUE / 4, newest);
+            small.applyRetention(start + 4 * HOUR);
+            assertEquals(1, small.getChunkCount());
+            assertEquals(10, small.query(Long.MIN_VALUE, Long.MAX_VALUE, (time, lat, lon, alt, speed, sats) -> { }));
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void flushIfDue_writesAfterIntervalAndRetriesFailedWrites() throws IOException {
+        File parent = Files.createTempDirectory("track").toFile();
+        File directory = new File(parent, "tracks");
+        try {
+            assertTrue(directory.createNewFile()); // Um arquivo no lugar do diretório faz a gravação falhar
+            TrackStore store = new TrackStore(directory, Long.MAX_VALUE / 4, Long.MAX_VALUE);
+            for (int i = 0; i < 10; i++) {
+                store.append(T0 + i * 1000L, -19.9, -43.9, 850, 0f, 9);
+            }
+            long now = T0 + 10_000;
+            store.flushIfDue(now);
+            store.flushIfDue(now + 4 * 60_000);
+            assertEquals(0, store.getFailedWriteCount()); // Ainda dentro do intervalo
+
+            store.flushIfDue(now + 5 * 60_000);
+            assertEquals(1, store.getFailedWriteCount());
+            assertEquals(10, store.getPendingCount()); // Nada se perde com a falha
+            assertEquals(10, store.query(Long.MIN_VALUE, Long.MAX_VALUE, (time, lat, lon, alt, speed, sats) -> { }));
+
+            store.flushIfDue(now + 5 * 60_000 + 10_000);
+            assertEquals(1, store.getFailedWriteCount()); // Espera antes de tentar de novo
+
+            assertTrue(directory.delete());
+            store.flushIfDue(now + 5 * 60_000 + 30_000);
+            assertEquals(0, store.getPendingCount());
+            assertEquals(1, store.getChunkCount());
+            assertEquals(0, store.getDroppedPointCount());
+            assertEquals(10, new TrackStore(directory, Long.MAX_VALUE / 4, Long.MAX_VALUE)
+                    .query(Long.MIN_VALUE, Long.MAX_VALUE, (time, lat, lon, alt, speed, sats) -> { }));
+        } finally {
+            if (directory.isDirectory()) {
+                deleteAll(directory);
+            } else {
+                directory.delete();
+            }
+            parent.delete();
+        }
+    }
+
+    private static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,72 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes das janelas de transmissão, no modelo isolado e com o simulador no relógio virtual.
+ */
+public class TransmissionWindowTest {
+
+    private static final long HOUR_MS = 3_600_000;
+
+    @Test
+    public void failedBurst_isNotCounted() {
+        TransmissionWindow window = new TransmissionWindow(60_000, 10_000);
+        window.onBurstStart(0);
+        window.onBurstEnd(500); // Todos os envios falharam
+        assertEquals(0, window.getBursts());
+        assertEquals(0, window.getRadioWakeups());
+        assertEquals(60_000, window.millisUntilOpen(0));
+
+        window.onBurstStart(60_000);
+        window.onSend(60_000, 60_200, 6);
+        window.onSend(60_200, 60_300, 1);
+        window.onBurstEnd(60_300);
+        assertEquals(1, window.getBursts());
+        assertEquals(2, window.getPackets());
+        assertEquals(7, window.getAverageBurstRecords(), 0);
+        assertEquals(1, window.getRadioWakeups());
+        assertEquals(10_300, window.getRadioActiveMillis());
+    }
+
+    @Test
+    public void oneHourAtOneRecordEvery10s_windowsCutPacketsAndWakeups() throws Exception {
+        int withoutWindows = packetsInOneHour(null);
+        TransmissionWindow window = new TransmissionWindow(60_000, 10_000);
+        int withWindows = packetsInOneHour(window);
+
+        // Identificação mais 361 registros (de 0 a 3600 s), um pacote por registro
+        assertEquals(362, withoutWindows);
+        // Uma rajada por janela de 60 s, de 0 a 3600 s
+        assertEquals(65, withWindows);
+        assertEquals(61, window.getBursts());
+        assertEquals(window.getBursts(), window.getRadioWakeups());
+        // Cada registro confirmado é contado uma vez, pelo servidor, e não pelo tamanho do buffer
+        assertEquals(361, window.getAverageBurstRecords() * window.getBursts(), 1e-9);
+        assertTrue(window.getEstimatedSavedMillis() > 0);
+    }
+
+    /**
+     * Executa o simulador por uma hora no relógio virtual contra o receptor local.
+     *
+     * @return Pacotes recebidos pelo receptor.
+     */
+    private static int packetsInOneHour(TransmissionWindow window) throws Exception {
+        try (MockReceiver receiver = new MockReceiver(0)) {
+            EndpointPool pool = new EndpointPool(
+                    Collections.singletonList(new ServerEndpoint("127.0.0.1", receiver.getPort())), 2, 60000);
+            TaskScheduler.VirtualClock clock = new TaskScheduler.VirtualClock();
+            TaskScheduler scheduler = new TaskScheduler(clock);
+            GalileoskySimulator simulator = new GalileoskySimulator(new FixedLocationSource(), pool, scheduler);
+            simulator.setTransmissionWindow(window);
+            simulator.sendCoordinates("357138166785014", "12345678909", "ABC1D23");
+            scheduler.runFor(HOUR_MS);
+            simulator.stop();
+            return receiver.getPacketCount();
+        }
+    }
+}
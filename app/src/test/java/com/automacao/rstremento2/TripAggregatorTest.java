@@ -0,0 +1,94 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da segmentação de viagens, com fixes a 1 Hz ao longo de um meridiano.
+ */
+public class TripAggregatorTest {
+
+    private static final double METERS_PER_DEGREE = 6371000.0 * Math.PI / 180;
+    private static final double LAT0 = -19.9167;
+    private static final double LON0 = -43.9345;
+
+    private final List<TripSummary> trips = new ArrayList<>();
+    private final TripAggregator aggregator = new TripAggregator(trips::add);
+    private long time = 1_700_000_000_000L;
+    private double northMeters;
+
+    /**
+     * Gera fixes a 1 Hz: {@code metersPerSecond} é o deslocamento real e {@code speedKmh}
+     * a velocidade filtrada informada ao agregador.
+     */
+    private void drive(int seconds, double metersPerSecond, float speedKmh) {
+        for (int i = 0; i < seconds; i++) {
+            time += 1000;
+            northMeters += metersPerSecond;
+            aggregator.onFix(time, LAT0 + northMeters / METERS_PER_DEGREE, LON0, speedKmh);
+        }
+    }
+
+    @Test
+    public void shortMovement_doesNotStartTrip() {
+        drive(10, 0, 0);
+        drive(15, 5, 18);   // Menos que os 20 s de confirmação
+        drive(10, 0, 0);
+        assertFalse(aggregator.isInTrip());
+        drive(25, 5, 18);
+        assertTrue(aggregator.isInTrip());
+    }
+
+    @Test
+    public void tripEndsAfterConfirmedStop_withDistanceAndTimes() {
+        drive(10, 0, 0);
+        long start = time;
+        drive(120, 10, 36);            // 1200 m a 36 km/h
+        long stop = time + 1000;
+        drive(400, 0, 0);              // Parada maior que 5 min
+
+        assertFalse(aggregator.isInTrip());
+        assertEquals(1, trips.size());
+        TripSummary trip = trips.get(0);
+        assertEquals(start, trip.startTimeMillis);
+        assertEquals(stop, trip.endTimeMillis);
+        assertEquals(1200, trip.distanceMeters, 0.5);
+        assertEquals(120_000, trip.movingMillis);
+        assertEquals(36f, trip.maxSpeedKmh, 0);
+        assertEquals(LAT0 + 1200 / METERS_PER_DEGREE, trip.endLatitude, 1e-9);
+    }
+
+    @Test
+    public void distance_countsFixesWithZeroFilteredSpeed() {
+        drive(10, 0, 0);
+        drive(60, 10, 36);
+        drive(5, 10, 0);               // Filtro zerado por alguns fixes, veículo andando
+        drive(60, 10, 36);
+        drive(400, 0, 0);
+
+        assertEquals(1, trips.size());
+        assertEquals(1250, trips.get(0).distanceMeters, 0.5);
+    }
+
+    @Test
+    public void shortStop_isIdleTimeAndDriftAtFinalStopIsIgnored() {
+        drive(10, 0, 0);
+        drive(60, 10, 36);
+        drive(60, 0, 0);               // Semáforo longo, volta a andar
+        drive(60, 10, 36);
+        drive(400, 0.5, 0);            // Estacionado com deriva do GPS
+
+        assertEquals(1, trips.size());
+        TripSummary trip = trips.get(0);
+        // Só o primeiro passo da deriva entra: ele leva ao ponto onde a parada começou
+        assertEquals(1200.5, trip.distanceMeters, 0.01);
+        // 60 s no semáforo mais o intervalo até o fix em que a parada final começou
+        assertEquals(61_000, trip.idleMillis);
+        assertEquals(120_000, trip.movingMillis);
+        assertEquals(trip.endTimeMillis - trip.startTimeMillis, trip.movingMillis + trip.idleMillis);
+    }
+}
@@ -0,0 +1,136 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da captura de pacotes: anel, formato dos arquivos e gravação com rotação.
+ */
+public class WireCaptureTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static byte[] packet(int seed, int length) {
+        byte[] packet = new byte[length];
+        for (int i = 0; i < length; i++) {
+            packet[i] = (byte) (seed * 31 + i);
+        }
+        return packet;
+    }
+
+    /** Lê todos os registros de um fluxo no formato de captura, sem cabeçalho. */
+    private static List<WireCaptureFormat.Record> readAll(byte[] stream) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream));
+        List<WireCaptureFormat.Record> records = new ArrayList<>();
+        while (true) {
+            WireCaptureFormat.Record record = new WireCaptureFormat.Record();
+            if (!WireCaptureFormat.readRecord(in, record)) {
+                return records;
+            }
+            records.add(record);
+        }
+    }
+
+    @Test
+    public void drainTo_roundTripsRecordsAndTruncatesOversized() throws IOException {
+        WireCapture capture = new WireCapture(8, 1029);
+        byte[] frame = packet(1, 1029); // Pacote agrupado de tamanho máximo
+        byte[] ack = {0x02, 0x34, 0x12};
+        byte[] oversized = packet(2, 1100);
+        capture.record(WireCapture.DIRECTION_SENT, T0, frame, 0, frame.length);
+        capture.record(WireCapture.DIRECTION_RECEIVED, T0 + 5, ack, 0, ack.length);
+        capture.record(WireCapture.DIRECTION_SENT, T0 + 9, oversized, 0, oversized.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(3, capture.drainTo(new DataOutputStream(bytes)));
+        assertEquals(0, capture.getPendingCount());
+
+        List<WireCaptureFormat.Record> records = readAll(bytes.toByteArray());
+        assertEquals(3, records.size());
+        assertEquals(T0, records.get(0).timeMillis);
+        assertEquals(WireCapture.DIRECTION_SENT, records.get(0).direction);
+        assertArrayEquals(frame, records.get(0).data);
+        assertEquals(WireCapture.DIRECTION_RECEIVED, records.get(1).direction);
+        assertArrayEquals(ack, records.get(1).data);
+        assertEquals(T0 + 9, records.get(2).timeMillis);
+        assertEquals(1029, records.get(2).data.length);
+    }
+
+    @Test
+    public void fullRing_dropsNewRecordsAndWrapsAfterDrain() throws IOException {
+        WireCapture capture = new WireCapture(4, 16);
+        int seed = 0;
+        List<byte[]> expected = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            // Seis capturas em um anel de quatro: as duas últimas são descartadas
+            for (int i = 0; i < 6; i++) {
+                byte[] data = packet(seed++, 1 + i);
+                capture.record(WireCapture.DIRECTION_SENT, T0 + seed, data, 0, data.length);
+                if (i < 4) {
+                    expected.add(data);
+                }
+            }
+            assertEquals(4, capture.getPendingCount());
+            assertEquals(2L * (round + 1), capture.getDroppedCount());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            assertEquals(4, capture.drainTo(new DataOutputStream(bytes)));
+            List<WireCaptureFormat.Record> records = readAll(bytes.toByteArray());
+            for (int i = 0; i < 4; i++) {
+                assertArrayEquals(expected.get(round * 4 + i), records.get(i).data);
+            }
+        }
+    }
+
+    @Test
+    public void writer_rotatesFilesAndKeepsNewest() throws IOException {
+        File directory = Files.createTempDirectory("wire").toFile();
+        try {
+            WireCapture capture = new WireCapture(64, 1029);
+            WireCaptureWriter writer = new WireCaptureWriter(capture, directory, 2048, 2);
+            for (int file = 0; file < 4; file++) {
+                for (int i = 0; i < 3; i++) {
+                    byte[] data = packet(file * 3 + i, 1000);
+                    capture.record(WireCapture.DIRECTION_SENT, T0 + file * 3 + i, data, 0, data.length);
+                }
+                writer.run();
+            }
+            writer.close();
+
+            String[] names = directory.list();
+            Arrays.sort(names);
+            assertEquals(2, names.length);
+            assertEquals("wire-000002.gscap", names[0]);
+            assertEquals("wire-000003.gscap", names[1]);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    Files.readAllBytes(new File(directory, names[1]).toPath())));
+            WireCaptureFormat.readHeader(in);
+            WireCaptureFormat.Record record = new WireCaptureFormat.Record();
+            assertTrue(WireCaptureFormat.readRecord(in, record));
+            assertEquals(T0 + 9, record.timeMillis);
+            assertArrayEquals(packet(9, 1000), record.data);
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    private static void deleteAll(File directory) {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
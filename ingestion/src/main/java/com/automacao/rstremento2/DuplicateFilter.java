@@ -0,0 +1,315 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Filtro de registros duplicados no receptor, por IMEI, tempo do registro e CRC. O
+ * {@code GalileoskySimulator} reenvia o pacote sempre que o ACK não chega ou vem com CRC
+ * errado, então o servidor recebe o mesmo registro mais de uma vez.
+ * <p>
+ * Cada dispositivo tem uma janela deslizante com uma entrada por segundo dos últimos
+ * {@code windowSeconds} segundos, contados a partir do registro mais recente. A entrada
+ * guarda o CRC do primeiro registro do segundo; os CRCs dos demais registros do mesmo
+ * segundo (um evento no mesmo segundo da posição, por exemplo) ficam em um conjunto à
+ * parte, descartado quando o segundo sai da janela. Dentro da janela a decisão é exata:
+ * nenhum registro novo é descartado.
+ * <p>
+ * Só os registros mais antigos que a janela, e os registros com tempo muito à frente do
+ * relógio do servidor, são decididos por um filtro de Bloom de tamanho fixo por
+ * (tempo, CRC), em duas gerações: quando a geração atual enche, a anterior é descartada.
+ * Nesses casos um registro novo pode ser tomado por duplicado com uma pequena
+ * probabilidade (cerca de 1% com a geração cheia), e duplicados mais antigos que duas
+ * gerações passam. Um registro à frente do relógio (relógio do dispositivo errado) não
+ * move a janela, para não empurrar os registros corretos seguintes para o filtro de Bloom.
+ * <p>
+ * A consulta é O(1) e sem travas no caso comum: as estruturas usam operações atômicas e
+ * o mapa de dispositivos só trava na primeira vez que um IMEI aparece. Consultas
+ * simultâneas do mesmo IMEI enquanto a janela avança podem deixar passar um duplicado.
+ */
+public class DuplicateFilter {
+    private static final int HASHES = 5;
+    private static final int BITS_PER_ENTRY = 10; // Com 5 funções de hash, cerca de 1% de falso positivo
+    private static final int BYTES_PER_SECOND = 4;
+    private static final int PRESENT = 1 << 16;
+    /** Adiantamento máximo do tempo do registro em relação ao relógio do servidor. */
+    public static final long MAX_AHEAD_SECONDS = 600;
+
+    /**
+     * Fonte de tempo em segundos Unix.
+     */
+    public interface Clock {
+        long nowSeconds();
+    }
+
+    private final int windowSeconds;
+    private final int bloomBits;
+    private final int bloomCapacity;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Device> devices = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong olderThanWindow = new AtomicLong();
+    private final AtomicLong aheadOfClock = new AtomicLong();
+
+    /**
+     * Construtor do filtro, com o relógio do sistema.
+     *
+     * @param windowSeconds Segundos cobertos pela janela de cada dispositivo.
+     * @param bloomBits     Bits de cada geração do filtro de Bloom de cada dispositivo
+     *                      (arredondado para múltiplo de 64).
+     */
+    public DuplicateFilter(int windowSeconds, int bloomBits) {
+        this(windowSeconds, bloomBits, () -> System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Construtor do filtro.
+     *
+     * @param windowSeconds Segundos cobertos pela janela de cada dispositivo.
+     * @param bloomBits     Bits de cada geração do filtro de Bloom de cada dispositivo
+     *                      (arredondado para múltiplo de 64).
+     * @param clock         Relógio do servidor, que limita o avanço da janela.
+     */
+    public DuplicateFilter(int windowSeconds, int bloomBits, Clock clock) {
+        if (windowSeconds <= 0 || bloomBits < 64) {
+            throw new IllegalArgumentException("Tamanhos do filtro inválidos");
+        }
+        this.windowSeconds = windowSeconds;
+        this.bloomBits = roundUp64(bloomBits);
+        this.bloomCapacity = Math.max(1, this.bloomBits / BITS_PER_ENTRY);
+        this.clock = clock;
+    }
+
+    /**
+     * Cria um filtro com o limite de memória informado por dispositivo: metade para a
+     * janela (4 bytes por segundo) e metade para as duas gerações do filtro de Bloom. Os
+     * CRCs extras dos segundos com mais de um registro não entram na conta.
+     *
+     * @param bytesPerDevice Memória aproximada por dispositivo, em bytes.
+     */
+    public static DuplicateFilter withMemoryPerDevice(int bytesPerDevice) {
+        return new DuplicateFilter(Math.max(1, bytesPerDevice / 2 / BYTES_PER_SECOND), Math.max(64, bytesPerDevice * 2));
+    }
+
+    /**
+     * Verifica se o registro já foi visto e o registra.
+     *
+     * @param imei        IMEI do dispositivo.
+     * @param timeSeconds Tempo do registro (segundos Unix).
+     * @param crc         CRC do corpo do registro.
+     * @return true se o registro é duplicado.
+     */
+    public boolean isDuplicate(String imei, long timeSeconds, int crc) {
+        Device device = devices.get(imei);
+        if (device == null) {
+            device = devices.computeIfAbsent(imei, key -> new Device());
+        }
+        boolean duplicate = device.checkAndMark(timeSeconds, crc & 0xFFFF);
+        (duplicate ? hits : misses).incrementAndGet();
+        return duplicate;
+    }
+
+    /** Registros identificados como duplicados. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Registros novos. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Registros mais antigos que a janela, decididos só pelo filtro de Bloom. */
+    public long getOlderThanWindowCount() {
+        return olderThanWindow.get();
+    }
+
+    /** Registros muito à frente do relógio do servidor, decididos só pelo filtro de Bloom. */
+    public long getAheadOfClockCount() {
+        return aheadOfClock.get();
+    }
+
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * Memória aproximada das estruturas de um dispositivo, em bytes, sem os CRCs extras
+     * dos segundos com mais de um registro.
+     */
+    public int getBytesPerDevice() {
+        return windowSeconds * BYTES_PER_SECOND + 2 * bloomBits / 8;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Duplicados (dispositivos=%d, duplicados=%d, novos=%d, fora da janela=%d, adiantados=%d, %d B/dispositivo)",
+                getDeviceCount(), hits.get(), misses.get(), olderThanWindow.get(), aheadOfClock.get(), getBytesPerDevice());
+    }
+
+    private static int roundUp64(int bits) {
+        return (bits + 63) & ~63;
+    }
+
+    /**
+     * Janela e filtro de Bloom de um dispositivo.
+     */
+    private final class Device {
+        // CRC do primeiro registro de cada segundo, com PRESENT; zero quando o segundo está livre
+        private final AtomicIntegerArray window = new AtomicIntegerArray(windowSeconds);
+        // CRCs dos demais registros de cada segundo da janela
+        private final ConcurrentSkipListMap<Long, Set<Integer>> extra = new ConcurrentSkipListMap<>();
+        private final AtomicLong newest = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicReference<Generation> current = new AtomicReference<>(new Generation());
+        private volatile Generation previous;
+
+        boolean checkAndMark(long time, int crc) {
+            long hash = mix(time << 16 | crc);
+            if (time > clock.nowSeconds() + MAX_AHEAD_SECONDS) {
+                aheadOfClock.incrementAndGet();
+                return !addToBloom(hash);
+            }
+            long head = advance(time);
+            if (time <= head - windowSeconds) {
+                olderThanWindow.incrementAndGet();
+                return !addToBloom(hash);
+            }
+            int slot = (int) Math.floorMod(time, (long) windowSeconds);
+            int entry = PRESENT | crc;
+            while (true) {
+                int value = window.get(slot);
+                if (value == entry) {
+                    return true;
+                }
+                if (value != 0) {
+                    break;
+                }
+                if (window.compareAndSet(slot, 0, entry)) {
+                    addToBloom(hash); // Para os reenvios que chegarem depois de o segundo sair da janela
+                    return false;
+                }
+            }
+            // Segundo já ocupado por outro registro: o conjunto dos demais decide
+            Set<Integer> crcs = extra.get(time);
+            if (crcs == null) {
+                crcs = extra.computeIfAbsent(time, key -> ConcurrentHashMap.newKeySet());
+            }
+            if (crcs.add(crc)) {
+                addToBloom(hash);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Move o início da janela para {@code time} se ele for mais recente, liberando os
+         * segundos que saem da janela.
+         *
+         * @return O tempo mais recente após a atualização.
+         */
+        private long advance(long time) {
+            while (true) {
+                long head = newest.get();
+                if (time <= head) {
+                    return head;
+                }
+                if (newest.compareAndSet(head, time)) {
+                    long from = head == Long.MIN_VALUE ? time - windowSeconds + 1 : Math.max(head + 1, time - windowSeconds + 1);
+                    for (long second = from; second <= time; second++) {
+                        window.set((int) Math.floorMod(second, (long) windowSeconds), 0);
+                    }
+                    if (!extra.isEmpty()) {
+                        extra.headMap(time - windowSeconds, true).clear();
+                    }
+                    return time;
+                }
+            }
+        }
+
+        /**
+         * Adiciona ao filtro de Bloom.
+         *
+         * @return true se o registro não estava em nenhuma das duas gerações.
+         */
+        private boolean addToBloom(long hash) {
+            Generation generation = current.get();
+            Generation old = previous;
+            boolean present = generation.contains(hash) || (old != null && old.contains(hash));
+            if (!present) {
+                generation.add(hash);
+                if (generation.count.incrementAndGet() == bloomCapacity) {
+                    previous = generation;
+                    current.compareAndSet(generation, new Generation());
+                }
+            }
+            return !present;
+        }
+    }
+
+    /**
+     * Geração do filtro de Bloom, com duplo hashing sobre um hash de 64 bits.
+     */
+    private final class Generation {
+        final AtomicLongArray bits = new AtomicLongArray(bloomBits / 64);
+        final AtomicLong count = new AtomicLong();
+
+        boolean contains(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bloomBits);
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                setBit(bits, Math.floorMod(h1 + i * h2, bloomBits));
+            }
+        }
+    }
+
+    /**
+     * Liga um bit.
+     *
+     * @return true se o bit estava desligado.
+     */
+    private static boolean setBit(AtomicLongArray array, int bit) {
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long value = array.get(word);
+            if ((value & mask) != 0) {
+                return false;
+            }
+            if (array.compareAndSet(word, value, value | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Mistura de 64 bits (finalizador do SplitMix64).
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,48 @@
+package com.automacao.rstremento2;
+
+/**
+ * Registro de posição decodificado pelo {@link IngestionServer}. Campos ausentes no
+ * registro ficam com {@link #ABSENT}.
+ */
+public class IngestedRecord {
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    public final String imei;
+    public final long timeSeconds;
+    public final int satellites;
+    public final int latitudeE6;   // Graus * 1e6
+    public final int longitudeE6;  // Graus * 1e6
+    public final int speed;        // Valor da tag de velocidade
+    public final int altitude;     // Metros
+    public final int hdop;         // HDOP * 10
+    public final int reactor;      // Reator que recebeu o registro
+    public final long receivedNanos;
+
+    public IngestedRecord(String imei, long timeSeconds, int satellites, int latitudeE6, int longitudeE6,
+                          int speed, int altitude, int hdop, int reactor, long receivedNanos) {
+        this.imei = imei;
+        this.timeSeconds = timeSeconds;
+        this.satellites = satellites;
+        this.latitudeE6 = latitudeE6;
+        this.longitudeE6 = longitudeE6;
+        this.speed = speed;
+        this.altitude = altitude;
+        this.hdop = hdop;
+        this.reactor = reactor;
+        this.receivedNanos = receivedNanos;
+    }
+
+    public double getLatitude() {
+        return latitudeE6 / 1e6;
+    }
+
+    public double getLongitude() {
+        return longitudeE6 / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestedRecord{imei=" + imei + ", time=" + timeSeconds + ", lat=" + getLatitude()
+                + ", lon=" + getLongitude() + ", sat=" + satellites + ", speed=" + speed + "}";
+    }
+}
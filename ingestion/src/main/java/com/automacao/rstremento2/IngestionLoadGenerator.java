@@ -0,0 +1,325 @@
+package com.automacao.rstremento2;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Modo de teste de carga do {@link IngestionServer}, inteiramente no loopback. Sobe o
+ * servidor e simula milhares de dispositivos, cada um com conexão própria: o head packet
+ * com o IMEI e, em seguida, registros de posição com o mesmo layout do
+ * {@code PacketSavingTask}, um por vez, esperando a confirmação como o
+ * {@code GalileoskySimulator}. As conexões dos dispositivos são atendidas por poucas
+ * threads com seletores.
+ *
+ * Uso: {@code java com.automacao.rstremento2.IngestionLoadGenerator [dispositivos] [segundos]
+ * [reatores] [intervalo_ms]}
+ */
+public final class IngestionLoadGenerator {
+    private static final String CPF = "12345678909";
+    private static final String PLATE = "ABC1D23";
+    private static final long IMEI_BASE = 860000000000000L;
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    /**
+     * Resultado de uma execução.
+     */
+    public static final class Result {
+        public final int units;
+        public final long elapsedNanos;
+        public final long sent;
+        public final long acked;
+        public final long badAcks;
+        public final long serverRecords;
+        public final long dispatched;
+        public final double meanRttMicros;
+        public final double maxRttMicros;
+
+        Result(int units, long elapsedNanos, long sent, long acked, long badAcks, long serverRecords,
+               long dispatched, double meanRttMicros, double maxRttMicros) {
+            this.units = units;
+            this.elapsedNanos = elapsedNanos;
+            this.sent = sent;
+            this.acked = acked;
+            this.badAcks = badAcks;
+            this.serverRecords = serverRecords;
+            this.dispatched = dispatched;
+            this.meanRttMicros = meanRttMicros;
+            this.maxRttMicros = maxRttMicros;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos > 0 ? acked * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "dispositivos=%d, enviados=%d, confirmados=%d (%.0f/s), ACK inválido=%d, "
+                            + "recebidos no servidor=%d, entregues=%d, RTT médio=%.1f us, máximo=%.1f us",
+                    units, sent, acked, getRecordsPerSecond(), badAcks, serverRecords, dispatched,
+                    meanRttMicros, maxRttMicros);
+        }
+    }
+
+    private IngestionLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int units = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int reactors = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long intervalMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        Result result = run(units, seconds * 1000L, reactors, intervalMillis, System.out);
+        System.out.println(result);
+    }
+
+    /**
+     * Executa o teste de carga com um servidor próprio.
+     *
+     * @param units          Dispositivos simulados (uma conexão cada).
+     * @param durationMillis Duração do envio.
+     * @param reactors       Reatores do servidor; o gerador usa o mesmo número de threads.
+     * @param intervalMillis Espera de cada dispositivo entre um ACK e o próximo registro,
+     *                       ou 0 para enviar o mais rápido possível.
+     * @param out            Destino dos relatórios por segundo, ou null.
+     * @return O resultado da execução.
+     */
+    public static Result run(int units, long durationMillis, int reactors, long intervalMillis, PrintStream out)
+            throws IOException, InterruptedException {
+        IngestionServer server = new IngestionServer(0, reactors, record -> {
+        });
+        server.start();
+        try {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+            int threads = Math.min(reactors, units);
+            List<ClientLoop> loops = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                loops.add(new ClientLoop(address, intervalMillis));
+            }
+            for (int unit = 0; unit < units; unit++) {
+                loops.get(unit % threads).addUnit(IMEI_BASE + unit);
+            }
+
+            long start = System.nanoTime();
+            long deadline = start + durationMillis * 1_000_000L;
+            List<Thread> running = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                ClientLoop loop = loops.get(i);
+                Thread thread = new Thread(() -> loop.run(deadline), "Ingestion-load-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                running.add(thread);
+            }
+            long nextReport = System.currentTimeMillis() + REPORT_INTERVAL_MS;
+            for (Thread thread : running) {
+                while (thread.isAlive()) {
+                    thread.join(REPORT_INTERVAL_MS);
+                    if (out != null && System.currentTimeMillis() >= nextReport) {
+                        out.println(server.report());
+                        nextReport += REPORT_INTERVAL_MS;
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long sent = 0, acked = 0, badAcks = 0, rttNanos = 0, maxRtt = 0;
+            for (ClientLoop loop : loops) {
+                sent += loop.sent;
+                acked += loop.acked;
+                badAcks += loop.badAcks;
+                rttNanos += loop.rttNanos;
+                maxRtt = Math.max(maxRtt, loop.maxRttNanos);
+            }
+            // Espera a fila do servidor esvaziar antes de comparar os totais
+            long drainDeadline = System.currentTimeMillis() + 5000;
+            while (server.getDispatchedCount() < server.getRecordCount() && System.currentTimeMillis() < drainDeadline) {
+                Thread.sleep(10);
+            }
+            if (out != null) {
+                out.println(server.report());
+            }
+            return new Result(units, elapsed, sent, acked, badAcks, server.getRecordCount(),
+                    server.getDispatchedCount(), acked > 0 ? rttNanos / 1e3 / acked : 0, maxRtt / 1e3);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Thread do gerador com um seletor para as conexões de vários dispositivos.
+     */
+    private static final class ClientLoop {
+        private final InetSocketAddress address;
+        private final long intervalNanos;
+        private final List<Unit> units = new ArrayList<>();
+        long sent;
+        long acked;
+        long badAcks;
+        long rttNanos;
+        long maxRttNanos;
+
+        ClientLoop(InetSocketAddress address, long intervalMillis) {
+            this.address = address;
+            this.intervalNanos = intervalMillis * 1_000_000L;
+        }
+
+        void addUnit(long imei) {
+            units.add(new Unit(String.valueOf(imei)));
+        }
+
+        void run(long deadlineNanos) {
+            try (Selector selector = Selector.open()) {
+                for (Unit unit : units) {
+                    unit.channel = SocketChannel.open();
+                    unit.channel.configureBlocking(false);
+                    unit.channel.socket().setTcpNoDelay(true);
+                    unit.channel.connect(address);
+                    unit.key = unit.channel.register(selector, SelectionKey.OP_CONNECT, unit);
+                }
+                while (System.nanoTime() < deadlineNanos) {
+                    selector.select(1);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Unit unit = (Unit) key.attachment();
+                        try {
+                            if (key.isConnectable() && unit.channel.finishConnect()) {
+                                unit.startWrite(unit.head, 0);
+                            } else if (key.isWritable()) {
+                                unit.continueWrite();
+                            } else if (key.isReadable()) {
+                                readAck(unit);
+                            }
+                        } catch (IOException e) {
+                            key.cancel();
+                        }
+                    }
+                    if (intervalNanos > 0) {
+                        long now = System.nanoTime();
+                        for (Unit unit : units) {
+                            if (unit.idle && now >= unit.nextSendNanos) {
+                                try {
+                                    sendRecord(unit);
+                                } catch (IOException e) {
+                                    unit.key.cancel();
+                                }
+                            }
+                        }
+                    }
+                }
+                for (Unit unit : units) {
+                    unit.channel.close();
+                }
+            } catch (IOException e) {
+                AppLog.e("IngestionLoadGenerator", "Falha no gerador de carga", e);
+            }
+        }
+
+        private void readAck(Unit unit) throws IOException {
+            if (unit.channel.read(unit.ack) < 0) {
+                throw new IOException("Conexão encerrada pelo servidor");
+            }
+            if (unit.ack.hasRemaining()) {
+                return;
+            }
+            byte[] ack = unit.ack.array();
+            int crc = (ack[1] & 0xFF) | (ack[2] & 0xFF) << 8;
+            unit.ack.clear();
+            if ((ack[0] & 0xFF) != 0x02 || crc != unit.expectedCrc) {
+                badAcks++;
+            } else if (unit.expectedRecord) {
+                long rtt = System.nanoTime() - unit.sentNanos;
+                acked++;
+                rttNanos += rtt;
+                maxRttNanos = Math.max(maxRttNanos, rtt);
+            }
+            if (intervalNanos > 0) {
+                unit.idle = true;
+                unit.nextSendNanos = System.nanoTime() + intervalNanos;
+                unit.key.interestOps(0);
+            } else {
+                sendRecord(unit);
+            }
+        }
+
+        private void sendRecord(Unit unit) throws IOException {
+            unit.idle = false;
+            int sequence = unit.sequence++;
+            long[] values = unit.values;
+            int slot = 0;
+            values[slot++] = System.currentTimeMillis() / 1000;
+            values[slot++] = 9;                                   // Satélites
+            values[slot++] = -23_550_000 + (sequence % 1000) * 10; // Latitude * 1e6
+            values[slot++] = -46_633_000 + (sequence % 1000) * 10; // Longitude * 1e6
+            values[slot++] = 600;                                 // Velocidade
+            values[slot] = 760;                                   // Altitude
+            unit.layout.encode(values, unit.record, 0);
+            sent++;
+            unit.startWrite(unit.record, 1);
+        }
+    }
+
+    /**
+     * Dispositivo simulado: layouts próprios (IMEI distinto) e estado do pacote em envio.
+     */
+    private static final class Unit {
+        final byte[] head;
+        final RecordLayout layout;
+        final long[] values;
+        final byte[] record;
+        final ByteBuffer ack = ByteBuffer.allocate(3);
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer pending;
+        int expectedCrc;
+        boolean expectedRecord;
+        long sentNanos;
+        boolean idle;
+        long nextSendNanos;
+        int sequence;
+
+        Unit(String imei) {
+            byte[] imeiBytes = imei.getBytes();
+            byte[] cpfBytes;
+            try {
+                cpfBytes = CPFConverter.compressCPF(CPF);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+            head = new RecordSchema()
+                    .constant(TagRegistry.TAG_IMEI, imeiBytes)
+                    .constant(TagRegistry.TAG_HARDWARE_VERSION, new byte[]{0x11})
+                    .constant(TagRegistry.TAG_FIRMWARE_VERSION, new byte[]{0x22})
+                    .compile()
+                    .encode(new long[0]);
+            layout = RecordSchema.pointSchema(imeiBytes, cpfBytes, CarPlateEncoder.encode(PLATE)).compile();
+            values = new long[layout.getSlotCount()];
+            record = new byte[layout.getSize()];
+        }
+
+        void startWrite(byte[] packet, int records) throws IOException {
+            expectedCrc = AckFrameDecoder.packetCrc(packet);
+            expectedRecord = records > 0;
+            sentNanos = System.nanoTime();
+            pending = ByteBuffer.wrap(packet);
+            continueWrite();
+        }
+
+        void continueWrite() throws IOException {
+            channel.write(pending);
+            key.interestOps(pending.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+}
@@ -0,0 +1,680 @@
+package com.automacao.rstremento2;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Servidor de ingestão Galileosky de referência, em Java puro, para dimensionar o backend
+ * com tráfego de muitos dispositivos. Escuta apenas no loopback.
+ * <p>
+ * Uma thread aceita as conexões e as distribui em rodízio entre os reatores; cada reator
+ * tem seu seletor e sua thread e lê as conexões sem bloquear. Os pacotes (head e main)
+ * são delimitados no próprio buffer de leitura da conexão, sem cópia por pacote: o CRC é
+ * verificado no lugar, a confirmação 0x02 + CRC é escrita ainda na mesma volta do laço e
+ * os registros decodificados vão para uma fila sem bloqueio, esvaziada por uma thread que
+ * chama o {@link Sink}. Pacotes com CRC inválido não são confirmados, para que o
+ * dispositivo os reenvie.
+ * <p>
+ * Se a fila passar do limite, os reatores param de ler até ela esvaziar e o TCP
+ * segura os dispositivos. Com um {@link DuplicateFilter}, registros reenviados são
+ * confirmados de novo, mas não chegam ao {@link Sink}.
+ */
+public class IngestionServer implements AutoCloseable {
+    private static final String TAG = "IngestionServer";
+    private static final int HEADER = 0x01;
+    private static final int HEADER_SIZE = 3;  // Header (1 byte) + comprimento (2 bytes)
+    private static final int CRC_SIZE = 2;
+    private static final int ACK_SIZE = 3;     // 0x02 + CRC
+    private static final int LENGTH_MASK = 0x7FFF; // O bit mais alto indica dados no arquivo do dispositivo
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final long SELECT_TIMEOUT_MS = 100;
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final int DEFAULT_QUEUE_LIMIT = 100_000;
+
+    /**
+     * Destino dos registros decodificados, chamado sempre pela mesma thread.
+     */
+    public interface Sink {
+        void onRecord(IngestedRecord record);
+    }
+
+    private final int requestedPort;
+    private final Sink sink;
+    private final Reactor[] reactors;
+    private final int queueLimit;
+    private final ConcurrentLinkedQueue<IngestedRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong sinkErrors = new AtomicLong();
+    private volatile DuplicateFilter duplicateFilter;
+
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private Thread acceptThread;
+    private Thread dispatchThread;
+    private int nextReactor;
+
+    // Estado do relatório de taxas
+    private long lastReportNanos;
+    private long[] lastReportRecords;
+
+    /**
+     * Construtor do servidor.
+     *
+     * @param port         Porta no loopback, ou 0 para uma porta livre.
+     * @param reactorCount Número de reatores (threads de leitura).
+     * @param sink         Destino dos registros decodificados.
+     */
+    public IngestionServer(int port, int reactorCount, Sink sink) {
+        this(port, reactorCount, sink, DEFAULT_QUEUE_LIMIT);
+    }
+
+    /**
+     * Construtor completo do servidor.
+     *
+     * @param port         Porta no loopback, ou 0 para uma porta livre.
+     * @param reactorCount Número de reatores (threads de leitura).
+     * @param sink         Destino dos registros decodificados.
+     * @param queueLimit   Registros na fila acima dos quais os reatores param de ler.
+     */
+    public IngestionServer(int port, int reactorCount, Sink sink, int queueLimit) {
+        if (reactorCount <= 0 || queueLimit <= 0) {
+            throw new IllegalArgumentException("Parâmetros do servidor inválidos");
+        }
+        this.requestedPort = port;
+        this.sink = sink;
+        this.queueLimit = queueLimit;
+        this.reactors = new Reactor[reactorCount];
+        this.lastReportRecords = new long[reactorCount];
+    }
+
+    /**
+     * Define o filtro de registros duplicados, consultado pelos reatores antes de enfileirar.
+     *
+     * @param filter O filtro, ou null para entregar todos os registros.
+     */
+    public void setDuplicateFilter(DuplicateFilter filter) {
+        this.duplicateFilter = filter;
+    }
+
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    /**
+     * Abre a porta e inicia as threads de aceitação, dos reatores e de entrega.
+     *
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort), ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(i);
+            reactors[i].thread.start();
+        }
+        dispatchThread = newThread(this::dispatchLoop, "Ingestion-dispatch");
+        dispatchThread.start();
+        acceptThread = newThread(this::acceptLoop, "Ingestion-accept");
+        acceptThread.start();
+        lastReportNanos = System.nanoTime();
+        AppLog.i(TAG, "Servidor de ingestão na porta {} com {} reatores", getPort(), reactors.length);
+    }
+
+    /**
+     * Para as threads, fecha as conexões e entrega os registros que ainda estavam na fila.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        acceptSelector.wakeup();
+        for (Reactor reactor : reactors) {
+            reactor.selector.wakeup();
+        }
+        join(acceptThread);
+        for (Reactor reactor : reactors) {
+            join(reactor.thread);
+        }
+        join(dispatchThread);
+        try {
+            acceptSelector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            AppLog.w(TAG, "Falha ao fechar a porta: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                acceptSelector.select(SELECT_TIMEOUT_MS);
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    reactors[nextReactor].register(channel);
+                    nextReactor = (nextReactor + 1) % reactors.length;
+                }
+            } catch (IOException e) {
+                if (running) {
+                    AppLog.w(TAG, "Falha ao aceitar conexão: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            IngestedRecord record = queue.poll();
+            if (record == null) {
+                if (!running && allReactorsStopped()) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                sink.onRecord(record);
+            } catch (RuntimeException e) {
+                if (sinkErrors.getAndIncrement() == 0) {
+                    AppLog.e(TAG, "Falha no destino dos registros", e);
+                }
+            }
+            dispatched.incrementAndGet();
+        }
+    }
+
+    private boolean allReactorsStopped() {
+        for (Reactor reactor : reactors) {
+            if (reactor.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Conexões abertas em todos os reatores. */
+    public int getConnectionCount() {
+        int total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.connections;
+        }
+        return total;
+    }
+
+    /** Registros decodificados em todos os reatores. */
+    public long getRecordCount() {
+        long total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.records;
+        }
+        return total;
+    }
+
+    /** Pacotes confirmados em todos os reatores. */
+    public long getAckCount() {
+        long total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.acks;
+        }
+        return total;
+    }
+
+    /** Registros descartados pelo filtro de duplicados. */
+    public long getDuplicateCount() {
+        long total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.duplicates;
+        }
+        return total;
+    }
+
+    /** Pacotes descartados por CRC inválido. */
+    public long getCrcErrorCount() {
+        long total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.crcErrors;
+        }
+        return total;
+    }
+
+    /** Registros já entregues ao {@link Sink}. */
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    /**
+     * Relatório por reator (núcleo): conexões, registros por segundo desde o relatório
+     * anterior e latência da confirmação, medida do fim da leitura até a escrita do ACK.
+     */
+    public synchronized String report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        StringBuilder sb = new StringBuilder();
+        long totalRecords = 0;
+        for (Reactor reactor : reactors) {
+            long records = reactor.records;
+            long acks = reactor.acks;
+            double rate = (records - lastReportRecords[reactor.index]) / seconds;
+            lastReportRecords[reactor.index] = records;
+            totalRecords += records;
+            sb.append(String.format(Locale.ROOT,
+                    "reator %d: conexões=%d (%d aceitas), registros=%d (%.0f/s), duplicados=%d, pacotes=%d (head=%d), "
+                            + "CRC inválido=%d, ACK médio=%.1f us, máximo=%.1f us%n",
+                    reactor.index, reactor.connections, reactor.accepted, records, rate, reactor.duplicates,
+                    reactor.packets, reactor.headPackets, reactor.crcErrors,
+                    acks > 0 ? reactor.ackNanos / 1e3 / acks : 0.0, reactor.maxAckNanos / 1e3));
+        }
+        sb.append(String.format(Locale.ROOT, "total: conexões=%d, registros=%d, entregues=%d, na fila=%d",
+                getConnectionCount(), totalRecords, dispatched.get(), queued.get()));
+        lastReportNanos = now;
+        return sb.toString();
+    }
+
+    /**
+     * Laço de leitura com seletor próprio. Os contadores são escritos só pela thread do
+     * reator e lidos pelos relatórios.
+     */
+    private final class Reactor implements Runnable {
+        final int index;
+        final Selector selector;
+        final Thread thread;
+        final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        volatile int connections;
+        volatile long accepted;
+        volatile long packets;
+        volatile long headPackets;
+        volatile long records;
+        volatile long duplicates;
+        volatile long crcErrors;
+        volatile long framingErrors;
+        volatile long acks;
+        volatile long ackNanos;
+        volatile long maxAckNanos;
+
+        Reactor(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+            this.thread = newThread(this, "Ingestion-reactor-" + index);
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(SELECT_TIMEOUT_MS);
+                } catch (IOException e) {
+                    AppLog.e(TAG, "Falha no seletor do reator", e);
+                    break;
+                }
+                registerPending();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flushAcks();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+                while (running && queued.get() > queueLimit) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                closeQuietly(channel);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Encerrando
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    Connection connection = new Connection(this, channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connections++;
+                    accepted++;
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        /**
+         * Enfileira um registro, a menos que o filtro o identifique como duplicado.
+         *
+         * @param bodyCrc CRC do corpo do registro, igual em um pacote isolado ou agrupado.
+         */
+        void offer(IngestedRecord record, int bodyCrc) {
+            DuplicateFilter filter = duplicateFilter;
+            if (filter != null && record.imei != null && filter.isDuplicate(record.imei, record.timeSeconds, bodyCrc)) {
+                duplicates++;
+                return;
+            }
+            records++; // Antes de publicar, para o Sink nunca ver o registro antes da contagem
+            queue.offer(record);
+            queued.incrementAndGet();
+        }
+    }
+
+    /**
+     * Estado de uma conexão: buffer de leitura, onde os pacotes são delimitados no lugar,
+     * e buffer das confirmações pendentes.
+     */
+    private static final class Connection {
+        final Reactor reactor;
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        ByteBuffer acks = ByteBuffer.allocate(16 * ACK_SIZE);
+        int pendingAcks;
+        long readNanos;
+        final byte[] imeiBytes = new byte[TagRegistry.IMEI_WIRE_WIDTH];
+        String imei;
+        boolean closed;
+
+        Connection(Reactor reactor, SocketChannel channel) {
+            this.reactor = reactor;
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            readNanos = System.nanoTime();
+            if (parseFrames()) {
+                flushAcks();
+            }
+        }
+
+        /**
+         * Delimita os pacotes completos do buffer, verifica o CRC, decodifica e enfileira
+         * as confirmações; o resto de um pacote incompleto vai para o início do buffer.
+         *
+         * @return false se a conexão foi fechada por um erro de enquadramento.
+         */
+        private boolean parseFrames() {
+            byte[] data = in.array();
+            int limit = in.position();
+            int position = 0;
+            int needed = 0;
+            while (limit - position >= HEADER_SIZE) {
+                if ((data[position] & 0xFF) != HEADER) {
+                    reactor.framingErrors++;
+                    close(); // Sem sincronismo não há como achar o próximo pacote
+                    return false;
+                }
+                int length = ((data[position + 1] & 0xFF) | (data[position + 2] & 0xFF) << 8) & LENGTH_MASK;
+                int total = HEADER_SIZE + length + CRC_SIZE;
+                if (limit - position < total) {
+                    needed = total;
+                    break;
+                }
+                int crcOffset = position + total - CRC_SIZE;
+                int crc = (data[crcOffset] & 0xFF) | (data[crcOffset + 1] & 0xFF) << 8;
+                if ((Crc16Modbus.calculate(data, position, total - CRC_SIZE) & 0xFFFF) == crc) {
+                    reactor.packets++;
+                    decode(data, position + HEADER_SIZE, crcOffset);
+                    queueAck(crc);
+                } else {
+                    reactor.crcErrors++;
+                }
+                position += total;
+            }
+
+            int remaining = limit - position;
+            if (needed > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(data, position, remaining);
+                in = larger;
+            } else {
+                if (position > 0 && remaining > 0) {
+                    System.arraycopy(data, position, data, 0, remaining);
+                }
+                in.position(remaining);
+            }
+            return true;
+        }
+
+        /**
+         * Percorre as tags do corpo de um pacote. Um main packet pode ter vários
+         * registros; um novo registro começa quando uma tag se repete. Um pacote sem tag
+         * de tempo é um head packet e só atualiza o IMEI da conexão.
+         */
+        private void decode(byte[] data, int from, int end) {
+            long seen0 = 0, seen1 = 0, seen2 = 0, seen3 = 0;
+            long time = -1;
+            int satellites = IngestedRecord.ABSENT;
+            int latitude = IngestedRecord.ABSENT;
+            int longitude = IngestedRecord.ABSENT;
+            int speed = IngestedRecord.ABSENT;
+            int altitude = IngestedRecord.ABSENT;
+            int hdop = IngestedRecord.ABSENT;
+            int recordCount = 0;
+            int recordStart = from;
+
+            int position = from;
+            while (position <= end) {
+                int id = position < end ? data[position] & 0xFF : -1;
+                long bit = id < 0 ? 0 : 1L << (id & 63);
+                long seen = id < 64 ? seen0 : id < 128 ? seen1 : id < 192 ? seen2 : seen3;
+                if (id < 0 || (seen & bit) != 0) {
+                    // Fim do registro: tag repetida ou fim do pacote
+                    if (time >= 0) {
+                        reactor.offer(new IngestedRecord(imei, time, satellites, latitude, longitude, speed,
+                                altitude, hdop, reactor.index, readNanos),
+                                Crc16Modbus.calculate(data, recordStart, position - recordStart) & 0xFFFF);
+                        recordCount++;
+                    }
+                    if (id < 0) {
+                        break;
+                    }
+                    seen0 = seen1 = seen2 = seen3 = 0;
+                    recordStart = position;
+                    time = -1;
+                    satellites = latitude = longitude = speed = altitude = hdop = IngestedRecord.ABSENT;
+                }
+                if (id < 64) {
+                    seen0 |= bit;
+                } else if (id < 128) {
+                    seen1 |= bit;
+                } else if (id < 192) {
+                    seen2 |= bit;
+                } else {
+                    seen3 |= bit;
+                }
+
+                int width = TagRegistry.wireWidth(id);
+                if (width < 0 || position + 1 + width > end) {
+                    // Tag desconhecida: o restante do pacote não pode ser percorrido
+                    end = position;
+                    continue;
+                }
+                int value = position + 1;
+                switch (id) {
+                    case TagRegistry.TAG_IMEI:
+                        updateImei(data, value);
+                        break;
+                    case TagRegistry.TAG_TIME:
+                        time = readInt(data, value) & 0xFFFFFFFFL;
+                        break;
+                    case TagRegistry.TAG_COORDINATES:
+                        satellites = data[value] & 0x0F;
+                        latitude = readInt(data, value + 1);
+                        longitude = readInt(data, value + 5);
+                        break;
+                    case TagRegistry.TAG_SPEED:
+                        speed = readInt(data, value);
+                        break;
+                    case TagRegistry.TAG_ALTITUDE:
+                        altitude = (short) ((data[value] & 0xFF) | (data[value + 1] & 0xFF) << 8);
+                        break;
+                    case TagRegistry.TAG_HDOP:
+                        hdop = data[value] & 0xFF;
+                        break;
+                    default:
+                        break;
+                }
+                position = value + width;
+            }
+            if (recordCount == 0 && imei != null) {
+                reactor.headPackets++;
+            }
+        }
+
+        /**
+         * Atualiza o IMEI da conexão, criando a String só quando ele muda.
+         */
+        private void updateImei(byte[] data, int offset) {
+            boolean same = imei != null;
+            for (int i = 0; i < TagRegistry.IMEI_WIRE_WIDTH && same; i++) {
+                same = imeiBytes[i] == data[offset + i];
+            }
+            if (!same) {
+                System.arraycopy(data, offset, imeiBytes, 0, TagRegistry.IMEI_WIRE_WIDTH);
+                imei = new String(imeiBytes, StandardCharsets.US_ASCII);
+            }
+        }
+
+        private void queueAck(int crc) {
+            if (acks.remaining() < ACK_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(acks.capacity() * 2);
+                acks.flip();
+                larger.put(acks);
+                acks = larger;
+            }
+            acks.put((byte) 0x02).put((byte) crc).put((byte) (crc >> 8));
+            pendingAcks++;
+            reactor.acks++; // Contado antes da escrita, para o dispositivo nunca ver a confirmação antes da contagem
+        }
+
+        /**
+         * Escreve as confirmações pendentes. Se o socket não aceitar tudo, a conexão deixa
+         * de ser lida até o restante ser escrito.
+         */
+        void flushAcks() throws IOException {
+            if (acks.position() == 0) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            acks.flip();
+            channel.write(acks);
+            if (acks.hasRemaining()) {
+                acks.compact();
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            acks.clear();
+            long latency = System.nanoTime() - readNanos;
+            reactor.ackNanos += latency * pendingAcks;
+            if (latency > reactor.maxAckNanos) {
+                reactor.maxAckNanos = latency;
+            }
+            pendingAcks = 0;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            reactor.connections--;
+        }
+
+        private static int readInt(byte[] data, int offset) {
+            return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                    | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Conexão já encerrada
+        }
+    }
+}
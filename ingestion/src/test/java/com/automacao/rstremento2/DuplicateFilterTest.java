@@ -0,0 +1,150 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do filtro de duplicados por IMEI.
+ */
+public class DuplicateFilterTest {
+
+    private static final String IMEI_A = "860000000000001";
+    private static final String IMEI_B = "860000000000002";
+    private static final long T0 = 1_700_000_000L;
+
+    @Test
+    public void resentRecordInWindow_isDuplicate() {
+        DuplicateFilter filter = new DuplicateFilter(256, 4096);
+
+        assertFalse(filter.isDuplicate(IMEI_A, T0, 0x1234));
+        assertTrue(filter.isDuplicate(IMEI_A, T0, 0x1234));
+        // Mesmo segundo com outro conteúdo (evento e posição) é um registro novo
+        assertFalse(filter.isDuplicate(IMEI_A, T0, 0x4321));
+        // Outro dispositivo com o mesmo tempo e CRC
+        assertFalse(filter.isDuplicate(IMEI_B, T0, 0x1234));
+
+        assertEquals(1, filter.getHitCount());
+        assertEquals(3, filter.getMissCount());
+        assertEquals(2, filter.getDeviceCount());
+    }
+
+    @Test
+    public void firstRecordOfEachSecond_isNeverDropped() {
+        DuplicateFilter filter = new DuplicateFilter(256, 256);
+        // Bloom pequeno e saturado: a janela decide os segundos novos sem falso positivo
+        for (long t = 0; t < 10_000; t++) {
+            assertFalse(filter.isDuplicate(IMEI_A, T0 + t, (int) (t * 31)));
+        }
+        // Reenvio fora de ordem de um registro ainda na janela
+        assertTrue(filter.isDuplicate(IMEI_A, T0 + 9_990, 9_990 * 31));
+        assertEquals(0, filter.getOlderThanWindowCount());
+    }
+
+    @Test
+    public void recordsOfTheSameSecondInWindow_areNeverDropped() {
+        DuplicateFilter filter = new DuplicateFilter(256, 64);
+        // Bloom mínimo e saturado: a janela decide sozinha os registros dos segundos recentes
+        for (long t = 0; t < 1000; t++) {
+            for (int crc = 0; crc <= 20; crc++) {
+                assertFalse(filter.isDuplicate(IMEI_A, T0 + t, (int) t * 97 + crc));
+            }
+        }
+        // Reenvios de qualquer registro do segundo, ainda na janela
+        for (long t = 900; t < 1000; t++) {
+            for (int crc = 0; crc <= 20; crc++) {
+                assertTrue(filter.isDuplicate(IMEI_A, T0 + t, (int) t * 97 + crc));
+            }
+        }
+        assertEquals(21_000, filter.getMissCount());
+        assertEquals(0, filter.getOlderThanWindowCount());
+    }
+
+    @Test
+    public void recordAheadOfServerClock_doesNotMoveWindow() {
+        DuplicateFilter filter = new DuplicateFilter(256, 4096, () -> T0 + 1000);
+        for (long t = 0; t < 100; t++) {
+            assertFalse(filter.isDuplicate(IMEI_A, T0 + t, 1));
+        }
+        // Relógio do dispositivo adiantado um dia: decidido só pelo filtro de Bloom
+        assertFalse(filter.isDuplicate(IMEI_A, T0 + 86_400, 2));
+        assertTrue(filter.isDuplicate(IMEI_A, T0 + 86_400, 2));
+        assertEquals(2, filter.getAheadOfClockCount());
+
+        // Os registros corretos seguintes continuam na janela, com decisão exata
+        for (long t = 100; t < 200; t++) {
+            assertFalse(filter.isDuplicate(IMEI_A, T0 + t, 1));
+            assertFalse(filter.isDuplicate(IMEI_A, T0 + t, 2));
+        }
+        assertTrue(filter.isDuplicate(IMEI_A, T0 + 150, 2));
+        assertEquals(0, filter.getOlderThanWindowCount());
+        // Dentro do limite de adiantamento o registro ainda move a janela
+        assertFalse(filter.isDuplicate(IMEI_A, T0 + 1000 + DuplicateFilter.MAX_AHEAD_SECONDS, 3));
+        assertTrue(filter.isDuplicate(IMEI_A, T0 + 199, 1));
+        assertEquals(1, filter.getOlderThanWindowCount());
+    }
+
+    @Test
+    public void olderThanWindow_usesBloomFilter() {
+        DuplicateFilter filter = new DuplicateFilter(64, 64 * 1024);
+        for (long t = 0; t < 1000; t++) {
+            filter.isDuplicate(IMEI_A, T0 + t * 10, (int) t);
+        }
+        // O início da janela já passou destes registros
+        assertTrue(filter.isDuplicate(IMEI_A, T0, 0));
+        assertTrue(filter.isDuplicate(IMEI_A, T0 + 5000, 500));
+
+        int falsePositives = 0;
+        for (long t = 0; t < 1000; t++) {
+            if (filter.isDuplicate(IMEI_A, T0 + t * 10 + 1, (int) t)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Falsos positivos: " + falsePositives, falsePositives < 20);
+        assertEquals(2 + 993, filter.getOlderThanWindowCount()); // t * 10 + 1 <= 9926
+    }
+
+    @Test
+    public void memoryPerDevice_isBounded() {
+        DuplicateFilter filter = DuplicateFilter.withMemoryPerDevice(16 * 1024);
+        assertTrue(filter.getBytesPerDevice() <= 16 * 1024);
+        assertTrue(filter.getWindowSeconds() >= 2048);
+    }
+
+    @Test
+    public void server_acksResentPacketButDeliversOnce() throws Exception {
+        List<IngestedRecord> received = new CopyOnWriteArrayList<>();
+        try (IngestionServer server = new IngestionServer(0, 1, received::add)) {
+            server.setDuplicateFilter(new DuplicateFilter(3600, 8192));
+            server.start();
+
+            byte[] imeiBytes = IMEI_A.getBytes();
+            RecordLayout layout = RecordSchema.pointSchema(imeiBytes, CPFConverter.compressCPF("12345678909"),
+                    CarPlateEncoder.encode("ABC1D23")).compile();
+            byte[] record = layout.encode(new long[]{T0, 9, -23_550_000, -46_633_000, 600, 760});
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                for (int i = 0; i < 3; i++) {
+                    socket.getOutputStream().write(record);
+                    byte[] ack = new byte[3];
+                    in.readFully(ack);
+                    assertEquals(AckFrameDecoder.packetCrc(record), (ack[1] & 0xFF) | (ack[2] & 0xFF) << 8);
+                }
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getDuplicateCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, server.getRecordCount());
+            assertEquals(2, server.getDuplicateCount());
+            assertEquals(2, server.getDuplicateFilter().getHitCount());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do servidor de ingestão no loopback.
+ */
+public class IngestionServerTest {
+
+    private static final String IMEI = "860000000000042";
+
+    @Test
+    public void fragmentedStream_isFramedAckedAndDecoded() throws Exception {
+        List<IngestedRecord> received = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(3);
+        IngestionServer.Sink sink = record -> {
+            received.add(record);
+            delivered.countDown();
+        };
+        try (IngestionServer server = new IngestionServer(0, 2, sink)) {
+            server.start();
+
+            byte[] imeiBytes = IMEI.getBytes();
+            byte[] head = new RecordSchema()
+                    .constant(TagRegistry.TAG_IMEI, imeiBytes)
+                    .constant(TagRegistry.TAG_HARDWARE_VERSION, new byte[]{0x11})
+                    .compile()
+                    .encode(new long[0]);
+            RecordLayout layout = RecordSchema.pointSchema(imeiBytes, CPFConverter.compressCPF("12345678909"),
+                    CarPlateEncoder.encode("ABC1D23")).compile();
+            byte[] first = layout.encode(new long[]{1_700_000_000L, 9, -23_550_000, -46_633_000, 600, 760});
+            byte[] second = layout.encode(new long[]{1_700_000_010L, 8, -23_551_000, -46_634_000, 0, 761});
+
+            // Main packet com os dois registros, como o BacklogFlusher monta
+            int body = first.length - 5;
+            byte[] main = new byte[2 * body + 5];
+            main[0] = 0x01;
+            main[1] = (byte) (2 * body);
+            main[2] = (byte) ((2 * body) >> 8);
+            System.arraycopy(first, 3, main, 3, body);
+            System.arraycopy(second, 3, main, 3 + body, body);
+            seal(main);
+
+            byte[] corrupt = second.clone();
+            corrupt[10] ^= 0x40;
+
+            byte[] stream = concat(head, main, corrupt, first);
+            // Corte no meio do main packet: a confirmação do primeiro pacote chega antes do
+            // restante ser enviado, então o servidor lê o main packet em pelo menos duas partes
+            int split = head.length + main.length / 2;
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                writeInChunks(out, stream, 0, split);
+                assertAck(in, head);
+                writeInChunks(out, stream, split, stream.length);
+
+                // O pacote corrompido não é confirmado
+                assertAck(in, main);
+                assertAck(in, first);
+            }
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(3, server.getRecordCount());
+            assertEquals(3, server.getAckCount());
+            assertEquals(1, server.getCrcErrorCount());
+
+            IngestedRecord record = received.get(1);
+            assertEquals(IMEI, record.imei);
+            assertEquals(1_700_000_010L, record.timeSeconds);
+            assertEquals(8, record.satellites);
+            assertEquals(-23.551, record.getLatitude(), 1e-9);
+            assertEquals(-46.634, record.getLongitude(), 1e-9);
+            assertEquals(761, record.altitude);
+            assertEquals(IngestedRecord.ABSENT, record.hdop);
+        }
+    }
+
+    @Test
+    public void loadGenerator_allRecordsAckedAndDelivered() throws Exception {
+        IngestionLoadGenerator.Result result = IngestionLoadGenerator.run(200, 1000, 2, 0, null);
+
+        assertTrue(result.acked > 0);
+        assertEquals(0, result.badAcks);
+        assertTrue(result.serverRecords >= result.acked);
+        assertTrue(result.serverRecords <= result.sent);
+        assertEquals(result.serverRecords, result.dispatched);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] out = new byte[length];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, position, part.length);
+            position += part.length;
+        }
+        return out;
+    }
+
+    /** Grava em pedaços de 7 bytes, cada um enviado em seu próprio segmento. */
+    private static void writeInChunks(OutputStream out, byte[] data, int from, int to) throws IOException {
+        for (int i = from; i < to; i += 7) {
+            out.write(data, i, Math.min(7, to - i));
+            out.flush();
+        }
+    }
+
+    private static void assertAck(DataInputStream in, byte[] packet) throws IOException {
+        byte[] ack = new byte[3];
+        in.readFully(ack);
+        assertEquals(0x02, ack[0]);
+        assertEquals(AckFrameDecoder.packetCrc(packet), (ack[1] & 0xFF) | (ack[2] & 0xFF) << 8);
+    }
+
+    private static void seal(byte[] packet) {
+        short crc = Crc16Modbus.calculate(packet, 0, packet.length - 2);
+        packet[packet.length - 2] = (byte) crc;
+        packet[packet.length - 1] = (byte) (crc >> 8);
+    }
+}
@@ -0,0 +1,211 @@
+package com.automacao.rstremento2;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodificador das confirmações do servidor (0x02 + CRC de 2 bytes, little-endian)
+ * sobre um anel de bytes. Os bytes são lidos do socket diretamente para o anel, sem
+ * alocação por leitura, e as confirmações são extraídas independentemente de como o
+ * fluxo foi dividido ou agrupado entre leituras. Bytes fora de um quadro são descartados
+ * até o próximo cabeçalho 0x02.
+ * <p>
+ * Os bytes consumidos para cada confirmação (os descartados antes dela e o próprio quadro)
+ * continuam no anel até a próxima leitura, para que sejam capturados como vieram do fluxo.
+ * Se o anel encher só com bytes descartados, eles são liberados.
+ */
+public class AckFrameDecoder {
+    /** Valor retornado por {@link #poll()} quando não há confirmação completa. */
+    public static final int NO_FRAME = -1;
+
+    private static final int ACK_HEADER = 0x02;
+    private static final int FRAME_SIZE = 3;
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final byte[] ring;
+    private final int mask;
+    private int head; // Posição absoluta do próximo byte a decodificar
+    private int tail; // Posição absoluta do próximo byte a gravar
+    private int consumedFrom; // Início dos bytes consumidos desde a última confirmação
+    private int lastFrameStart;
+    private int lastFrameLength;
+    private long frameCount;
+    private long discardedBytes;
+    private long readBytes;
+
+    public AckFrameDecoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construtor do decodificador.
+     *
+     * @param capacity Capacidade do anel em bytes (arredondada para potência de 2).
+     */
+    public AckFrameDecoder(int capacity) {
+        int size = RingCapacity.powerOfTwo(capacity, FRAME_SIZE + 1);
+        this.ring = new byte[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Lê do fluxo para o espaço livre do anel, com uma única chamada a {@code read}.
+     *
+     * @param in Fluxo de entrada.
+     * @return Bytes lidos, 0 se o anel estiver cheio, ou -1 no fim do fluxo.
+     * @throws IOException Se a leitura falhar.
+     */
+    public int readFrom(InputStream in) throws IOException {
+        int free = free(1);
+        if (free == 0) {
+            return 0;
+        }
+        int position = tail & mask;
+        int n = in.read(ring, position, Math.min(free, ring.length - position));
+        if (n > 0) {
+            tail += n;
+            readBytes += n;
+        }
+        return n;
+    }
+
+    /**
+     * Acrescenta bytes ao anel.
+     *
+     * @throws IllegalStateException Se não houver espaço; consuma as confirmações antes.
+     */
+    public void feed(byte[] data, int offset, int length) {
+        if (length > free(length)) {
+            throw new IllegalStateException("Anel de confirmações cheio");
+        }
+        for (int i = 0; i < length; i++) {
+            ring[(tail + i) & mask] = data[offset + i];
+        }
+        tail += length;
+    }
+
+    /**
+     * Extrai a próxima confirmação.
+     *
+     * @return O CRC confirmado (0 a 0xFFFF), ou {@link #NO_FRAME} se não houver quadro completo.
+     */
+    public int poll() {
+        while (tail - head > 0) {
+            if ((ring[head & mask] & 0xFF) != ACK_HEADER) {
+                head++;
+                discardedBytes++;
+                continue;
+            }
+            if (tail - head < FRAME_SIZE) {
+                return NO_FRAME;
+            }
+            int crc = (ring[(head + 1) & mask] & 0xFF) | (ring[(head + 2) & mask] & 0xFF) << 8;
+            head += FRAME_SIZE;
+            lastFrameStart = consumedFrom;
+            lastFrameLength = head - consumedFrom;
+            consumedFrom = head;
+            frameCount++;
+            return crc;
+        }
+        return NO_FRAME;
+    }
+
+    /**
+     * Lê do fluxo até obter uma confirmação completa.
+     *
+     * @param in Fluxo de entrada (com timeout configurado no socket).
+     * @return O CRC confirmado.
+     * @throws IOException Se o fluxo terminar ou a leitura falhar.
+     */
+    public int readFrame(InputStream in) throws IOException {
+        int crc;
+        while ((crc = poll()) == NO_FRAME) {
+            if (readFrom(in) < 0) {
+                throw new IOException("Conexão encerrada pelo servidor");
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * Espaço livre no anel, preservando os bytes já consumidos desde a última confirmação
+     * enquanto couberem {@code needed} bytes.
+     */
+    private int free(int needed) {
+        if (ring.length - (tail - consumedFrom) < needed) {
+            consumedFrom = head;
+        }
+        return ring.length - (tail - consumedFrom);
+    }
+
+    /**
+     * CRC de um pacote, no formato retornado por {@link #poll()}.
+     */
+    public static int packetCrc(byte[] packet) {
+        return (packet[packet.length - 2] & 0xFF) | (packet[packet.length - 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Descarta os bytes pendentes, por exemplo ao abrir uma nova conexão.
+     */
+    public void reset() {
+        head = tail;
+        consumedFrom = tail;
+        lastFrameLength = 0;
+    }
+
+    /** Bytes aguardando decodificação. */
+    public int available() {
+        return tail - head;
+    }
+
+    /**
+     * Anel de bytes. As posições absolutas retornadas pelo decodificador correspondem ao
+     * índice {@code posição & (getRing().length - 1)}.
+     */
+    public byte[] getRing() {
+        return ring;
+    }
+
+    /**
+     * Posição absoluta do primeiro byte consumido para a última confirmação, inclusive
+     * os descartados antes do quadro. Válida até a próxima leitura.
+     */
+    public int getLastFrameStart() {
+        return lastFrameStart;
+    }
+
+    /** Bytes consumidos para a última confirmação: os descartados antes dela e o quadro. */
+    public int getLastFrameLength() {
+        return lastFrameLength;
+    }
+
+    /**
+     * Posição absoluta do primeiro byte lido que ainda não formou uma confirmação
+     * (descartado ou aguardando o restante do quadro).
+     */
+    public int getUnframedStart() {
+        return consumedFrom;
+    }
+
+    /** Bytes lidos que ainda não formaram uma confirmação. */
+    public int getUnframedLength() {
+        return tail - consumedFrom;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Total de bytes lidos do fluxo por {@link #readFrom(InputStream)}, inclusive os que
+     * foram descartados ou ainda não foram decodificados.
+     */
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+}
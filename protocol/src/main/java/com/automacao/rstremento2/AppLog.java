@@ -0,0 +1,235 @@
+package com.automacao.rstremento2;
+
+/**
+ * Fachada de log do aplicativo. As mensagens são filtradas por nível antes de qualquer
+ * formatação: os argumentos marcados com "{}" só são convertidos em texto quando a mensagem
+ * será de fato gravada ({@code byte[]} é exibido em hexadecimal).
+ *
+ * <p>Com {@link #ENABLED} falso, o compilador elimina os trechos protegidos por
+ * {@code if (AppLog.ENABLED ...)}; em tempo de execução o nível mínimo é ajustado com
+ * {@link #setLevel(int)}. Nos caminhos frequentes com argumentos primitivos, proteja a chamada
+ * com {@link #isDebugEnabled()} para evitar também o boxing. Mensagens repetitivas podem ser
+ * limitadas com {@code LogThrottle}.
+ */
+public final class AppLog {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int OFF = Integer.MAX_VALUE;
+
+    /**
+     * Chave de compilação: falso remove os logs protegidos do bytecode.
+     */
+    public static final boolean ENABLED = true;
+
+    private static final String ANDROID_BACKEND = "com.automacao.rstremento2.AndroidLogBackend";
+
+    private static volatile int level = DEBUG;
+    private static volatile LogBackend backend = defaultBackend();
+
+    private AppLog() {
+    }
+
+    /**
+     * Define o nível mínimo das mensagens gravadas.
+     *
+     * @param minLevel Nível mínimo, ou {@link #OFF} para desativar.
+     */
+    public static void setLevel(int minLevel) {
+        level = minLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * Substitui o destino das mensagens, por exemplo por {@link JvmLogBackend} ou
+     * {@link LogBackend#NO_OP} fora do aparelho.
+     *
+     * @param logBackend O novo destino.
+     */
+    public static void setBackend(LogBackend logBackend) {
+        backend = logBackend;
+    }
+
+    public static LogBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Logcat no aparelho; fora dele (testes, reprodução de trajetos, servidor) a saída
+     * padrão, já que as classes do android.jar não funcionam na JVM. O destino do logcat
+     * fica no módulo do aplicativo e é carregado pelo nome.
+     */
+    private static LogBackend defaultBackend() {
+        String vm = System.getProperty("java.vm.name", "");
+        if (vm.startsWith("Dalvik") || vm.startsWith("ART")) {
+            try {
+                return (LogBackend) Class.forName(ANDROID_BACKEND).newInstance();
+            } catch (ReflectiveOperationException e) {
+                // Fora do aplicativo: segue para a saída padrão
+            }
+        }
+        return new JvmLogBackend();
+    }
+
+    public static boolean isLoggable(int messageLevel) {
+        return ENABLED && messageLevel >= level;
+    }
+
+    public static boolean isDebugEnabled() {
+        return ENABLED && DEBUG >= level;
+    }
+
+    public static void d(String tag, String message) {
+        if (isLoggable(DEBUG)) {
+            backend.write(DEBUG, tag, message, null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        if (isLoggable(DEBUG)) {
+            backend.write(DEBUG, tag, format(format, arg, null, null, 1), null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(DEBUG)) {
+            backend.write(DEBUG, tag, format(format, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(DEBUG)) {
+            backend.write(DEBUG, tag, format(format, arg1, arg2, arg3, 3), null);
+        }
+    }
+
+    /**
+     * Mensagem de depuração com quatro ou mais argumentos. O array dos argumentos é criado
+     * a cada chamada; prefira as versões de até três argumentos nos caminhos frequentes.
+     */
+    public static void d(String tag, String format, Object... args) {
+        if (isLoggable(DEBUG)) {
+            backend.write(DEBUG, tag, format(format, args), null);
+        }
+    }
+
+    public static void i(String tag, String message) {
+        if (isLoggable(INFO)) {
+            backend.write(INFO, tag, message, null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg) {
+        if (isLoggable(INFO)) {
+            backend.write(INFO, tag, format(format, arg, null, null, 1), null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(INFO)) {
+            backend.write(INFO, tag, format(format, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public static void w(String tag, String message) {
+        if (isLoggable(WARN)) {
+            backend.write(WARN, tag, message, null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg) {
+        if (isLoggable(WARN)) {
+            backend.write(WARN, tag, format(format, arg, null, null, 1), null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(WARN)) {
+            backend.write(WARN, tag, format(format, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public static void e(String tag, String message) {
+        if (isLoggable(ERROR)) {
+            backend.write(ERROR, tag, message, null);
+        }
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (isLoggable(ERROR)) {
+            backend.write(ERROR, tag, message, error);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg) {
+        if (isLoggable(ERROR)) {
+            backend.write(ERROR, tag, format(format, arg, null, null, 1), null);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(ERROR)) {
+            backend.write(ERROR, tag, format(format, arg1, arg2, null, 2), null);
+        }
+    }
+
+    /**
+     * Mensagem com um argumento e a exceção, cujo stack trace vai para o destino.
+     */
+    public static void e(String tag, String format, Object arg, Throwable error) {
+        if (isLoggable(ERROR)) {
+            backend.write(ERROR, tag, format(format, arg, null, null, 1), error);
+        }
+    }
+
+    /**
+     * Substitui cada "{}" pelo argumento seguinte; marcadores sem argumento ficam como estão.
+     */
+    static String format(String format, Object arg1, Object arg2, Object arg3, int argCount) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * argCount);
+        int argIndex = 0;
+        int start = 0;
+        int mark;
+        while (argIndex < argCount && (mark = format.indexOf("{}", start)) >= 0) {
+            sb.append(format, start, mark);
+            appendArg(sb, argIndex == 0 ? arg1 : argIndex == 1 ? arg2 : arg3);
+            argIndex++;
+            start = mark + 2;
+        }
+        sb.append(format, start, format.length());
+        return sb.toString();
+    }
+
+    /**
+     * Como {@link #format(String, Object, Object, Object, int)}, com os argumentos em um array.
+     */
+    static String format(String format, Object[] args) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        int mark;
+        while (argIndex < args.length && (mark = format.indexOf("{}", start)) >= 0) {
+            sb.append(format, start, mark);
+            appendArg(sb, args[argIndex++]);
+            start = mark + 2;
+        }
+        sb.append(format, start, format.length());
+        return sb.toString();
+    }
+
+    private static void appendArg(StringBuilder sb, Object arg) {
+        if (arg instanceof byte[]) {
+            for (byte b : (byte[]) arg) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+        } else {
+            sb.append(arg);
+        }
+    }
+}
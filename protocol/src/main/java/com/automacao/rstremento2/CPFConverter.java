@@ -1,7 +1,5 @@
 package com.automacao.rstremento2;
 
-import android.util.Log;
-
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -35,7 +33,7 @@ public class CPFConverter {
         compressedToCpf.put(Arrays.toString(compressed), cpf);
 
         // Log dos bytes comprimidos
-        Log.d("CPFConverter", "CPF comprimido: " + bytesToHex(compressed));
+        AppLog.d("CPFConverter", "CPF comprimido: {}", compressed);
 
         return compressed;
     }
@@ -50,20 +48,6 @@ public class CPFConverter {
         String cpf = compressedToCpf.get(Arrays.toString(compressed));
 
         // Log do CPF descomprimido
-        Log.d("CPFConverter", "CPF descomprimido: " + cpf);
-    }
-
-    /**
-     * Converte um array de bytes em uma string hexadecimal.
-     *
-     * @param bytes Array de bytes a ser convertido.
-     * @return String representando os bytes em formato hexadecimal.
-     */
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        AppLog.d("CPFConverter", "CPF descomprimido: {}", cpf);
     }
 }
\ No newline at end of file
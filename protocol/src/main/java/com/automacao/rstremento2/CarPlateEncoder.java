@@ -1,7 +1,5 @@
 package com.automacao.rstremento2;
 
-import android.util.Log;
-
 public class CarPlateEncoder {
 
     // Método para codificar a placa em 4 bytes
@@ -35,7 +33,9 @@ public class CarPlateEncoder {
                 (l4 << 8) | (num2 << 4) | num3;
 
         // Log do CPF descomprimido
-        Log.d("CARConverter", "Placa comprimido: " + encoded);
+        if (AppLog.isDebugEnabled()) {
+            AppLog.d("CARConverter", "Placa comprimido: {}", encoded);
+        }
         return encoded;
     }
 
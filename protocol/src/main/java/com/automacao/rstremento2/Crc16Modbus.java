@@ -0,0 +1,52 @@
+package com.automacao.rstremento2;
+
+/**
+ * Cálculo do CRC16 Modbus usado pelo protocolo Galileosky, com tabela pré-calculada.
+ */
+public final class Crc16Modbus {
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 0x0001) != 0) {
+                    crc = (crc >> 1) ^ 0xA001;
+                } else {
+                    crc = crc >> 1;
+                }
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private Crc16Modbus() {
+    }
+
+    /**
+     * Calcula o CRC16 Modbus de um trecho de um array de bytes.
+     *
+     * @param data   Dados para os quais calcular o CRC.
+     * @param offset Posição inicial.
+     * @param length Quantidade de bytes.
+     * @return Valor do CRC calculado.
+     */
+    public static short calculate(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return (short) crc;
+    }
+
+    /**
+     * Calcula o CRC16 Modbus de um array de bytes.
+     *
+     * @param data Dados para os quais calcular o CRC.
+     * @return Valor do CRC calculado.
+     */
+    public static short calculate(byte[] data) {
+        return calculate(data, 0, data.length);
+    }
+}
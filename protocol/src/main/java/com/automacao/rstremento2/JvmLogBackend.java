@@ -0,0 +1,31 @@
+package com.automacao.rstremento2;
+
+import java.io.PrintStream;
+
+/**
+ * Destino do {@link AppLog} para execução na JVM, no formato "D/Tag: mensagem".
+ */
+public class JvmLogBackend implements LogBackend {
+
+    private static final char[] LEVEL_LETTERS = {'?', '?', 'V', 'D', 'I', 'W', 'E'};
+    private final PrintStream out;
+
+    public JvmLogBackend() {
+        this(System.out);
+    }
+
+    public JvmLogBackend(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int level, String tag, String message, Throwable error) {
+        char letter = level >= 0 && level < LEVEL_LETTERS.length ? LEVEL_LETTERS[level] : '?';
+        synchronized (out) {
+            out.println(letter + "/" + tag + ": " + message);
+            if (error != null) {
+                error.printStackTrace(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.automacao.rstremento2;
+
+/**
+ * Destino das mensagens do {@link AppLog}. Permite trocar o logcat por uma saída na JVM
+ * ou por nenhuma saída em testes e medições fora do aparelho.
+ */
+public interface LogBackend {
+
+    /**
+     * Destino que descarta todas as mensagens.
+     */
+    LogBackend NO_OP = (level, tag, message, error) -> {
+    };
+
+    /**
+     * Grava uma mensagem já formatada.
+     *
+     * @param level   Nível da mensagem ({@link AppLog#DEBUG}, {@link AppLog#ERROR}...).
+     * @param tag     Origem da mensagem.
+     * @param message Mensagem formatada.
+     * @param error   Exceção associada, ou null.
+     */
+    void write(int level, String tag, String message, Throwable error);
+}
@@ -0,0 +1,163 @@
+package com.automacao.rstremento2;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layout compilado de um registro Galileosky. Guarda um modelo com header, tags e
+ * valores constantes já escritos, além da posição e largura de cada campo variável.
+ * A codificação copia o modelo, escreve os campos em um laço de escritas primitivas
+ * e anexa o comprimento e o CRC; a decodificação usa as mesmas posições.
+ */
+public class RecordLayout {
+    private static final int HEADER_SIZE = 3; // Header (1 byte) + comprimento (2 bytes)
+    private static final int CRC_SIZE = 2;
+
+    private final byte[] template;
+    private final int[] slotOffsets;
+    private final int[] slotWidths;
+    private final boolean[] slotSigned;
+    private final int[] slotByTag; // Primeiro slot de cada tag (ids de 1 byte), ou -1
+
+    RecordLayout(List<TagDefinition> tags, List<byte[]> constants) {
+        int size = HEADER_SIZE + CRC_SIZE;
+        int slots = 0;
+        for (int i = 0; i < tags.size(); i++) {
+            TagDefinition tag = tags.get(i);
+            byte[] constant = constants.get(i);
+            size += 1 + (constant != null ? constant.length : tag.getWidth());
+            if (constant == null) {
+                slots += tag.getSlotCount();
+            }
+        }
+
+        template = new byte[size];
+        slotOffsets = new int[slots];
+        slotWidths = new int[slots];
+        slotSigned = new boolean[slots];
+        slotByTag = new int[256];
+        Arrays.fill(slotByTag, -1);
+
+        int position = 0;
+        template[position++] = 0x01; // Header
+        int length = size - HEADER_SIZE - CRC_SIZE;
+        template[position++] = (byte) length;
+        template[position++] = (byte) (length >> 8);
+
+        int slot = 0;
+        for (int i = 0; i < tags.size(); i++) {
+            TagDefinition tag = tags.get(i);
+            byte[] constant = constants.get(i);
+            template[position++] = (byte) tag.getId();
+            if (constant != null) {
+                System.arraycopy(constant, 0, template, position, constant.length);
+                position += constant.length;
+            } else {
+                if (slotByTag[tag.getId()] < 0) {
+                    slotByTag[tag.getId()] = slot; // Tag repetida: vale a primeira ocorrência
+                }
+                for (int s = 0; s < tag.getSlotCount(); s++) {
+                    slotOffsets[slot] = position;
+                    slotWidths[slot] = tag.getSlotWidth(s);
+                    slotSigned[slot] = tag.isSlotSigned(s);
+                    position += tag.getSlotWidth(s);
+                    slot++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tamanho exato do registro em bytes, incluindo header, comprimento e CRC.
+     */
+    public int getSize() {
+        return template.length;
+    }
+
+    /**
+     * Quantidade de campos variáveis (tamanho do array de valores).
+     */
+    public int getSlotCount() {
+        return slotOffsets.length;
+    }
+
+    /**
+     * Índice do primeiro campo de uma tag no array de valores.
+     *
+     * @param tagId Identificador da tag.
+     * @return O índice, ou -1 se a tag não existir no layout ou for constante.
+     */
+    public int slotIndex(int tagId) {
+        return tagId >= 0 && tagId < slotByTag.length ? slotByTag[tagId] : -1;
+    }
+
+    /**
+     * Codifica um registro em um array novo.
+     *
+     * @param values Valores dos campos, na ordem dos slots.
+     * @return O registro com comprimento e CRC.
+     */
+    public byte[] encode(long[] values) {
+        byte[] out = new byte[template.length];
+        encode(values, out, 0);
+        return out;
+    }
+
+    /**
+     * Codifica um registro no array informado.
+     *
+     * @param values Valores dos campos, na ordem dos slots.
+     * @param out    Array de destino.
+     * @param offset Posição inicial no destino.
+     * @return Quantidade de bytes escritos.
+     */
+    public int encode(long[] values, byte[] out, int offset) {
+        System.arraycopy(template, 0, out, offset, template.length);
+        for (int s = 0; s < slotOffsets.length; s++) {
+            long value = values[s];
+            int position = offset + slotOffsets[s];
+            for (int b = 0, width = slotWidths[s]; b < width; b++) {
+                out[position + b] = (byte) (value >> (8 * b));
+            }
+        }
+        int crcOffset = offset + template.length - CRC_SIZE;
+        short crc = Crc16Modbus.calculate(out, offset, template.length - CRC_SIZE);
+        out[crcOffset] = (byte) crc;
+        out[crcOffset + 1] = (byte) (crc >> 8);
+        return template.length;
+    }
+
+    /**
+     * Decodifica os campos de um registro produzido por este layout.
+     *
+     * @param record Array com o registro.
+     * @param offset Posição inicial do registro.
+     * @param values Array de destino dos valores, na ordem dos slots.
+     * @return true se o registro corresponde ao layout e o CRC é válido.
+     */
+    public boolean decode(byte[] record, int offset, long[] values) {
+        if (record.length - offset < template.length || record[offset] != template[0]
+                || record[offset + 1] != template[1] || record[offset + 2] != template[2]) {
+            return false;
+        }
+        int crcOffset = offset + template.length - CRC_SIZE;
+        short crc = Crc16Modbus.calculate(record, offset, template.length - CRC_SIZE);
+        if (record[crcOffset] != (byte) crc || record[crcOffset + 1] != (byte) (crc >> 8)) {
+            return false;
+        }
+        for (int s = 0; s < slotOffsets.length; s++) {
+            int position = offset + slotOffsets[s];
+            int width = slotWidths[s];
+            long value = 0;
+            for (int b = 0; b < width; b++) {
+                value |= (long) (record[position + b] & 0xFF) << (8 * b);
+            }
+            if (slotSigned[s] && width < 8) {
+                int shift = 64 - 8 * width;
+                value = (value << shift) >> shift; // Extensão de sinal
+            }
+            values[s] = value;
+        }
+        return true;
+    }
+}
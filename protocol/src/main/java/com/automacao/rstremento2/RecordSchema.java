@@ -0,0 +1,85 @@
+package com.automacao.rstremento2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Esquema de um registro Galileosky: a sequência de tags, com os valores das tags
+ * constantes (IMEI, CPF, placa). É compilado uma única vez em um {@link RecordLayout}.
+ */
+public class RecordSchema {
+    private final List<TagDefinition> tags = new ArrayList<>();
+    private final List<byte[]> constants = new ArrayList<>();
+
+    /**
+     * Esquema do registro de posição: IMEI, tempo, coordenadas, velocidade, altitude, CPF e placa.
+     * É o registro do simulador, do gateway e do gerador de carga do servidor.
+     */
+    public static RecordSchema pointSchema(byte[] imeiBytes, byte[] cpfBytes, int plate) {
+        return new RecordSchema()
+                .constant(TagRegistry.TAG_IMEI, imeiBytes)
+                .field(TagRegistry.TAG_TIME)
+                .field(TagRegistry.TAG_COORDINATES)
+                .field(TagRegistry.TAG_SPEED)
+                .field(TagRegistry.TAG_ALTITUDE)
+                .constant(TagRegistry.TAG_CPF, cpfBytes)
+                .constant(TagRegistry.TAG_PLATE, plate);
+    }
+
+    /**
+     * Adiciona uma tag cujo valor é informado a cada registro.
+     *
+     * @param tagId Identificador da tag registrada em {@link TagRegistry}.
+     * @return Este esquema.
+     */
+    public RecordSchema field(int tagId) {
+        TagDefinition tag = lookup(tagId);
+        if (tag.isVariable()) {
+            throw new IllegalArgumentException("Tag de largura variável só pode ser constante: " + tag.getName());
+        }
+        tags.add(tag);
+        constants.add(null);
+        return this;
+    }
+
+    /**
+     * Adiciona uma tag com valor constante para todos os registros.
+     *
+     * @param tagId Identificador da tag registrada em {@link TagRegistry}.
+     * @param value Bytes do valor, já no formato do protocolo.
+     * @return Este esquema.
+     */
+    public RecordSchema constant(int tagId, byte[] value) {
+        TagDefinition tag = lookup(tagId);
+        if (!tag.isVariable() && tag.getWidth() != value.length) {
+            throw new IllegalArgumentException("Tamanho inválido para a tag " + tag.getName() + ": " + value.length);
+        }
+        tags.add(tag);
+        constants.add(value.clone());
+        return this;
+    }
+
+    /**
+     * Adiciona uma tag constante de 4 bytes a partir de um inteiro (little-endian).
+     */
+    public RecordSchema constant(int tagId, int value) {
+        return constant(tagId, new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+    }
+
+    /**
+     * Compila o esquema em um layout com tamanho e posições exatas.
+     *
+     * @return O layout compilado.
+     */
+    public RecordLayout compile() {
+        return new RecordLayout(tags, constants);
+    }
+
+    private static TagDefinition lookup(int tagId) {
+        TagDefinition tag = TagRegistry.get(tagId);
+        if (tag == null) {
+            throw new IllegalArgumentException("Tag não registrada: 0x" + Integer.toHexString(tagId));
+        }
+        return tag;
+    }
+}
@@ -0,0 +1,30 @@
+package com.automacao.rstremento2;
+
+/**
+ * Cálculo da capacidade dos anéis indexados por máscara ({@code sequência & (tamanho - 1)}),
+ * usado pelos anéis deste módulo e do aplicativo.
+ */
+public final class RingCapacity {
+
+    /** Maior capacidade representável como potência de dois em um int. */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private RingCapacity() {
+    }
+
+    /**
+     * Menor potência de dois maior ou igual a {@code capacity} e a {@code minimum}.
+     *
+     * @param capacity Capacidade pedida.
+     * @param minimum  Capacidade mínima do anel.
+     * @return O tamanho do anel.
+     * @throws IllegalArgumentException Se o tamanho passar de {@link #MAX_CAPACITY}.
+     */
+    public static int powerOfTwo(int capacity, int minimum) {
+        int size = Math.max(capacity, minimum);
+        if (size > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacidade do anel muito grande: " + capacity);
+        }
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+}
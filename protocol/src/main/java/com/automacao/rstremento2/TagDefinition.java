@@ -0,0 +1,97 @@
+package com.automacao.rstremento2;
+
+/**
+ * Definição de uma tag do protocolo Galileosky. Uma tag de largura fixa é formada
+ * por campos primitivos (slots) little-endian; uma tag de largura variável só pode
+ * ser usada como constante, com a largura definida pelo valor na compilação do layout.
+ * Quem lê pacotes recebidos percorre as tags pela {@link #getWireWidth() largura no fio}.
+ */
+public class TagDefinition {
+    private final int id;
+    private final String name;
+    private final int[] slotWidths;
+    private final boolean[] slotSigned;
+    private final int wireWidth;
+
+    private TagDefinition(int id, String name, int[] slotWidths, boolean[] slotSigned, int wireWidth) {
+        this.id = id;
+        this.name = name;
+        this.slotWidths = slotWidths;
+        this.slotSigned = slotSigned;
+        this.wireWidth = wireWidth;
+    }
+
+    /**
+     * Cria uma tag de largura fixa com um único campo sem sinal.
+     */
+    public static TagDefinition fixed(int id, String name, int width) {
+        return new TagDefinition(id, name, new int[]{width}, new boolean[]{false}, width);
+    }
+
+    /**
+     * Cria uma tag de largura fixa formada por vários campos.
+     */
+    public static TagDefinition fixed(int id, String name, int[] slotWidths, boolean[] slotSigned) {
+        int width = 0;
+        for (int w : slotWidths) {
+            width += w;
+        }
+        return new TagDefinition(id, name, slotWidths, slotSigned, width);
+    }
+
+    /**
+     * Cria uma tag de largura variável cuja largura no fio não é conhecida.
+     */
+    public static TagDefinition variable(int id, String name) {
+        return new TagDefinition(id, name, null, null, -1);
+    }
+
+    /**
+     * Cria uma tag de largura variável que o protocolo transmite sempre com a mesma
+     * largura (ex.: IMEI em texto, 15 caracteres).
+     *
+     * @param wireWidth Largura da tag nos pacotes, sem o identificador.
+     */
+    public static TagDefinition variable(int id, String name, int wireWidth) {
+        return new TagDefinition(id, name, null, null, wireWidth);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isVariable() {
+        return slotWidths == null;
+    }
+
+    public int getSlotCount() {
+        return slotWidths == null ? 0 : slotWidths.length;
+    }
+
+    public int getSlotWidth(int slot) {
+        return slotWidths[slot];
+    }
+
+    public boolean isSlotSigned(int slot) {
+        return slotSigned[slot];
+    }
+
+    /**
+     * Largura total da tag em bytes (sem o identificador), ou -1 se for variável.
+     */
+    public int getWidth() {
+        return slotWidths == null ? -1 : wireWidth;
+    }
+
+    /**
+     * Largura da tag nos pacotes (sem o identificador): a largura fixa, ou a largura de
+     * transmissão de uma tag variável. -1 se não for conhecida.
+     */
+    public int getWireWidth() {
+        return wireWidth;
+    }
+}
@@ -0,0 +1,82 @@
+package com.automacao.rstremento2;
+
+/**
+ * Registro das tags Galileosky conhecidas pelo aplicativo.
+ */
+public final class TagRegistry {
+
+    public static final int TAG_HARDWARE_VERSION = 0x01;
+    public static final int TAG_FIRMWARE_VERSION = 0x02;
+    public static final int TAG_IMEI = 0x03;
+    public static final int TAG_TIME = 0x20;
+    public static final int TAG_COORDINATES = 0x30;
+    public static final int TAG_SPEED = 0x33;
+    public static final int TAG_ALTITUDE = 0x34;
+    public static final int TAG_HDOP = 0x35;
+    public static final int TAG_CPF = 0x90;
+    public static final int TAG_PLATE = 0xC2;
+    public static final int TAG_USER_0 = 0xE2;
+    public static final int TAG_USER_1 = 0xE3;
+    public static final int TAG_USER_2 = 0xE4;
+    public static final int TAG_USER_3 = 0xE5;
+    public static final int TAG_USER_4 = 0xE6;
+    public static final int TAG_USER_5 = 0xE7;
+    public static final int TAG_USER_6 = 0xE8;
+
+    /** Largura do IMEI nos pacotes: 15 dígitos em texto. */
+    public static final int IMEI_WIRE_WIDTH = 15;
+
+    private static final TagDefinition[] TAGS = new TagDefinition[256];
+
+    static {
+        register(TagDefinition.fixed(TAG_HARDWARE_VERSION, "hardware", 1));
+        register(TagDefinition.fixed(TAG_FIRMWARE_VERSION, "firmware", 1));
+        register(TagDefinition.variable(TAG_IMEI, "imei", IMEI_WIRE_WIDTH));
+        register(TagDefinition.fixed(TAG_TIME, "time", 4));
+        // Satélites (1 byte), latitude e longitude (graus * 1e6, 4 bytes com sinal cada)
+        register(TagDefinition.fixed(TAG_COORDINATES, "coordinates",
+                new int[]{1, 4, 4}, new boolean[]{false, true, true}));
+        register(TagDefinition.fixed(TAG_SPEED, "speed", new int[]{4}, new boolean[]{true}));
+        register(TagDefinition.fixed(TAG_ALTITUDE, "altitude", new int[]{2}, new boolean[]{true}));
+        register(TagDefinition.fixed(TAG_HDOP, "hdop", 1)); // HDOP * 10
+        register(TagDefinition.fixed(TAG_CPF, "cpf", 4));
+        register(TagDefinition.fixed(TAG_PLATE, "plate", 4));
+        for (int id = TAG_USER_0; id <= TAG_USER_6; id++) {
+            register(TagDefinition.fixed(id, "user" + (id - TAG_USER_0), 4));
+        }
+    }
+
+    private TagRegistry() {
+    }
+
+    /**
+     * Registra uma tag, substituindo uma definição anterior com o mesmo identificador.
+     *
+     * @param tag Definição da tag.
+     */
+    public static synchronized void register(TagDefinition tag) {
+        TAGS[tag.getId() & 0xFF] = tag;
+    }
+
+    /**
+     * Obtém a definição de uma tag.
+     *
+     * @param id Identificador da tag.
+     * @return A definição, ou null se a tag não estiver registrada.
+     */
+    public static TagDefinition get(int id) {
+        return TAGS[id & 0xFF];
+    }
+
+    /**
+     * Largura de uma tag nos pacotes, para percorrer as tags de um pacote recebido.
+     *
+     * @param id Identificador da tag.
+     * @return A largura em bytes, sem o identificador, ou -1 se a tag não estiver
+     * registrada ou não tiver largura conhecida.
+     */
+    public static int wireWidth(int id) {
+        TagDefinition tag = TAGS[id & 0xFF];
+        return tag == null ? -1 : tag.getWireWidth();
+    }
+}
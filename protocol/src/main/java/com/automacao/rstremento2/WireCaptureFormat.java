@@ -0,0 +1,74 @@
+package com.automacao.rstremento2;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Formato binário dos arquivos de captura: cabeçalho "GSCP" + versão, seguido de
+ * registros com instante (ms), direção, comprimento (2 bytes) e os bytes do pacote.
+ * Gravado pela captura do aplicativo e lido pelo {@code WireCaptureReader} do módulo
+ * {@code :tools}.
+ */
+public final class WireCaptureFormat {
+    public static final int MAGIC = 0x47534350; // "GSCP"
+    public static final int VERSION = 1;
+
+    public static final byte DIRECTION_SENT = 1;
+    public static final byte DIRECTION_RECEIVED = 2;
+
+    private WireCaptureFormat() {
+    }
+
+    public static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    public static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Arquivo de captura inválido");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Versão de captura não suportada: " + version);
+        }
+    }
+
+    public static void writeRecord(DataOutputStream out, long timeMillis, byte direction,
+                            byte[] data, int offset, int length) throws IOException {
+        out.writeLong(timeMillis);
+        out.writeByte(direction);
+        out.writeShort(length);
+        out.write(data, offset, length);
+    }
+
+    /**
+     * Registro lido de um arquivo de captura.
+     */
+    public static final class Record {
+        public long timeMillis;
+        public byte direction;
+        public byte[] data;
+    }
+
+    /**
+     * Lê o próximo registro.
+     *
+     * @return true se um registro foi lido, false no fim do arquivo.
+     */
+    public static boolean readRecord(DataInputStream in, Record record) throws IOException {
+        long timeMillis;
+        try {
+            timeMillis = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        record.timeMillis = timeMillis;
+        record.direction = in.readByte();
+        record.data = new byte[in.readUnsignedShort()];
+        in.readFully(record.data);
+        return true;
+    }
+}
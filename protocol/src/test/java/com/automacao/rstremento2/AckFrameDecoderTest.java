@@ -0,0 +1,191 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do decodificador de confirmações com quadros divididos e agrupados em
+ * fronteiras arbitrárias.
+ */
+public class AckFrameDecoderTest {
+
+    /**
+     * Fluxo que entrega os bytes em pedaços de tamanho aleatório (1 a maxChunk).
+     */
+    private static final class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final Random random;
+        private final int maxChunk;
+        private int position;
+
+        ChunkedInputStream(byte[] data, Random random, int maxChunk) {
+            this.data = data;
+            this.random = random;
+            this.maxChunk = maxChunk;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, 1 + random.nextInt(maxChunk)), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+
+    private static byte[] frames(int[] crcs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int crc : crcs) {
+            out.write(0x02);
+            out.write(crc & 0xFF);
+            out.write((crc >> 8) & 0xFF);
+        }
+        return out.toByteArray();
+    }
+
+    private static int[] randomCrcs(Random random, int count) {
+        int[] crcs = new int[count];
+        for (int i = 0; i < count; i++) {
+            crcs[i] = random.nextInt(0x10000);
+        }
+        return crcs;
+    }
+
+    @Test
+    public void splitAndMergedFrames_areDecodedInOrder() throws IOException {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            int[] crcs = randomCrcs(random, 1 + random.nextInt(300));
+            // Pedaços de 1 byte (quadros divididos) até 64 bytes (vários quadros por leitura)
+            byte[] stream = frames(crcs);
+            InputStream in = new ChunkedInputStream(stream, random, 1 + random.nextInt(64));
+            AckFrameDecoder decoder = new AckFrameDecoder(16);
+
+            for (int i = 0; i < crcs.length; i++) {
+                assertEquals("seed " + seed + ", quadro " + i, crcs[i], decoder.readFrame(in));
+            }
+            assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+            assertEquals(stream.length, decoder.getReadBytes());
+            assertEquals(-1, decoder.readFrom(in));
+            assertEquals(crcs.length, decoder.getFrameCount());
+            assertEquals(0, decoder.getDiscardedBytes());
+        }
+    }
+
+    @Test
+    public void feedWithArbitraryBoundaries_matchesFrames() {
+        Random random = new Random(42);
+        int[] crcs = randomCrcs(random, 5000);
+        byte[] stream = frames(crcs);
+        AckFrameDecoder decoder = new AckFrameDecoder(64);
+        List<Integer> decoded = new ArrayList<>();
+
+        int position = 0;
+        while (position < stream.length) {
+            int free = 64 - decoder.available();
+            int n = Math.min(Math.min(free, 1 + random.nextInt(40)), stream.length - position);
+            decoder.feed(stream, position, n);
+            position += n;
+            int crc;
+            while ((crc = decoder.poll()) != AckFrameDecoder.NO_FRAME) {
+                decoded.add(crc);
+            }
+        }
+
+        assertEquals(crcs.length, decoded.size());
+        for (int i = 0; i < crcs.length; i++) {
+            assertEquals(crcs[i], (int) decoded.get(i));
+        }
+        assertEquals(0, decoder.available());
+    }
+
+    @Test
+    public void garbageBetweenFrames_isSkipped() {
+        AckFrameDecoder decoder = new AckFrameDecoder();
+        byte[] stream = {0x7F, 0x00, 0x02, 0x34, 0x12, (byte) 0xFF, 0x02, (byte) 0xCD, (byte) 0xAB};
+        decoder.feed(stream, 0, stream.length);
+
+        assertEquals(0x1234, decoder.poll());
+        assertEquals(0xABCD, decoder.poll());
+        assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+        assertEquals(3, decoder.getDiscardedBytes());
+    }
+
+    /** Bytes do anel do decodificador a partir de uma posição absoluta. */
+    private static byte[] ringBytes(AckFrameDecoder decoder, int start, int length) {
+        byte[] ring = decoder.getRing();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = ring[(start + i) & (ring.length - 1)];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void lastFrame_spansSkippedBytesAndRingWrap() {
+        AckFrameDecoder decoder = new AckFrameDecoder(8);
+        decoder.feed(new byte[]{0x7F, 0x02, 0x34, 0x12}, 0, 4);
+        assertEquals(0x1234, decoder.poll());
+        assertArrayEquals(new byte[]{0x7F, 0x02, 0x34, 0x12},
+                ringBytes(decoder, decoder.getLastFrameStart(), decoder.getLastFrameLength()));
+
+        // Lixo e quadro dividido entre leituras, dando a volta no fim do anel
+        decoder.feed(new byte[]{0x55, 0x66, 0x02, (byte) 0xCD}, 0, 4);
+        assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+        assertArrayEquals(new byte[]{0x55, 0x66, 0x02, (byte) 0xCD},
+                ringBytes(decoder, decoder.getUnframedStart(), decoder.getUnframedLength()));
+        decoder.feed(new byte[]{(byte) 0xAB}, 0, 1);
+        assertEquals(0xABCD, decoder.poll());
+        assertArrayEquals(new byte[]{0x55, 0x66, 0x02, (byte) 0xCD, (byte) 0xAB},
+                ringBytes(decoder, decoder.getLastFrameStart(), decoder.getLastFrameLength()));
+        assertEquals(0, decoder.getUnframedLength());
+
+        // Anel cheio só com lixo: os bytes descartados são liberados para a leitura seguir
+        byte[] garbage = {1, 3, 4, 5, 6, 7, 8, 9};
+        decoder.feed(garbage, 0, garbage.length);
+        assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+        assertEquals(8, decoder.getUnframedLength());
+        decoder.feed(new byte[]{0x02, 0x01, 0x00}, 0, 3);
+        assertEquals(0x0001, decoder.poll());
+        assertArrayEquals(new byte[]{0x02, 0x01, 0x00},
+                ringBytes(decoder, decoder.getLastFrameStart(), decoder.getLastFrameLength()));
+    }
+
+    @Test
+    public void partialFrame_waitsForRemainingBytes() {
+        AckFrameDecoder decoder = new AckFrameDecoder();
+        decoder.feed(new byte[]{0x02, 0x11}, 0, 2);
+        assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+        assertEquals(2, decoder.available());
+
+        decoder.feed(new byte[]{0x22, 0x02}, 0, 2);
+        assertEquals(0x2211, decoder.poll());
+        assertEquals(AckFrameDecoder.NO_FRAME, decoder.poll());
+
+        decoder.reset();
+        assertEquals(0, decoder.available());
+    }
+
+    @Test
+    public void packetCrc_matchesRecordTrailer() {
+        byte[] packet = TestPackets.samplePacket(7);
+        int crc = Crc16Modbus.calculate(packet, 0, packet.length - 2) & 0xFFFF;
+        assertEquals(crc, AckFrameDecoder.packetCrc(packet));
+    }
+}
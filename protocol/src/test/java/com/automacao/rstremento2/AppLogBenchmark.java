@@ -0,0 +1,30 @@
+package com.automacao.rstremento2;
+
+import java.util.Locale;
+
+/**
+ * Custo de uma chamada de log com DEBUG desativado. Fica fora dos testes unitários, que
+ * não devem depender do tempo de relógio da máquina; execute o {@code main} pela IDE.
+ */
+public final class AppLogBenchmark {
+
+    private AppLogBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        AppLog.setBackend(LogBackend.NO_OP);
+        AppLog.setLevel(AppLog.INFO);
+        byte[] packet = TestPackets.samplePacket(1);
+        for (int i = 0; i < iterations; i++) { // Aquecimento
+            AppLog.d("Bench", "Pacote {} na fila de {}", packet, "envio");
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            AppLog.d("Bench", "Pacote {} na fila de {}", packet, "envio");
+        }
+        double nanosPerCall = (System.nanoTime() - start) / (double) iterations;
+        System.out.println(String.format(Locale.ROOT, "AppLog: %.1f ns/chamada com DEBUG desativado", nanosPerCall));
+    }
+}
@@ -0,0 +1,77 @@
+package com.automacao.rstremento2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes da fachada de log: filtro por nível, formatação preguiçosa e backend da JVM.
+ */
+public class AppLogTest {
+
+    private final List<String> lines = new ArrayList<>();
+    private LogBackend previousBackend;
+    private int previousLevel;
+
+    @Before
+    public void setUp() {
+        previousBackend = AppLog.getBackend();
+        previousLevel = AppLog.getLevel();
+        AppLog.setBackend((level, tag, message, error) -> lines.add(level + "/" + tag + ": " + message));
+        AppLog.setLevel(AppLog.DEBUG);
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setBackend(previousBackend);
+        AppLog.setLevel(previousLevel);
+    }
+
+    @Test
+    public void parameterizedMessages_formatOnlyWhenEnabled() {
+        int[] toStringCalls = {0};
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                toStringCalls[0]++;
+                return "x";
+            }
+        };
+
+        AppLog.setLevel(AppLog.INFO);
+        AppLog.d("T", "valor {}", arg);
+        assertEquals(0, toStringCalls[0]);
+        assertTrue(lines.isEmpty());
+        assertFalse(AppLog.isDebugEnabled());
+
+        AppLog.setLevel(AppLog.DEBUG);
+        AppLog.d("T", "valor {} e {} em {}", arg, 7, new byte[]{0x0A, (byte) 0xFF});
+        assertEquals(1, toStringCalls[0]);
+        assertEquals("3/T: valor x e 7 em 0aff", lines.get(0));
+
+        AppLog.e("T", "sem argumento para {} nem {}", "a");
+        assertEquals("6/T: sem argumento para a nem {}", lines.get(1));
+
+        AppLog.d("T", "{} registros em {} pacotes, {} ms ({} ms)", 40, 10, 12L, 3L);
+        assertEquals("3/T: 40 registros em 10 pacotes, 12 ms (3 ms)", lines.get(2));
+
+        AppLog.setLevel(AppLog.OFF);
+        AppLog.e("T", "descartada");
+        assertEquals(3, lines.size());
+    }
+
+    @Test
+    public void jvmBackend_writesLevelLetterAndTag() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AppLog.setBackend(new JvmLogBackend(new PrintStream(bytes, true)));
+        AppLog.w("Envio", "fila com {} registros", 12);
+        assertEquals("W/Envio: fila com 12 registros", bytes.toString().trim());
+    }
+}
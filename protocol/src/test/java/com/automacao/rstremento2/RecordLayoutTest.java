@@ -0,0 +1,130 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do layout compilado contra o registro de posição montado à mão, como era feito
+ * antes do registro de tags.
+ */
+public class RecordLayoutTest {
+
+    private static final String IMEI = "357138166785014";
+    private static final String CPF = "12565696908";
+    private static final String PLATE = "ACC1D23";
+
+    @Test
+    public void pointLayout_matchesHandBuiltPacketByteForByte() throws Exception {
+        byte[] cpfBytes = CPFConverter.compressCPF(CPF);
+        int plate = CarPlateEncoder.encode(PLATE);
+        RecordLayout layout = RecordSchema.pointSchema(IMEI.getBytes(), cpfBytes, plate).compile();
+
+        double[][] fixes = {
+                {-19.916712, -43.934561, 852.7, 13.9, 9},
+                {0, 0, 0, 0, 0},
+                {-89.999999, 179.999999, -412.3, 250, 31}, // Satélites acima de 15 e altitude negativa
+        };
+        int timestamp = 1_700_000_000;
+        for (double[] fix : fixes) {
+            byte[] expected = legacyPacket(timestamp, fix[0], fix[1], fix[2], (float) fix[3], (int) fix[4],
+                    cpfBytes, plate);
+            long[] values = {
+                    timestamp,
+                    Math.min((int) fix[4], 15),
+                    (int) (fix[0] * 1e6),
+                    (int) (fix[1] * 1e6),
+                    (int) (float) fix[3] * 10,
+                    (short) fix[2],
+            };
+            assertArrayEquals(expected, layout.encode(values));
+            assertEquals(expected.length, layout.getSize());
+        }
+    }
+
+    @Test
+    public void encodeDecode_roundTripsSignedAndUnsignedSlots() throws Exception {
+        RecordLayout layout = RecordSchema.pointSchema(IMEI.getBytes(), CPFConverter.compressCPF(CPF),
+                CarPlateEncoder.encode(PLATE)).field(TagRegistry.TAG_HDOP).compile();
+        long[] values = {4_000_000_000L, 15, -89_999_999, 179_999_999, -10, -412, 255}; // Tempo sem sinal, velocidade e altitude com sinal
+
+        byte[] record = new byte[layout.getSize() + 7];
+        assertEquals(layout.getSize(), layout.encode(values, record, 7));
+
+        long[] decoded = new long[layout.getSlotCount()];
+        assertTrue(layout.decode(record, 7, decoded));
+        assertArrayEquals(values, decoded);
+
+        record[7 + 10] ^= 0x01; // Qualquer bit trocado invalida o CRC
+        assertFalse(layout.decode(record, 7, decoded));
+    }
+
+    @Test
+    public void wireWidth_walksEveryTagOfThePointRecord() throws Exception {
+        byte[] packet = RecordSchema.pointSchema(IMEI.getBytes(), CPFConverter.compressCPF(CPF),
+                CarPlateEncoder.encode(PLATE)).compile().encode(new long[]{1_700_000_000L, 9, 1, 2, 3, 4});
+        int position = 3;
+        int tags = 0;
+        while (position < packet.length - 2) {
+            int width = TagRegistry.wireWidth(packet[position] & 0xFF);
+            assertTrue(width > 0);
+            position += 1 + width;
+            tags++;
+        }
+        assertEquals(packet.length - 2, position);
+        assertEquals(7, tags);
+        assertEquals(TagRegistry.IMEI_WIRE_WIDTH, TagRegistry.wireWidth(TagRegistry.TAG_IMEI));
+        assertEquals(-1, TagRegistry.wireWidth(0xFF)); // Tag não registrada
+    }
+
+    @Test
+    public void slotIndex_isResolvedPerTag() throws Exception {
+        RecordLayout layout = RecordSchema.pointSchema(IMEI.getBytes(), CPFConverter.compressCPF(CPF),
+                CarPlateEncoder.encode(PLATE)).field(TagRegistry.TAG_HDOP).compile();
+
+        assertEquals(0, layout.slotIndex(TagRegistry.TAG_TIME));
+        assertEquals(1, layout.slotIndex(TagRegistry.TAG_COORDINATES));
+        assertEquals(4, layout.slotIndex(TagRegistry.TAG_SPEED));
+        assertEquals(5, layout.slotIndex(TagRegistry.TAG_ALTITUDE));
+        assertEquals(6, layout.slotIndex(TagRegistry.TAG_HDOP));
+        assertEquals(-1, layout.slotIndex(TagRegistry.TAG_IMEI));  // Constante
+        assertEquals(-1, layout.slotIndex(TagRegistry.TAG_USER_0)); // Fora do layout
+        assertEquals(-1, layout.slotIndex(-1));
+        assertEquals(-1, layout.slotIndex(0x1FF));
+    }
+
+    /**
+     * Registro de posição montado com ByteBuffer, tag a tag, como o PacketSavingThread fazia.
+     */
+    private static byte[] legacyPacket(int timestamp, double latitude, double longitude, double altitude,
+                                       float speed, int satellites, byte[] cpfBytes, int plate) {
+        ByteBuffer buffer = ByteBuffer.allocate(1000).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 0x01);
+        buffer.putShort((short) 0);
+        buffer.put((byte) 0x03).put(IMEI.getBytes());
+        buffer.put((byte) 0x20).putInt(timestamp);
+        buffer.put((byte) 0x30).put((byte) Math.min(satellites, 15))
+                .putInt((int) (latitude * 1e6)).putInt((int) (longitude * 1e6));
+        buffer.put((byte) 0x33).putInt((int) speed * 10);
+        buffer.put((byte) 0x34).putShort((short) altitude);
+        buffer.put((byte) 0x90).put(cpfBytes);
+        buffer.put((byte) 0xC2).putInt(plate);
+        buffer.putShort(1, (short) (buffer.position() - 3));
+
+        int crc = 0xFFFF;
+        for (int i = 0; i < buffer.position(); i++) {
+            crc ^= buffer.get(i) & 0xFF;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >> 1) ^ 0xA001 : crc >> 1;
+            }
+        }
+        buffer.putShort((short) crc);
+        byte[] packet = new byte[buffer.position()];
+        buffer.rewind();
+        buffer.get(packet);
+        return packet;
+    }
+}
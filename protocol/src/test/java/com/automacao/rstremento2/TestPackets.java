@@ -0,0 +1,23 @@
+package com.automacao.rstremento2;
+
+/**
+ * Pacotes de exemplo para os testes do protocolo.
+ */
+final class TestPackets {
+
+    private TestPackets() {
+    }
+
+    /**
+     * Pacote mínimo com uma tag 0x20 de 4 bytes e CRC válido.
+     *
+     * @param seed Valor gravado na tag, para variar o CRC.
+     */
+    static byte[] samplePacket(int seed) {
+        byte[] packet = {0x01, 0x05, 0x00, 0x20, (byte) seed, (byte) (seed >> 8), 0, 0, 0, 0};
+        short crc = Crc16Modbus.calculate(packet, 0, 8);
+        packet[8] = (byte) crc;
+        packet[9] = (byte) (crc >> 8);
+        return packet;
+    }
+}
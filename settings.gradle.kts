@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Rstremento2"
 include(":app")
- 
\ No newline at end of file
+include(":protocol")
+include(":ingestion")
+ include(":tools")
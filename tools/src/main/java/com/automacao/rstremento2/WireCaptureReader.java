@@ -0,0 +1,155 @@
+package com.automacao.rstremento2;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Decodificador offline dos arquivos de captura. Percorre as tags de cada pacote
+ * usando as definições do {@link TagRegistry} e verifica o CRC dos registros. Fica no
+ * módulo {@code :tools}, fora do APK.
+ *
+ * Uso: {@code java com.automacao.rstremento2.WireCaptureReader wire-000000.gscap ...}
+ */
+public final class WireCaptureReader {
+
+    private static final int HEADER = 0x01;
+    private static final int ACK = 0x02;
+
+    private WireCaptureReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String path : args) {
+            print(new File(path), System.out);
+        }
+    }
+
+    /**
+     * Imprime o conteúdo decodificado de um arquivo de captura.
+     *
+     * @param file Arquivo de captura.
+     * @param out  Destino do texto.
+     * @throws IOException Se o arquivo não puder ser lido ou for inválido.
+     */
+    public static void print(File file, PrintStream out) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            WireCaptureFormat.readHeader(in);
+            WireCaptureFormat.Record record = new WireCaptureFormat.Record();
+            StringBuilder sb = new StringBuilder();
+            while (WireCaptureFormat.readRecord(in, record)) {
+                sb.setLength(0);
+                sb.append(format.format(new Date(record.timeMillis)))
+                        .append(record.direction == WireCaptureFormat.DIRECTION_SENT ? " >> " : " << ");
+                if (record.direction == WireCaptureFormat.DIRECTION_RECEIVED) {
+                    describeReceived(record.data, sb);
+                } else {
+                    describe(record.data, sb);
+                }
+                out.println(sb);
+            }
+        }
+    }
+
+    /**
+     * Descreve os bytes recebidos do servidor: uma confirmação, com os bytes descartados
+     * antes dela, ou uma resposta que não formou confirmação.
+     *
+     * @param data Bytes recebidos, como vieram do fluxo.
+     * @param sb   Destino da descrição.
+     */
+    public static void describeReceived(byte[] data, StringBuilder sb) {
+        int frame = data.length - 3;
+        if (frame < 0 || (data[frame] & 0xFF) != ACK) {
+            sb.append("resposta sem confirmação ");
+            appendHex(data, 0, data.length, sb);
+            return;
+        }
+        sb.append("ACK crc=").append(hex16(data, frame + 1));
+        if (frame > 0) {
+            sb.append(" descartados=");
+            appendHex(data, 0, frame, sb);
+        }
+    }
+
+    /**
+     * Descreve um pacote Galileosky (registro ou confirmação) em texto.
+     *
+     * @param packet Bytes do pacote.
+     * @param sb     Destino da descrição.
+     */
+    public static void describe(byte[] packet, StringBuilder sb) {
+        if (packet.length == 3 && (packet[0] & 0xFF) == ACK) {
+            sb.append("ACK crc=").append(hex16(packet, 1));
+            return;
+        }
+        if (packet.length < 5 || (packet[0] & 0xFF) != HEADER) {
+            sb.append("desconhecido ");
+            appendHex(packet, 0, packet.length, sb);
+            return;
+        }
+
+        int length = ((packet[1] & 0xFF) | (packet[2] & 0xFF) << 8) & 0x7FFF;
+        int end = Math.min(3 + length, packet.length - 2);
+        boolean crcValid = 3 + length + 2 == packet.length
+                && (Crc16Modbus.calculate(packet, 0, end) & 0xFFFF) == (packet[end] & 0xFF | (packet[end + 1] & 0xFF) << 8);
+        sb.append("registro len=").append(length).append(crcValid ? " crc=ok" : " crc=INVÁLIDO");
+
+        int pos = 3;
+        while (pos < end) {
+            int id = packet[pos] & 0xFF;
+            TagDefinition tag = TagRegistry.get(id);
+            int width = TagRegistry.wireWidth(id);
+            if (width < 0 || pos + 1 + width > end) {
+                // Sem a largura da tag não é possível continuar; exibe o restante em hexadecimal
+                sb.append(" ?0x").append(Integer.toHexString(id)).append('=');
+                appendHex(packet, pos + 1, end, sb);
+                return;
+            }
+            sb.append(' ').append(tag.getName()).append('=');
+            if (tag.isVariable()) {
+                for (int i = pos + 1; i < pos + 1 + width; i++) {
+                    sb.append((char) (packet[i] & 0xFF));
+                }
+            } else {
+                int slotPos = pos + 1;
+                for (int slot = 0; slot < tag.getSlotCount(); slot++) {
+                    int slotWidth = tag.getSlotWidth(slot);
+                    long value = 0;
+                    for (int i = slotWidth - 1; i >= 0; i--) {
+                        value = (value << 8) | (packet[slotPos + i] & 0xFF);
+                    }
+                    if (tag.isSlotSigned(slot) && slotWidth < 8) {
+                        int shift = 64 - slotWidth * 8;
+                        value = (value << shift) >> shift;
+                    }
+                    if (slot > 0) {
+                        sb.append('/');
+                    }
+                    sb.append(value);
+                    slotPos += slotWidth;
+                }
+            }
+            pos += 1 + width;
+        }
+    }
+
+    private static String hex16(byte[] data, int offset) {
+        return String.format(Locale.ROOT, "%04X", (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static void appendHex(byte[] data, int from, int to, StringBuilder sb) {
+        for (int i = from; i < to; i++) {
+            sb.append(Character.forDigit((data[i] >> 4) & 0xF, 16)).append(Character.forDigit(data[i] & 0xF, 16));
+        }
+    }
+}
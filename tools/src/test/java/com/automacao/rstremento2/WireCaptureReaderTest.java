@@ -0,0 +1,78 @@
+package com.automacao.rstremento2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testes do decodificador offline dos arquivos de captura.
+ */
+public class WireCaptureReaderTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    /** Grava o CRC nos dois últimos bytes do pacote. */
+    private static void seal(byte[] packet) {
+        short crc = Crc16Modbus.calculate(packet, 0, packet.length - 2);
+        packet[packet.length - 2] = (byte) crc;
+        packet[packet.length - 1] = (byte) (crc >> 8);
+    }
+
+    @Test
+    public void fullBatchFrame_isReadBackWithValidCrc() throws Exception {
+        byte[] imei = "860000000000042".getBytes();
+        RecordLayout layout = RecordSchema.pointSchema(imei, CPFConverter.compressCPF("12345678909"),
+                CarPlateEncoder.encode("ABC1D23")).compile();
+        byte[] record = layout.encode(new long[]{1_700_000_000L, 9, -23_550_000, -46_633_000, 600, 760});
+        int body = record.length - 5;
+        int count = 1024 / body; // Quantos registros cabem no corpo máximo de um pacote agrupado
+        byte[] frame = new byte[count * body + 5];
+        frame[0] = 0x01;
+        frame[1] = (byte) (count * body);
+        frame[2] = (byte) ((count * body) >> 8);
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(record, 3, frame, 3 + i * body, body);
+        }
+        seal(frame);
+        assertTrue(frame.length > 512);
+
+        File file = Files.createTempFile("wire", ".gscap").toFile();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                WireCaptureFormat.writeHeader(out);
+                WireCaptureFormat.writeRecord(out, T0, WireCaptureFormat.DIRECTION_SENT, frame, 0, frame.length);
+                byte[] ack = {0x7F, 0x02, frame[frame.length - 2], frame[frame.length - 1]};
+                WireCaptureFormat.writeRecord(out, T0 + 5, WireCaptureFormat.DIRECTION_RECEIVED, ack, 0, ack.length);
+            }
+
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            WireCaptureReader.print(file, new PrintStream(text, true, "UTF-8"));
+            String[] lines = text.toString("UTF-8").split("\n");
+            assertEquals(2, lines.length);
+            assertTrue(lines[0], lines[0].contains(">> registro len=" + count * body + " crc=ok"));
+            assertFalse(lines[0], lines[0].contains("?0x"));
+            assertTrue(lines[1], lines[1].contains("<< ACK crc="));
+            assertTrue(lines[1], lines[1].endsWith("descartados=7f"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void describeReceived_showsResponsesWithoutAck() {
+        StringBuilder sb = new StringBuilder();
+        WireCaptureReader.describeReceived(new byte[]{0x02, 0x34, 0x12}, sb);
+        assertEquals("ACK crc=1234", sb.toString());
+
+        sb.setLength(0);
+        WireCaptureReader.describeReceived(new byte[]{0x55, 0x02, 0x01}, sb);
+        assertEquals("resposta sem confirmação 550201", sb.toString());
+    }
+}